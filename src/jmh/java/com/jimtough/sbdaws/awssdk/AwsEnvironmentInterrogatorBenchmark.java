@@ -0,0 +1,198 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.ECSClient;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.ecs.model.DescribeClustersRequest;
+import software.amazon.awssdk.services.ecs.model.DescribeClustersResponse;
+import software.amazon.awssdk.services.ecs.model.ListClustersRequest;
+import software.amazon.awssdk.services.ecs.model.ListClustersResponse;
+import software.amazon.awssdk.services.iam.IAMClient;
+import software.amazon.awssdk.services.iam.model.GetUserRequest;
+import software.amazon.awssdk.services.iam.model.GetUserResponse;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.iam.waiters.IAMClientWaiters;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Bucket;
+import software.amazon.awssdk.services.s3.model.ListBucketsRequest;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
+
+/**
+ * JMH benchmark for the {@code AwsEnvironmentInterrogator}, with stubbed SDK clients that answer
+ * from memory. Nothing goes over the network, so this measures only the cost on our side of each
+ * call: building requests, paging, batching and collecting the results.
+ *
+ * @author JTOUGH
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AwsEnvironmentInterrogatorBenchmark {
+
+	// Same page size limit as the real ListClusters API
+	private static final int ECS_LIST_PAGE_SIZE = 100;
+
+	@Param({ "10", "100", "1000" })
+	public int clusterCount;
+
+	@Param({ "10", "1000" })
+	public int bucketCount;
+
+	private AwsClientRegistry clientRegistry;
+	private AwsEnvironmentInterrogator interrogator;
+
+	@Setup
+	public void setUp() {
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+			@Override public int getAwsEcsDescribeClustersParallelism() { return 4; }
+		};
+		IAMClient iamClient = new StubIAMClient();
+		ECSClient ecsClient = new StubECSClient(clusterCount);
+		S3Client s3Client = new StubS3Client(bucketCount);
+		clientRegistry = new AwsClientRegistry(configurationBean) {
+			@Override public IAMClient getIamClient() { return iamClient; }
+			@Override public ECSClient getEcsClient(Region region) { return ecsClient; }
+			@Override public S3Client getS3Client(Region region) { return s3Client; }
+		};
+		interrogator = new AwsEnvironmentInterrogator(configurationBean, clientRegistry, new MetricsRegistry());
+	}
+
+	@TearDown
+	public void tearDown() {
+		interrogator.shutdown();
+		clientRegistry.shutdown();
+	}
+
+	@Benchmark
+	public User getIAMUser() throws AwsSdkException {
+		return interrogator.getIAMUser();
+	}
+
+	@Benchmark
+	public List<Cluster> getECSClusterList() throws AwsSdkException {
+		return interrogator.getECSClusterList();
+	}
+
+	@Benchmark
+	public List<Bucket> getS3BucketList() throws AwsSdkException {
+		return interrogator.getS3BucketList();
+	}
+
+	private static class StubIAMClient implements IAMClient {
+
+		private final GetUserResponse response = GetUserResponse.builder()
+				.user(User.builder()
+						.userName("benchmark-user")
+						.arn("arn:aws:iam::123456789012:user/benchmark-user")
+						.createDate(new Date(0))
+						.build())
+				.build();
+
+		@Override
+		public GetUserResponse getUser(GetUserRequest request) {
+			return response;
+		}
+
+		@Override
+		public IAMClientWaiters waiters() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static class StubECSClient implements ECSClient {
+
+		private final List<String> clusterArns = new ArrayList<>();
+		private final Map<String, Cluster> clustersByArn = new HashMap<>();
+
+		StubECSClient(int clusterCount) {
+			for (int i = 0; i < clusterCount; i++) {
+				String arn = "arn:aws:ecs:us-east-1:123456789012:cluster/cluster-" + i;
+				clusterArns.add(arn);
+				clustersByArn.put(arn, Cluster.builder()
+						.clusterArn(arn)
+						.clusterName("cluster-" + i)
+						.registeredContainerInstancesCount(i % 10)
+						.activeServicesCount(i % 5)
+						.runningTasksCount(i % 20)
+						.build());
+			}
+		}
+
+		@Override
+		public ListClustersResponse listClusters(ListClustersRequest request) {
+			int start = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+			int pageSize = Math.min(ECS_LIST_PAGE_SIZE, request.maxResults() == null ? ECS_LIST_PAGE_SIZE : request.maxResults());
+			int end = Math.min(start + pageSize, clusterArns.size());
+			return ListClustersResponse.builder()
+					.clusterArns(clusterArns.subList(start, end))
+					.nextToken(end < clusterArns.size() ? String.valueOf(end) : null)
+					.build();
+		}
+
+		@Override
+		public DescribeClustersResponse describeClusters(DescribeClustersRequest request) {
+			return DescribeClustersResponse.builder()
+					.clusters(request.clusters().stream().map(clustersByArn::get).collect(Collectors.toList()))
+					.build();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static class StubS3Client implements S3Client {
+
+		private final ListBucketsResponse response;
+
+		StubS3Client(int bucketCount) {
+			List<Bucket> buckets = new ArrayList<>(bucketCount);
+			for (int i = 0; i < bucketCount; i++) {
+				buckets.add(Bucket.builder().name("bucket-" + i).creationDate(new Date(1515283200000L + i)).build());
+			}
+			this.response = ListBucketsResponse.builder().buckets(buckets).build();
+		}
+
+		@Override
+		public ListBucketsResponse listBuckets(ListBucketsRequest request) {
+			return response;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.jimtough.sbdaws.efs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jimtough.sbdaws.efs.EfsFileServer.ServedFile;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+/**
+ * JMH benchmark for sending a file in the EFS volume to a socket, the way the file download
+ * endpoint does, against a generated file in a temporary directory.
+ *
+ * The socket is a loopback connection whose other end is drained by a background thread.
+ * The {@code inputStreamCopy} benchmark is the naive way to do it: read the file into a byte array
+ * and write the array to the socket. {@code transferTo} uses {@code FileChannel.transferTo}, which
+ * the kernel can do without copying the file into the JVM at all. {@code mappedFile} writes a
+ * cached memory-mapped copy of the file, which is what the endpoint does for small files.
+ *
+ * @author JTOUGH
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EfsFileTransferBenchmark {
+
+	private static final int COPY_BUFFER_SIZE = 8192;
+	private static final int DRAIN_BUFFER_SIZE = 256 * 1024;
+
+	@Param({ "65536", "8388608", "134217728" })
+	public long fileSize;
+
+	private Path root;
+	private EfsFileServer channelServer;
+	private EfsFileServer mappingServer;
+	private ServedFile file;
+	private ServerSocketChannel serverSocket;
+	private SocketChannel socket;
+	private OutputStream socketOutputStream;
+	private Thread drainThread;
+
+	@Setup
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("efs-transfer-benchmark-").toAbsolutePath();
+		byte[] block = new byte[1024 * 1024];
+		new Random(1).nextBytes(block);
+		try (OutputStream out = Files.newOutputStream(root.resolve("file.bin"))) {
+			for (long written = 0; written < fileSize; written += block.length) {
+				out.write(block, 0, (int) Math.min(block.length, fileSize - written));
+			}
+		}
+		channelServer = new EfsFileServer(root, 0, 0, 0, 0, new MetricsRegistry());
+		mappingServer = new EfsFileServer(root, 0, 0, Long.MAX_VALUE, 1, new MetricsRegistry());
+		file = channelServer.find("file.bin");
+
+		serverSocket = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+		socket = SocketChannel.open(serverSocket.getLocalAddress());
+		SocketChannel receiver = serverSocket.accept();
+		drainThread = new Thread(() -> drain(receiver), "efs-transfer-benchmark-drain");
+		drainThread.setDaemon(true);
+		drainThread.start();
+		socketOutputStream = socket.socket().getOutputStream();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException, InterruptedException {
+		socket.close();
+		drainThread.join(TimeUnit.SECONDS.toMillis(10));
+		serverSocket.close();
+		Files.delete(root.resolve("file.bin"));
+		Files.delete(root);
+	}
+
+	@Benchmark
+	public void inputStreamCopy() throws IOException {
+		byte[] buffer = new byte[COPY_BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(file.getPath())) {
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				socketOutputStream.write(buffer, 0, n);
+			}
+		}
+	}
+
+	@Benchmark
+	public void transferTo() throws IOException {
+		channelServer.transfer(file, 0, file.getSize(), socket);
+	}
+
+	@Benchmark
+	public void mappedFile() throws IOException {
+		mappingServer.transfer(file, 0, file.getSize(), socket);
+	}
+
+	private static void drain(SocketChannel receiver) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(DRAIN_BUFFER_SIZE);
+		try (SocketChannel channel = receiver) {
+			while (channel.read(buffer) >= 0) {
+				buffer.clear();
+			}
+		} catch (IOException e) {
+			// The benchmark is over
+		}
+	}
+
+}
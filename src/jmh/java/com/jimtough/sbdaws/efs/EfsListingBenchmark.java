@@ -0,0 +1,126 @@
+package com.jimtough.sbdaws.efs;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+/**
+ * JMH benchmark for listing the EFS volume, against a generated directory tree in a temporary directory.
+ *
+ * The {@code fullScan} benchmark walks the whole tree, the way the index does at startup and on
+ * every periodic rescan. The other benchmarks read from the index, the way the home page and the
+ * EFS files API do on every request.
+ *
+ * @author JTOUGH
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EfsListingBenchmark {
+
+	// Consecutive files go in the same directory
+	private static final int FILES_PER_DIRECTORY = 10;
+	private static final int PAGE_SIZE = 100;
+
+	@Param({ "1000", "10000" })
+	public int fileCount;
+
+	@Param({ "1", "4" })
+	public int depth;
+
+	private Path root;
+	private EfsFileIndex index;
+	private EfsFileQuery firstPageQuery;
+	private EfsFileQuery shallowQuery;
+
+	@Setup
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("efs-benchmark-").toAbsolutePath();
+		createTree(root, fileCount, depth);
+		// The index is only changed by the full scans that the benchmark runs
+		index = new EfsFileIndex(root, TimeUnit.DAYS.toMillis(1), false, new MetricsRegistry());
+		index.start();
+		firstPageQuery = new EfsFileQuery(null, Integer.MAX_VALUE, PAGE_SIZE, false, null);
+		shallowQuery = new EfsFileQuery(null, 1, PAGE_SIZE, false, null);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		index.shutdown();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Benchmark
+	public void fullScan() throws InterruptedException, ExecutionException {
+		index.rescan();
+	}
+
+	@Benchmark
+	public List<EfsFileEntry> allEntries() throws InterruptedException {
+		return index.getEntries();
+	}
+
+	@Benchmark
+	public EfsFilePage firstPage() throws Exception {
+		return index.list(firstPageQuery);
+	}
+
+	@Benchmark
+	public EfsFilePage firstPageOfTopLevel() throws Exception {
+		return index.list(shallowQuery);
+	}
+
+	/**
+	 * Spread the files over a tree of directories that is {@code depth} levels deep,
+	 * with up to 10 subdirectories in each directory
+	 */
+	private static void createTree(Path root, int fileCount, int depth) throws IOException {
+		for (int i = 0; i < fileCount; i++) {
+			int directoryNumber = i / FILES_PER_DIRECTORY;
+			Path directory = root;
+			for (int level = 0; level < depth; level++) {
+				directory = directory.resolve("dir-" + (directoryNumber % 10));
+				directoryNumber /= 10;
+			}
+			Files.createDirectories(directory);
+			Files.write(directory.resolve("file-" + i + ".txt"), new byte[i % 1024]);
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.jimtough.sbdaws.efs;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark for the parallel directory walk that the EFS index uses for full scans.
+ *
+ * A local temporary directory answers in microseconds, which hides the cost that matters on EFS.
+ * So every directory read is delayed by {@code latencyMillis}, standing in for the NFS round trip.
+ * With {@code parallelism} 1 the walk is as slow as the old single-threaded walk.
+ *
+ * @author JTOUGH
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EfsParallelWalkBenchmark {
+
+	// 1 + 6 + 36 + 216 directories, each with 5 files
+	private static final int DEPTH = 3;
+	private static final int SUBDIRECTORIES_PER_DIRECTORY = 6;
+	private static final int FILES_PER_DIRECTORY = 5;
+
+	@Param({ "1", "4", "16" })
+	public int parallelism;
+
+	@Param({ "1" })
+	public long latencyMillis;
+
+	private Path root;
+	private ParallelDirectoryWalker walker;
+
+	@Setup
+	public void setUp() throws IOException {
+		root = Files.createTempDirectory("efs-walk-benchmark-").toAbsolutePath();
+		createTree(root, DEPTH);
+		walker = new ParallelDirectoryWalker(parallelism, 0, 0) {
+			@Override
+			DirectoryStream<Path> openDirectory(Path directory) throws IOException {
+				try {
+					Thread.sleep(latencyMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+				return super.openDirectory(directory);
+			}
+		};
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		walker.shutdown();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Benchmark
+	public Map<Path, EfsFileEntry> walk() throws IOException {
+		Map<Path, EfsFileEntry> target = new ConcurrentSkipListMap<>();
+		walker.walk(root, 0, target, directory -> {});
+		return target;
+	}
+
+	private static void createTree(Path directory, int levelsBelow) throws IOException {
+		Files.createDirectories(directory);
+		for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+			Files.write(directory.resolve("file-" + i + ".txt"), new byte[i * 100]);
+		}
+		if (levelsBelow > 0) {
+			for (int i = 0; i < SUBDIRECTORIES_PER_DIRECTORY; i++) {
+				createTree(directory.resolve("dir-" + i), levelsBelow - 1);
+			}
+		}
+	}
+
+}
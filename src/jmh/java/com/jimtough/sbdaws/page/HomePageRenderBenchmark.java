@@ -0,0 +1,181 @@
+package com.jimtough.sbdaws.page;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory.RegionalCluster;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JMH benchmark for rendering the home page, with synthetic cluster, bucket and file lists.
+ *
+ * The {@code render} benchmark measures the HTML renderer on its own, and
+ * {@code renderWithStringFormat} measures the old way of building the page, for comparison.
+ * The {@code renderAndGzip} benchmark measures what a request pays when the data has changed:
+ * rendering plus gzip.
+ * The {@code cachedPage} benchmark measures what it pays when the data has not changed.
+ * The same number of ECS clusters and S3 buckets is used, to keep the number of runs down.
+ *
+ * @author JTOUGH
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HomePageRenderBenchmark {
+
+	// Discards everything, so only the cost of rendering is measured
+	private static final OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
+		@Override public void write(int b) {}
+		@Override public void write(byte[] b, int off, int len) {}
+	};
+
+	private static final String EOL = System.lineSeparator();
+
+	@Param({ "10", "100", "1000" })
+	public int clusterAndBucketCount;
+
+	@Param({ "100", "10000" })
+	public int fileCount;
+
+	private HomePageRenderer renderer;
+	private HomePageBodyCache bodyCache;
+	private HomePageSections sections;
+	private HomePageSections otherSections;
+	private boolean useOtherSections;
+
+	@Setup
+	public void setUp() {
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public String getMyName() { return "benchmark"; }
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+		};
+		renderer = new HomePageRenderer(configurationBean);
+		bodyCache = new HomePageBodyCache(renderer);
+		sections = newSections();
+		otherSections = newSections();
+	}
+
+	@Benchmark
+	public void render() throws IOException {
+		renderer.render(sections, NULL_OUTPUT_STREAM);
+	}
+
+	/**
+	 * Baseline for {@code render}: the EFS section built the way the page did it before the
+	 * streaming renderer, with a {@code StringBuilder} and {@code String.format()}. Compare the
+	 * gc.alloc.rate.norm of the two.
+	 */
+	@Benchmark
+	public String renderWithStringFormat() {
+		List<EfsFileEntry> entries = sections.getEfsResult().getValue();
+		String rowTemplate = "<li>"
+				+ "<b>file path:</b> [%s] | "
+				+ "<b>created: </b> %s | "
+				+ "<b>last modified:</b> %s | "
+				+ "<b>size: </b> %s | "
+				+ "<b>is directory?: </b> %b"
+				+ "</li>";
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><body>");
+		sb.append(String.format("<h3>Files in my EFS volume (%d in total)</h3>", entries.size()));
+		sb.append("<ul>").append(EOL);
+		for (EfsFileEntry entry : entries) {
+			sb.append(String.format(rowTemplate,
+					entry.getPath().toString(),
+					entry.getCreationTime(),
+					entry.getLastModifiedTime(),
+					entry.getSize(),
+					entry.isDirectory()))
+				.append(EOL);
+		}
+		sb.append("</ul>").append(EOL);
+		sb.append("</body></html>");
+		return sb.toString();
+	}
+
+	@Benchmark
+	public RenderedHomePage renderAndGzip() throws IOException {
+		// The body cache compares the values by reference, so switching between two copies
+		// of the same data makes it render every time
+		useOtherSections = !useOtherSections;
+		return bodyCache.get(useOtherSections ? otherSections : sections);
+	}
+
+	@Benchmark
+	public RenderedHomePage cachedPage() throws IOException {
+		return bodyCache.get(sections);
+	}
+
+	private HomePageSections newSections() {
+		return new HomePageSections(
+				SectionResult.ok(PageSection.IAM, 1, User.builder().userName("benchmark-user").createDate(new Date(0)).build()),
+				SectionResult.ok(PageSection.ECS, 1, clusters(clusterAndBucketCount)),
+				SectionResult.ok(PageSection.S3, 1, buckets(clusterAndBucketCount)),
+				SectionResult.ok(PageSection.EFS, 1, efsFileEntries(fileCount)),
+				null,
+				null,
+				null);
+	}
+
+	private static EcsClusterInventory clusters(int count) {
+		List<RegionalCluster> clusters = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			clusters.add(new RegionalCluster(Region.US_EAST_1, Cluster.builder()
+					.clusterName("cluster-" + i)
+					.registeredContainerInstancesCount(i % 10)
+					.activeServicesCount(i % 5)
+					.runningTasksCount(i % 20)
+					.build()));
+		}
+		return new EcsClusterInventory(Collections.singletonList(Region.US_EAST_1), clusters, Collections.emptyMap());
+	}
+
+	private static List<Bucket> buckets(int count) {
+		List<Bucket> buckets = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			buckets.add(Bucket.builder().name("bucket-" + i).creationDate(new Date(1515283200000L + i)).build());
+		}
+		return buckets;
+	}
+
+	private static List<EfsFileEntry> efsFileEntries(int count) {
+		List<EfsFileEntry> entries = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Path path = Paths.get("/datafiles", "dir-" + (i % 100), "file-" + i + ".txt");
+			FileTime time = FileTime.fromMillis(1515283200000L + i);
+			entries.add(new EfsFileEntry(path, time, time, i, false));
+		}
+		return entries;
+	}
+
+}
@@ -1,5 +1,12 @@
 package com.jimtough.sbdaws;
 
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
@@ -37,17 +44,298 @@ public class ConfigurationBean {
 	@Value("${aws.target.region}")
 	private String awsTargetRegionName;
 
+	@Value("${aws.target.regions:}")
+	private String awsTargetRegionNames;
+
+	@Value("${aws.sdk.http.maxConnections:50}")
+	private int awsSdkHttpMaxConnections;
+
+	@Value("${aws.sdk.http.connectionMaxIdleSeconds:60}")
+	private long awsSdkHttpConnectionMaxIdleSeconds;
+
+	@Value("${aws.sdk.endpointOverride:}")
+	private String awsSdkEndpointOverrideString;
+
+	@Value("${aws.sdk.endpointOverride.iam:}")
+	private String awsSdkIamEndpointOverrideString;
+
+	@Value("${aws.sdk.endpointOverride.ecs:}")
+	private String awsSdkEcsEndpointOverrideString;
+
+	@Value("${aws.sdk.endpointOverride.s3:}")
+	private String awsSdkS3EndpointOverrideString;
+
+	@Value("${aws.sdk.endpointOverride.ec2:}")
+	private String awsSdkEc2EndpointOverrideString;
+
+	@Value("${aws.ecs.describeClusters.parallelism:4}")
+	private int awsEcsDescribeClustersParallelism;
+
+	@Value("${aws.ecs.regionTimeoutMillis:10000}")
+	private long awsEcsRegionTimeoutMillis;
+
+	@Value("${aws.s3.statistics.enabled:false}")
+	private boolean awsS3StatisticsEnabled;
+
+	@Value("${aws.s3.statistics.refreshIntervalMinutes:60}")
+	private long awsS3StatisticsRefreshIntervalMinutes;
+
+	@Value("${aws.s3.statistics.parallelism:4}")
+	private int awsS3StatisticsParallelism;
+
+	@Value("${aws.s3.statistics.maxKeysPerPage:1000}")
+	private int awsS3StatisticsMaxKeysPerPage;
+
+	@Value("${aws.s3.statistics.shardSplitKeys:}")
+	private String awsS3StatisticsShardSplitKeysString;
+
+	@Value("${aws.ec2.api.defaultPageSize:100}")
+	private int awsEc2ApiDefaultPageSize;
+
+	@Value("${aws.ec2.api.maxPageSize:1000}")
+	private int awsEc2ApiMaxPageSize;
+
+	@Value("${aws.circuitBreaker.failureRateThresholdPercent:50}")
+	private int awsCircuitBreakerFailureRateThresholdPercent;
+
+	@Value("${aws.circuitBreaker.windowSize:20}")
+	private int awsCircuitBreakerWindowSize;
+
+	@Value("${aws.circuitBreaker.minimumCalls:5}")
+	private int awsCircuitBreakerMinimumCalls;
+
+	@Value("${aws.circuitBreaker.openSeconds:30}")
+	private long awsCircuitBreakerOpenSeconds;
+
+	@Value("${aws.circuitBreaker.halfOpenProbes:2}")
+	private int awsCircuitBreakerHalfOpenProbes;
+
+	@Value("${aws.bulkhead.maxConcurrentCalls:8}")
+	private int awsBulkheadMaxConcurrentCalls;
+
+	@Value("${aws.bulkhead.maxWaitMillis:0}")
+	private long awsBulkheadMaxWaitMillis;
+
+	@Value("${aws.retry.maxRetries:3}")
+	private int awsRetryMaxRetries;
+
+	@Value("${aws.retry.baseDelayMillis:100}")
+	private long awsRetryBaseDelayMillis;
+
+	@Value("${aws.retry.maxDelayMillis:5000}")
+	private long awsRetryMaxDelayMillis;
+
+	@Value("${aws.retry.budgetPercent:10}")
+	private int awsRetryBudgetPercent;
+
+	@Value("${aws.retry.budgetMaxRetries:20}")
+	private int awsRetryBudgetMaxRetries;
+
+	@Value("${aws.concurrency.initialLimit:8}")
+	private int awsConcurrencyInitialLimit;
+
+	@Value("${aws.concurrency.minLimit:1}")
+	private int awsConcurrencyMinLimit;
+
+	@Value("${aws.concurrency.maxLimit:50}")
+	private int awsConcurrencyMaxLimit;
+
+	@Value("${aws.concurrency.decreaseCooldownMillis:1000}")
+	private long awsConcurrencyDecreaseCooldownMillis;
+
+	@Value("${aws.concurrency.maxWaitMillis:10000}")
+	private long awsConcurrencyMaxWaitMillis;
+
+	@Value("${inventory.cache.iamUser.ttlSeconds:300}")
+	private long inventoryCacheIamUserTtlSeconds;
+
+	@Value("${inventory.cache.ecsClusters.ttlSeconds:60}")
+	private long inventoryCacheEcsClustersTtlSeconds;
+
+	@Value("${inventory.cache.s3Buckets.ttlSeconds:300}")
+	private long inventoryCacheS3BucketsTtlSeconds;
+
+	@Value("${inventory.cache.ec2Instances.ttlSeconds:120}")
+	private long inventoryCacheEc2InstancesTtlSeconds;
+
+	@Value("${inventory.cache.maxEntriesPerResource:16}")
+	private int inventoryCacheMaxEntriesPerResource;
+
+	@Value("${inventory.snapshot.enabled:false}")
+	private boolean inventorySnapshotEnabled;
+
+	@Value("${inventory.snapshot.path:/tmp/sbdaws/inventory.snapshot}")
+	private String inventorySnapshotPathString;
+
+	@Value("${inventory.snapshot.writeIntervalSeconds:60}")
+	private long inventorySnapshotWriteIntervalSeconds;
+
+	@Value("${inventory.snapshot.maxAgeMinutes:1440}")
+	private long inventorySnapshotMaxAgeMinutes;
+
+	@Value("${inventory.shared.directory:}")
+	private String inventorySharedDirectory;
+
+	@Value("${inventory.shared.refreshIntervalSeconds:60}")
+	private long inventorySharedRefreshIntervalSeconds;
+
+	@Value("${inventory.shared.leaseSeconds:90}")
+	private long inventorySharedLeaseSeconds;
+
+	@Value("${page.section.threads:16}")
+	private int pageSectionThreads;
+
+	@Value("${page.section.queueCapacity:64}")
+	private int pageSectionQueueCapacity;
+
+	@Value("${page.section.iam.timeoutMillis:2000}")
+	private long pageSectionIamTimeoutMillis;
+
+	@Value("${page.section.ecs.timeoutMillis:5000}")
+	private long pageSectionEcsTimeoutMillis;
+
+	@Value("${page.section.s3.timeoutMillis:3000}")
+	private long pageSectionS3TimeoutMillis;
+
+	@Value("${page.section.efs.timeoutMillis:5000}")
+	private long pageSectionEfsTimeoutMillis;
+
+	@Value("${page.render.threads:8}")
+	private int pageRenderThreads;
+
+	@Value("${page.render.queueCapacity:256}")
+	private int pageRenderQueueCapacity;
+
+	@Value("${page.trace.enabled:false}")
+	private boolean pageTraceEnabled;
+
+	@Value("${efs.volume.mountPath:/datafiles}")
+	private String efsVolumeMountPathString;
+
+	@Value("${efs.index.rescanIntervalSeconds:300}")
+	private long efsIndexRescanIntervalSeconds;
+
+	@Value("${efs.index.watchEnabled:true}")
+	private boolean efsIndexWatchEnabled;
+
+	@Value("${efs.index.walk.parallelism:16}")
+	private int efsIndexWalkParallelism;
+
+	@Value("${efs.index.walk.maxDepth:0}")
+	private int efsIndexWalkMaxDepth;
+
+	@Value("${efs.index.walk.timeoutSeconds:120}")
+	private long efsIndexWalkTimeoutSeconds;
+
+	@Value("${efs.heartbeat.intervalSeconds:60}")
+	private long efsHeartbeatIntervalSeconds;
+
+	@Value("${efs.api.defaultPageSize:100}")
+	private int efsApiDefaultPageSize;
+
+	@Value("${efs.api.maxPageSize:1000}")
+	private int efsApiMaxPageSize;
+
+	@Value("${efs.files.maxConcurrentTransfers:16}")
+	private int efsFilesMaxConcurrentTransfers;
+
+	@Value("${efs.files.maxWaitMillis:0}")
+	private long efsFilesMaxWaitMillis;
+
+	@Value("${efs.files.mmapMaxBytes:262144}")
+	private long efsFilesMmapMaxBytes;
+
+	@Value("${efs.files.mmapCacheEntries:64}")
+	private int efsFilesMmapCacheEntries;
+
+	@Value("${events.pollIntervalSeconds:5}")
+	private long eventsPollIntervalSeconds;
+
+	@Value("${events.heartbeatSeconds:30}")
+	private long eventsHeartbeatSeconds;
+
+	@Value("${events.subscriberBufferSize:64}")
+	private int eventsSubscriberBufferSize;
+
+	@Value("${events.maxSubscribers:5000}")
+	private int eventsMaxSubscribers;
+
+	@Value("${events.maxChangesPerPoll:500}")
+	private int eventsMaxChangesPerPoll;
+
+	@Value("${events.sendThreads:4}")
+	private int eventsSendThreads;
+
+	@Value("${events.streamTimeoutMinutes:30}")
+	private long eventsStreamTimeoutMinutes;
+
 	private Region awsTargetRegion;
+	private List<Region> awsTargetRegions;
+	private List<String> awsS3StatisticsShardSplitKeys;
+	private URI awsSdkEndpointOverride;
+	private URI awsSdkIamEndpointOverride;
+	private URI awsSdkEcsEndpointOverride;
+	private URI awsSdkS3EndpointOverride;
+	private URI awsSdkEc2EndpointOverride;
 	
 	@PostConstruct
 	void postConstruct() {
 		awsTargetRegion = Region.of(awsTargetRegionName);
+		awsTargetRegions = toRegions(awsTargetRegionNames, awsTargetRegion);
+		awsS3StatisticsShardSplitKeys = toList(awsS3StatisticsShardSplitKeysString);
+		awsSdkEndpointOverride = toEndpointOverride("all", awsSdkEndpointOverrideString, null);
+		awsSdkIamEndpointOverride = toEndpointOverride("IAM", awsSdkIamEndpointOverrideString, awsSdkEndpointOverride);
+		awsSdkEcsEndpointOverride = toEndpointOverride("ECS", awsSdkEcsEndpointOverrideString, awsSdkEndpointOverride);
+		awsSdkS3EndpointOverride = toEndpointOverride("S3", awsSdkS3EndpointOverrideString, awsSdkEndpointOverride);
+		awsSdkEc2EndpointOverride = toEndpointOverride("EC2", awsSdkEc2EndpointOverrideString, awsSdkEndpointOverride);
 		LOGGER.debug("App configuration properties loaded | AWS target region: [{}] | IAM user id: [{}]",
 				this.awsTargetRegion.value(), this.awsAccessKeyId);
 		System.setProperty(SYSPROPKEY_AWS_ACCESS_KEY_ID, awsAccessKeyId);
 		System.setProperty(SYSPROPKEY_AWS_SECRET_ACCESS_KEY, awsSecretAccessKey);
 	}
 	
+	private static URI toEndpointOverride(String services, String endpoint, URI defaultEndpoint) {
+		if (endpoint == null || endpoint.trim().isEmpty()) {
+			return defaultEndpoint;
+		}
+		URI uri = URI.create(endpoint.trim());
+		LOGGER.warn("AWS SDK endpoint override is in effect | services: [{}] | endpoint: [{}]", services, uri);
+		return uri;
+	}
+
+	private static List<Region> toRegions(String regionNames, Region defaultRegion) {
+		List<String> names = new ArrayList<>();
+		if (regionNames != null) {
+			for (String name : regionNames.split(",")) {
+				name = name.trim();
+				if (!name.isEmpty() && !names.contains(name)) {
+					names.add(name);
+				}
+			}
+		}
+		if (names.isEmpty()) {
+			return Collections.singletonList(defaultRegion);
+		}
+		List<Region> regions = new ArrayList<>(names.size());
+		for (String name : names) {
+			regions.add(Region.of(name));
+		}
+		return Collections.unmodifiableList(regions);
+	}
+
+	private static List<String> toList(String commaSeparated) {
+		List<String> values = new ArrayList<>();
+		if (commaSeparated != null) {
+			for (String value : commaSeparated.split(",")) {
+				value = value.trim();
+				if (!value.isEmpty() && !values.contains(value)) {
+					values.add(value);
+				}
+			}
+		}
+		return Collections.unmodifiableList(values);
+	}
+
 	public String getMyName() {
 		return myName;
 	}
@@ -55,5 +343,542 @@ public class ConfigurationBean {
 	public Region getAwsTargetRegion() {
 		return awsTargetRegion;
 	}
+
+	/**
+	 * @return Every region whose ECS clusters are listed, in order. Just the target region
+	 *         if no list of regions is configured.
+	 */
+	public List<Region> getAwsTargetRegions() {
+		return awsTargetRegions;
+	}
+
+	/**
+	 * @return Maximum number of pooled HTTP connections for each long-lived AWS SDK client
+	 */
+	public int getAwsSdkHttpMaxConnections() {
+		return awsSdkHttpMaxConnections;
+	}
+
+	/**
+	 * @return Number of seconds a pooled AWS SDK HTTP connection may sit idle before it is evicted
+	 */
+	public long getAwsSdkHttpConnectionMaxIdleSeconds() {
+		return awsSdkHttpConnectionMaxIdleSeconds;
+	}
+
+	/**
+	 * @return Endpoint that all AWS SDK clients should call instead of the real AWS endpoints,
+	 *         or null if the real AWS endpoints should be used
+	 */
+	public URI getAwsSdkEndpointOverride() {
+		return awsSdkEndpointOverride;
+	}
+
+	/**
+	 * @return Endpoint that the IAM client should call instead of the real AWS endpoint.
+	 *         Falls back to {@link #getAwsSdkEndpointOverride()}.
+	 */
+	public URI getAwsSdkIamEndpointOverride() {
+		return awsSdkIamEndpointOverride;
+	}
+
+	/**
+	 * @return Endpoint that the ECS clients should call instead of the real AWS endpoints.
+	 *         Falls back to {@link #getAwsSdkEndpointOverride()}.
+	 */
+	public URI getAwsSdkEcsEndpointOverride() {
+		return awsSdkEcsEndpointOverride;
+	}
+
+	/**
+	 * @return Endpoint that the S3 clients should call instead of the real AWS endpoints.
+	 *         Falls back to {@link #getAwsSdkEndpointOverride()}.
+	 */
+	public URI getAwsSdkS3EndpointOverride() {
+		return awsSdkS3EndpointOverride;
+	}
+
+	/**
+	 * @return Endpoint that the EC2 clients should call instead of the real AWS endpoints.
+	 *         Falls back to {@link #getAwsSdkEndpointOverride()}.
+	 */
+	public URI getAwsSdkEc2EndpointOverride() {
+		return awsSdkEc2EndpointOverride;
+	}
+
+	/**
+	 * @return Maximum number of ECS DescribeClusters batch requests that may run at the same time
+	 */
+	public int getAwsEcsDescribeClustersParallelism() {
+		return awsEcsDescribeClustersParallelism;
+	}
+
+	/**
+	 * @return Number of milliseconds to wait for the ECS clusters of each region before that
+	 *         region is reported as failed
+	 */
+	public long getAwsEcsRegionTimeoutMillis() {
+		return awsEcsRegionTimeoutMillis;
+	}
+
+	/**
+	 * @return True if the object count and total size of each S3 bucket are collected in the background
+	 */
+	public boolean isAwsS3StatisticsEnabled() {
+		return awsS3StatisticsEnabled;
+	}
+
+	/**
+	 * @return Time between the end of one collection of the S3 bucket statistics and the start of the next
+	 */
+	public long getAwsS3StatisticsRefreshIntervalMinutes() {
+		return awsS3StatisticsRefreshIntervalMinutes;
+	}
+
+	/**
+	 * @return Maximum number of S3 object listings in progress at the same time
+	 */
+	public int getAwsS3StatisticsParallelism() {
+		return awsS3StatisticsParallelism;
+	}
+
+	/**
+	 * @return Number of objects in each page of an S3 object listing. Zero or less for the S3 default.
+	 */
+	public int getAwsS3StatisticsMaxKeysPerPage() {
+		return awsS3StatisticsMaxKeysPerPage;
+	}
+
+	/**
+	 * @return Keys at which each bucket is split into shards that are listed in parallel.
+	 *         Empty (or null if not configured by Spring) to list each bucket in one piece.
+	 */
+	public List<String> getAwsS3StatisticsShardSplitKeys() {
+		return awsS3StatisticsShardSplitKeys;
+	}
+
+	/**
+	 * @return Number of EC2 instances in each page of /api/ec2/instances, if the request does not say
+	 */
+	public int getAwsEc2ApiDefaultPageSize() {
+		return awsEc2ApiDefaultPageSize;
+	}
+
+	/**
+	 * @return Maximum number of EC2 instances in each page of /api/ec2/instances
+	 */
+	public int getAwsEc2ApiMaxPageSize() {
+		return awsEc2ApiMaxPageSize;
+	}
+
+	/**
+	 * @return Percentage of recent failed SDK calls to one AWS service that opens its circuit breaker.
+	 *         Zero disables the circuit breakers.
+	 */
+	public int getAwsCircuitBreakerFailureRateThresholdPercent() {
+		return awsCircuitBreakerFailureRateThresholdPercent;
+	}
+
+	/**
+	 * @return Number of recent SDK calls to one AWS service that its failure rate is calculated from
+	 */
+	public int getAwsCircuitBreakerWindowSize() {
+		return awsCircuitBreakerWindowSize;
+	}
+
+	/**
+	 * @return Minimum number of recent SDK calls to one AWS service before its circuit breaker may open
+	 */
+	public int getAwsCircuitBreakerMinimumCalls() {
+		return awsCircuitBreakerMinimumCalls;
+	}
+
+	/**
+	 * @return Number of seconds that an open circuit breaker waits before it permits probe calls
+	 */
+	public long getAwsCircuitBreakerOpenSeconds() {
+		return awsCircuitBreakerOpenSeconds;
+	}
+
+	/**
+	 * @return Number of probe calls that must succeed to close a half-open circuit breaker
+	 */
+	public int getAwsCircuitBreakerHalfOpenProbes() {
+		return awsCircuitBreakerHalfOpenProbes;
+	}
+
+	/**
+	 * @return Maximum number of SDK calls to one AWS service that may be in progress at the same time.
+	 *         Zero for no limit.
+	 */
+	public int getAwsBulkheadMaxConcurrentCalls() {
+		return awsBulkheadMaxConcurrentCalls;
+	}
+
+	/**
+	 * @return Number of milliseconds that an SDK call may wait for a full bulkhead before it is short-circuited
+	 */
+	public long getAwsBulkheadMaxWaitMillis() {
+		return awsBulkheadMaxWaitMillis;
+	}
+
+	/**
+	 * @return Most times that one AWS SDK request is retried
+	 */
+	public int getAwsRetryMaxRetries() {
+		return awsRetryMaxRetries;
+	}
+
+	/**
+	 * @return Longest delay in milliseconds before the first retry. It doubles for each retry after that.
+	 */
+	public long getAwsRetryBaseDelayMillis() {
+		return awsRetryBaseDelayMillis;
+	}
+
+	/**
+	 * @return Longest delay in milliseconds before any retry
+	 */
+	public long getAwsRetryMaxDelayMillis() {
+		return awsRetryMaxDelayMillis;
+	}
+
+	/**
+	 * @return Retries permitted for every 100 requests made by one AWS SDK client
+	 */
+	public int getAwsRetryBudgetPercent() {
+		return awsRetryBudgetPercent;
+	}
+
+	/**
+	 * @return Most retries that one AWS SDK client can save up
+	 */
+	public int getAwsRetryBudgetMaxRetries() {
+		return awsRetryBudgetMaxRetries;
+	}
+
+	/**
+	 * @return Number of requests that one AWS SDK client may have in progress before the limit adapts
+	 */
+	public int getAwsConcurrencyInitialLimit() {
+		return awsConcurrencyInitialLimit;
+	}
+
+	/**
+	 * @return The request limit of an AWS SDK client is never cut below this
+	 */
+	public int getAwsConcurrencyMinLimit() {
+		return awsConcurrencyMinLimit;
+	}
+
+	/**
+	 * @return The request limit of an AWS SDK client never grows above this
+	 */
+	public int getAwsConcurrencyMaxLimit() {
+		return awsConcurrencyMaxLimit;
+	}
+
+	/**
+	 * @return Number of milliseconds after the request limit is cut before it may be cut again
+	 */
+	public long getAwsConcurrencyDecreaseCooldownMillis() {
+		return awsConcurrencyDecreaseCooldownMillis;
+	}
+
+	/**
+	 * @return Number of milliseconds that a request may wait for the request limit before it fails
+	 */
+	public long getAwsConcurrencyMaxWaitMillis() {
+		return awsConcurrencyMaxWaitMillis;
+	}
+
+	/**
+	 * @return Number of seconds that the cached IAM user details are considered fresh
+	 */
+	public long getInventoryCacheIamUserTtlSeconds() {
+		return inventoryCacheIamUserTtlSeconds;
+	}
+
+	/**
+	 * @return Number of seconds that the cached ECS cluster list is considered fresh
+	 */
+	public long getInventoryCacheEcsClustersTtlSeconds() {
+		return inventoryCacheEcsClustersTtlSeconds;
+	}
+
+	/**
+	 * @return Number of seconds that the cached S3 bucket list is considered fresh
+	 */
+	public long getInventoryCacheS3BucketsTtlSeconds() {
+		return inventoryCacheS3BucketsTtlSeconds;
+	}
+
+	/**
+	 * @return Number of seconds that the cached EC2 instance inventory is considered fresh
+	 */
+	public long getInventoryCacheEc2InstancesTtlSeconds() {
+		return inventoryCacheEc2InstancesTtlSeconds;
+	}
+
+	/**
+	 * @return Maximum number of cached values (one per region) for each kind of inventory resource
+	 */
+	public int getInventoryCacheMaxEntriesPerResource() {
+		return inventoryCacheMaxEntriesPerResource;
+	}
+
+	/**
+	 * @return True if the inventory should be saved to local disk, and loaded from there at startup
+	 */
+	public boolean isInventorySnapshotEnabled() {
+		return inventorySnapshotEnabled;
+	}
+
+	/**
+	 * @return File that the inventory snapshot is saved to
+	 */
+	public Path getInventorySnapshotPath() {
+		return Paths.get(inventorySnapshotPathString);
+	}
+
+	/**
+	 * @return Interval between saves of the inventory snapshot (only written if the inventory changed)
+	 */
+	public long getInventorySnapshotWriteIntervalSeconds() {
+		return inventorySnapshotWriteIntervalSeconds;
+	}
+
+	/**
+	 * @return A snapshot older than this is not loaded at startup
+	 */
+	public long getInventorySnapshotMaxAgeMinutes() {
+		return inventorySnapshotMaxAgeMinutes;
+	}
+
+	/**
+	 * @return Directory (normally in the EFS volume) where the tasks share one inventory, or blank to not share it
+	 */
+	public String getInventorySharedDirectory() {
+		return inventorySharedDirectory;
+	}
+
+	/**
+	 * @return Interval between attempts to acquire or renew the refresh lease, and between refreshes by the leader
+	 */
+	public long getInventorySharedRefreshIntervalSeconds() {
+		return inventorySharedRefreshIntervalSeconds;
+	}
+
+	/**
+	 * @return How long the refresh lease lasts, and how old the shared inventory may get before it is not used
+	 */
+	public long getInventorySharedLeaseSeconds() {
+		return inventorySharedLeaseSeconds;
+	}
 	
+	/**
+	 * @return Number of threads that fetch page section data
+	 */
+	public int getPageSectionThreads() {
+		return pageSectionThreads;
+	}
+
+	/**
+	 * @return Number of page section fetches that may wait for a thread before new fetches are rejected
+	 */
+	public int getPageSectionQueueCapacity() {
+		return pageSectionQueueCapacity;
+	}
+
+	/**
+	 * @return Deadline for fetching the IAM section of the page
+	 */
+	public long getPageSectionIamTimeoutMillis() {
+		return pageSectionIamTimeoutMillis;
+	}
+
+	/**
+	 * @return Deadline for fetching the ECS section of the page
+	 */
+	public long getPageSectionEcsTimeoutMillis() {
+		return pageSectionEcsTimeoutMillis;
+	}
+
+	/**
+	 * @return Deadline for fetching the S3 section of the page
+	 */
+	public long getPageSectionS3TimeoutMillis() {
+		return pageSectionS3TimeoutMillis;
+	}
+
+	/**
+	 * @return Deadline for fetching the EFS section of the page
+	 */
+	public long getPageSectionEfsTimeoutMillis() {
+		return pageSectionEfsTimeoutMillis;
+	}
+
+	/**
+	 * @return Number of threads that write the home page to the response in async mode
+	 */
+	public int getPageRenderThreads() {
+		return pageRenderThreads;
+	}
+
+	/**
+	 * @return Maximum number of home page responses waiting for a render thread in async mode
+	 */
+	public int getPageRenderQueueCapacity() {
+		return pageRenderQueueCapacity;
+	}
+
+	/**
+	 * @return True if the home page returns a trace of the request when asked with {@code ?trace}
+	 */
+	public boolean isPageTraceEnabled() {
+		return pageTraceEnabled;
+	}
+
+	/**
+	 * @return Directory where the EFS volume is mounted
+	 */
+	public Path getEfsVolumeMountPath() {
+		return Paths.get(efsVolumeMountPathString);
+	}
+
+	/**
+	 * @return Interval between full scans of the EFS volume (a fallback for missed change events)
+	 */
+	public long getEfsIndexRescanIntervalSeconds() {
+		return efsIndexRescanIntervalSeconds;
+	}
+
+	/**
+	 * @return True if the EFS file index should watch for file system change events
+	 */
+	public boolean isEfsIndexWatchEnabled() {
+		return efsIndexWatchEnabled;
+	}
+
+	/**
+	 * @return Number of EFS directories that a full scan of the index may read at the same time
+	 */
+	public int getEfsIndexWalkParallelism() {
+		return efsIndexWalkParallelism;
+	}
+
+	/**
+	 * @return Deepest level below the EFS mount path that the index includes. Zero for no limit.
+	 */
+	public int getEfsIndexWalkMaxDepth() {
+		return efsIndexWalkMaxDepth;
+	}
+
+	/**
+	 * @return Number of seconds that a full scan of the EFS volume may take before it fails.
+	 *         Zero for no limit.
+	 */
+	public long getEfsIndexWalkTimeoutSeconds() {
+		return efsIndexWalkTimeoutSeconds;
+	}
+
+	/**
+	 * @return Interval between touches of the heartbeat file in the EFS volume
+	 */
+	public long getEfsHeartbeatIntervalSeconds() {
+		return efsHeartbeatIntervalSeconds;
+	}
+
+	/**
+	 * @return Number of entries in a page of the EFS files API, if the request does not say
+	 */
+	public int getEfsApiDefaultPageSize() {
+		return efsApiDefaultPageSize;
+	}
+
+	/**
+	 * @return Largest page that the EFS files API will return. Larger requests are reduced to this.
+	 */
+	public int getEfsApiMaxPageSize() {
+		return efsApiMaxPageSize;
+	}
+
+	/**
+	 * @return Maximum number of file downloads in progress at the same time. Zero or less for no limit.
+	 */
+	public int getEfsFilesMaxConcurrentTransfers() {
+		return efsFilesMaxConcurrentTransfers;
+	}
+
+	/**
+	 * @return How long a file download may wait for a free transfer slot before it gets a 503
+	 */
+	public long getEfsFilesMaxWaitMillis() {
+		return efsFilesMaxWaitMillis;
+	}
+
+	/**
+	 * @return Files up to this size are memory-mapped and cached. Zero or less to never map files.
+	 */
+	public long getEfsFilesMmapMaxBytes() {
+		return efsFilesMmapMaxBytes;
+	}
+
+	/**
+	 * @return Number of memory-mapped files that are cached. Zero or less to never map files.
+	 */
+	public int getEfsFilesMmapCacheEntries() {
+		return efsFilesMmapCacheEntries;
+	}
+
+	/**
+	 * @return Interval between the checks for inventory changes, while anyone is subscribed to them
+	 */
+	public long getEventsPollIntervalSeconds() {
+		return eventsPollIntervalSeconds;
+	}
+
+	/**
+	 * @return Interval between the heartbeat comments that are sent to every subscriber
+	 */
+	public long getEventsHeartbeatSeconds() {
+		return eventsHeartbeatSeconds;
+	}
+
+	/**
+	 * @return Number of unsent events that a subscriber may have before it is dropped
+	 */
+	public int getEventsSubscriberBufferSize() {
+		return eventsSubscriberBufferSize;
+	}
+
+	/**
+	 * @return Maximum number of subscribers at the same time. Beyond this, new subscribers get a 503.
+	 */
+	public int getEventsMaxSubscribers() {
+		return eventsMaxSubscribers;
+	}
+
+	/**
+	 * @return Largest number of changes that are sent one by one. More changes than this are sent
+	 *         as a single 'resync' event.
+	 */
+	public int getEventsMaxChangesPerPoll() {
+		return eventsMaxChangesPerPoll;
+	}
+
+	/**
+	 * @return Number of threads that write the events to the subscribers
+	 */
+	public int getEventsSendThreads() {
+		return eventsSendThreads;
+	}
+
+	/**
+	 * @return How long one event stream lasts before it is closed, and the client reconnects
+	 */
+	public long getEventsStreamTimeoutMinutes() {
+		return eventsStreamTimeoutMinutes;
+	}
+
 }
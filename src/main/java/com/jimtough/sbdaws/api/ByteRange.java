@@ -0,0 +1,92 @@
+package com.jimtough.sbdaws.api;
+
+/**
+ * A single range from a {@code Range: bytes=...} request header.
+ *
+ * Only one range per request is supported. A header with several ranges, another unit, or
+ * invalid syntax is ignored, and the whole file is sent, which is what the HTTP spec allows.
+ *
+ * @author JTOUGH
+ */
+final class ByteRange {
+
+	/**
+	 * Returned for a valid range that does not overlap the file, which gets a 416
+	 */
+	static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+	private static final String BYTES_UNIT = "bytes=";
+
+	private final long start;
+	private final long end;
+
+	private ByteRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * @param header Value of the Range header, possibly null
+	 * @param size Size of the file
+	 * @return The range within the file, {@link #UNSATISFIABLE}, or null if the whole file should be sent
+	 */
+	static ByteRange parse(String header, long size) {
+		if (header == null || !header.startsWith(BYTES_UNIT) || header.indexOf(',') >= 0) {
+			return null;
+		}
+		String spec = header.substring(BYTES_UNIT.length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			if (dash == 0) {
+				// "-n" is the last n bytes
+				long suffixLength = Long.parseLong(spec.substring(1));
+				if (suffixLength < 0) {
+					return null;
+				}
+				if (suffixLength == 0 || size == 0) {
+					return UNSATISFIABLE;
+				}
+				return new ByteRange(Math.max(0, size - suffixLength), size - 1);
+			}
+			long first = Long.parseLong(spec.substring(0, dash));
+			String lastString = spec.substring(dash + 1);
+			long last = lastString.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastString);
+			if (first < 0 || last < first) {
+				return null;
+			}
+			if (first >= size) {
+				return UNSATISFIABLE;
+			}
+			return new ByteRange(first, Math.min(last, size - 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return Offset of the first byte
+	 */
+	long getStart() {
+		return start;
+	}
+
+	/**
+	 * @return Offset of the last byte (inclusive, like in the Content-Range header)
+	 */
+	long getEnd() {
+		return end;
+	}
+
+	long getLength() {
+		return end - start + 1;
+	}
+
+	@Override
+	public String toString() {
+		return this == UNSATISFIABLE ? "unsatisfiable" : start + "-" + end;
+	}
+
+}
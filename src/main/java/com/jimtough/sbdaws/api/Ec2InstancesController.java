@@ -0,0 +1,163 @@
+package com.jimtough.sbdaws.api;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.Ec2InstanceInventory;
+import com.jimtough.sbdaws.awssdk.Ec2InstancePage;
+import com.jimtough.sbdaws.awssdk.Ec2InstanceQuery;
+import com.jimtough.sbdaws.awssdk.Ec2InstanceSummary;
+import com.jimtough.sbdaws.cache.InventoryCache;
+
+/**
+ * JSON listing of the EC2 instances in the target region, one page at a time.
+ *
+ * Example: {@code GET /api/ec2/instances?state=running&tag=env=prod&pageSize=500}
+ * <ul>
+ * <li><b>state</b> - only the instances in this state, such as "running" (default: every state)</li>
+ * <li><b>tag</b> - only the instances with this tag, as "key" for any value or "key=value"</li>
+ * <li><b>pageSize</b> - instances per page (default and maximum are set in app.properties)</li>
+ * <li><b>cursor</b> - the "nextCursor" value from the previous page</li>
+ * </ul>
+ *
+ * The instances are read from the cached inventory and written straight to the response, so
+ * neither paging nor filtering calls AWS. The ETag is the time that the inventory was retrieved,
+ * so a client that sends it back in If-None-Match gets a 304 (Not Modified) until the next refresh.
+ *
+ * @author JTOUGH
+ */
+@RestController
+public class Ec2InstancesController {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(Ec2InstancesController.class);
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final ConfigurationBean configurationBean;
+	private final InventoryCache inventoryCache;
+
+	@Autowired
+	public Ec2InstancesController(ConfigurationBean configurationBean, InventoryCache inventoryCache) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (inventoryCache == null) {
+			throw new IllegalArgumentException("inventoryCache cannot be null");
+		}
+		this.configurationBean = configurationBean;
+		this.inventoryCache = inventoryCache;
+	}
+
+	@RequestMapping(value = "/api/ec2/instances", method = RequestMethod.GET)
+	public void listInstances(
+			@RequestParam(name = "state", required = false) String state,
+			@RequestParam(name = "tag", required = false) String tag,
+			@RequestParam(name = "pageSize", required = false) Integer pageSize,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			WebRequest webRequest,
+			HttpServletResponse response) throws IOException, AwsSdkException {
+		String tagKey = null;
+		String tagValue = null;
+		if (tag != null) {
+			int equals = tag.indexOf('=');
+			tagKey = equals < 0 ? tag : tag.substring(0, equals);
+			tagValue = equals < 0 ? null : tag.substring(equals + 1);
+			if (tagKey.isEmpty()) {
+				throw new IllegalArgumentException("tag must be 'key' or 'key=value'");
+			}
+		}
+		int effectivePageSize = Math.min(
+				pageSize == null ? configurationBean.getAwsEc2ApiDefaultPageSize() : pageSize,
+				configurationBean.getAwsEc2ApiMaxPageSize());
+		Ec2InstanceQuery query = new Ec2InstanceQuery(state, tagKey, tagValue, effectivePageSize, cursor);
+
+		Ec2InstanceInventory inventory = inventoryCache.getEC2InstanceInventory();
+		String eTag = "\"" + Long.toString(inventory.getCollectedEpochMillis(), Character.MAX_RADIX) + "\"";
+		if (webRequest.checkNotModified(eTag)) {
+			return;
+		}
+
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		try (JsonGenerator json = JSON_FACTORY.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+			writePage(json, inventory, inventory.find(query));
+		}
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+		LOGGER.debug("Invalid EC2 instances request | message: [{}]", e.getMessage());
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+				.body(Collections.singletonMap("error", e.getMessage()));
+	}
+
+	@ExceptionHandler(AwsSdkException.class)
+	public ResponseEntity<Map<String, String>> handleUnavailable(AwsSdkException e) {
+		LOGGER.warn("EC2 instances are not available | message: [{}]", e.getMessage());
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.body(Collections.singletonMap("error", e.getMessage()));
+	}
+
+	/**
+	 * Writes: {"region":..,"collected":..,"total":..,"states":{"running":..},"instances":[{"id":..,
+	 * "type":..,"zone":..,"state":..,"instanceStatus":..,"systemStatus":..,"launched":..,
+	 * "privateIp":..,"tags":{..}}, ...],"nextCursor":..}
+	 * The "total" and "states" counts are for the whole region, not just the filtered instances.
+	 * The times are ISO-8601.
+	 */
+	static void writePage(JsonGenerator json, Ec2InstanceInventory inventory, Ec2InstancePage page) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("region", inventory.getRegion().value());
+		json.writeStringField("collected", Instant.ofEpochMilli(inventory.getCollectedEpochMillis()).toString());
+		json.writeNumberField("total", inventory.size());
+		json.writeObjectFieldStart("states");
+		for (Map.Entry<String, Integer> stateCount : inventory.getStateCounts().entrySet()) {
+			json.writeNumberField(stateCount.getKey(), stateCount.getValue());
+		}
+		json.writeEndObject();
+		json.writeArrayFieldStart("instances");
+		for (Ec2InstanceSummary instance : page.getInstances()) {
+			json.writeStartObject();
+			json.writeStringField("id", instance.getInstanceId());
+			json.writeStringField("type", instance.getInstanceType());
+			json.writeStringField("zone", instance.getAvailabilityZone());
+			json.writeStringField("state", instance.getState());
+			json.writeStringField("instanceStatus", instance.getInstanceStatus());
+			json.writeStringField("systemStatus", instance.getSystemStatus());
+			json.writeStringField("launched", instance.getLaunchEpochMillis() == 0 ? null
+					: Instant.ofEpochMilli(instance.getLaunchEpochMillis()).toString());
+			json.writeStringField("privateIp", instance.getPrivateIpAddress());
+			json.writeObjectFieldStart("tags");
+			for (Map.Entry<String, String> tag : instance.getTags().entrySet()) {
+				json.writeStringField(tag.getKey(), tag.getValue());
+			}
+			json.writeEndObject();
+			json.writeEndObject();
+		}
+		json.writeEndArray();
+		json.writeStringField("nextCursor", page.getNextCursor());
+		json.writeEndObject();
+	}
+
+}
@@ -0,0 +1,129 @@
+package com.jimtough.sbdaws.api;
+
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.jimtough.sbdaws.efs.EfsFileServer;
+import com.jimtough.sbdaws.efs.EfsFileServer.ServedFile;
+
+/**
+ * Downloads of the files in the EFS volume.
+ *
+ * Example: {@code GET /files/reports/2018/summary.csv}
+ * <ul>
+ * <li>The path after "/files/" is relative to the volume, and cannot lead outside of it (400)</li>
+ * <li>A missing file or a directory is a 404</li>
+ * <li>If-Modified-Since is answered with a 304 while the file has not changed</li>
+ * <li>A single {@code Range: bytes=...} is answered with a 206, or a 416 if it is past the end of the file</li>
+ * <li>If too many downloads are in progress, the request gets a 503 with Retry-After</li>
+ * </ul>
+ *
+ * The errors are written as plain text, not JSON, because the extension in the path of a
+ * download does not say anything about the format of an error.
+ *
+ * @author JTOUGH
+ */
+@RestController
+public class EfsFileDownloadController {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EfsFileDownloadController.class);
+
+	private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+	static final String RETRY_AFTER_SECONDS = "1";
+
+	private final EfsFileServer efsFileServer;
+
+	@Autowired
+	public EfsFileDownloadController(EfsFileServer efsFileServer) {
+		if (efsFileServer == null) {
+			throw new IllegalArgumentException("efsFileServer cannot be null");
+		}
+		this.efsFileServer = efsFileServer;
+	}
+
+	@RequestMapping(value = "/files/**", method = { RequestMethod.GET, RequestMethod.HEAD })
+	public void downloadFile(
+			HttpServletRequest request,
+			WebRequest webRequest,
+			HttpServletResponse response) throws IOException {
+		String relativePath = PATH_MATCHER.extractPathWithinPattern(
+				(String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE),
+				(String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE));
+		ServedFile file;
+		try {
+			file = efsFileServer.find(relativePath);
+		} catch (IllegalArgumentException e) {
+			LOGGER.debug("Invalid file download request | message: [{}]", e.getMessage());
+			writeError(response, HttpStatus.BAD_REQUEST, e.getMessage());
+			return;
+		} catch (NoSuchFileException e) {
+			writeError(response, HttpStatus.NOT_FOUND, "file not found: [" + relativePath + "]");
+			return;
+		}
+		// Also sets the Last-Modified header
+		if (webRequest.checkNotModified(file.getLastModifiedMillis())) {
+			return;
+		}
+
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+		ByteRange range = ByteRange.parse(request.getHeader(HttpHeaders.RANGE), file.getSize());
+		if (range == ByteRange.UNSATISFIABLE) {
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + file.getSize());
+			writeError(response, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+					"range is past the end of the file: [" + request.getHeader(HttpHeaders.RANGE) + "]");
+			return;
+		}
+		long position = range == null ? 0 : range.getStart();
+		long count = range == null ? file.getSize() : range.getLength();
+
+		if (!efsFileServer.tryStartTransfer()) {
+			response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+			writeError(response, HttpStatus.SERVICE_UNAVAILABLE, "too many downloads in progress");
+			return;
+		}
+		try {
+			if (range != null) {
+				response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+				response.setHeader(HttpHeaders.CONTENT_RANGE,
+						"bytes " + range.getStart() + "-" + range.getEnd() + "/" + file.getSize());
+			}
+			String contentType = URLConnection.guessContentTypeFromName(file.getPath().getFileName().toString());
+			response.setContentType(contentType == null ? MediaType.APPLICATION_OCTET_STREAM_VALUE : contentType);
+			response.setContentLengthLong(count);
+			if (RequestMethod.HEAD.name().equals(request.getMethod())) {
+				return;
+			}
+			efsFileServer.transfer(file, position, count, Channels.newChannel(response.getOutputStream()));
+		} finally {
+			efsFileServer.endTransfer();
+		}
+	}
+
+	private static void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+		response.setStatus(status.value());
+		response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.getWriter().write(message);
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.jimtough.sbdaws.api;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.efs.EfsFilePage;
+import com.jimtough.sbdaws.efs.EfsFileQuery;
+
+/**
+ * JSON listing of the EFS volume, one page at a time.
+ *
+ * Example: {@code GET /api/efs/files?dir=reports/2018&maxDepth=1&pageSize=500&sort=desc}
+ * <ul>
+ * <li><b>dir</b> - directory to list, relative to the volume (default: the whole volume)</li>
+ * <li><b>maxDepth</b> - how many levels below the directory to include (default: no limit)</li>
+ * <li><b>pageSize</b> - entries per page (default and maximum are set in app.properties)</li>
+ * <li><b>sort</b> - "asc" or "desc" by path (default: "asc")</li>
+ * <li><b>cursor</b> - the "nextCursor" value from the previous page</li>
+ * </ul>
+ *
+ * The entries are read from the {@code EfsFileIndex} and written straight to the response.
+ * The ETag is the version of the index, so a client that sends it back in If-None-Match gets
+ * a 304 (Not Modified) until the volume changes. A 304 is answered without listing the index.
+ *
+ * @author JTOUGH
+ */
+@RestController
+public class EfsFilesController {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EfsFilesController.class);
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	// ETags must not repeat after a restart, when the index version starts again at 0
+	private final String eTagPrefix = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+	private final ConfigurationBean configurationBean;
+	private final EfsFileIndex efsFileIndex;
+
+	@Autowired
+	public EfsFilesController(ConfigurationBean configurationBean, EfsFileIndex efsFileIndex) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (efsFileIndex == null) {
+			throw new IllegalArgumentException("efsFileIndex cannot be null");
+		}
+		this.configurationBean = configurationBean;
+		this.efsFileIndex = efsFileIndex;
+	}
+
+	@RequestMapping(value = "/api/efs/files", method = RequestMethod.GET)
+	public void listFiles(
+			@RequestParam(name = "dir", required = false) String dir,
+			@RequestParam(name = "maxDepth", required = false) Integer maxDepth,
+			@RequestParam(name = "pageSize", required = false) Integer pageSize,
+			@RequestParam(name = "sort", defaultValue = "asc") String sort,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			WebRequest webRequest,
+			HttpServletResponse response) throws IOException, InterruptedException {
+		if (!"asc".equals(sort) && !"desc".equals(sort)) {
+			throw new IllegalArgumentException("sort must be 'asc' or 'desc'");
+		}
+		int effectivePageSize = Math.min(
+				pageSize == null ? configurationBean.getEfsApiDefaultPageSize() : pageSize,
+				configurationBean.getEfsApiMaxPageSize());
+		EfsFileQuery query = new EfsFileQuery(dir,
+				maxDepth == null ? Integer.MAX_VALUE : maxDepth,
+				effectivePageSize,
+				"desc".equals(sort),
+				cursor);
+		// The ETag only depends on the version, so a 304 is answered without listing anything.
+		// The version is read before the listing. If the index changes during the listing, the ETag
+		// is older than the page, and the next request gets the page again instead of a wrong 304.
+		String eTag = "\"" + eTagPrefix + "-" + efsFileIndex.getVersion() + "\"";
+		if (webRequest.checkNotModified(eTag)) {
+			return;
+		}
+		EfsFilePage page = efsFileIndex.list(query);
+
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		try (JsonGenerator json = JSON_FACTORY.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+			writePage(json, efsFileIndex.getRoot(), page);
+		}
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+		LOGGER.debug("Invalid EFS files request | message: [{}]", e.getMessage());
+		return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+				.body(Collections.singletonMap("error", e.getMessage()));
+	}
+
+	@ExceptionHandler(NoSuchFileException.class)
+	public ResponseEntity<Map<String, String>> handleNotFound(NoSuchFileException e) {
+		return ResponseEntity.status(HttpStatus.NOT_FOUND)
+				.body(Collections.singletonMap("error", "directory not found: [" + e.getFile() + "]"));
+	}
+
+	/**
+	 * Writes: {"entries":[{"path":..,"directory":..,"size":..,"created":..,"lastModified":..}, ...],"nextCursor":..}
+	 * The paths are relative to the volume. The times are ISO-8601.
+	 */
+	static void writePage(JsonGenerator json, Path root, EfsFilePage page) throws IOException {
+		json.writeStartObject();
+		json.writeArrayFieldStart("entries");
+		for (EfsFileEntry entry : page.getEntries()) {
+			json.writeStartObject();
+			json.writeStringField("path", root.relativize(entry.getPath()).toString());
+			json.writeBooleanField("directory", entry.isDirectory());
+			json.writeNumberField("size", entry.getSize());
+			json.writeStringField("created", entry.getCreationTime() == null ? null : entry.getCreationTime().toString());
+			json.writeStringField("lastModified",
+					entry.getLastModifiedTime() == null ? null : entry.getLastModifiedTime().toString());
+			json.writeEndObject();
+		}
+		json.writeEndArray();
+		json.writeStringField("nextCursor", page.getNextCursor());
+		json.writeEndObject();
+	}
+
+}
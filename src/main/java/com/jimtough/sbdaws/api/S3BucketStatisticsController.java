@@ -0,0 +1,108 @@
+package com.jimtough.sbdaws.api;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.jimtough.sbdaws.awssdk.S3BucketStatistics;
+import com.jimtough.sbdaws.awssdk.S3BucketStatisticsReport;
+import com.jimtough.sbdaws.cache.S3BucketStatisticsCache;
+
+/**
+ * JSON report of the object count and total size of each S3 bucket.
+ *
+ * Example: {@code GET /api/s3/buckets/statistics}
+ *
+ * The report is the latest one collected in the background by the {@code S3BucketStatisticsCache},
+ * so this never calls AWS. Until the first collection is done, the answer is a 503 (Service
+ * Unavailable). The ETag is the time of the collection, so a client that sends it back in
+ * If-None-Match gets a 304 (Not Modified) until the next collection.
+ *
+ * @author JTOUGH
+ */
+@RestController
+public class S3BucketStatisticsController {
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final S3BucketStatisticsCache statisticsCache;
+
+	@Autowired
+	public S3BucketStatisticsController(S3BucketStatisticsCache statisticsCache) {
+		if (statisticsCache == null) {
+			throw new IllegalArgumentException("statisticsCache cannot be null");
+		}
+		this.statisticsCache = statisticsCache;
+	}
+
+	@RequestMapping(value = "/api/s3/buckets/statistics", method = RequestMethod.GET)
+	public void getStatistics(WebRequest webRequest, HttpServletResponse response) throws IOException {
+		S3BucketStatisticsReport report = statisticsCache.getReport();
+		if (report == null) {
+			throw new IllegalStateException(statisticsCache.isEnabled()
+					? "S3 bucket statistics have not been collected yet"
+					: "S3 bucket statistics are disabled");
+		}
+		String eTag = "\"" + Long.toString(report.getCollectedEpochMillis(), Character.MAX_RADIX) + "\"";
+		if (webRequest.checkNotModified(eTag)) {
+			return;
+		}
+
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		try (JsonGenerator json = JSON_FACTORY.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+			writeReport(json, report);
+		}
+	}
+
+	@ExceptionHandler(IllegalStateException.class)
+	public ResponseEntity<Map<String, String>> handleNotReady(IllegalStateException e) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.body(Collections.singletonMap("error", e.getMessage()));
+	}
+
+	/**
+	 * Writes: {"collected":..,"buckets":[{"name":..,"region":..,"objectCount":..,"totalBytes":..,
+	 * "listPages":..,"collected":..,"durationMillis":..}, ...],"failedBuckets":{"name":"message", ...}}
+	 * The times are ISO-8601.
+	 */
+	static void writeReport(JsonGenerator json, S3BucketStatisticsReport report) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("collected", Instant.ofEpochMilli(report.getCollectedEpochMillis()).toString());
+		json.writeArrayFieldStart("buckets");
+		for (S3BucketStatistics bucket : report.getBuckets()) {
+			json.writeStartObject();
+			json.writeStringField("name", bucket.getBucketName());
+			json.writeStringField("region", bucket.getRegion());
+			json.writeNumberField("objectCount", bucket.getObjectCount());
+			json.writeNumberField("totalBytes", bucket.getTotalBytes());
+			json.writeNumberField("listPages", bucket.getListPageCount());
+			json.writeStringField("collected", Instant.ofEpochMilli(bucket.getCollectedEpochMillis()).toString());
+			json.writeNumberField("durationMillis", bucket.getDurationMillis());
+			json.writeEndObject();
+		}
+		json.writeEndArray();
+		json.writeObjectFieldStart("failedBuckets");
+		for (Map.Entry<String, String> failure : report.getFailedBuckets().entrySet()) {
+			json.writeStringField(failure.getKey(), failure.getValue());
+		}
+		json.writeEndObject();
+		json.writeEndObject();
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Classes that handle the JSON API requests and the EFS file downloads
+ */
+package com.jimtough.sbdaws.api;
@@ -0,0 +1,150 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of requests to one AWS client that may be in progress at the same time, and
+ * adjusts the limit to what the service will accept (additive increase, multiplicative decrease).
+ *
+ * Each request that succeeds raises the limit by {@code 1 / limit}, so the limit grows by about one
+ * for each full window of successful requests. Each throttling error halves the limit, but only once
+ * per cooldown, because the requests that were already in progress when the service started to
+ * throttle will all fail the same way and should not each cut the limit again.
+ *
+ * A max limit of zero or less means no limit. The limiter then only counts the requests.
+ *
+ * The requests are slow compared to the cost of a lock, so every method is simply synchronized.
+ *
+ * @author JTOUGH
+ */
+final class AdaptiveConcurrencyLimiter {
+
+	private static final double DECREASE_FACTOR = 0.5;
+
+	private final boolean unlimited;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long cooldownNanos;
+	private final LongSupplier nanoClock;
+
+	private double limit;
+	private int inFlight;
+	private boolean decreased;
+	private long lastDecreaseNanos;
+	private long throttleCount;
+	private long decreaseCount;
+
+	/**
+	 * @param initialLimit Limit until the first success or throttling error
+	 * @param minLimit The limit is never cut below this
+	 * @param maxLimit The limit never grows above this. Zero or less for no limit.
+	 * @param cooldownMillis After the limit is cut, it is not cut again until this much time has passed
+	 */
+	AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long cooldownMillis) {
+		this(initialLimit, minLimit, maxLimit, cooldownMillis, System::nanoTime);
+	}
+
+	AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long cooldownMillis,
+			LongSupplier nanoClock) {
+		if (nanoClock == null) {
+			throw new IllegalArgumentException("nanoClock cannot be null");
+		}
+		this.unlimited = maxLimit <= 0;
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+		this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cooldownMillis));
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Waits for the number of requests in progress to drop below the limit. If this returns true,
+	 * {@link #release()} must be called once the request is finished.
+	 *
+	 * @param maxWaitMillis Zero or less to not wait at all
+	 * @return True if the request may go ahead, false if it did not get a permit in time
+	 * @throws InterruptedException If the thread is interrupted while it waits
+	 */
+	synchronized boolean tryAcquire(long maxWaitMillis) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+		while (!unlimited && inFlight >= getLimit()) {
+			long remainingNanos = deadline - System.nanoTime();
+			if (remainingNanos <= 0) {
+				return false;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+		}
+		inFlight++;
+		return true;
+	}
+
+	/**
+	 * Gives back a permit from {@link #tryAcquire(long)}
+	 */
+	synchronized void release() {
+		inFlight--;
+		notifyAll();
+	}
+
+	/**
+	 * A request succeeded, so the service can probably take a little more
+	 */
+	synchronized void onSuccess() {
+		if (unlimited) {
+			return;
+		}
+		int before = getLimit();
+		limit = Math.min(maxLimit, limit + 1.0 / limit);
+		if (getLimit() > before) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * The service returned a throttling error
+	 */
+	synchronized void onThrottle() {
+		throttleCount++;
+		if (unlimited) {
+			return;
+		}
+		long now = nanoClock.getAsLong();
+		if (decreased && now - lastDecreaseNanos < cooldownNanos) {
+			return;
+		}
+		limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+		decreased = true;
+		lastDecreaseNanos = now;
+		decreaseCount++;
+	}
+
+	/**
+	 * @return Number of requests that may be in progress at the same time, or zero for no limit
+	 */
+	synchronized int getLimit() {
+		return unlimited ? 0 : (int) limit;
+	}
+
+	/**
+	 * @return Number of requests in progress
+	 */
+	synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return Number of throttling errors reported
+	 */
+	synchronized long getThrottleCount() {
+		return throttleCount;
+	}
+
+	/**
+	 * @return Number of times that the limit has been cut
+	 */
+	synchronized long getDecreaseCount() {
+		return decreaseCount;
+	}
+
+}
@@ -0,0 +1,307 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.client.builder.ClientHttpConfiguration;
+import software.amazon.awssdk.client.builder.SyncClientBuilder;
+import software.amazon.awssdk.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.handlers.AwsHandlerKeys;
+import software.amazon.awssdk.handlers.RequestHandler;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.http.apache.ApacheSdkHttpClientFactory;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ec2.EC2Client;
+import software.amazon.awssdk.services.ecs.ECSClient;
+import software.amazon.awssdk.services.iam.IAMClient;
+import software.amazon.awssdk.services.s3.S3AdvancedConfiguration;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+/**
+ * Holds the long-lived AWS SDK clients used by this application.
+ *
+ * Building an SDK client is expensive (HTTP connection pool, TLS handshakes, credential
+ * resolution), so each client is built once per service/region combination and then
+ * shared by all callers. The SDK clients are thread-safe. All clients are closed when
+ * the Spring context shuts down.
+ *
+ * Each client gets its own {@code AwsRequestPolicy}, which limits the requests in progress to
+ * what the service will accept, and retries failed requests with jittered backoff within a
+ * retry budget.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class AwsClientRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AwsClientRegistry.class);
+
+	private final ConfigurationBean configurationBean;
+	private final MetricsRegistry metricsRegistry;
+	private final ConcurrentMap<ClientKey, AutoCloseable> clients = new ConcurrentHashMap<>();
+	private final ConcurrentMap<ClientKey, AwsRequestPolicy> requestPolicies = new ConcurrentHashMap<>();
+	private volatile boolean shutdown = false;
+
+	public AwsClientRegistry(ConfigurationBean configurationBean) {
+		this(configurationBean, new MetricsRegistry());
+	}
+
+	@Autowired
+	public AwsClientRegistry(ConfigurationBean configurationBean, MetricsRegistry metricsRegistry) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.configurationBean = configurationBean;
+		this.metricsRegistry = metricsRegistry;
+	}
+
+	/**
+	 * IAM is a global service, so there is only ever one IAM client
+	 *
+	 * @return Shared IAM client
+	 */
+	public IAMClient getIamClient() {
+		// This only seems to work if AWS_GLOBAL is used as the region
+		return getOrCreate(AwsService.IAM, Region.AWS_GLOBAL, IAMClient.class,
+				key -> build(IAMClient.builder(), key, configurationBean.getAwsSdkIamEndpointOverride(), null));
+	}
+
+	/**
+	 * @param region Non-null region
+	 * @return Shared ECS client for the region
+	 */
+	public ECSClient getEcsClient(Region region) {
+		return getOrCreate(AwsService.ECS, region, ECSClient.class,
+				key -> build(ECSClient.builder(), key, configurationBean.getAwsSdkEcsEndpointOverride(), null));
+	}
+
+	/**
+	 * @param region Non-null region
+	 * @return Shared S3 client for the region
+	 */
+	public S3Client getS3Client(Region region) {
+		return getOrCreate(AwsService.S3, region, S3Client.class, key -> {
+			URI endpointOverride = configurationBean.getAwsSdkS3EndpointOverride();
+			S3ClientBuilder builder = S3Client.builder();
+			RequestHandler pathStyleHandler = null;
+			if (endpointOverride != null) {
+				// A stand-in server cannot be reached at <bucket>.<host>, so the bucket goes in the path instead
+				S3AdvancedConfiguration pathStyle = S3AdvancedConfiguration.builder()
+						.pathStyleAccessEnabled(Boolean.TRUE)
+						.build();
+				builder.advancedConfiguration(pathStyle);
+				pathStyleHandler = new S3AdvancedConfigurationHandler(pathStyle);
+			}
+			return build(builder, key, endpointOverride, pathStyleHandler);
+		});
+	}
+
+	/**
+	 * @param region Non-null region
+	 * @return Shared EC2 client for the region
+	 */
+	public EC2Client getEc2Client(Region region) {
+		return getOrCreate(AwsService.EC2, region, EC2Client.class,
+				key -> build(EC2Client.builder(), key, configurationBean.getAwsSdkEc2EndpointOverride(), null));
+	}
+
+	/**
+	 * @return Number of SDK clients that have been built and not yet closed
+	 */
+	public int getClientCount() {
+		return clients.size();
+	}
+
+	/**
+	 * @param service Non-null service
+	 * @param region Non-null region
+	 * @return Request policy of the client, or null if the client has not been built
+	 */
+	AwsRequestPolicy getRequestPolicy(AwsService service, Region region) {
+		return requestPolicies.get(new ClientKey(service, region));
+	}
+
+	/**
+	 * Close every SDK client (and its connection pool). Called by Spring on context shutdown.
+	 * Any later attempt to get a client will fail.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		shutdown = true;
+		for (Map.Entry<ClientKey, AutoCloseable> entry : clients.entrySet()) {
+			try {
+				entry.getValue().close();
+				LOGGER.debug("Closed AWS SDK client | {}", entry.getKey());
+			} catch (Exception e) {
+				LOGGER.warn("Unable to close AWS SDK client | {}", entry.getKey(), e);
+			}
+		}
+		clients.clear();
+		requestPolicies.clear();
+	}
+
+	private <C extends AutoCloseable> C getOrCreate(
+			AwsService service, Region region, Class<C> clientType, Function<ClientKey, C> factory) {
+		if (region == null) {
+			throw new IllegalArgumentException("region cannot be null");
+		}
+		if (shutdown) {
+			throw new IllegalStateException("AWS SDK client registry has been shut down");
+		}
+		ClientKey key = new ClientKey(service, region);
+		AutoCloseable client = clients.computeIfAbsent(key, k -> {
+			LOGGER.info("Creating AWS SDK client | {}", k);
+			return factory.apply(k);
+		});
+		return clientType.cast(client);
+	}
+
+	/**
+	 * @param firstHandler Request handler that must run before the others, or null
+	 */
+	private <B extends SyncClientBuilder<B, C>, C> C build(B builder, ClientKey key, URI endpointOverride,
+			RequestHandler firstHandler) {
+		AwsRequestPolicy requestPolicy = newRequestPolicy(key);
+		ClientOverrideConfiguration.Builder overrideConfiguration = ClientOverrideConfiguration.builder();
+		if (firstHandler != null) {
+			overrideConfiguration.addRequestListener(firstHandler);
+		}
+		overrideConfiguration.addRequestListener(requestPolicy)
+				.retryPolicy(requestPolicy.toRetryPolicy());
+		builder.region(key.region)
+				.httpConfiguration(buildHttpConfiguration())
+				.overrideConfiguration(overrideConfiguration.build());
+		if (endpointOverride != null) {
+			builder.endpointOverride(endpointOverride);
+		}
+		C client = builder.build();
+		requestPolicies.put(key, requestPolicy);
+		registerRequestPolicyMetrics(key, requestPolicy);
+		return client;
+	}
+
+	private AwsRequestPolicy newRequestPolicy(ClientKey key) {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+				configurationBean.getAwsConcurrencyInitialLimit(),
+				configurationBean.getAwsConcurrencyMinLimit(),
+				configurationBean.getAwsConcurrencyMaxLimit(),
+				configurationBean.getAwsConcurrencyDecreaseCooldownMillis());
+		RetryBudget retryBudget = new RetryBudget(
+				configurationBean.getAwsRetryBudgetPercent(),
+				configurationBean.getAwsRetryBudgetMaxRetries());
+		return new AwsRequestPolicy(key.toString(), limiter, retryBudget,
+				configurationBean.getAwsRetryMaxRetries(),
+				configurationBean.getAwsRetryBaseDelayMillis(),
+				configurationBean.getAwsRetryMaxDelayMillis(),
+				configurationBean.getAwsConcurrencyMaxWaitMillis());
+	}
+
+	private void registerRequestPolicyMetrics(ClientKey key, AwsRequestPolicy requestPolicy) {
+		Map<String, String> labels = new LinkedHashMap<>();
+		labels.put("service", key.service.name());
+		labels.put("region", key.region.value());
+		AdaptiveConcurrencyLimiter limiter = requestPolicy.getLimiter();
+		RetryBudget retryBudget = requestPolicy.getRetryBudget();
+		metricsRegistry.gauge("aws_request_limit",
+				"Number of requests that each AWS SDK client may have in progress (0 for no limit)",
+				labels, limiter::getLimit);
+		metricsRegistry.gauge("aws_requests_in_progress",
+				"Requests of each AWS SDK client that are in progress, including their retries",
+				labels, limiter::getInFlight);
+		metricsRegistry.counter("aws_throttled_requests_total",
+				"Throttling errors returned to each AWS SDK client",
+				labels, limiter::getThrottleCount);
+		metricsRegistry.counter("aws_retries_denied_total",
+				"Retries that each AWS SDK client did not make because its retry budget was empty",
+				labels, retryBudget::getExhaustedCount);
+	}
+
+	private ClientHttpConfiguration buildHttpConfiguration() {
+		// Each client owns its own connection pool. The idle connection reaper evicts
+		// pooled connections that have not been used recently, so a quiet app does not
+		// hold sockets open to AWS indefinitely.
+		return ClientHttpConfiguration.builder()
+				.httpClientFactory(ApacheSdkHttpClientFactory.builder()
+						.maxConnections(configurationBean.getAwsSdkHttpMaxConnections())
+						.connectionMaxIdleTime(
+								Duration.ofSeconds(configurationBean.getAwsSdkHttpConnectionMaxIdleSeconds()))
+						.useIdleConnectionReaper(Boolean.TRUE)
+						.build())
+				.build();
+	}
+
+	/**
+	 * This preview of the SDK does not pass the S3 advanced configuration on to the request
+	 * handlers, so without this the S3 handler always moves the bucket into the host name (and
+	 * drops the port). Listeners run before the S3 handler, so this puts it where it looks.
+	 */
+	private static final class S3AdvancedConfigurationHandler extends RequestHandler {
+
+		private final S3AdvancedConfiguration advancedConfiguration;
+
+		S3AdvancedConfigurationHandler(S3AdvancedConfiguration advancedConfiguration) {
+			this.advancedConfiguration = advancedConfiguration;
+		}
+
+		@Override
+		public SdkHttpFullRequest beforeRequest(SdkHttpFullRequest request) {
+			return request.toBuilder()
+					.handlerContext(AwsHandlerKeys.SERVICE_ADVANCED_CONFIG, advancedConfiguration)
+					.build();
+		}
+	}
+
+	private static final class ClientKey {
+
+		private final AwsService service;
+		private final Region region;
+
+		ClientKey(AwsService service, Region region) {
+			this.service = service;
+			this.region = region;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof ClientKey)) {
+				return false;
+			}
+			ClientKey other = (ClientKey) o;
+			return service == other.service && region.value().equals(other.region.value());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(service, region.value());
+		}
+
+		@Override
+		public String toString() {
+			return "service: [" + service + "] | region: [" + region.value() + "]";
+		}
+	}
+
+}
@@ -2,22 +2,34 @@ package com.jimtough.sbdaws.awssdk;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory.RegionalCluster;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
 
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ec2.EC2Client;
 import software.amazon.awssdk.services.ecs.ECSClient;
 import software.amazon.awssdk.services.ecs.model.Cluster;
-import software.amazon.awssdk.services.ecs.model.DescribeClustersRequest;
-import software.amazon.awssdk.services.ecs.model.DescribeClustersResponse;
-import software.amazon.awssdk.services.ecs.model.ListClustersRequest;
-import software.amazon.awssdk.services.ecs.model.ListClustersResponse;
 import software.amazon.awssdk.services.iam.IAMClient;
 import software.amazon.awssdk.services.iam.model.GetUserRequest;
 import software.amazon.awssdk.services.iam.model.GetUserResponse;
@@ -33,6 +45,23 @@ import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
  * Note that the AWS SDK relies on AWS IAM user credentials being defined in system variables
  * (or another documented AWS SDK credential scheme) at runtime.
  * 
+ * The SDK clients are long-lived and shared, and are obtained from the {@code AwsClientRegistry}.
+ * The latency and errors of each call are recorded in the {@code MetricsRegistry}.
+ * 
+ * The calls to each service go through that service's own bulkhead and circuit breaker.
+ * A call that is short-circuited returns the last known good value without calling the SDK.
+ * Concurrent lookups of the same resource (in the same region) share one outstanding call,
+ * so a burst of lookups results in one SDK call rather than one per caller.
+ * 
+ * The ECS clusters of every target region are listed in parallel, each region with its own client,
+ * so listing several regions takes about as long as the slowest one.
+ * 
+ * The S3 bucket statistics are collected by listing every object in every bucket, on a bounded
+ * pool of its own, so a long listing never holds up the other lookups.
+ * 
+ * The EC2 instances of the target region are listed page by page, while the results of their
+ * status checks are read at the same time on another small pool.
+ * 
  * @author JTOUGH
  */
 @Component
@@ -40,14 +69,157 @@ public class AwsEnvironmentInterrogator {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(AwsEnvironmentInterrogator.class);
 
+	private static final int ECS_DESCRIBE_QUEUE_CAPACITY = 100;
+	private static final int ECS_REGION_QUEUE_CAPACITY = 32;
+	private static final int S3_LIST_QUEUE_CAPACITY = 1000;
+	// One status listing per EC2 lookup, and concurrent lookups of one region share a call
+	private static final int EC2_STATUS_THREADS = 2;
+	private static final int EC2_STATUS_QUEUE_CAPACITY = 32;
+	// The IAM users are considered "Global" in AWS, so there is only one key for IAM lookups
+	private static final String IAM_GUARD_KEY = "aws-global";
+
 	private final ConfigurationBean configurationBean;
+	private final AwsClientRegistry clientRegistry;
+	private final ThreadPoolExecutor ecsDescribeExecutor;
+	private final ThreadPoolExecutor ecsRegionExecutor;
+	private final ThreadPoolExecutor s3ListExecutor;
+	private final ThreadPoolExecutor ec2StatusExecutor;
+	private final EcsClusterDiscovery ecsClusterDiscovery;
+	private final S3BucketStatisticsCollector s3BucketStatisticsCollector;
+	private final Ec2InstanceDiscovery ec2InstanceDiscovery;
+	private final OperationMetrics iamGetUserMetrics;
+	private final OperationMetrics ecsClusterListMetrics;
+	private final OperationMetrics ecsClusterInventoryMetrics;
+	private final OperationMetrics s3ListBucketsMetrics;
+	private final OperationMetrics s3BucketStatisticsMetrics;
+	private final OperationMetrics ec2InstanceInventoryMetrics;
+	private final Map<AwsService, AwsServiceGuard> guards = new EnumMap<>(AwsService.class);
+	private final SingleFlight<String, User> iamUserFlight = new SingleFlight<>();
+	private final SingleFlight<String, List<Cluster>> ecsClusterListFlight = new SingleFlight<>();
+	private final SingleFlight<String, List<Bucket>> s3BucketListFlight = new SingleFlight<>();
+	private final SingleFlight<String, Ec2InstanceInventory> ec2InstanceInventoryFlight = new SingleFlight<>();
 	
 	@Autowired
-	public AwsEnvironmentInterrogator(ConfigurationBean configurationBean) {
+	public AwsEnvironmentInterrogator(ConfigurationBean configurationBean, AwsClientRegistry clientRegistry,
+			MetricsRegistry metricsRegistry) {
 		if (configurationBean == null) {
 			throw new IllegalArgumentException("configurationBean cannot be null");
 		}
+		if (clientRegistry == null) {
+			throw new IllegalArgumentException("clientRegistry cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
 		this.configurationBean = configurationBean;
+		this.clientRegistry = clientRegistry;
+		this.iamGetUserMetrics = metricsRegistry.operation("aws.iam.getUser");
+		// All of the ListClusters and DescribeClusters calls for one lookup
+		this.ecsClusterListMetrics = metricsRegistry.operation("aws.ecs.getClusterList");
+		// Every target region, in parallel
+		this.ecsClusterInventoryMetrics = metricsRegistry.operation("aws.ecs.getClusterInventory");
+		this.s3ListBucketsMetrics = metricsRegistry.operation("aws.s3.listBuckets");
+		// Every page of every bucket
+		this.s3BucketStatisticsMetrics = metricsRegistry.operation("aws.s3.getBucketStatistics");
+		// Every page of the instances and of their status checks
+		this.ec2InstanceInventoryMetrics = metricsRegistry.operation("aws.ec2.getInstanceInventory");
+		// Bounded pool for the ECS DescribeClusters batches. If the queue ever fills up,
+		// the calling thread runs the batch itself rather than failing the request.
+		int ecsParallelism = Math.max(1, configurationBean.getAwsEcsDescribeClustersParallelism());
+		this.ecsDescribeExecutor = new ThreadPoolExecutor(ecsParallelism, ecsParallelism,
+				60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(ECS_DESCRIBE_QUEUE_CAPACITY),
+				new CustomizableThreadFactory("ecs-describe-"), new ThreadPoolExecutor.CallerRunsPolicy());
+		this.ecsDescribeExecutor.allowCoreThreadTimeOut(true);
+		this.ecsClusterDiscovery = new EcsClusterDiscovery(ecsDescribeExecutor, metricsRegistry);
+		// One thread per target region. The regions must not share the describe pool, because
+		// each region waits for its own describe batches.
+		int regionCount = targetRegions().size();
+		this.ecsRegionExecutor = new ThreadPoolExecutor(regionCount, regionCount,
+				60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(ECS_REGION_QUEUE_CAPACITY),
+				new CustomizableThreadFactory("ecs-region-"), new ThreadPoolExecutor.CallerRunsPolicy());
+		this.ecsRegionExecutor.allowCoreThreadTimeOut(true);
+		// Bounded pool for the S3 object listings. If the queue ever fills up, the thread that
+		// submits a listing runs it itself, which still bounds the number of listings.
+		int s3Parallelism = Math.max(1, configurationBean.getAwsS3StatisticsParallelism());
+		this.s3ListExecutor = new ThreadPoolExecutor(s3Parallelism, s3Parallelism,
+				60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(S3_LIST_QUEUE_CAPACITY),
+				new CustomizableThreadFactory("s3-list-"), new ThreadPoolExecutor.CallerRunsPolicy());
+		this.s3ListExecutor.allowCoreThreadTimeOut(true);
+		this.s3BucketStatisticsCollector = new S3BucketStatisticsCollector(s3ListExecutor,
+				configurationBean.getAwsS3StatisticsShardSplitKeys(),
+				configurationBean.getAwsS3StatisticsMaxKeysPerPage(), metricsRegistry);
+		this.ec2StatusExecutor = new ThreadPoolExecutor(EC2_STATUS_THREADS, EC2_STATUS_THREADS,
+				60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(EC2_STATUS_QUEUE_CAPACITY),
+				new CustomizableThreadFactory("ec2-status-"), new ThreadPoolExecutor.CallerRunsPolicy());
+		this.ec2StatusExecutor.allowCoreThreadTimeOut(true);
+		this.ec2InstanceDiscovery = new Ec2InstanceDiscovery(ec2StatusExecutor, metricsRegistry);
+		for (AwsService service : AwsService.values()) {
+			AwsServiceGuard guard = newGuard(service, configurationBean);
+			guards.put(service, guard);
+			registerGuardMetrics(service, guard, metricsRegistry);
+		}
+		registerSharedCallMetrics(AwsService.IAM, iamUserFlight, metricsRegistry);
+		registerSharedCallMetrics(AwsService.ECS, ecsClusterListFlight, metricsRegistry);
+		registerSharedCallMetrics(AwsService.S3, s3BucketListFlight, metricsRegistry);
+		registerSharedCallMetrics(AwsService.EC2, ec2InstanceInventoryFlight, metricsRegistry);
+	}
+
+	private static AwsServiceGuard newGuard(AwsService service, ConfigurationBean configurationBean) {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(
+				configurationBean.getAwsCircuitBreakerWindowSize(),
+				configurationBean.getAwsCircuitBreakerMinimumCalls(),
+				configurationBean.getAwsCircuitBreakerFailureRateThresholdPercent(),
+				TimeUnit.SECONDS.toMillis(configurationBean.getAwsCircuitBreakerOpenSeconds()),
+				configurationBean.getAwsCircuitBreakerHalfOpenProbes());
+		return new AwsServiceGuard(service, circuitBreaker,
+				configurationBean.getAwsBulkheadMaxConcurrentCalls(), configurationBean.getAwsBulkheadMaxWaitMillis());
+	}
+
+	private static void registerGuardMetrics(AwsService service, AwsServiceGuard guard, MetricsRegistry metricsRegistry) {
+		Map<String, String> labels = Collections.singletonMap("service", service.name());
+		metricsRegistry.gauge("aws_circuit_breaker_state",
+				"State of the circuit breaker of each AWS service: 0 closed, 1 half-open, 2 open",
+				labels, () -> guard.getCircuitBreaker().getState().ordinal());
+		metricsRegistry.counter("aws_circuit_breaker_opened_total",
+				"Number of times that the circuit breaker of each AWS service has opened",
+				labels, () -> guard.getCircuitBreaker().getOpenCount());
+		metricsRegistry.gauge("aws_calls_in_progress",
+				"SDK calls to each AWS service that are in progress",
+				labels, guard::getCallsInProgress);
+		String shortCircuits = "aws_short_circuited_calls_total";
+		String shortCircuitsHelp = "Calls to each AWS service that were not made, by reason";
+		Map<String, String> circuitOpenLabels = new LinkedHashMap<>(labels);
+		circuitOpenLabels.put("reason", "circuit_open");
+		metricsRegistry.counter(shortCircuits, shortCircuitsHelp, circuitOpenLabels, guard::getCircuitOpenRejectionCount);
+		Map<String, String> bulkheadFullLabels = new LinkedHashMap<>(labels);
+		bulkheadFullLabels.put("reason", "bulkhead_full");
+		metricsRegistry.counter(shortCircuits, shortCircuitsHelp, bulkheadFullLabels, guard::getBulkheadRejectionCount);
+	}
+
+	private static void registerSharedCallMetrics(AwsService service, SingleFlight<?, ?> flight,
+			MetricsRegistry metricsRegistry) {
+		metricsRegistry.counter("aws_shared_calls_total",
+				"Lookups of each AWS service that joined a call already in progress instead of making their own",
+				Collections.singletonMap("service", service.name()), flight::getSharedCount);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		ecsRegionExecutor.shutdownNow();
+		ecsDescribeExecutor.shutdownNow();
+		s3ListExecutor.shutdownNow();
+		ec2StatusExecutor.shutdownNow();
+	}
+
+	/**
+	 * @return Current state of the circuit breaker and bulkhead of each service, in {@code AwsService} order
+	 */
+	public List<AwsServiceStatus> getServiceStatuses() {
+		List<AwsServiceStatus> statuses = new ArrayList<>(guards.size());
+		for (AwsServiceGuard guard : guards.values()) {
+			statuses.add(guard.getStatus());
+		}
+		return statuses;
 	}
 	
 	/**
@@ -57,59 +229,131 @@ public class AwsEnvironmentInterrogator {
 	 * (or another documented AWS SDK credential scheme) at runtime.
 	 * 
 	 * @return User
-	 * @throws AwsSdkException Thrown if the SDK call throws an exception
+	 * @throws AwsSdkException Thrown if the SDK call throws an exception, or if the call was
+	 *         short-circuited and there is no last known good value
 	 */
 	public User getIAMUser() throws AwsSdkException {
-		try (
-			// This only seems to work if AWS_GLOBAL is used as the region
-			IAMClient iamClient = IAMClient.builder().region(Region.AWS_GLOBAL).build()
-		) {
+		return iamUserFlight.execute(IAM_GUARD_KEY,
+				() -> guards.get(AwsService.IAM).call(IAM_GUARD_KEY, this::fetchIAMUser));
+	}
+
+	private User fetchIAMUser() throws AwsSdkException {
+		long startNanos = System.nanoTime();
+		try {
+			IAMClient iamClient = clientRegistry.getIamClient();
 			// The IAM users are considered "Global" in AWS, rather than region-specific
 			GetUserResponse response = iamClient.getUser(GetUserRequest.builder().build());
 			User user = response.user();
+			iamGetUserMetrics.recordSuccess(System.nanoTime() - startNanos);
 			LOGGER.debug("IAM user information retrieved successfully | username: [{}]", user.userName());
 			return user;
 		} catch (Exception e) {
+			iamGetUserMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
 			throw new AwsSdkException("Unable to retrieve information on IAM user", e);
 		}
 	}
 
 	/**
-	 * Retrieves list of ECS clusters owned by this AWS account
+	 * Retrieves list of ECS clusters owned by this AWS account in the target region.
+	 * All pages of results are retrieved, and the clusters are described in batches.
 	 * 
 	 * @return Non-null (possibly empty) list
-	 * @throws AwsSdkException Thrown if the SDK call throws an exception
+	 * @throws AwsSdkException Thrown if the SDK call throws an exception, or if the call was
+	 *         short-circuited and there is no last known good value
 	 */
 	public List<Cluster> getECSClusterList() throws AwsSdkException {
-		try (
-			ECSClient ecsClient = ECSClient.builder().region(this.configurationBean.getAwsTargetRegion()).build();
-		) {
-			ListClustersResponse response = ecsClient.listClusters(ListClustersRequest.builder().build());
-			List<String> clusterArns = response.clusterArns();
-			if (clusterArns == null) {
-				return Collections.emptyList();
-			}
-			List<Cluster> clusterList = new ArrayList<>(clusterArns.size());
-			LOGGER.debug("My AWS account has {} ECS clusters defined", clusterArns.size());
-			for (String clusterArn : clusterArns) {
-				LOGGER.debug(" --> clusterArn: {}", clusterArn);
-				DescribeClustersResponse descResponse = 
-						ecsClient.describeClusters(
-								DescribeClustersRequest.builder().clusters(clusterArn).build());
-				List<Cluster> clusters = descResponse.clusters();
-				// Assume that a describe request with a valid 'arn' will return exactly one result
-				Cluster cluster = clusters.get(0);
-				LOGGER.debug("   DETAILS | name: {} | arn: {} | containers: {} | services: {} | tasks: {}",
-						cluster.clusterName(),
-						cluster.clusterArn(),
-						cluster.registeredContainerInstancesCount(),
-						cluster.activeServicesCount(),
-						cluster.runningTasksCount());
-				clusterList.add(cluster);
+		return getECSClusterList(configurationBean.getAwsTargetRegion());
+	}
+
+	/**
+	 * Retrieves list of ECS clusters owned by this AWS account in one region.
+	 * 
+	 * @param region The region to query
+	 * @return Non-null (possibly empty) list
+	 * @throws AwsSdkException Thrown if the SDK call throws an exception, or if the call was
+	 *         short-circuited and there is no last known good value for the region
+	 */
+	public List<Cluster> getECSClusterList(Region region) throws AwsSdkException {
+		// Each region has its own shared call and its own last known good value
+		String regionKey = String.valueOf(region);
+		return ecsClusterListFlight.execute(regionKey,
+				() -> guards.get(AwsService.ECS).call(regionKey, () -> fetchECSClusterList(region)));
+	}
+
+	/**
+	 * Retrieves the ECS clusters in every target region (see {@code aws.target.regions}), with
+	 * each region queried at the same time. A region that fails or does not answer in time is
+	 * reported in the result, and the clusters of the other regions are still returned.
+	 * 
+	 * @return Clusters of every region that was queried successfully, in the order of the target regions
+	 * @throws AwsSdkException Thrown if no region could be queried
+	 */
+	public EcsClusterInventory getECSClusterInventory() throws AwsSdkException {
+		long startNanos = System.nanoTime();
+		List<Region> regions = targetRegions();
+		List<Future<List<Cluster>>> futures = new ArrayList<>(regions.size());
+		for (Region region : regions) {
+			futures.add(ecsRegionExecutor.submit(() -> getECSClusterList(region)));
+		}
+
+		long timeoutMillis = configurationBean.getAwsEcsRegionTimeoutMillis();
+		long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		List<RegionalCluster> clusters = new ArrayList<>();
+		Map<String, String> failedRegions = new LinkedHashMap<>();
+		Exception firstFailure = null;
+		for (int i = 0; i < regions.size(); i++) {
+			Region region = regions.get(i);
+			Future<List<Cluster>> future = futures.get(i);
+			try {
+				List<Cluster> regionClusters = timeoutMillis > 0
+						? future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)
+						: future.get();
+				for (Cluster cluster : regionClusters) {
+					clusters.add(new RegionalCluster(region, cluster));
+				}
+			} catch (ExecutionException | TimeoutException e) {
+				Exception failure = e instanceof ExecutionException && e.getCause() instanceof Exception
+						? (Exception) e.getCause() : e;
+				if (e instanceof TimeoutException) {
+					future.cancel(true);
+					failedRegions.put(region.value(), "Timed out after " + timeoutMillis + " ms");
+				} else {
+					failedRegions.put(region.value(), String.valueOf(failure.getMessage()));
+				}
+				if (firstFailure == null) {
+					firstFailure = failure;
+				}
+				LOGGER.warn("Unable to retrieve ECS clusters in region | region: [{}] | reason: [{}]",
+						region.value(), failedRegions.get(region.value()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<List<Cluster>> f : futures) {
+					f.cancel(true);
+				}
+				ecsClusterInventoryMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+				throw new AwsSdkException("Interrupted while retrieving ECS clusters", e);
 			}
+		}
+
+		if (!regions.isEmpty() && failedRegions.size() == regions.size()) {
+			ecsClusterInventoryMetrics.recordFailure(System.nanoTime() - startNanos, firstFailure.getClass());
+			throw new AwsSdkException("Unable to retrieve ECS clusters in any region | regions: "
+					+ failedRegions.keySet(), firstFailure);
+		}
+		ecsClusterInventoryMetrics.recordSuccess(System.nanoTime() - startNanos);
+		return new EcsClusterInventory(regions, clusters, failedRegions);
+	}
+
+	private List<Cluster> fetchECSClusterList(Region region) throws AwsSdkException {
+		long startNanos = System.nanoTime();
+		try {
+			ECSClient ecsClient = clientRegistry.getEcsClient(region);
+			List<Cluster> clusterList = ecsClusterDiscovery.discover(ecsClient);
+			ecsClusterListMetrics.recordSuccess(System.nanoTime() - startNanos);
 			return clusterList;
 		} catch (Exception e) {
-			throw new AwsSdkException("Unable to retrieve information on ECS clusters", e);
+			ecsClusterListMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw new AwsSdkException("Unable to retrieve information on ECS clusters | region: [" + region + "]", e);
 		}
 	}
 	
@@ -117,14 +361,22 @@ public class AwsEnvironmentInterrogator {
 	 * Retrieves list of S3 buckets owned by this AWS account in any AWS region globally
 	 * 
 	 * @return Non-null (possibly empty) list
-	 * @throws AwsSdkException Thrown if the SDK call throws an exception
+	 * @throws AwsSdkException Thrown if the SDK call throws an exception, or if the call was
+	 *         short-circuited and there is no last known good value
 	 */
 	public List<Bucket> getS3BucketList() throws AwsSdkException {
-		try (
-			S3Client s3Client = S3Client.builder().region(this.configurationBean.getAwsTargetRegion()).build();
-		) {
+		String regionKey = regionKey();
+		return s3BucketListFlight.execute(regionKey,
+				() -> guards.get(AwsService.S3).call(regionKey, this::fetchS3BucketList));
+	}
+
+	private List<Bucket> fetchS3BucketList() throws AwsSdkException {
+		long startNanos = System.nanoTime();
+		try {
+			S3Client s3Client = clientRegistry.getS3Client(this.configurationBean.getAwsTargetRegion());
 			// The S3 buckets are considered "Global" in AWS when querying for the list
 			ListBucketsResponse response = s3Client.listBuckets(ListBucketsRequest.builder().build());
+			s3ListBucketsMetrics.recordSuccess(System.nanoTime() - startNanos);
 
 			List<Bucket> myBucketList = response.buckets();
 			if (myBucketList == null) {
@@ -133,8 +385,88 @@ public class AwsEnvironmentInterrogator {
 			LOGGER.debug("S3 buckets information retrieved successfully | Number of buckets: [{}]", myBucketList.size());
 			return myBucketList;
 		} catch (Exception e) {
+			s3ListBucketsMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
 			throw new AwsSdkException("Unable to retrieve information on S3 buckets", e);
 		}
 	}
+
+	/**
+	 * Counts the objects in every S3 bucket and adds up their sizes, by reading every page of the
+	 * object listing of each bucket. This makes one SDK call per 1000 objects, so it can take a
+	 * long time, and should not be called on a request thread.
+	 * 
+	 * @return Statistics of every bucket that was listed successfully, in the order of the bucket list
+	 * @throws AwsSdkException Thrown if the bucket list could not be retrieved, or if no bucket could be listed
+	 */
+	public S3BucketStatisticsReport getS3BucketStatistics() throws AwsSdkException {
+		long startNanos = System.nanoTime();
+		List<Bucket> buckets = getS3BucketList();
+		List<String> bucketNames = new ArrayList<>(buckets.size());
+		for (Bucket bucket : buckets) {
+			bucketNames.add(bucket.name());
+		}
+		S3BucketStatisticsReport report;
+		try {
+			report = s3BucketStatisticsCollector.collect(bucketNames,
+					clientRegistry.getS3Client(configurationBean.getAwsTargetRegion()), clientRegistry::getS3Client);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			s3BucketStatisticsMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw new AwsSdkException("Interrupted while collecting S3 bucket statistics", e);
+		} catch (RuntimeException e) {
+			s3BucketStatisticsMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw new AwsSdkException("Unable to collect S3 bucket statistics", e);
+		}
+		if (!bucketNames.isEmpty() && report.getBuckets().isEmpty()) {
+			s3BucketStatisticsMetrics.recordFailure(System.nanoTime() - startNanos, AwsSdkException.class);
+			throw new AwsSdkException("Unable to collect statistics for any S3 bucket | failures: "
+					+ report.getFailedBuckets());
+		}
+		s3BucketStatisticsMetrics.recordSuccess(System.nanoTime() - startNanos);
+		LOGGER.debug("S3 bucket statistics collected | buckets: [{}] | failed: [{}]",
+				report.getBuckets().size(), report.getFailedBuckets().size());
+		return report;
+	}
+
+	/**
+	 * Retrieves every EC2 instance in the target region, with the results of its status checks.
+	 * All pages of the results are retrieved.
+	 * 
+	 * @return Inventory of the instances, which can be filtered and read one page at a time
+	 * @throws AwsSdkException Thrown if the SDK call throws an exception, or if the call was
+	 *         short-circuited and there is no last known good value
+	 */
+	public Ec2InstanceInventory getEC2InstanceInventory() throws AwsSdkException {
+		Region region = configurationBean.getAwsTargetRegion();
+		String regionKey = String.valueOf(region);
+		return ec2InstanceInventoryFlight.execute(regionKey,
+				() -> guards.get(AwsService.EC2).call(regionKey, () -> fetchEC2InstanceInventory(region)));
+	}
+
+	private Ec2InstanceInventory fetchEC2InstanceInventory(Region region) throws AwsSdkException {
+		long startNanos = System.nanoTime();
+		try {
+			EC2Client ec2Client = clientRegistry.getEc2Client(region);
+			Ec2InstanceInventory inventory = ec2InstanceDiscovery.discover(ec2Client, region);
+			ec2InstanceInventoryMetrics.recordSuccess(System.nanoTime() - startNanos);
+			LOGGER.debug("EC2 instance information retrieved successfully | {}", inventory);
+			return inventory;
+		} catch (Exception e) {
+			ec2InstanceInventoryMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw new AwsSdkException("Unable to retrieve information on EC2 instances | region: [" + region + "]", e);
+		}
+	}
+
+	private String regionKey() {
+		return String.valueOf(configurationBean.getAwsTargetRegion());
+	}
+
+	private List<Region> targetRegions() {
+		List<Region> regions = configurationBean.getAwsTargetRegions();
+		if (regions == null || regions.isEmpty()) {
+			return Collections.singletonList(configurationBean.getAwsTargetRegion());
+		}
+		return regions;
+	}
 	
 }
@@ -0,0 +1,226 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.jimtough.sbdaws.metrics.RequestTrace;
+
+import software.amazon.awssdk.AmazonClientException;
+import software.amazon.awssdk.AmazonWebServiceRequest;
+import software.amazon.awssdk.Response;
+import software.amazon.awssdk.SdkClientException;
+import software.amazon.awssdk.handlers.RequestHandler;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.retry.PredefinedRetryPolicies;
+import software.amazon.awssdk.retry.RetryPolicy;
+import software.amazon.awssdk.retry.RetryUtils;
+
+/**
+ * Controls the requests made by one AWS SDK client. It replaces the SDK's default retry policy:
+ * <ul>
+ * <li>As a request handler, it holds each request (with all of its retries) to the limit of an
+ *     {@code AdaptiveConcurrencyLimiter}. A request that cannot get a permit in time fails with an
+ *     {@code SdkClientException}.</li>
+ * <li>As a retry condition, it retries the errors that the SDK would retry (throttling, 5xx and I/O
+ *     errors), up to the maximum number of retries, and only while the {@code RetryBudget} permits.
+ *     Each throttling error is reported to the limiter.</li>
+ * <li>As a backoff strategy, it waits a random time between zero and an exponentially growing cap
+ *     ("full jitter"), so that clients that were throttled together do not all retry together.</li>
+ * </ul>
+ *
+ * The SDK clients used by this application are synchronous, so a request and its handler callbacks
+ * all run on the calling thread. That is how the permit is tracked, and how a call made for a
+ * traced request is added to its {@code RequestTrace}. The SDK is not relied on to call
+ * {@code afterResponse} or {@code afterError} after every {@code beforeRequest}: a request can
+ * fail before it is sent, or another handler can throw. So the state is kept for the thread rather
+ * than for the client. It is cleared when the next request starts on the thread, and
+ * {@code AwsServiceGuard} clears it after every call with {@link #releaseThreadState()}.
+ *
+ * @author JTOUGH
+ */
+final class AwsRequestPolicy extends RequestHandler
+		implements RetryPolicy.RetryCondition, RetryPolicy.BackoffStrategy {
+
+	// Longest shift before the exponential cap would overflow
+	private static final int MAX_BACKOFF_SHIFT = 30;
+	// The policy whose permit is held by the request in progress on this thread
+	private static final ThreadLocal<AwsRequestPolicy> PERMIT_HOLDER = new ThreadLocal<>();
+	// Only set while a traced request is making a call
+	private static final ThreadLocal<RequestTrace.SdkCall> TRACED_CALL = new ThreadLocal<>();
+
+	private final String clientName;
+	private final AdaptiveConcurrencyLimiter limiter;
+	private final RetryBudget retryBudget;
+	private final int maxRetries;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+	private final long maxWaitMillis;
+
+	/**
+	 * @param clientName Describes the client in error messages
+	 * @param maxRetries Most times that one request is retried
+	 * @param baseDelayMillis Cap of the delay before the first retry. The cap doubles for each retry after that.
+	 * @param maxDelayMillis The cap never grows above this
+	 * @param maxWaitMillis Number of milliseconds that a request may wait for the limiter
+	 */
+	AwsRequestPolicy(String clientName, AdaptiveConcurrencyLimiter limiter, RetryBudget retryBudget, int maxRetries,
+			long baseDelayMillis, long maxDelayMillis, long maxWaitMillis) {
+		if (limiter == null) {
+			throw new IllegalArgumentException("limiter cannot be null");
+		}
+		if (retryBudget == null) {
+			throw new IllegalArgumentException("retryBudget cannot be null");
+		}
+		this.clientName = clientName;
+		this.limiter = limiter;
+		this.retryBudget = retryBudget;
+		this.maxRetries = Math.max(0, maxRetries);
+		this.baseDelayMillis = Math.max(0, baseDelayMillis);
+		this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	/**
+	 * @return The SDK retry policy to put in the client's override configuration
+	 */
+	RetryPolicy toRetryPolicy() {
+		// The SDK stops before it asks the condition once its own maximum is reached. One more than
+		// ours means that the condition also sees the last error, and so every throttling error.
+		return new RetryPolicy(this, this, maxRetries + 1, false);
+	}
+
+	AdaptiveConcurrencyLimiter getLimiter() {
+		return limiter;
+	}
+
+	RetryBudget getRetryBudget() {
+		return retryBudget;
+	}
+
+	/**
+	 * Releases the permit and finishes the traced call of a request that ended on this thread
+	 * without {@code afterResponse} or {@code afterError}. Does nothing if the request ended normally.
+	 *
+	 * @return true if a permit was still held
+	 */
+	static boolean releaseThreadState() {
+		finishTracedCall("NOT_SENT");
+		AwsRequestPolicy holder = PERMIT_HOLDER.get();
+		if (holder == null) {
+			return false;
+		}
+		holder.releasePermit();
+		return true;
+	}
+
+	@Override
+	public AmazonWebServiceRequest beforeMarshalling(AmazonWebServiceRequest request) {
+		// A new request, so anything still held belongs to one that never finished
+		releaseThreadState();
+		RequestTrace trace = RequestTrace.current();
+		if (trace != null) {
+			TRACED_CALL.set(trace.startSdkCall(clientName, operationName(request)));
+		}
+		return request;
+	}
+
+	@Override
+	public SdkHttpFullRequest beforeRequest(SdkHttpFullRequest request) {
+		AwsRequestPolicy holder = PERMIT_HOLDER.get();
+		if (holder == this) {
+			// A retry of the request that already holds the permit
+			return request;
+		}
+		if (holder != null) {
+			// Left by a request to another client that never finished
+			holder.releasePermit();
+		}
+		boolean acquired;
+		try {
+			acquired = limiter.tryAcquire(maxWaitMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SdkClientException("Interrupted while waiting to send a request | " + clientName, e);
+		}
+		if (!acquired) {
+			throw new SdkClientException("Too many requests in progress (limit " + limiter.getLimit() + ") | "
+					+ clientName);
+		}
+		PERMIT_HOLDER.set(this);
+		retryBudget.onRequest();
+		return request;
+	}
+
+	@Override
+	public void afterResponse(SdkHttpFullRequest request, Response<?> response) {
+		limiter.onSuccess();
+		releasePermit();
+		finishTracedCall("OK");
+	}
+
+	@Override
+	public void afterError(SdkHttpFullRequest request, Response<?> response, Exception e) {
+		releasePermit();
+		finishTracedCall(e == null ? "ERROR" : e.getClass().getSimpleName());
+	}
+
+	@Override
+	public boolean shouldRetry(AmazonWebServiceRequest originalRequest, AmazonClientException exception,
+			int retriesAttempted) {
+		boolean throttled = exception != null && RetryUtils.isThrottlingException(exception);
+		if (throttled) {
+			limiter.onThrottle();
+		}
+		if (retriesAttempted >= maxRetries) {
+			return false;
+		}
+		if (!throttled && !PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(
+				originalRequest, exception, retriesAttempted)) {
+			return false;
+		}
+		if (!retryBudget.tryRetry()) {
+			return false;
+		}
+		RequestTrace.SdkCall call = TRACED_CALL.get();
+		if (call != null) {
+			call.retried();
+		}
+		return true;
+	}
+
+	@Override
+	public long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest, AmazonClientException exception,
+			int retriesAttempted) {
+		return ThreadLocalRandom.current().nextLong(getDelayCapMillis(retriesAttempted) + 1);
+	}
+
+	/**
+	 * @param retriesAttempted Number of retries already made, so zero before the first
+	 * @return Longest delay before the next retry
+	 */
+	long getDelayCapMillis(int retriesAttempted) {
+		int shift = Math.max(0, Math.min(retriesAttempted, MAX_BACKOFF_SHIFT));
+		return Math.min(maxDelayMillis, baseDelayMillis << shift);
+	}
+
+	private static void finishTracedCall(String outcome) {
+		RequestTrace.SdkCall call = TRACED_CALL.get();
+		if (call != null) {
+			TRACED_CALL.remove();
+			call.finish(outcome);
+		}
+	}
+
+	// GetUserRequest is "GetUser"
+	private static String operationName(AmazonWebServiceRequest request) {
+		String name = request.getClass().getSimpleName();
+		return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+	}
+
+	private void releasePermit() {
+		if (PERMIT_HOLDER.get() == this) {
+			PERMIT_HOLDER.remove();
+			limiter.release();
+		}
+	}
+
+}
@@ -1,7 +1,8 @@
 package com.jimtough.sbdaws.awssdk;
 
 /**
- * Thrown when an AWS SDK call fails or throws an exception
+ * Thrown when an AWS SDK call fails or throws an exception, or when a call is short-circuited
+ * (not made at all) because the service's circuit breaker is open or its bulkhead is full
  * 
  * @author JTOUGH
  */
@@ -9,6 +10,8 @@ public class AwsSdkException extends Exception {
 
 	private static final long serialVersionUID = 1L;
 
+	private final boolean shortCircuited;
+
 	/**
 	 * Constructor
 	 * @param message String
@@ -16,6 +19,7 @@ public class AwsSdkException extends Exception {
 	 */
 	public AwsSdkException(String message, Exception cause) {
 		super(message, cause);
+		this.shortCircuited = false;
 	}
 
 	/**
@@ -24,6 +28,25 @@ public class AwsSdkException extends Exception {
 	 */
 	public AwsSdkException(String message) {
 		super(message);
+		this.shortCircuited = false;
+	}
+
+	/**
+	 * Constructor
+	 * @param message String
+	 * @param shortCircuited True if the SDK was not called at all
+	 */
+	public AwsSdkException(String message, boolean shortCircuited) {
+		super(message);
+		this.shortCircuited = shortCircuited;
+	}
+
+	/**
+	 * @return True if the call was short-circuited without calling the SDK,
+	 *         false if a real SDK call failed
+	 */
+	public boolean isShortCircuited() {
+		return shortCircuited;
 	}
 	
 }
@@ -0,0 +1,15 @@
+package com.jimtough.sbdaws.awssdk;
+
+/**
+ * The AWS services that this application talks to through the AWS SDK
+ *
+ * @author JTOUGH
+ */
+public enum AwsService {
+
+	IAM,
+	ECS,
+	S3,
+	EC2;
+
+}
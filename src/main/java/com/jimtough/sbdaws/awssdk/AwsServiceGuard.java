@@ -0,0 +1,154 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bulkhead and circuit breaker around the SDK calls to one AWS service.
+ *
+ * The bulkhead limits how many calls to the service may be in progress at the same time, so one
+ * slow service cannot tie up every thread. The circuit breaker stops calling a service that keeps
+ * failing. A call that is not permitted by either one is short-circuited: it returns the last
+ * value that a real call returned for the same key, without calling the SDK. If there is no such
+ * value, it fails with an {@code AwsSdkException} that is marked as short-circuited.
+ *
+ * @author JTOUGH
+ */
+final class AwsServiceGuard {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AwsServiceGuard.class);
+
+	/**
+	 * A real call to the SDK
+	 */
+	interface SdkCall<T> {
+		T call() throws AwsSdkException;
+	}
+
+	private final AwsService service;
+	private final CircuitBreaker circuitBreaker;
+	// Null if the number of concurrent calls is not limited
+	private final Semaphore bulkhead;
+	private final long maxWaitMillis;
+	private final AtomicInteger callsInProgress = new AtomicInteger();
+	private final LongAdder circuitOpenRejections = new LongAdder();
+	private final LongAdder bulkheadRejections = new LongAdder();
+	// Last value returned by a real call, for each key (such as a region)
+	private final ConcurrentMap<String, Object> lastGoodValues = new ConcurrentHashMap<>();
+
+	/**
+	 * @param service The service that is called
+	 * @param circuitBreaker Circuit breaker for the service
+	 * @param maxConcurrentCalls Maximum number of calls in progress at the same time. Zero or less for no limit.
+	 * @param maxWaitMillis How long a call may wait for the bulkhead before it is short-circuited
+	 */
+	AwsServiceGuard(AwsService service, CircuitBreaker circuitBreaker, int maxConcurrentCalls, long maxWaitMillis) {
+		if (service == null) {
+			throw new IllegalArgumentException("service cannot be null");
+		}
+		if (circuitBreaker == null) {
+			throw new IllegalArgumentException("circuitBreaker cannot be null");
+		}
+		this.service = service;
+		this.circuitBreaker = circuitBreaker;
+		this.bulkhead = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls) : null;
+		this.maxWaitMillis = Math.max(0, maxWaitMillis);
+	}
+
+	/**
+	 * @param key Identifies the value that the call returns, such as the region. Not null.
+	 * @param call The SDK call
+	 * @return Value returned by the call, or the last known good value if the call was short-circuited
+	 * @throws AwsSdkException Thrown if the call failed, or if it was short-circuited and there is
+	 *         no last known good value
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T call(String key, SdkCall<T> call) throws AwsSdkException {
+		// The bulkhead comes first, so that a half-open probe is never lost to a full bulkhead
+		if (!tryEnterBulkhead()) {
+			bulkheadRejections.increment();
+			return (T) shortCircuit(key, "bulkhead is full");
+		}
+		try {
+			if (!circuitBreaker.tryAcquirePermission()) {
+				circuitOpenRejections.increment();
+				return (T) shortCircuit(key, "circuit breaker is open");
+			}
+			callsInProgress.incrementAndGet();
+			try {
+				T value = call.call();
+				circuitBreaker.onSuccess();
+				if (value != null) {
+					lastGoodValues.put(key, value);
+				}
+				return value;
+			} catch (AwsSdkException | RuntimeException e) {
+				circuitBreaker.onFailure();
+				throw e;
+			} finally {
+				// The SDK may not have released the request's permit if it failed before it was sent
+				AwsRequestPolicy.releaseThreadState();
+				callsInProgress.decrementAndGet();
+			}
+		} finally {
+			if (bulkhead != null) {
+				bulkhead.release();
+			}
+		}
+	}
+
+	/**
+	 * @return Current state of the bulkhead and circuit breaker
+	 */
+	AwsServiceStatus getStatus() {
+		return new AwsServiceStatus(service, circuitBreaker.getState(), circuitBreaker.getFailureRatePercent(),
+				callsInProgress.get(), circuitOpenRejections.sum(), bulkheadRejections.sum());
+	}
+
+	CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	long getCircuitOpenRejectionCount() {
+		return circuitOpenRejections.sum();
+	}
+
+	long getBulkheadRejectionCount() {
+		return bulkheadRejections.sum();
+	}
+
+	int getCallsInProgress() {
+		return callsInProgress.get();
+	}
+
+	private boolean tryEnterBulkhead() {
+		if (bulkhead == null) {
+			return true;
+		}
+		try {
+			return bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private Object shortCircuit(String key, String reason) throws AwsSdkException {
+		Object lastGoodValue = lastGoodValues.get(key);
+		if (lastGoodValue == null) {
+			throw new AwsSdkException("SDK call was short-circuited and there is no last known good value | service: ["
+					+ service + "] | key: [" + key + "] | reason: [" + reason + "]", true);
+		}
+		LOGGER.debug("SDK call was short-circuited, returning the last known good value | service: [{}] | key: [{}] | reason: [{}]",
+				service, key, reason);
+		return lastGoodValue;
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.jimtough.sbdaws.awssdk;
+
+/**
+ * Immutable copy of the state of the circuit breaker and bulkhead for one AWS service
+ *
+ * @author JTOUGH
+ */
+public final class AwsServiceStatus {
+
+	private final AwsService service;
+	private final CircuitBreaker.State circuitState;
+	private final int failureRatePercent;
+	private final int callsInProgress;
+	private final long circuitOpenRejectionCount;
+	private final long bulkheadRejectionCount;
+
+	public AwsServiceStatus(AwsService service, CircuitBreaker.State circuitState, int failureRatePercent,
+			int callsInProgress, long circuitOpenRejectionCount, long bulkheadRejectionCount) {
+		this.service = service;
+		this.circuitState = circuitState;
+		this.failureRatePercent = failureRatePercent;
+		this.callsInProgress = callsInProgress;
+		this.circuitOpenRejectionCount = circuitOpenRejectionCount;
+		this.bulkheadRejectionCount = bulkheadRejectionCount;
+	}
+
+	public AwsService getService() {
+		return service;
+	}
+
+	public CircuitBreaker.State getCircuitState() {
+		return circuitState;
+	}
+
+	/**
+	 * @return Percentage of the recent SDK calls that failed
+	 */
+	public int getFailureRatePercent() {
+		return failureRatePercent;
+	}
+
+	/**
+	 * @return Number of SDK calls to the service that are in progress right now
+	 */
+	public int getCallsInProgress() {
+		return callsInProgress;
+	}
+
+	/**
+	 * @return Number of calls that were short-circuited because the circuit breaker was open
+	 */
+	public long getCircuitOpenRejectionCount() {
+		return circuitOpenRejectionCount;
+	}
+
+	/**
+	 * @return Number of calls that were short-circuited because the bulkhead was full
+	 */
+	public long getBulkheadRejectionCount() {
+		return bulkheadRejectionCount;
+	}
+
+	/**
+	 * @return Number of calls that did not reach the SDK, for any reason
+	 */
+	public long getShortCircuitCount() {
+		return circuitOpenRejectionCount + bulkheadRejectionCount;
+	}
+
+	@Override
+	public String toString() {
+		return service + " " + circuitState + " (" + failureRatePercent + "% failed, "
+				+ getShortCircuitCount() + " short-circuited)";
+	}
+
+}
@@ -0,0 +1,177 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling an AWS service for a while after too many of the recent calls to it have failed.
+ *
+ * While CLOSED, the outcome of each call goes into a window of the most recent calls. Once the
+ * window holds at least the minimum number of calls and the failure rate reaches the threshold,
+ * the breaker OPENs and no calls are permitted. After the open duration, it goes HALF_OPEN and
+ * permits a few probe calls. If they all succeed the breaker closes, with an empty window.
+ * If any of them fails, it opens again.
+ *
+ * The SDK calls are slow and infrequent compared to the cost of a lock, so every method is
+ * simply synchronized.
+ *
+ * @author JTOUGH
+ */
+public final class CircuitBreaker {
+
+	/**
+	 * States of a circuit breaker. The ordinal is the value published in the metrics.
+	 */
+	public enum State {
+		CLOSED,
+		HALF_OPEN,
+		OPEN;
+	}
+
+	private final int minimumCalls;
+	private final int failureRateThresholdPercent;
+	private final long openNanos;
+	private final int halfOpenProbes;
+	private final LongSupplier nanoClock;
+
+	// Outcomes of the most recent calls while closed. True is a failure.
+	private final boolean[] window;
+	private int windowCount;
+	private int windowNext;
+	private int windowFailures;
+
+	private State state = State.CLOSED;
+	private long openedAtNanos;
+	private int probesStarted;
+	private int probesSucceeded;
+	private long openCount;
+
+	/**
+	 * @param windowSize Number of recent calls that the failure rate is calculated from
+	 * @param minimumCalls The breaker does not open until the window holds at least this many calls
+	 * @param failureRateThresholdPercent The breaker opens when this percentage of the calls in the window
+	 *        have failed. Zero or less disables the breaker, so that it never opens.
+	 * @param openMillis How long the breaker stays open before it permits probe calls
+	 * @param halfOpenProbes Number of probe calls that must succeed to close the breaker
+	 */
+	public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThresholdPercent, long openMillis,
+			int halfOpenProbes) {
+		this(windowSize, minimumCalls, failureRateThresholdPercent, openMillis, halfOpenProbes, System::nanoTime);
+	}
+
+	CircuitBreaker(int windowSize, int minimumCalls, int failureRateThresholdPercent, long openMillis,
+			int halfOpenProbes, LongSupplier nanoClock) {
+		if (nanoClock == null) {
+			throw new IllegalArgumentException("nanoClock cannot be null");
+		}
+		this.window = new boolean[Math.max(1, windowSize)];
+		this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+		this.failureRateThresholdPercent = failureRateThresholdPercent;
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openMillis));
+		this.halfOpenProbes = Math.max(1, halfOpenProbes);
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Must be called before each call. If it returns true, the outcome of the call must then
+	 * be reported with {@link #onSuccess()} or {@link #onFailure()}.
+	 *
+	 * @return True if the call may go ahead, false if it must be short-circuited
+	 */
+	public synchronized boolean tryAcquirePermission() {
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (nanoClock.getAsLong() - openedAtNanos < openNanos) {
+				return false;
+			}
+			state = State.HALF_OPEN;
+			probesStarted = 0;
+			probesSucceeded = 0;
+			// Fall through, this call is the first probe
+		default:
+			if (probesStarted >= halfOpenProbes) {
+				return false;
+			}
+			probesStarted++;
+			return true;
+		}
+	}
+
+	public synchronized void onSuccess() {
+		if (state == State.HALF_OPEN) {
+			probesSucceeded++;
+			if (probesSucceeded >= halfOpenProbes) {
+				close();
+			}
+		} else if (state == State.CLOSED) {
+			record(false);
+		}
+		// A call that was already in progress when the breaker opened changes nothing
+	}
+
+	public synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			open();
+		} else if (state == State.CLOSED) {
+			record(true);
+			if (failureRateThresholdPercent > 0 && windowCount >= minimumCalls
+					&& windowFailures * 100L >= (long) failureRateThresholdPercent * windowCount) {
+				open();
+			}
+		}
+	}
+
+	/**
+	 * An OPEN breaker whose open duration has passed is reported as OPEN until a call asks for permission
+	 *
+	 * @return Current state
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return Percentage of the calls in the window that failed, or 0 if the window is empty
+	 */
+	public synchronized int getFailureRatePercent() {
+		return windowCount == 0 ? 0 : (int) (windowFailures * 100L / windowCount);
+	}
+
+	/**
+	 * @return Number of times that the breaker has opened
+	 */
+	public synchronized long getOpenCount() {
+		return openCount;
+	}
+
+	private void record(boolean failure) {
+		if (windowCount == window.length) {
+			if (window[windowNext]) {
+				windowFailures--;
+			}
+		} else {
+			windowCount++;
+		}
+		window[windowNext] = failure;
+		if (failure) {
+			windowFailures++;
+		}
+		windowNext = (windowNext + 1) % window.length;
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAtNanos = nanoClock.getAsLong();
+		openCount++;
+	}
+
+	private void close() {
+		state = State.CLOSED;
+		windowCount = 0;
+		windowNext = 0;
+		windowFailures = 0;
+	}
+
+}
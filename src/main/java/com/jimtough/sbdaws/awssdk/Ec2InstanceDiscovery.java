@@ -0,0 +1,195 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ec2.EC2Client;
+import software.amazon.awssdk.services.ec2.model.DescribeInstanceStatusRequest;
+import software.amazon.awssdk.services.ec2.model.DescribeInstanceStatusResponse;
+import software.amazon.awssdk.services.ec2.model.DescribeInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.DescribeInstancesResponse;
+import software.amazon.awssdk.services.ec2.model.Instance;
+import software.amazon.awssdk.services.ec2.model.InstanceStatus;
+import software.amazon.awssdk.services.ec2.model.Reservation;
+import software.amazon.awssdk.services.ec2.model.Tag;
+
+/**
+ * Finds all EC2 instances in a region and the results of their status checks.
+ *
+ * Every page of the DescribeInstances results is read, and each instance is reduced to an
+ * {@code Ec2InstanceSummary} as soon as its page arrives, so the SDK objects of only one page are
+ * held at a time. The status checks are read at the same time, on the executor, from every page
+ * of the DescribeInstanceStatus results (with all instances included, not just the running ones).
+ * Both are read {@value #MAX_RESULTS_PER_REQUEST} instances per call (the EC2 API limit), so
+ * N instances take about N/500 calls in all, instead of one status call per instance or per
+ * small batch of IDs. The latency of each call is recorded in the {@code MetricsRegistry}.
+ *
+ * @author JTOUGH
+ */
+class Ec2InstanceDiscovery {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(Ec2InstanceDiscovery.class);
+
+	/**
+	 * The EC2 API returns at most this many instances in one DescribeInstances or DescribeInstanceStatus response
+	 */
+	static final int MAX_RESULTS_PER_REQUEST = 1000;
+
+	private final Executor statusExecutor;
+	private final OperationMetrics describeInstancesMetrics;
+	private final OperationMetrics describeInstanceStatusMetrics;
+
+	/**
+	 * Constructor
+	 * @param statusExecutor Reads the status checks while the instances are listed. Should be bounded.
+	 * @param metricsRegistry Records the latency of each SDK call
+	 */
+	Ec2InstanceDiscovery(Executor statusExecutor, MetricsRegistry metricsRegistry) {
+		if (statusExecutor == null) {
+			throw new IllegalArgumentException("statusExecutor cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.statusExecutor = statusExecutor;
+		this.describeInstancesMetrics = metricsRegistry.operation("aws.ec2.describeInstances");
+		this.describeInstanceStatusMetrics = metricsRegistry.operation("aws.ec2.describeInstanceStatus");
+	}
+
+	/**
+	 * @param ec2Client Client for the region to search
+	 * @param region The region that the client is for
+	 * @return Every instance in the region, with the results of its status checks where known
+	 * @throws RuntimeException Thrown if any of the SDK calls fail
+	 */
+	Ec2InstanceInventory discover(EC2Client ec2Client, Region region) {
+		CompletableFuture<Map<String, String[]>> statuses =
+				CompletableFuture.supplyAsync(() -> describeStatuses(ec2Client), statusExecutor);
+		List<Ec2InstanceSummary> instances;
+		try {
+			instances = describeInstances(ec2Client);
+		} catch (RuntimeException e) {
+			statuses.cancel(false);
+			throw e;
+		}
+
+		Map<String, String[]> statusById;
+		try {
+			statusById = statuses.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+		for (int i = 0; i < instances.size(); i++) {
+			String[] status = statusById.get(instances.get(i).getInstanceId());
+			if (status != null) {
+				instances.set(i, instances.get(i).withStatus(status[0], status[1]));
+			}
+		}
+		LOGGER.debug("My AWS account has {} EC2 instances in region {}", instances.size(), region.value());
+		return new Ec2InstanceInventory(region, instances, System.currentTimeMillis());
+	}
+
+	private List<Ec2InstanceSummary> describeInstances(EC2Client ec2Client) {
+		List<Ec2InstanceSummary> instances = new ArrayList<>();
+		String nextToken = null;
+		int pageCount = 0;
+		do {
+			DescribeInstancesRequest request = DescribeInstancesRequest.builder()
+					.maxResults(MAX_RESULTS_PER_REQUEST)
+					.nextToken(nextToken)
+					.build();
+			long startNanos = System.nanoTime();
+			DescribeInstancesResponse response;
+			try {
+				response = ec2Client.describeInstances(request);
+			} catch (RuntimeException e) {
+				describeInstancesMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+				throw e;
+			}
+			describeInstancesMetrics.recordSuccess(System.nanoTime() - startNanos);
+			pageCount++;
+			if (response.reservations() != null) {
+				for (Reservation reservation : response.reservations()) {
+					if (reservation.instances() != null) {
+						for (Instance instance : reservation.instances()) {
+							instances.add(summarize(instance));
+						}
+					}
+				}
+			}
+			nextToken = response.nextToken();
+		} while (nextToken != null && !nextToken.isEmpty());
+		LOGGER.debug("Listed EC2 instances | pages: {} | instances: {}", pageCount, instances.size());
+		return instances;
+	}
+
+	/**
+	 * @return The instance and system status of each instance, by instance ID
+	 */
+	private Map<String, String[]> describeStatuses(EC2Client ec2Client) {
+		Map<String, String[]> statusById = new HashMap<>();
+		String nextToken = null;
+		do {
+			DescribeInstanceStatusRequest request = DescribeInstanceStatusRequest.builder()
+					.includeAllInstances(Boolean.TRUE)
+					.maxResults(MAX_RESULTS_PER_REQUEST)
+					.nextToken(nextToken)
+					.build();
+			long startNanos = System.nanoTime();
+			DescribeInstanceStatusResponse response;
+			try {
+				response = ec2Client.describeInstanceStatus(request);
+			} catch (RuntimeException e) {
+				describeInstanceStatusMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+				throw e;
+			}
+			describeInstanceStatusMetrics.recordSuccess(System.nanoTime() - startNanos);
+			if (response.instanceStatuses() != null) {
+				for (InstanceStatus status : response.instanceStatuses()) {
+					statusById.put(status.instanceId(), new String[] {
+							status.instanceStatus() == null ? null : status.instanceStatus().status(),
+							status.systemStatus() == null ? null : status.systemStatus().status() });
+				}
+			}
+			nextToken = response.nextToken();
+		} while (nextToken != null && !nextToken.isEmpty());
+		return statusById;
+	}
+
+	private static Ec2InstanceSummary summarize(Instance instance) {
+		Map<String, String> tags = null;
+		if (instance.tags() != null && !instance.tags().isEmpty()) {
+			tags = new LinkedHashMap<>();
+			for (Tag tag : instance.tags()) {
+				tags.put(tag.key(), tag.value());
+			}
+		}
+		return new Ec2InstanceSummary(
+				instance.instanceId(),
+				instance.instanceType() == null ? null : String.valueOf(instance.instanceType()),
+				instance.placement() == null ? null : instance.placement().availabilityZone(),
+				instance.state() == null ? "unknown" : String.valueOf(instance.state().name()),
+				null,
+				null,
+				instance.launchTime() == null ? 0 : instance.launchTime().getTime(),
+				instance.privateIpAddress(),
+				tags);
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Every EC2 instance in a region, sorted by instance ID, with an index by state.
+ *
+ * The inventory is read one page at a time with {@link #find(Ec2InstanceQuery)}. The state and
+ * tag filters are applied to the instances in memory, so filtering never calls AWS again. The
+ * cursor of a page is the ID of its last instance, so the next page starts in the right place
+ * even if the inventory has been refreshed in between.
+ *
+ * @author JTOUGH
+ */
+public final class Ec2InstanceInventory {
+
+	private static final int[] NO_POSITIONS = new int[0];
+
+	private final Region region;
+	private final List<Ec2InstanceSummary> instances;
+	// Positions in the instance list of the instances in each state, in order
+	private final Map<String, int[]> positionsByState;
+	private final long collectedEpochMillis;
+
+	/**
+	 * @param region Region that the instances are in
+	 * @param instances Instances of the region, in any order
+	 * @param collectedEpochMillis When the instances were retrieved
+	 */
+	public Ec2InstanceInventory(Region region, List<Ec2InstanceSummary> instances, long collectedEpochMillis) {
+		if (region == null) {
+			throw new IllegalArgumentException("region cannot be null");
+		}
+		if (instances == null) {
+			throw new IllegalArgumentException("instances cannot be null");
+		}
+		List<Ec2InstanceSummary> sorted = new ArrayList<>(instances);
+		sorted.sort(Comparator.comparing(Ec2InstanceSummary::getInstanceId));
+		this.region = region;
+		this.instances = Collections.unmodifiableList(sorted);
+		this.positionsByState = indexByState(sorted);
+		this.collectedEpochMillis = collectedEpochMillis;
+	}
+
+	private static Map<String, int[]> indexByState(List<Ec2InstanceSummary> sorted) {
+		Map<String, List<Integer>> positionLists = new HashMap<>();
+		for (int i = 0; i < sorted.size(); i++) {
+			positionLists.computeIfAbsent(sorted.get(i).getState(), state -> new ArrayList<>()).add(i);
+		}
+		Map<String, int[]> positions = new HashMap<>();
+		for (Map.Entry<String, List<Integer>> entry : positionLists.entrySet()) {
+			positions.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+		}
+		return positions;
+	}
+
+	public Region getRegion() {
+		return region;
+	}
+
+	/**
+	 * @return Unmodifiable list of every instance, sorted by instance ID
+	 */
+	public List<Ec2InstanceSummary> getInstances() {
+		return instances;
+	}
+
+	/**
+	 * @return Number of instances in every state
+	 */
+	public int size() {
+		return instances.size();
+	}
+
+	/**
+	 * @return When the instances were retrieved
+	 */
+	public long getCollectedEpochMillis() {
+		return collectedEpochMillis;
+	}
+
+	/**
+	 * @return Number of instances in each state, sorted by state name
+	 */
+	public Map<String, Integer> getStateCounts() {
+		Map<String, Integer> counts = new TreeMap<>();
+		for (Map.Entry<String, int[]> entry : positionsByState.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().length);
+		}
+		return counts;
+	}
+
+	/**
+	 * @param query State and tag filters, page size and cursor
+	 * @return The instances after the cursor that match the filters, up to the page size
+	 */
+	public Ec2InstancePage find(Ec2InstanceQuery query) {
+		int[] statePositions = null;
+		if (query.getState() != null) {
+			statePositions = positionsByState.getOrDefault(query.getState(), NO_POSITIONS);
+		}
+		int candidateCount = statePositions == null ? instances.size() : statePositions.length;
+		int candidate = query.getCursor() == null ? 0 : firstCandidateAfter(query.getCursor(), statePositions);
+
+		List<Ec2InstanceSummary> page = new ArrayList<>(Math.min(query.getPageSize(), candidateCount));
+		for (; candidate < candidateCount; candidate++) {
+			Ec2InstanceSummary instance = instances.get(statePositions == null ? candidate : statePositions[candidate]);
+			if (!query.matches(instance)) {
+				continue;
+			}
+			if (page.size() == query.getPageSize()) {
+				// There is at least one more match, so there is a next page
+				return new Ec2InstancePage(page, page.get(page.size() - 1).getInstanceId());
+			}
+			page.add(instance);
+		}
+		return new Ec2InstancePage(page, null);
+	}
+
+	/**
+	 * @return Index (in the state positions, if not null) of the first instance whose ID is after the cursor
+	 */
+	private int firstCandidateAfter(String cursor, int[] statePositions) {
+		int low = 0;
+		int high = statePositions == null ? instances.size() : statePositions.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			String instanceId = instances.get(statePositions == null ? middle : statePositions[middle]).getInstanceId();
+			if (instanceId.compareTo(cursor) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public String toString() {
+		return "Ec2InstanceInventory [region=" + region.value() + ", instances=" + instances.size()
+				+ ", states=" + getStateCounts() + "]";
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the EC2 instance inventory
+ *
+ * @author JTOUGH
+ */
+public final class Ec2InstancePage {
+
+	private final List<Ec2InstanceSummary> instances;
+	private final String nextCursor;
+
+	Ec2InstancePage(List<Ec2InstanceSummary> instances, String nextCursor) {
+		this.instances = Collections.unmodifiableList(instances);
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * @return Instances in this page, by instance ID
+	 */
+	public List<Ec2InstanceSummary> getInstances() {
+		return instances;
+	}
+
+	/**
+	 * @return Cursor for the next page, or null if this is the last page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+}
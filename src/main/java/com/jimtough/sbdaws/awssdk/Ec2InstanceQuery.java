@@ -0,0 +1,77 @@
+package com.jimtough.sbdaws.awssdk;
+
+/**
+ * Immutable request for one page of the EC2 instance inventory
+ *
+ * @author JTOUGH
+ */
+public final class Ec2InstanceQuery {
+
+	private final String state;
+	private final String tagKey;
+	private final String tagValue;
+	private final int pageSize;
+	private final String cursor;
+
+	/**
+	 * @param state Only include instances in this state (such as "running"), or null for every state
+	 * @param tagKey Only include instances with this tag, or null for every instance
+	 * @param tagValue Only include instances whose tag has this value, or null for any value.
+	 *        Ignored if there is no tag key.
+	 * @param pageSize Maximum number of instances in the page
+	 * @param cursor Cursor returned with the previous page, or null for the first page
+	 */
+	public Ec2InstanceQuery(String state, String tagKey, String tagValue, int pageSize, String cursor) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be at least 1");
+		}
+		this.state = state;
+		this.tagKey = tagKey;
+		this.tagValue = tagKey == null ? null : tagValue;
+		this.pageSize = pageSize;
+		this.cursor = cursor;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public String getTagKey() {
+		return tagKey;
+	}
+
+	public String getTagValue() {
+		return tagValue;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * @param nextCursor Cursor returned with the previous page
+	 * @return Query for the page after the previous one
+	 */
+	public Ec2InstanceQuery withCursor(String nextCursor) {
+		return new Ec2InstanceQuery(state, tagKey, tagValue, pageSize, nextCursor);
+	}
+
+	/**
+	 * @return True if the instance passes the state and tag filters
+	 */
+	boolean matches(Ec2InstanceSummary instance) {
+		if (state != null && !state.equals(instance.getState())) {
+			return false;
+		}
+		if (tagKey == null) {
+			return true;
+		}
+		String value = instance.getTags().get(tagKey);
+		return value != null && (tagValue == null || tagValue.equals(value));
+	}
+
+}
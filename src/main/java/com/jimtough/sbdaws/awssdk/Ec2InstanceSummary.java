@@ -0,0 +1,120 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The details of one EC2 instance that this app shows.
+ *
+ * Only these few fields are kept, rather than the SDK {@code Instance} objects, so that the
+ * inventory of a few thousand instances stays small.
+ *
+ * @author JTOUGH
+ */
+public final class Ec2InstanceSummary {
+
+	private final String instanceId;
+	private final String instanceType;
+	private final String availabilityZone;
+	private final String state;
+	private final String instanceStatus;
+	private final String systemStatus;
+	private final long launchEpochMillis;
+	private final String privateIpAddress;
+	private final Map<String, String> tags;
+
+	/**
+	 * Constructor
+	 * @param instanceId Non-null instance ID
+	 * @param instanceType Instance type, such as "t2.micro"
+	 * @param availabilityZone Availability zone, such as "us-east-1a"
+	 * @param state Non-null instance state, such as "running"
+	 * @param instanceStatus Result of the instance status checks, or null if not known
+	 * @param systemStatus Result of the system status checks, or null if not known
+	 * @param launchEpochMillis Time that the instance was launched, or 0 if not known
+	 * @param privateIpAddress Private IP address, or null if it has none
+	 * @param tags Tags of the instance, by key
+	 */
+	public Ec2InstanceSummary(String instanceId, String instanceType, String availabilityZone, String state,
+			String instanceStatus, String systemStatus, long launchEpochMillis, String privateIpAddress,
+			Map<String, String> tags) {
+		if (instanceId == null) {
+			throw new IllegalArgumentException("instanceId cannot be null");
+		}
+		if (state == null) {
+			throw new IllegalArgumentException("state cannot be null");
+		}
+		this.instanceId = instanceId;
+		this.instanceType = instanceType;
+		this.availabilityZone = availabilityZone;
+		this.state = state;
+		this.instanceStatus = instanceStatus;
+		this.systemStatus = systemStatus;
+		this.launchEpochMillis = launchEpochMillis;
+		this.privateIpAddress = privateIpAddress;
+		this.tags = tags == null || tags.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(tags);
+	}
+
+	/**
+	 * @return Copy of this summary with the results of the status checks
+	 */
+	Ec2InstanceSummary withStatus(String instanceStatus, String systemStatus) {
+		return new Ec2InstanceSummary(instanceId, instanceType, availabilityZone, state, instanceStatus,
+				systemStatus, launchEpochMillis, privateIpAddress, tags);
+	}
+
+	public String getInstanceId() {
+		return instanceId;
+	}
+
+	public String getInstanceType() {
+		return instanceType;
+	}
+
+	public String getAvailabilityZone() {
+		return availabilityZone;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	/**
+	 * @return Result of the instance status checks ("ok", "impaired", ...), or null if not known
+	 */
+	public String getInstanceStatus() {
+		return instanceStatus;
+	}
+
+	/**
+	 * @return Result of the system status checks ("ok", "impaired", ...), or null if not known
+	 */
+	public String getSystemStatus() {
+		return systemStatus;
+	}
+
+	/**
+	 * @return Time that the instance was launched, or 0 if not known
+	 */
+	public long getLaunchEpochMillis() {
+		return launchEpochMillis;
+	}
+
+	public String getPrivateIpAddress() {
+		return privateIpAddress;
+	}
+
+	/**
+	 * @return Non-null, unmodifiable map of the tags
+	 */
+	public Map<String, String> getTags() {
+		return tags;
+	}
+
+	@Override
+	public String toString() {
+		return "Ec2InstanceSummary [instanceId=" + instanceId + ", state=" + state
+				+ ", instanceStatus=" + instanceStatus + "]";
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+import software.amazon.awssdk.services.ecs.ECSClient;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.ecs.model.DescribeClustersRequest;
+import software.amazon.awssdk.services.ecs.model.DescribeClustersResponse;
+import software.amazon.awssdk.services.ecs.model.Failure;
+import software.amazon.awssdk.services.ecs.model.ListClustersRequest;
+import software.amazon.awssdk.services.ecs.model.ListClustersResponse;
+
+/**
+ * Finds all ECS clusters in a region and retrieves their details.
+ *
+ * Every page of the ListClusters results is read. The cluster ARNs are described in batches
+ * of up to {@value #MAX_CLUSTERS_PER_DESCRIBE_REQUEST} (the ECS API limit), and each batch
+ * is submitted to the executor as soon as it is full, so describing overlaps with listing.
+ * For N clusters this makes roughly N/100 ListClusters calls plus N/100 DescribeClusters calls,
+ * instead of one DescribeClusters call per cluster. The latency of each call is recorded
+ * in the {@code MetricsRegistry}.
+ *
+ * @author JTOUGH
+ */
+class EcsClusterDiscovery {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EcsClusterDiscovery.class);
+
+	/**
+	 * The ECS API accepts at most this many clusters in one DescribeClusters request
+	 */
+	static final int MAX_CLUSTERS_PER_DESCRIBE_REQUEST = 100;
+	/**
+	 * The ECS API returns at most this many cluster ARNs in one ListClusters response
+	 */
+	static final int MAX_RESULTS_PER_LIST_REQUEST = 100;
+
+	private final Executor describeExecutor;
+	private final OperationMetrics listClustersMetrics;
+	private final OperationMetrics describeClustersMetrics;
+
+	/**
+	 * Constructor
+	 * @param describeExecutor Runs the DescribeClusters batches. Should be bounded.
+	 * @param metricsRegistry Records the latency of each SDK call
+	 */
+	EcsClusterDiscovery(Executor describeExecutor, MetricsRegistry metricsRegistry) {
+		if (describeExecutor == null) {
+			throw new IllegalArgumentException("describeExecutor cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.describeExecutor = describeExecutor;
+		this.listClustersMetrics = metricsRegistry.operation("aws.ecs.listClusters");
+		this.describeClustersMetrics = metricsRegistry.operation("aws.ecs.describeClusters");
+	}
+
+	/**
+	 * @param ecsClient Client for the region to search
+	 * @return Non-null (possibly empty) list of clusters, in the order that ListClusters returned them
+	 * @throws RuntimeException Thrown if any of the SDK calls fail
+	 */
+	List<Cluster> discover(ECSClient ecsClient) {
+		List<CompletableFuture<List<Cluster>>> describeBatches = new ArrayList<>();
+		List<String> pendingArns = new ArrayList<>(MAX_CLUSTERS_PER_DESCRIBE_REQUEST);
+		String nextToken = null;
+		int listPageCount = 0;
+		do {
+			ListClustersRequest request = ListClustersRequest.builder()
+					.maxResults(MAX_RESULTS_PER_LIST_REQUEST)
+					.nextToken(nextToken)
+					.build();
+			long startNanos = System.nanoTime();
+			ListClustersResponse response;
+			try {
+				response = ecsClient.listClusters(request);
+			} catch (RuntimeException e) {
+				listClustersMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+				throw e;
+			}
+			listClustersMetrics.recordSuccess(System.nanoTime() - startNanos);
+			listPageCount++;
+			List<String> clusterArns = response.clusterArns();
+			if (clusterArns != null) {
+				for (String clusterArn : clusterArns) {
+					pendingArns.add(clusterArn);
+					if (pendingArns.size() == MAX_CLUSTERS_PER_DESCRIBE_REQUEST) {
+						describeBatches.add(submitDescribe(ecsClient, pendingArns));
+						pendingArns = new ArrayList<>(MAX_CLUSTERS_PER_DESCRIBE_REQUEST);
+					}
+				}
+			}
+			nextToken = response.nextToken();
+		} while (nextToken != null && !nextToken.isEmpty());
+		if (!pendingArns.isEmpty()) {
+			describeBatches.add(submitDescribe(ecsClient, pendingArns));
+		}
+		LOGGER.debug("Listed ECS clusters | list pages: {} | describe batches: {}",
+				listPageCount, describeBatches.size());
+		if (describeBatches.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<Cluster> clusterList = new ArrayList<>();
+		try {
+			for (CompletableFuture<List<Cluster>> batch : describeBatches) {
+				clusterList.addAll(batch.join());
+			}
+		} catch (CompletionException e) {
+			// Don't bother waiting for the rest of the batches
+			describeBatches.forEach(batch -> batch.cancel(false));
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+		LOGGER.debug("My AWS account has {} ECS clusters defined", clusterList.size());
+		return clusterList;
+	}
+
+	private CompletableFuture<List<Cluster>> submitDescribe(ECSClient ecsClient, List<String> clusterArns) {
+		return CompletableFuture.supplyAsync(() -> describe(ecsClient, clusterArns), describeExecutor);
+	}
+
+	private List<Cluster> describe(ECSClient ecsClient, List<String> clusterArns) {
+		DescribeClustersRequest request = DescribeClustersRequest.builder().clusters(clusterArns).build();
+		long startNanos = System.nanoTime();
+		DescribeClustersResponse response;
+		try {
+			response = ecsClient.describeClusters(request);
+		} catch (RuntimeException e) {
+			describeClustersMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw e;
+		}
+		describeClustersMetrics.recordSuccess(System.nanoTime() - startNanos);
+		List<Failure> failures = response.failures();
+		if (failures != null) {
+			for (Failure failure : failures) {
+				LOGGER.warn("Unable to describe ECS cluster | arn: [{}] | reason: [{}]",
+						failure.arn(), failure.reason());
+			}
+		}
+		List<Cluster> clusters = response.clusters();
+		if (clusters == null) {
+			return Collections.emptyList();
+		}
+		if (LOGGER.isDebugEnabled()) {
+			for (Cluster cluster : clusters) {
+				LOGGER.debug("   DETAILS | name: {} | arn: {} | containers: {} | services: {} | tasks: {}",
+						cluster.clusterName(),
+						cluster.clusterArn(),
+						cluster.registeredContainerInstancesCount(),
+						cluster.activeServicesCount(),
+						cluster.runningTasksCount());
+			}
+		}
+		return clusters;
+	}
+
+}
@@ -0,0 +1,143 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+
+/**
+ * The ECS clusters in every target region, merged into one list, with each cluster tagged with
+ * its region. Regions that could not be queried are listed separately, so one failed region does
+ * not hide the clusters in the others.
+ *
+ * Two inventories are equal if they have the same clusters in the same order and the same failed
+ * regions. The failure messages are not compared.
+ *
+ * @author JTOUGH
+ */
+public final class EcsClusterInventory {
+
+	private final List<Region> regions;
+	private final List<RegionalCluster> clusters;
+	private final Map<String, String> failedRegions;
+
+	/**
+	 * @param regions Every region that was queried, in order
+	 * @param clusters Clusters of the regions that were queried successfully, in region order
+	 * @param failedRegions Failure message for each region that could not be queried, by region name
+	 */
+	public EcsClusterInventory(List<Region> regions, List<RegionalCluster> clusters, Map<String, String> failedRegions) {
+		if (regions == null) {
+			throw new IllegalArgumentException("regions cannot be null");
+		}
+		if (clusters == null) {
+			throw new IllegalArgumentException("clusters cannot be null");
+		}
+		if (failedRegions == null) {
+			throw new IllegalArgumentException("failedRegions cannot be null");
+		}
+		this.regions = Collections.unmodifiableList(regions);
+		this.clusters = Collections.unmodifiableList(clusters);
+		this.failedRegions = Collections.unmodifiableMap(failedRegions);
+	}
+
+	/**
+	 * @return Every region that was queried, in order
+	 */
+	public List<Region> getRegions() {
+		return regions;
+	}
+
+	/**
+	 * @return Non-null (possibly empty) list of the clusters in every region that was queried successfully
+	 */
+	public List<RegionalCluster> getClusters() {
+		return clusters;
+	}
+
+	/**
+	 * @return Failure message for each region that could not be queried, by region name, in region order
+	 */
+	public Map<String, String> getFailedRegions() {
+		return failedRegions;
+	}
+
+	/**
+	 * @return True if every region was queried successfully
+	 */
+	public boolean isComplete() {
+		return failedRegions.isEmpty();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof EcsClusterInventory)) {
+			return false;
+		}
+		EcsClusterInventory other = (EcsClusterInventory) o;
+		return clusters.equals(other.clusters) && failedRegions.keySet().equals(other.failedRegions.keySet());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(clusters, failedRegions.keySet());
+	}
+
+	@Override
+	public String toString() {
+		return "EcsClusterInventory [regions=" + regions.size() + ", clusters=" + clusters.size()
+				+ ", failedRegions=" + failedRegions.keySet() + "]";
+	}
+
+	/**
+	 * An ECS cluster and the region that it is in
+	 */
+	public static final class RegionalCluster {
+
+		private final Region region;
+		private final Cluster cluster;
+
+		public RegionalCluster(Region region, Cluster cluster) {
+			if (region == null) {
+				throw new IllegalArgumentException("region cannot be null");
+			}
+			if (cluster == null) {
+				throw new IllegalArgumentException("cluster cannot be null");
+			}
+			this.region = region;
+			this.cluster = cluster;
+		}
+
+		public Region getRegion() {
+			return region;
+		}
+
+		public Cluster getCluster() {
+			return cluster;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof RegionalCluster)) {
+				return false;
+			}
+			RegionalCluster other = (RegionalCluster) o;
+			return region.value().equals(other.region.value()) && cluster.equals(other.cluster);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(region.value(), cluster);
+		}
+	}
+
+}
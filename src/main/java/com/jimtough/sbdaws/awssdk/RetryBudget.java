@@ -0,0 +1,72 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a percentage of the requests made to one AWS client, so that retries cannot
+ * multiply the load on a service that is already failing.
+ *
+ * Each request deposits a fraction of a token (the percentage), and each retry takes a whole token.
+ * The budget starts full, so that a quiet client can still retry a few requests. When it is
+ * empty, a failed request is not retried.
+ *
+ * @author JTOUGH
+ */
+final class RetryBudget {
+
+	// Tokens are counted in thousandths, so that a deposit can be a fraction of a token
+	private static final long TOKEN = 1000;
+
+	private final long deposit;
+	private final long maxBalance;
+	private final AtomicLong balance;
+	private final AtomicLong exhaustedCount = new AtomicLong();
+
+	/**
+	 * @param percent Retries permitted for every 100 requests
+	 * @param maxRetries Most retries that can be saved up, and the number available at the start
+	 */
+	RetryBudget(int percent, int maxRetries) {
+		this.deposit = TOKEN * Math.max(0, percent) / 100;
+		this.maxBalance = TOKEN * Math.max(0, maxRetries);
+		this.balance = new AtomicLong(maxBalance);
+	}
+
+	/**
+	 * Must be called once for each request, but not for its retries
+	 */
+	void onRequest() {
+		balance.accumulateAndGet(deposit, (current, amount) -> Math.min(maxBalance, current + amount));
+	}
+
+	/**
+	 * @return True if a retry may be made, in which case it has been paid for
+	 */
+	boolean tryRetry() {
+		while (true) {
+			long current = balance.get();
+			if (current < TOKEN) {
+				exhaustedCount.incrementAndGet();
+				return false;
+			}
+			if (balance.compareAndSet(current, current - TOKEN)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return Number of whole retries available
+	 */
+	long getAvailableRetries() {
+		return balance.get() / TOKEN;
+	}
+
+	/**
+	 * @return Number of retries that were not made because the budget was empty
+	 */
+	long getExhaustedCount() {
+		return exhaustedCount.get();
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.jimtough.sbdaws.awssdk;
+
+/**
+ * Object count and total size of one S3 bucket, added up from every page of its object listing
+ *
+ * @author JTOUGH
+ */
+public final class S3BucketStatistics {
+
+	private final String bucketName;
+	private final String region;
+	private final long objectCount;
+	private final long totalBytes;
+	private final long listPageCount;
+	private final long collectedEpochMillis;
+	private final long durationMillis;
+
+	/**
+	 * @param bucketName Name of the bucket
+	 * @param region Region that the bucket is in
+	 * @param objectCount Number of objects in the bucket
+	 * @param totalBytes Sum of the sizes of the objects
+	 * @param listPageCount Number of ListObjectsV2 pages that were read
+	 * @param collectedEpochMillis When the listing finished
+	 * @param durationMillis How long the listing took
+	 */
+	public S3BucketStatistics(String bucketName, String region, long objectCount, long totalBytes,
+			long listPageCount, long collectedEpochMillis, long durationMillis) {
+		if (bucketName == null) {
+			throw new IllegalArgumentException("bucketName cannot be null");
+		}
+		this.bucketName = bucketName;
+		this.region = region;
+		this.objectCount = objectCount;
+		this.totalBytes = totalBytes;
+		this.listPageCount = listPageCount;
+		this.collectedEpochMillis = collectedEpochMillis;
+		this.durationMillis = durationMillis;
+	}
+
+	public String getBucketName() {
+		return bucketName;
+	}
+
+	/**
+	 * @return Region that the bucket is in, such as "us-east-1"
+	 */
+	public String getRegion() {
+		return region;
+	}
+
+	public long getObjectCount() {
+		return objectCount;
+	}
+
+	/**
+	 * @return Sum of the sizes of the objects in the bucket
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return Number of ListObjectsV2 pages that were read
+	 */
+	public long getListPageCount() {
+		return listPageCount;
+	}
+
+	/**
+	 * @return When the listing of the bucket finished
+	 */
+	public long getCollectedEpochMillis() {
+		return collectedEpochMillis;
+	}
+
+	/**
+	 * @return How long the listing of the bucket took, from the first page to the last
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "S3BucketStatistics [bucketName=" + bucketName + ", region=" + region + ", objectCount=" + objectCount
+				+ ", totalBytes=" + totalBytes + ", listPageCount=" + listPageCount + "]";
+	}
+
+}
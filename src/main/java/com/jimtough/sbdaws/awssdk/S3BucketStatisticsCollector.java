@@ -0,0 +1,262 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetBucketLocationRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Counts the objects in S3 buckets and adds up their sizes.
+ *
+ * Every page of the ListObjectsV2 results is read, and only the running totals are kept, so the
+ * memory used does not depend on the number of objects in a bucket. Each bucket is listed with a
+ * client for the region that it is in, which is looked up once with GetBucketLocation.
+ *
+ * Each bucket can be split into shards at a list of keys, and the shards are listed in parallel.
+ * Shard N holds the keys after split key N-1, up to and including split key N, so the shards
+ * cover every key exactly once whatever the keys look like. A shard is listed from its lower
+ * bound with StartAfter, and stops at the first key past its upper bound.
+ *
+ * Every listing and lookup runs on the executor, so its size limits the number of SDK calls in
+ * progress at the same time. None of the tasks wait for each other, so a small executor cannot
+ * deadlock. A bucket with a failed shard is reported as failed, and its other shards stop early.
+ *
+ * @author JTOUGH
+ */
+class S3BucketStatisticsCollector {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(S3BucketStatisticsCollector.class);
+
+	// GetBucketLocation returns these for the buckets in the two oldest regions
+	private static final String US_EAST_1_LOCATION = "";
+	private static final String LEGACY_EU_LOCATION = "EU";
+
+	private final Executor listExecutor;
+	private final List<String> shardSplitKeys;
+	private final int maxKeysPerPage;
+	private final OperationMetrics listObjectsMetrics;
+	private final OperationMetrics getBucketLocationMetrics;
+	// The region of a bucket never changes, so each one is looked up once
+	private final ConcurrentMap<String, Region> bucketRegions = new ConcurrentHashMap<>();
+
+	/**
+	 * Running totals for one bucket, which every shard of the bucket adds to
+	 */
+	private static final class BucketTally {
+		private final LongAdder objectCount = new LongAdder();
+		private final LongAdder totalBytes = new LongAdder();
+		private final LongAdder pageCount = new LongAdder();
+		// Set when a shard fails, so that the other shards stop
+		private volatile boolean abandoned;
+	}
+
+	/**
+	 * Constructor
+	 * @param listExecutor Runs the listings and lookups. Should be bounded.
+	 * @param shardSplitKeys Keys at which each bucket is split into shards. Empty to list each bucket in one piece.
+	 * @param maxKeysPerPage Number of objects in each page. Zero or less for the S3 default.
+	 * @param metricsRegistry Records the latency of each SDK call
+	 */
+	S3BucketStatisticsCollector(Executor listExecutor, Collection<String> shardSplitKeys, int maxKeysPerPage,
+			MetricsRegistry metricsRegistry) {
+		if (listExecutor == null) {
+			throw new IllegalArgumentException("listExecutor cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.listExecutor = listExecutor;
+		List<String> sortedKeys = new ArrayList<>(shardSplitKeys == null ? Collections.emptyList() : shardSplitKeys);
+		// The shards must be in the order that S3 lists the keys in
+		sortedKeys.sort(S3BucketStatisticsCollector::compareKeys);
+		this.shardSplitKeys = Collections.unmodifiableList(sortedKeys);
+		this.maxKeysPerPage = maxKeysPerPage;
+		this.listObjectsMetrics = metricsRegistry.operation("aws.s3.listObjectsV2");
+		this.getBucketLocationMetrics = metricsRegistry.operation("aws.s3.getBucketLocation");
+	}
+
+	/**
+	 * @param bucketNames Buckets to collect the statistics of
+	 * @param locationClient Client that the bucket locations are looked up with
+	 * @param regionalClients Returns the client for a region
+	 * @return Statistics of the buckets that were listed, and the failures of the others
+	 * @throws InterruptedException Thrown if interrupted while waiting for the listings
+	 */
+	S3BucketStatisticsReport collect(List<String> bucketNames, S3Client locationClient,
+			Function<Region, S3Client> regionalClients) throws InterruptedException {
+		List<CompletableFuture<S3BucketStatistics>> futures = new ArrayList<>(bucketNames.size());
+		for (String bucketName : bucketNames) {
+			futures.add(collectBucket(bucketName, locationClient, regionalClients));
+		}
+
+		List<S3BucketStatistics> buckets = new ArrayList<>(bucketNames.size());
+		Map<String, String> failedBuckets = new LinkedHashMap<>();
+		for (int i = 0; i < bucketNames.size(); i++) {
+			try {
+				buckets.add(futures.get(i).get());
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+						? e.getCause().getCause() : e.getCause();
+				failedBuckets.put(bucketNames.get(i), String.valueOf(cause.getMessage()));
+				LOGGER.warn("Unable to collect S3 bucket statistics | bucket: [{}] | reason: [{}]",
+						bucketNames.get(i), cause.toString());
+			} catch (InterruptedException e) {
+				for (CompletableFuture<S3BucketStatistics> future : futures) {
+					future.cancel(true);
+				}
+				throw e;
+			}
+		}
+		// Forget the regions of buckets that no longer exist
+		bucketRegions.keySet().retainAll(bucketNames);
+		return new S3BucketStatisticsReport(buckets, failedBuckets, System.currentTimeMillis());
+	}
+
+	/**
+	 * Compares two keys in the order that S3 lists them in, which is the order of their UTF-8 bytes.
+	 * That is the same as the order of their code points, but not always the same as {@code String.compareTo}.
+	 */
+	static int compareKeys(String a, String b) {
+		int i = 0;
+		int j = 0;
+		while (i < a.length() && j < b.length()) {
+			int codePointA = a.codePointAt(i);
+			int codePointB = b.codePointAt(j);
+			if (codePointA != codePointB) {
+				return Integer.compare(codePointA, codePointB);
+			}
+			i += Character.charCount(codePointA);
+			j += Character.charCount(codePointB);
+		}
+		return Integer.compare(a.length() - i, b.length() - j);
+	}
+
+	private CompletableFuture<S3BucketStatistics> collectBucket(String bucketName, S3Client locationClient,
+			Function<Region, S3Client> regionalClients) {
+		long startNanos = System.nanoTime();
+		return CompletableFuture.supplyAsync(() -> findRegion(bucketName, locationClient), listExecutor)
+				.thenCompose(region -> {
+					S3Client client = regionalClients.apply(region);
+					BucketTally tally = new BucketTally();
+					List<CompletableFuture<Void>> shards = new ArrayList<>(shardSplitKeys.size() + 1);
+					for (int i = 0; i <= shardSplitKeys.size(); i++) {
+						String startAfter = i == 0 ? null : shardSplitKeys.get(i - 1);
+						String lastKey = i == shardSplitKeys.size() ? null : shardSplitKeys.get(i);
+						shards.add(CompletableFuture.runAsync(
+								() -> listShard(client, bucketName, startAfter, lastKey, tally), listExecutor));
+					}
+					return CompletableFuture.allOf(shards.toArray(new CompletableFuture<?>[shards.size()]))
+							.thenApply(ignored -> {
+								long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+								LOGGER.debug("S3 bucket statistics collected | bucket: [{}] | objects: [{}] | pages: [{}] | millis: [{}]",
+										bucketName, tally.objectCount.sum(), tally.pageCount.sum(), durationMillis);
+								return new S3BucketStatistics(bucketName, region.value(), tally.objectCount.sum(),
+										tally.totalBytes.sum(), tally.pageCount.sum(), System.currentTimeMillis(),
+										durationMillis);
+							});
+				});
+	}
+
+	private Region findRegion(String bucketName, S3Client locationClient) {
+		Region region = bucketRegions.get(bucketName);
+		if (region != null) {
+			return region;
+		}
+		long startNanos = System.nanoTime();
+		String location;
+		try {
+			location = locationClient.getBucketLocation(
+					GetBucketLocationRequest.builder().bucket(bucketName).build()).locationConstraint();
+			getBucketLocationMetrics.recordSuccess(System.nanoTime() - startNanos);
+		} catch (RuntimeException e) {
+			getBucketLocationMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw e;
+		}
+		if (location == null || US_EAST_1_LOCATION.equals(location)) {
+			region = Region.US_EAST_1;
+		} else if (LEGACY_EU_LOCATION.equals(location)) {
+			region = Region.EU_WEST_1;
+		} else {
+			region = Region.of(location);
+		}
+		bucketRegions.put(bucketName, region);
+		return region;
+	}
+
+	/**
+	 * Lists the keys after {@code startAfter} (or from the start, if null), up to and including
+	 * {@code lastKey} (or to the end, if null), and adds them to the tally
+	 */
+	private void listShard(S3Client client, String bucketName, String startAfter, String lastKey, BucketTally tally) {
+		String continuationToken = null;
+		do {
+			if (tally.abandoned) {
+				return;
+			}
+			ListObjectsV2Request.Builder request = ListObjectsV2Request.builder().bucket(bucketName);
+			if (continuationToken != null) {
+				request.continuationToken(continuationToken);
+			} else if (startAfter != null) {
+				request.startAfter(startAfter);
+			}
+			if (maxKeysPerPage > 0) {
+				request.maxKeys(maxKeysPerPage);
+			}
+			long startNanos = System.nanoTime();
+			ListObjectsV2Response response;
+			try {
+				response = client.listObjectsV2(request.build());
+				listObjectsMetrics.recordSuccess(System.nanoTime() - startNanos);
+			} catch (RuntimeException e) {
+				listObjectsMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+				tally.abandoned = true;
+				throw e;
+			}
+			tally.pageCount.increment();
+
+			long pageObjectCount = 0;
+			long pageBytes = 0;
+			boolean pastLastKey = false;
+			List<S3Object> contents = response.contents();
+			if (contents != null) {
+				for (S3Object object : contents) {
+					if (lastKey != null && compareKeys(object.key(), lastKey) > 0) {
+						pastLastKey = true;
+						break;
+					}
+					pageObjectCount++;
+					pageBytes += object.size() == null ? 0 : object.size();
+				}
+			}
+			tally.objectCount.add(pageObjectCount);
+			tally.totalBytes.add(pageBytes);
+			continuationToken = !pastLastKey && Boolean.TRUE.equals(response.isTruncated())
+					? response.nextContinuationToken() : null;
+		} while (continuationToken != null);
+	}
+
+}
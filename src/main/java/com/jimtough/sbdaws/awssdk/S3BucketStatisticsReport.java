@@ -0,0 +1,70 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of every S3 bucket, from one collection. Buckets that could not be listed are
+ * reported separately, so one failed bucket does not hide the statistics of the others.
+ *
+ * @author JTOUGH
+ */
+public final class S3BucketStatisticsReport {
+
+	private final List<S3BucketStatistics> buckets;
+	private final Map<String, String> failedBuckets;
+	private final long collectedEpochMillis;
+
+	/**
+	 * @param buckets Statistics of the buckets, in the order of the bucket list
+	 * @param failedBuckets Failure message for each bucket that could not be listed, by bucket name
+	 * @param collectedEpochMillis When the collection finished
+	 */
+	public S3BucketStatisticsReport(List<S3BucketStatistics> buckets, Map<String, String> failedBuckets,
+			long collectedEpochMillis) {
+		if (buckets == null) {
+			throw new IllegalArgumentException("buckets cannot be null");
+		}
+		if (failedBuckets == null) {
+			throw new IllegalArgumentException("failedBuckets cannot be null");
+		}
+		this.buckets = Collections.unmodifiableList(buckets);
+		this.failedBuckets = Collections.unmodifiableMap(failedBuckets);
+		this.collectedEpochMillis = collectedEpochMillis;
+	}
+
+	/**
+	 * @return Non-null (possibly empty) list of bucket statistics, in the order of the bucket list
+	 */
+	public List<S3BucketStatistics> getBuckets() {
+		return buckets;
+	}
+
+	/**
+	 * @return Failure message for each bucket that could not be listed, by bucket name
+	 */
+	public Map<String, String> getFailedBuckets() {
+		return failedBuckets;
+	}
+
+	/**
+	 * @return When the collection finished
+	 */
+	public long getCollectedEpochMillis() {
+		return collectedEpochMillis;
+	}
+
+	/**
+	 * @return True if every bucket was listed successfully
+	 */
+	public boolean isComplete() {
+		return failedBuckets.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "S3BucketStatisticsReport [buckets=" + buckets.size() + ", failedBuckets=" + failedBuckets.keySet() + "]";
+	}
+
+}
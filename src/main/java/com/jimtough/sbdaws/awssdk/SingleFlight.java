@@ -0,0 +1,92 @@
+package com.jimtough.sbdaws.awssdk;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes concurrent callers for the same key share one outstanding call.
+ *
+ * The first caller for a key makes the call. Callers that arrive while it is in progress wait for
+ * it, and get the same value or the same exception. The next caller after it finishes makes a new
+ * call, so nothing is cached here.
+ *
+ * @param <K> Key type, such as the region
+ * @param <V> Value type
+ * @author JTOUGH
+ */
+final class SingleFlight<K, V> {
+
+	/**
+	 * The call that is shared
+	 */
+	interface Call<V> {
+		V call() throws AwsSdkException;
+	}
+
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder callCount = new LongAdder();
+	private final LongAdder sharedCount = new LongAdder();
+
+	/**
+	 * @param key Non-null key. Calls for different keys do not affect each other.
+	 * @param call Made only if there is no call in progress for the key
+	 * @return Value returned by this call, or by the call in progress that this caller joined
+	 * @throws AwsSdkException Thrown if the call (possibly made by another thread) failed
+	 */
+	V execute(K key, Call<V> call) throws AwsSdkException {
+		CompletableFuture<V> myFuture = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, myFuture);
+		if (existing != null) {
+			sharedCount.increment();
+			return await(existing);
+		}
+		callCount.increment();
+		try {
+			V value = call.call();
+			myFuture.complete(value);
+			return value;
+		} catch (AwsSdkException | RuntimeException | Error e) {
+			myFuture.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, myFuture);
+		}
+	}
+
+	/**
+	 * @return Number of calls that were actually made
+	 */
+	long getCallCount() {
+		return callCount.sum();
+	}
+
+	/**
+	 * @return Number of callers that joined a call in progress instead of making their own
+	 */
+	long getSharedCount() {
+		return sharedCount.sum();
+	}
+
+	private V await(CompletableFuture<V> future) throws AwsSdkException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			// Every waiter gets the exception that the call failed with
+			if (cause instanceof AwsSdkException) {
+				throw (AwsSdkException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw (Error) cause;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AwsSdkException("Interrupted while waiting for a shared SDK call", e);
+		}
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.jimtough.sbdaws.cache;
+
+/**
+ * Thrown when a cache has no usable value for a key and the loader failed
+ *
+ * @author JTOUGH
+ */
+public class CacheLoadException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 * @param message String
+	 * @param cause Throwable
+	 */
+	public CacheLoadException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
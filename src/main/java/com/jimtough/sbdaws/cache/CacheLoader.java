@@ -0,0 +1,18 @@
+package com.jimtough.sbdaws.cache;
+
+/**
+ * Loads the current value for a cache entry
+ *
+ * @param <V> Type of the cached value
+ * @author JTOUGH
+ */
+@FunctionalInterface
+public interface CacheLoader<V> {
+
+	/**
+	 * @return Non-null value
+	 * @throws Exception Thrown if the value could not be loaded
+	 */
+	V load() throws Exception;
+
+}
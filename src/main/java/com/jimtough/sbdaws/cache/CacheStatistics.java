@@ -0,0 +1,100 @@
+package com.jimtough.sbdaws.cache;
+
+/**
+ * Immutable snapshot of the counters for one {@code RefreshingCache}
+ *
+ * @author JTOUGH
+ */
+public final class CacheStatistics {
+
+	private final String cacheName;
+	private final long hitCount;
+	private final long staleHitCount;
+	private final long missCount;
+	private final long loadFailureCount;
+	private final long refreshCount;
+	private final long refreshFailureCount;
+	private final long evictionCount;
+	private final int size;
+
+	CacheStatistics(String cacheName, long hitCount, long staleHitCount, long missCount,
+			long loadFailureCount, long refreshCount, long refreshFailureCount, long evictionCount, int size) {
+		this.cacheName = cacheName;
+		this.hitCount = hitCount;
+		this.staleHitCount = staleHitCount;
+		this.missCount = missCount;
+		this.loadFailureCount = loadFailureCount;
+		this.refreshCount = refreshCount;
+		this.refreshFailureCount = refreshFailureCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+	}
+
+	public String getCacheName() {
+		return cacheName;
+	}
+
+	/**
+	 * @return Number of lookups answered with a value that was within its TTL
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return Number of lookups answered with an expired value while a refresh was done in the background
+	 */
+	public long getStaleHitCount() {
+		return staleHitCount;
+	}
+
+	/**
+	 * @return Number of lookups that had to wait for a value to be loaded
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return Number of foreground loads that failed
+	 */
+	public long getLoadFailureCount() {
+		return loadFailureCount;
+	}
+
+	/**
+	 * @return Number of background refreshes that were started
+	 */
+	public long getRefreshCount() {
+		return refreshCount;
+	}
+
+	/**
+	 * @return Number of background refreshes that failed (the stale value was kept)
+	 */
+	public long getRefreshFailureCount() {
+		return refreshFailureCount;
+	}
+
+	/**
+	 * @return Number of entries removed to keep the cache within its size limit
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return Number of entries in the cache
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "cache: [" + cacheName + "] | size: " + size + " | hits: " + hitCount + " | stale hits: " + staleHitCount
+				+ " | misses: " + missCount + " | load failures: " + loadFailureCount + " | refreshes: " + refreshCount
+				+ " | refresh failures: " + refreshFailureCount + " | evictions: " + evictionCount;
+	}
+
+}
@@ -0,0 +1,301 @@
+package com.jimtough.sbdaws.cache;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.Ec2InstanceInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Caches the results of the {@code AwsEnvironmentInterrogator} calls.
+ *
+ * The IAM user, ECS clusters, S3 buckets and EC2 instances rarely change, so there is no need to
+ * call AWS on every request. Each kind of resource has its own TTL (see app.properties).
+ *
+ * The lookups for the page sections also come in a non-blocking form. A lookup for a value that is
+ * not cached yet then joins the load that is in flight for it, instead of blocking a thread.
+ *
+ * If the {@code SharedInventory} is enabled, the IAM user, ECS clusters and S3 buckets are loaded
+ * from it, and AWS is only called when it has no usable value.
+ *
+ * The cached values can be copied into an {@code InventorySnapshot}, and a snapshot saved by an
+ * earlier run can be put back in as stale values, which are refreshed on their first lookup.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class InventoryCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(InventoryCache.class);
+
+	private static final int REFRESH_THREAD_COUNT = 2;
+	private static final int REFRESH_QUEUE_CAPACITY = 32;
+
+	private final ConfigurationBean configurationBean;
+	private final AwsEnvironmentInterrogator interrogator;
+	// Null if the inventory is not shared with other tasks
+	private final SharedInventory sharedInventory;
+	private final ThreadPoolExecutor refreshExecutor;
+	private final RefreshingCache<String, User> iamUserCache;
+	private final RefreshingCache<String, EcsClusterInventory> ecsClusterCache;
+	private final RefreshingCache<String, List<Bucket>> s3BucketCache;
+	private final RefreshingCache<String, Ec2InstanceInventory> ec2InstanceCache;
+
+	public InventoryCache(ConfigurationBean configurationBean, AwsEnvironmentInterrogator interrogator) {
+		this(configurationBean, interrogator, null);
+	}
+
+	@Autowired
+	public InventoryCache(ConfigurationBean configurationBean, AwsEnvironmentInterrogator interrogator,
+			SharedInventory sharedInventory) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (interrogator == null) {
+			throw new IllegalArgumentException("interrogator cannot be null");
+		}
+		this.configurationBean = configurationBean;
+		this.interrogator = interrogator;
+		this.sharedInventory = sharedInventory != null && sharedInventory.isEnabled() ? sharedInventory : null;
+		this.refreshExecutor = new ThreadPoolExecutor(REFRESH_THREAD_COUNT, REFRESH_THREAD_COUNT,
+				60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+				new CustomizableThreadFactory("inventory-refresh-"));
+		int maxEntries = configurationBean.getInventoryCacheMaxEntriesPerResource();
+		this.iamUserCache = new RefreshingCache<>("iamUser",
+				configurationBean.getInventoryCacheIamUserTtlSeconds(), TimeUnit.SECONDS,
+				maxEntries, refreshExecutor);
+		this.ecsClusterCache = new RefreshingCache<>("ecsClusters",
+				configurationBean.getInventoryCacheEcsClustersTtlSeconds(), TimeUnit.SECONDS,
+				maxEntries, refreshExecutor);
+		this.s3BucketCache = new RefreshingCache<>("s3Buckets",
+				configurationBean.getInventoryCacheS3BucketsTtlSeconds(), TimeUnit.SECONDS,
+				maxEntries, refreshExecutor);
+		this.ec2InstanceCache = new RefreshingCache<>("ec2Instances",
+				configurationBean.getInventoryCacheEc2InstancesTtlSeconds(), TimeUnit.SECONDS,
+				maxEntries, refreshExecutor);
+	}
+
+	/**
+	 * @return Cached IAM user details
+	 * @throws AwsSdkException Thrown if there is no cached value and the SDK call fails
+	 * @see AwsEnvironmentInterrogator#getIAMUser()
+	 */
+	public User getIAMUser() throws AwsSdkException {
+		// IAM is a global service, so there is only one value regardless of the target region
+		return get(iamUserCache, Region.AWS_GLOBAL.value(),
+				sharedOrDirect(InventorySnapshot::getIamUser, interrogator::getIAMUser));
+	}
+
+	/**
+	 * @return Cached ECS clusters of every target region
+	 * @throws AwsSdkException Thrown if there is no cached value and no region could be queried
+	 * @see AwsEnvironmentInterrogator#getECSClusterInventory()
+	 */
+	public EcsClusterInventory getECSClusterInventory() throws AwsSdkException {
+		return get(ecsClusterCache, targetRegionsKey(),
+				sharedOrDirect(InventorySnapshot::getEcsClusterInventory, interrogator::getECSClusterInventory));
+	}
+
+	/**
+	 * @return Cached, non-null (possibly empty) list
+	 * @throws AwsSdkException Thrown if there is no cached value and the SDK call fails
+	 * @see AwsEnvironmentInterrogator#getS3BucketList()
+	 */
+	public List<Bucket> getS3BucketList() throws AwsSdkException {
+		return get(s3BucketCache, targetRegionKey(),
+				sharedOrDirect(InventorySnapshot::getS3Buckets, interrogator::getS3BucketList));
+	}
+
+	/**
+	 * Same as {@link #getIAMUser()}, without blocking the calling thread
+	 *
+	 * @return Completes with the cached IAM user details, or exceptionally with an {@code AwsSdkException}
+	 */
+	public CompletableFuture<User> getIAMUserAsync() {
+		return getAsync(iamUserCache, Region.AWS_GLOBAL.value(),
+				sharedOrDirect(InventorySnapshot::getIamUser, interrogator::getIAMUser));
+	}
+
+	/**
+	 * Same as {@link #getECSClusterInventory()}, without blocking the calling thread
+	 *
+	 * @return Completes with the cached ECS clusters, or exceptionally with an {@code AwsSdkException}
+	 */
+	public CompletableFuture<EcsClusterInventory> getECSClusterInventoryAsync() {
+		return getAsync(ecsClusterCache, targetRegionsKey(),
+				sharedOrDirect(InventorySnapshot::getEcsClusterInventory, interrogator::getECSClusterInventory));
+	}
+
+	/**
+	 * Same as {@link #getS3BucketList()}, without blocking the calling thread
+	 *
+	 * @return Completes with the cached bucket list, or exceptionally with an {@code AwsSdkException}
+	 */
+	public CompletableFuture<List<Bucket>> getS3BucketListAsync() {
+		return getAsync(s3BucketCache, targetRegionKey(),
+				sharedOrDirect(InventorySnapshot::getS3Buckets, interrogator::getS3BucketList));
+	}
+
+	/**
+	 * @return Cached EC2 instances of the target region
+	 * @throws AwsSdkException Thrown if there is no cached value and the SDK call fails
+	 * @see AwsEnvironmentInterrogator#getEC2InstanceInventory()
+	 */
+	public Ec2InstanceInventory getEC2InstanceInventory() throws AwsSdkException {
+		return get(ec2InstanceCache, targetRegionKey(), interrogator::getEC2InstanceInventory);
+	}
+
+	/**
+	 * @return Snapshot of the counters for each of the caches
+	 */
+	public List<CacheStatistics> getStatistics() {
+		return Arrays.asList(
+				iamUserCache.getStatistics(),
+				ecsClusterCache.getStatistics(),
+				s3BucketCache.getStatistics(),
+				ec2InstanceCache.getStatistics());
+	}
+
+	/**
+	 * @param efsEntries EFS entries to include in the snapshot, or null
+	 * @return The values held for the target region(s), without loading or refreshing anything
+	 */
+	InventorySnapshot toSnapshot(List<EfsFileEntry> efsEntries) {
+		return new InventorySnapshot(System.currentTimeMillis(), targetRegionKey(), targetRegionsKey(),
+				iamUserCache.peek(Region.AWS_GLOBAL.value()),
+				ecsClusterCache.peek(targetRegionsKey()),
+				s3BucketCache.peek(targetRegionKey()),
+				ec2InstanceCache.peek(targetRegionKey()),
+				efsEntries);
+	}
+
+	/**
+	 * Put the values of a snapshot into the caches that do not have a value yet. The values are
+	 * stale, so each one is refreshed on its first lookup. Values of a snapshot taken with other
+	 * target regions are ignored.
+	 *
+	 * @param snapshot Snapshot saved by an earlier run
+	 * @return Number of caches that were primed
+	 */
+	int prime(InventorySnapshot snapshot) {
+		int primedCount = 0;
+		if (snapshot.getIamUser() != null
+				&& iamUserCache.prime(Region.AWS_GLOBAL.value(), snapshot.getIamUser())) {
+			primedCount++;
+		}
+		if (snapshot.getEcsClusterInventory() != null && targetRegionsKey().equals(snapshot.getTargetRegionsKey())
+				&& ecsClusterCache.prime(targetRegionsKey(), snapshot.getEcsClusterInventory())) {
+			primedCount++;
+		}
+		boolean sameTargetRegion = targetRegionKey().equals(snapshot.getTargetRegionKey());
+		if (snapshot.getS3Buckets() != null && sameTargetRegion
+				&& s3BucketCache.prime(targetRegionKey(), snapshot.getS3Buckets())) {
+			primedCount++;
+		}
+		if (snapshot.getEc2InstanceInventory() != null && sameTargetRegion
+				&& ec2InstanceCache.prime(targetRegionKey(), snapshot.getEc2InstanceInventory())) {
+			primedCount++;
+		}
+		return primedCount;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		for (CacheStatistics statistics : getStatistics()) {
+			LOGGER.info("Final inventory cache statistics | {}", statistics);
+		}
+		refreshExecutor.shutdownNow();
+	}
+
+	/**
+	 * @return Loader that uses the shared value if there is one, and calls AWS if not
+	 */
+	private <V> CacheLoader<V> sharedOrDirect(Function<InventorySnapshot, V> sharedValue, CacheLoader<V> directLoader) {
+		if (sharedInventory == null) {
+			return directLoader;
+		}
+		return () -> {
+			InventorySnapshot shared = sharedInventory.getLatest();
+			V value = shared == null ? null : sharedValue.apply(shared);
+			return value != null ? value : directLoader.load();
+		};
+	}
+
+	private String targetRegionKey() {
+		return targetRegionKey(configurationBean);
+	}
+
+	private String targetRegionsKey() {
+		return targetRegionsKey(configurationBean);
+	}
+
+	static String targetRegionKey(ConfigurationBean configurationBean) {
+		return configurationBean.getAwsTargetRegion().value();
+	}
+
+	static String targetRegionsKey(ConfigurationBean configurationBean) {
+		List<Region> regions = configurationBean.getAwsTargetRegions();
+		if (regions == null || regions.isEmpty()) {
+			return targetRegionKey(configurationBean);
+		}
+		StringBuilder sb = new StringBuilder();
+		for (Region region : regions) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(region.value());
+		}
+		return sb.toString();
+	}
+
+	private <V> V get(RefreshingCache<String, V> cache, String key, CacheLoader<V> loader) throws AwsSdkException {
+		try {
+			return cache.get(key, loader);
+		} catch (CacheLoadException e) {
+			throw toAwsSdkException(cache, e);
+		}
+	}
+
+	private <V> CompletableFuture<V> getAsync(RefreshingCache<String, V> cache, String key, CacheLoader<V> loader) {
+		CompletableFuture<V> result = new CompletableFuture<>();
+		cache.getAsync(key, loader).whenComplete((value, error) -> {
+			if (error == null) {
+				result.complete(value);
+			} else {
+				result.completeExceptionally(error instanceof CacheLoadException
+						? toAwsSdkException(cache, (CacheLoadException) error)
+						: error);
+			}
+		});
+		return result;
+	}
+
+	private static AwsSdkException toAwsSdkException(RefreshingCache<String, ?> cache, CacheLoadException e) {
+		if (e.getCause() instanceof AwsSdkException) {
+			return (AwsSdkException) e.getCause();
+		}
+		return new AwsSdkException("Unable to load inventory | cache: [" + cache.getName() + "]", e);
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.jimtough.sbdaws.cache;
+
+import java.util.List;
+
+import com.jimtough.sbdaws.awssdk.Ec2InstanceInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Everything that the home page and the inventory API need, as it was at one moment, so that it
+ * can be saved to disk and used to answer requests right after a restart.
+ *
+ * Any of the values may be null, if it had not been loaded when the snapshot was taken. The
+ * target region(s) are kept so that a snapshot taken with a different configuration is not used.
+ * The values are the same instances that the caches hold, and must not be modified.
+ *
+ * @author JTOUGH
+ */
+public final class InventorySnapshot {
+
+	private final long createdEpochMillis;
+	private final String targetRegionKey;
+	private final String targetRegionsKey;
+	private final User iamUser;
+	private final EcsClusterInventory ecsClusterInventory;
+	private final List<Bucket> s3Buckets;
+	private final Ec2InstanceInventory ec2InstanceInventory;
+	private final List<EfsFileEntry> efsEntries;
+
+	/**
+	 * Constructor
+	 * @param createdEpochMillis When the snapshot was taken
+	 * @param targetRegionKey Non-null name of the target region
+	 * @param targetRegionsKey Non-null comma-separated names of the target regions
+	 * @param iamUser IAM user, or null
+	 * @param ecsClusterInventory ECS clusters of the target regions, or null
+	 * @param s3Buckets S3 buckets, or null
+	 * @param ec2InstanceInventory EC2 instances of the target region, or null
+	 * @param efsEntries Every entry in the EFS volume sorted by path, or null
+	 */
+	public InventorySnapshot(long createdEpochMillis, String targetRegionKey, String targetRegionsKey, User iamUser,
+			EcsClusterInventory ecsClusterInventory, List<Bucket> s3Buckets,
+			Ec2InstanceInventory ec2InstanceInventory, List<EfsFileEntry> efsEntries) {
+		if (targetRegionKey == null) {
+			throw new IllegalArgumentException("targetRegionKey cannot be null");
+		}
+		if (targetRegionsKey == null) {
+			throw new IllegalArgumentException("targetRegionsKey cannot be null");
+		}
+		this.createdEpochMillis = createdEpochMillis;
+		this.targetRegionKey = targetRegionKey;
+		this.targetRegionsKey = targetRegionsKey;
+		this.iamUser = iamUser;
+		this.ecsClusterInventory = ecsClusterInventory;
+		this.s3Buckets = s3Buckets;
+		this.ec2InstanceInventory = ec2InstanceInventory;
+		this.efsEntries = efsEntries;
+	}
+
+	public long getCreatedEpochMillis() {
+		return createdEpochMillis;
+	}
+
+	public String getTargetRegionKey() {
+		return targetRegionKey;
+	}
+
+	public String getTargetRegionsKey() {
+		return targetRegionsKey;
+	}
+
+	public User getIamUser() {
+		return iamUser;
+	}
+
+	public EcsClusterInventory getEcsClusterInventory() {
+		return ecsClusterInventory;
+	}
+
+	public List<Bucket> getS3Buckets() {
+		return s3Buckets;
+	}
+
+	public Ec2InstanceInventory getEc2InstanceInventory() {
+		return ec2InstanceInventory;
+	}
+
+	public List<EfsFileEntry> getEfsEntries() {
+		return efsEntries;
+	}
+
+	@Override
+	public String toString() {
+		return "InventorySnapshot [created=" + createdEpochMillis
+				+ ", iamUser=" + (iamUser != null)
+				+ ", ecsClusters=" + (ecsClusterInventory == null ? "none" : ecsClusterInventory.getClusters().size())
+				+ ", s3Buckets=" + (s3Buckets == null ? "none" : s3Buckets.size())
+				+ ", ec2Instances=" + (ec2InstanceInventory == null ? "none" : ec2InstanceInventory.size())
+				+ ", efsEntries=" + (efsEntries == null ? "none" : efsEntries.size()) + "]";
+	}
+
+}
@@ -0,0 +1,362 @@
+package com.jimtough.sbdaws.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.jimtough.sbdaws.awssdk.Ec2InstanceInventory;
+import com.jimtough.sbdaws.awssdk.Ec2InstanceSummary;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory.RegionalCluster;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Reads and writes the {@code InventorySnapshot} file.
+ *
+ * The file is a gzip stream of {@code DataOutputStream} values: a header, then each section (or
+ * a flag saying that it is absent), then an end marker. Only the fields that the app shows are
+ * written, not the whole SDK objects. The gzip trailer holds a CRC of the contents, so a file
+ * that was damaged or cut short fails to load instead of giving wrong values.
+ *
+ * The file is written to a temporary file in the same directory, flushed to disk, and then
+ * renamed over the old file, so a crash part way through a write never leaves a partial file.
+ * The EFS paths are saved relative to the root of the volume.
+ *
+ * @author JTOUGH
+ */
+final class InventorySnapshotFile {
+
+	// "SBDI"
+	private static final int MAGIC = 0x53424449;
+	// Increment whenever the layout changes. Files with any other version are not loaded.
+	static final int FORMAT_VERSION = 1;
+	private static final int END_MARKER = 0x454E4421;
+	private static final long NO_TIME = Long.MIN_VALUE;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private InventorySnapshotFile() {
+	}
+
+	/**
+	 * Replace the file with the snapshot. The old file is left alone if this fails.
+	 *
+	 * @param file File to write
+	 * @param snapshot Snapshot to write
+	 * @param efsRoot Root of the EFS volume, which every EFS entry is under
+	 * @return Size of the file in bytes
+	 * @throws IOException Thrown if the snapshot could not be written
+	 */
+	static long write(Path file, InventorySnapshot snapshot, Path efsRoot) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try (FileOutputStream fileOut = new FileOutputStream(temporaryFile.toFile())) {
+				GZIPOutputStream gzipOut = new GZIPOutputStream(fileOut, BUFFER_SIZE);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzipOut, BUFFER_SIZE));
+				writeSnapshot(out, snapshot, efsRoot);
+				out.flush();
+				gzipOut.finish();
+				// The rename must not reach the disk before the contents do
+				fileOut.getFD().sync();
+			}
+			try {
+				Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+		return Files.size(file);
+	}
+
+	/**
+	 * @param file File to read
+	 * @param efsRoot Root of the EFS volume, which the saved EFS paths are resolved against
+	 * @return Non-null snapshot
+	 * @throws IOException Thrown if the file cannot be read, or is damaged, or has another format version
+	 */
+	static InventorySnapshot read(Path file, Path efsRoot) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+			InventorySnapshot snapshot = readSnapshot(in, efsRoot);
+			// Reading to the end makes the gzip stream check its CRC
+			if (in.read() != -1) {
+				throw new IOException("Unexpected data after the end of the snapshot");
+			}
+			return snapshot;
+		}
+	}
+
+	private static void writeSnapshot(DataOutputStream out, InventorySnapshot snapshot, Path efsRoot) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeLong(snapshot.getCreatedEpochMillis());
+		out.writeUTF(snapshot.getTargetRegionKey());
+		out.writeUTF(snapshot.getTargetRegionsKey());
+
+		User user = snapshot.getIamUser();
+		out.writeBoolean(user != null);
+		if (user != null) {
+			writeString(out, user.path());
+			writeString(out, user.userName());
+			writeString(out, user.userId());
+			writeString(out, user.arn());
+			writeDate(out, user.createDate());
+			writeDate(out, user.passwordLastUsed());
+		}
+
+		EcsClusterInventory ecs = snapshot.getEcsClusterInventory();
+		out.writeBoolean(ecs != null);
+		if (ecs != null) {
+			out.writeInt(ecs.getRegions().size());
+			for (Region region : ecs.getRegions()) {
+				out.writeUTF(region.value());
+			}
+			out.writeInt(ecs.getClusters().size());
+			for (RegionalCluster regionalCluster : ecs.getClusters()) {
+				Cluster cluster = regionalCluster.getCluster();
+				out.writeUTF(regionalCluster.getRegion().value());
+				writeString(out, cluster.clusterArn());
+				writeString(out, cluster.clusterName());
+				writeString(out, cluster.status());
+				writeInteger(out, cluster.registeredContainerInstancesCount());
+				writeInteger(out, cluster.runningTasksCount());
+				writeInteger(out, cluster.pendingTasksCount());
+				writeInteger(out, cluster.activeServicesCount());
+			}
+			out.writeInt(ecs.getFailedRegions().size());
+			for (Map.Entry<String, String> failedRegion : ecs.getFailedRegions().entrySet()) {
+				out.writeUTF(failedRegion.getKey());
+				writeString(out, failedRegion.getValue());
+			}
+		}
+
+		List<Bucket> buckets = snapshot.getS3Buckets();
+		out.writeBoolean(buckets != null);
+		if (buckets != null) {
+			out.writeInt(buckets.size());
+			for (Bucket bucket : buckets) {
+				writeString(out, bucket.name());
+				writeDate(out, bucket.creationDate());
+			}
+		}
+
+		Ec2InstanceInventory ec2 = snapshot.getEc2InstanceInventory();
+		out.writeBoolean(ec2 != null);
+		if (ec2 != null) {
+			out.writeUTF(ec2.getRegion().value());
+			out.writeLong(ec2.getCollectedEpochMillis());
+			out.writeInt(ec2.size());
+			for (Ec2InstanceSummary instance : ec2.getInstances()) {
+				out.writeUTF(instance.getInstanceId());
+				writeString(out, instance.getInstanceType());
+				writeString(out, instance.getAvailabilityZone());
+				out.writeUTF(instance.getState());
+				writeString(out, instance.getInstanceStatus());
+				writeString(out, instance.getSystemStatus());
+				out.writeLong(instance.getLaunchEpochMillis());
+				writeString(out, instance.getPrivateIpAddress());
+				out.writeInt(instance.getTags().size());
+				for (Map.Entry<String, String> tag : instance.getTags().entrySet()) {
+					out.writeUTF(tag.getKey());
+					writeString(out, tag.getValue());
+				}
+			}
+		}
+
+		List<EfsFileEntry> efsEntries = snapshot.getEfsEntries();
+		out.writeBoolean(efsEntries != null);
+		if (efsEntries != null) {
+			out.writeInt(efsEntries.size());
+			for (EfsFileEntry entry : efsEntries) {
+				if (!entry.getPath().startsWith(efsRoot)) {
+					throw new IOException("EFS entry is not under the root of the volume: [" + entry.getPath() + "]");
+				}
+				out.writeUTF(efsRoot.relativize(entry.getPath()).toString());
+				writeFileTime(out, entry.getCreationTime());
+				writeFileTime(out, entry.getLastModifiedTime());
+				out.writeLong(entry.getSize());
+				out.writeBoolean(entry.isDirectory());
+			}
+		}
+
+		out.writeInt(END_MARKER);
+	}
+
+	private static InventorySnapshot readSnapshot(DataInputStream in, Path efsRoot) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not an inventory snapshot");
+		}
+		int formatVersion = in.readInt();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("Unsupported snapshot format version: " + formatVersion);
+		}
+		long createdEpochMillis = in.readLong();
+		String targetRegionKey = in.readUTF();
+		String targetRegionsKey = in.readUTF();
+
+		User user = null;
+		if (in.readBoolean()) {
+			user = User.builder()
+					.path(readString(in))
+					.userName(readString(in))
+					.userId(readString(in))
+					.arn(readString(in))
+					.createDate(readDate(in))
+					.passwordLastUsed(readDate(in))
+					.build();
+		}
+
+		EcsClusterInventory ecs = null;
+		if (in.readBoolean()) {
+			int regionCount = readCount(in);
+			List<Region> regions = new ArrayList<>(regionCount);
+			for (int i = 0; i < regionCount; i++) {
+				regions.add(Region.of(in.readUTF()));
+			}
+			int clusterCount = readCount(in);
+			List<RegionalCluster> clusters = new ArrayList<>(clusterCount);
+			for (int i = 0; i < clusterCount; i++) {
+				Region region = Region.of(in.readUTF());
+				Cluster cluster = Cluster.builder()
+						.clusterArn(readString(in))
+						.clusterName(readString(in))
+						.status(readString(in))
+						.registeredContainerInstancesCount(readInteger(in))
+						.runningTasksCount(readInteger(in))
+						.pendingTasksCount(readInteger(in))
+						.activeServicesCount(readInteger(in))
+						.build();
+				clusters.add(new RegionalCluster(region, cluster));
+			}
+			int failedCount = readCount(in);
+			Map<String, String> failedRegions = new LinkedHashMap<>();
+			for (int i = 0; i < failedCount; i++) {
+				failedRegions.put(in.readUTF(), readString(in));
+			}
+			ecs = new EcsClusterInventory(regions, clusters, failedRegions);
+		}
+
+		List<Bucket> buckets = null;
+		if (in.readBoolean()) {
+			int bucketCount = readCount(in);
+			buckets = new ArrayList<>(bucketCount);
+			for (int i = 0; i < bucketCount; i++) {
+				buckets.add(Bucket.builder().name(readString(in)).creationDate(readDate(in)).build());
+			}
+		}
+
+		Ec2InstanceInventory ec2 = null;
+		if (in.readBoolean()) {
+			Region region = Region.of(in.readUTF());
+			long collectedEpochMillis = in.readLong();
+			int instanceCount = readCount(in);
+			List<Ec2InstanceSummary> instances = new ArrayList<>(instanceCount);
+			for (int i = 0; i < instanceCount; i++) {
+				String instanceId = in.readUTF();
+				String instanceType = readString(in);
+				String availabilityZone = readString(in);
+				String state = in.readUTF();
+				String instanceStatus = readString(in);
+				String systemStatus = readString(in);
+				long launchEpochMillis = in.readLong();
+				String privateIpAddress = readString(in);
+				int tagCount = readCount(in);
+				Map<String, String> tags = new LinkedHashMap<>();
+				for (int j = 0; j < tagCount; j++) {
+					tags.put(in.readUTF(), readString(in));
+				}
+				instances.add(new Ec2InstanceSummary(instanceId, instanceType, availabilityZone, state,
+						instanceStatus, systemStatus, launchEpochMillis, privateIpAddress, tags));
+			}
+			ec2 = new Ec2InstanceInventory(region, instances, collectedEpochMillis);
+		}
+
+		List<EfsFileEntry> efsEntries = null;
+		if (in.readBoolean()) {
+			int entryCount = readCount(in);
+			efsEntries = new ArrayList<>(entryCount);
+			for (int i = 0; i < entryCount; i++) {
+				Path path = efsRoot.resolve(in.readUTF());
+				efsEntries.add(new EfsFileEntry(path, readFileTime(in), readFileTime(in), in.readLong(), in.readBoolean()));
+			}
+		}
+
+		if (in.readInt() != END_MARKER) {
+			throw new IOException("Snapshot end marker not found");
+		}
+		return new InventorySnapshot(createdEpochMillis, targetRegionKey, targetRegionsKey, user, ecs, buckets,
+				ec2, efsEntries);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeInt(value);
+		}
+	}
+
+	private static Integer readInteger(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readInt() : null;
+	}
+
+	private static void writeDate(DataOutputStream out, Date value) throws IOException {
+		out.writeLong(value == null ? NO_TIME : value.getTime());
+	}
+
+	private static Date readDate(DataInputStream in) throws IOException {
+		long time = in.readLong();
+		return time == NO_TIME ? null : new Date(time);
+	}
+
+	private static void writeFileTime(DataOutputStream out, FileTime value) throws IOException {
+		out.writeLong(value == null ? NO_TIME : value.toMillis());
+	}
+
+	private static FileTime readFileTime(DataInputStream in) throws IOException {
+		long time = in.readLong();
+		return time == NO_TIME ? null : FileTime.fromMillis(time);
+	}
+
+	private static int readCount(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if (count < 0) {
+			throw new IOException("Invalid count in snapshot: " + count);
+		}
+		return count;
+	}
+
+}
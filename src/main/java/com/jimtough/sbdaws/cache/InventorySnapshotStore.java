@@ -0,0 +1,222 @@
+package com.jimtough.sbdaws.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+/**
+ * Saves the inventory to a file on local disk, and loads it again when the app starts.
+ *
+ * Without this, the first requests after every restart wait for IAM, ECS, S3 and the EFS scan.
+ * At startup the saved values are put into the {@code InventoryCache} and the {@code EfsFileIndex}
+ * as stale values, so the page can be served from them right away while fresh values are loaded
+ * in the background. A snapshot that is too old, or that was taken for other target regions,
+ * is not used.
+ *
+ * The snapshot is written on a fixed schedule, and once more at shutdown, but only if one of the
+ * values has changed since the last write. The caches return the same instance for as long as a
+ * value does not change, so this is a cheap reference comparison. The time taken by each load and
+ * write is recorded as the operations "inventory.snapshot.load" and "inventory.snapshot.write".
+ *
+ * @author JTOUGH
+ */
+@Component
+public class InventorySnapshotStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(InventorySnapshotStore.class);
+
+	private static final long SHUTDOWN_WAIT_MILLIS = 5000L;
+
+	private final InventoryCache inventoryCache;
+	private final EfsFileIndex efsFileIndex;
+	private final Path file;
+	private final boolean enabled;
+	private final long writeIntervalMillis;
+	private final long maxAgeMillis;
+	private final OperationMetrics loadMetrics;
+	private final OperationMetrics writeMetrics;
+	private final ScheduledThreadPoolExecutor writeExecutor;
+
+	// Values in the last snapshot that was loaded or written, compared by reference
+	private List<Object> lastSavedValues;
+
+	@Autowired
+	public InventorySnapshotStore(ConfigurationBean configurationBean, InventoryCache inventoryCache,
+			EfsFileIndex efsFileIndex, MetricsRegistry metricsRegistry) {
+		this(inventoryCache, efsFileIndex, metricsRegistry,
+				configurationBean.getInventorySnapshotPath(),
+				configurationBean.isInventorySnapshotEnabled(),
+				TimeUnit.SECONDS.toMillis(configurationBean.getInventorySnapshotWriteIntervalSeconds()),
+				TimeUnit.MINUTES.toMillis(configurationBean.getInventorySnapshotMaxAgeMinutes()));
+	}
+
+	InventorySnapshotStore(InventoryCache inventoryCache, EfsFileIndex efsFileIndex, MetricsRegistry metricsRegistry,
+			Path file, boolean enabled, long writeIntervalMillis, long maxAgeMillis) {
+		if (inventoryCache == null) {
+			throw new IllegalArgumentException("inventoryCache cannot be null");
+		}
+		if (efsFileIndex == null) {
+			throw new IllegalArgumentException("efsFileIndex cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		if (file == null) {
+			throw new IllegalArgumentException("file cannot be null");
+		}
+		if (enabled && writeIntervalMillis <= 0) {
+			throw new IllegalArgumentException("writeIntervalMillis must be positive");
+		}
+		this.inventoryCache = inventoryCache;
+		this.efsFileIndex = efsFileIndex;
+		this.file = file;
+		this.enabled = enabled;
+		this.writeIntervalMillis = writeIntervalMillis;
+		this.maxAgeMillis = maxAgeMillis;
+		this.loadMetrics = metricsRegistry.operation("inventory.snapshot.load");
+		this.writeMetrics = metricsRegistry.operation("inventory.snapshot.write");
+		this.writeExecutor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("inventory-snapshot-"));
+	}
+
+	/**
+	 * Load the saved snapshot (on the calling thread, so it is in place before the first request),
+	 * then start the periodic writes
+	 */
+	@PostConstruct
+	public void start() {
+		if (!enabled) {
+			LOGGER.info("Inventory snapshots are disabled");
+			return;
+		}
+		load();
+		writeExecutor.scheduleWithFixedDelay(this::writeQuietly, writeIntervalMillis, writeIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		writeExecutor.shutdownNow();
+		if (!enabled) {
+			return;
+		}
+		try {
+			if (writeExecutor.awaitTermination(SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+				writeQuietly();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Load the snapshot file, if there is one, and prime the caches with it
+	 *
+	 * @return True if a snapshot was loaded and used
+	 */
+	synchronized boolean load() {
+		if (!Files.isRegularFile(file)) {
+			LOGGER.info("No inventory snapshot to load | file: [{}]", file);
+			return false;
+		}
+		long startNanos = System.nanoTime();
+		InventorySnapshot snapshot;
+		try {
+			snapshot = InventorySnapshotFile.read(file, efsFileIndex.getRoot());
+		} catch (IOException | RuntimeException e) {
+			loadMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			LOGGER.warn("Unable to load the inventory snapshot. Starting without it. | file: [{}]", file, e);
+			return false;
+		}
+		long ageMillis = System.currentTimeMillis() - snapshot.getCreatedEpochMillis();
+		if (ageMillis > maxAgeMillis) {
+			loadMetrics.recordSuccess(System.nanoTime() - startNanos);
+			LOGGER.info("Inventory snapshot is too old to use | file: [{}] | age ms: [{}]", file, ageMillis);
+			return false;
+		}
+		int primedCount = inventoryCache.prime(snapshot);
+		if (snapshot.getEfsEntries() != null) {
+			efsFileIndex.prime(snapshot.getEfsEntries());
+		}
+		long durationNanos = System.nanoTime() - startNanos;
+		loadMetrics.recordSuccess(durationNanos);
+		lastSavedValues = currentValues(inventoryCache.toSnapshot(efsFileIndex.peekEntries()));
+		LOGGER.info("Inventory snapshot loaded | ms: [{}] | age ms: [{}] | caches primed: [{}] | {}",
+				TimeUnit.NANOSECONDS.toMillis(durationNanos), ageMillis, primedCount, snapshot);
+		return true;
+	}
+
+	/**
+	 * Write the current inventory to the snapshot file, unless nothing has changed since the last
+	 * load or write
+	 *
+	 * @return True if the file was written
+	 * @throws IOException Thrown if the file could not be written. The previous file is kept.
+	 */
+	synchronized boolean write() throws IOException {
+		InventorySnapshot snapshot = inventoryCache.toSnapshot(efsFileIndex.peekEntries());
+		List<Object> values = currentValues(snapshot);
+		if (values.stream().allMatch(Objects::isNull) || sameInstances(values, lastSavedValues)) {
+			return false;
+		}
+		long startNanos = System.nanoTime();
+		long bytes;
+		try {
+			bytes = InventorySnapshotFile.write(file, snapshot, efsFileIndex.getRoot());
+		} catch (IOException | RuntimeException e) {
+			writeMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw e;
+		}
+		long durationNanos = System.nanoTime() - startNanos;
+		writeMetrics.recordSuccess(durationNanos);
+		lastSavedValues = values;
+		LOGGER.debug("Inventory snapshot written | ms: [{}] | bytes: [{}] | {}",
+				TimeUnit.NANOSECONDS.toMillis(durationNanos), bytes, snapshot);
+		return true;
+	}
+
+	private void writeQuietly() {
+		try {
+			write();
+		} catch (IOException | RuntimeException e) {
+			// Keep the previous file, and try again next time
+			LOGGER.warn("Unable to write the inventory snapshot | file: [{}]", file, e);
+		}
+	}
+
+	private static List<Object> currentValues(InventorySnapshot snapshot) {
+		return Arrays.asList(snapshot.getIamUser(), snapshot.getEcsClusterInventory(), snapshot.getS3Buckets(),
+				snapshot.getEc2InstanceInventory(), snapshot.getEfsEntries());
+	}
+
+	private static boolean sameInstances(List<Object> values, List<Object> previousValues) {
+		if (previousValues == null) {
+			return false;
+		}
+		for (int i = 0; i < values.size(); i++) {
+			if (values.get(i) != previousValues.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
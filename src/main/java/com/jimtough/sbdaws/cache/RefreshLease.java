@@ -0,0 +1,138 @@
+package com.jimtough.sbdaws.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongSupplier;
+
+/**
+ * A lease, stored in a file that several processes (possibly on different hosts) can see, that
+ * says which one of them is the refresh leader and until when.
+ *
+ * The lease file holds the ID of the owner and the time that the lease expires. It is only read
+ * and changed while holding an exclusive lock on the file, which is held for just that moment.
+ * On Linux, Java file locks are POSIX record locks, which work across hosts on NFS (and so EFS).
+ * The lock alone is not enough, because a leader that hangs would keep it forever. The expiry
+ * time means that a leader must keep renewing the lease, and that another process can take over
+ * once the leader stops renewing it. The clocks of the hosts are assumed to be roughly in sync.
+ *
+ * @author JTOUGH
+ */
+final class RefreshLease {
+
+	// File locks are held by the whole process, so threads of one process must take turns
+	private static final Object IN_PROCESS_LOCK = new Object();
+	private static final int MAX_LEASE_FILE_BYTES = 1024;
+
+	private final Path leaseFile;
+	private final String ownerId;
+	private final long leaseMillis;
+	private final LongSupplier clock;
+
+	/**
+	 * Constructor
+	 * @param leaseFile File that holds the lease. Created if it does not exist.
+	 * @param ownerId ID of this process, which must be different in every process
+	 * @param leaseMillis How long the lease lasts after it is acquired or renewed
+	 */
+	RefreshLease(Path leaseFile, String ownerId, long leaseMillis) {
+		this(leaseFile, ownerId, leaseMillis, System::currentTimeMillis);
+	}
+
+	// Visible for testing, so that tests can control the passage of time
+	RefreshLease(Path leaseFile, String ownerId, long leaseMillis, LongSupplier clock) {
+		if (leaseFile == null) {
+			throw new IllegalArgumentException("leaseFile cannot be null");
+		}
+		if (ownerId == null || ownerId.isEmpty() || ownerId.contains("\n")) {
+			throw new IllegalArgumentException("ownerId must be a non-empty single line");
+		}
+		if (leaseMillis <= 0) {
+			throw new IllegalArgumentException("leaseMillis must be positive");
+		}
+		this.leaseFile = leaseFile;
+		this.ownerId = ownerId;
+		this.leaseMillis = leaseMillis;
+		this.clock = clock;
+	}
+
+	String getOwnerId() {
+		return ownerId;
+	}
+
+	/**
+	 * Acquire the lease, or renew it if this process already holds it
+	 *
+	 * @return True if this process holds the lease for the next lease period
+	 * @throws IOException Thrown if the lease file cannot be locked, read or written
+	 */
+	boolean tryAcquire() throws IOException {
+		synchronized (IN_PROCESS_LOCK) {
+			try (FileChannel channel = FileChannel.open(leaseFile,
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+					FileLock lock = channel.lock()) {
+				String[] lease = read(channel);
+				long now = clock.getAsLong();
+				if (lease != null && !lease[0].equals(ownerId) && Long.parseLong(lease[1]) > now) {
+					return false;
+				}
+				write(channel, now + leaseMillis);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Give up the lease if this process holds it, so that another process can take over right away
+	 *
+	 * @throws IOException Thrown if the lease file cannot be locked, read or written
+	 */
+	void release() throws IOException {
+		synchronized (IN_PROCESS_LOCK) {
+			try (FileChannel channel = FileChannel.open(leaseFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+					FileLock lock = channel.lock()) {
+				String[] lease = read(channel);
+				if (lease != null && lease[0].equals(ownerId)) {
+					write(channel, 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Owner ID and expiry time, or null if the file is empty or not a valid lease
+	 */
+	private static String[] read(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(MAX_LEASE_FILE_BYTES);
+		channel.position(0);
+		while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			// Keep reading until the buffer is full or the end of the file
+		}
+		buffer.flip();
+		String[] lines = StandardCharsets.UTF_8.decode(buffer).toString().split("\n");
+		if (lines.length < 2 || lines[0].isEmpty()) {
+			return null;
+		}
+		try {
+			Long.parseLong(lines[1]);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return new String[] { lines[0], lines[1] };
+	}
+
+	private void write(FileChannel channel, long expiresEpochMillis) throws IOException {
+		ByteBuffer buffer = StandardCharsets.UTF_8.encode(ownerId + "\n" + expiresEpochMillis + "\n");
+		channel.truncate(0);
+		channel.position(0);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		channel.force(true);
+	}
+
+}
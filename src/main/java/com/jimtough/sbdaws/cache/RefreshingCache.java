@@ -0,0 +1,403 @@
+package com.jimtough.sbdaws.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jimtough.sbdaws.metrics.RequestTrace;
+
+/**
+ * Size-bounded cache where each entry has a time-to-live (TTL), with stale-while-revalidate behaviour.
+ *
+ * <ul>
+ * <li>A lookup for a key with no value blocks until the value is loaded. Concurrent lookups for the
+ * same key share one load, so a burst of lookups results in exactly one call to the loader.</li>
+ * <li>A lookup for a key whose value is older than the TTL returns the old (stale) value immediately
+ * and starts one background refresh. Lookups that arrive while the refresh is running also get the
+ * stale value and do not start another refresh. If the refresh fails, the stale value is kept.</li>
+ * <li>If a refresh loads a value that is equal to the old one, the old instance is kept. The same
+ * instance is therefore returned for as long as the data does not change, so callers can detect
+ * a change by comparing references.</li>
+ * <li>When the cache holds more than the maximum number of entries, the least recently used entry
+ * is removed.</li>
+ * </ul>
+ *
+ * Lookups can also be made without blocking, with {@link #getAsync(Object, CacheLoader)}. They
+ * share the in-flight loads with the blocking lookups.
+ *
+ * Lookups made for a traced request are added to its {@code RequestTrace}.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ * @author JTOUGH
+ */
+public class RefreshingCache<K, V> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RefreshingCache.class);
+
+	private final String name;
+	private final long ttlNanos;
+	private final int maxEntries;
+	private final Executor refreshExecutor;
+	private final LongSupplier nanoClock;
+	private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder staleHitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder loadFailureCount = new LongAdder();
+	private final LongAdder refreshCount = new LongAdder();
+	private final LongAdder refreshFailureCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Constructor
+	 * @param name Name of the cache (used in log messages and statistics)
+	 * @param ttl Time-to-live for each value
+	 * @param ttlUnit Time unit for the TTL
+	 * @param maxEntries Maximum number of entries
+	 * @param refreshExecutor Runs the background refreshes of stale values, and the loads started by
+	 * {@link #getAsync(Object, CacheLoader)}
+	 */
+	public RefreshingCache(String name, long ttl, TimeUnit ttlUnit, int maxEntries, Executor refreshExecutor) {
+		this(name, ttl, ttlUnit, maxEntries, refreshExecutor, System::nanoTime);
+	}
+
+	// Visible for testing, so that tests can control the passage of time
+	RefreshingCache(String name, long ttl, TimeUnit ttlUnit, int maxEntries, Executor refreshExecutor,
+			LongSupplier nanoClock) {
+		if (name == null) {
+			throw new IllegalArgumentException("name cannot be null");
+		}
+		if (ttl < 0) {
+			throw new IllegalArgumentException("ttl cannot be negative");
+		}
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be at least 1");
+		}
+		if (refreshExecutor == null) {
+			throw new IllegalArgumentException("refreshExecutor cannot be null");
+		}
+		this.name = name;
+		this.ttlNanos = ttlUnit.toNanos(ttl);
+		this.maxEntries = maxEntries;
+		this.refreshExecutor = refreshExecutor;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Get the value for a key, loading it if necessary
+	 *
+	 * @param key Non-null key
+	 * @param loader Loads the value for this key if it is missing or stale
+	 * @return Non-null value (possibly stale, if a refresh is in progress or the last refresh failed)
+	 * @throws CacheLoadException Thrown if there is no value for the key and the loader failed
+	 */
+	public V get(K key, CacheLoader<V> loader) throws CacheLoadException {
+		Entry<V> entry = entryFor(key);
+		Loaded<V> loaded = lookUp(key, entry, loader);
+		if (loaded != null) {
+			return loaded.value;
+		}
+		return awaitLoad(key, entry, loader);
+	}
+
+	/**
+	 * Same as {@link #get(Object, CacheLoader)}, but without blocking the calling thread. A lookup
+	 * for a key with no value joins the load that is in flight for it, if there is one. Otherwise
+	 * it starts the load on the refresh executor.
+	 *
+	 * @param key Non-null key
+	 * @param loader Loads the value for this key if it is missing or stale
+	 * @return Completes with a non-null value, or exceptionally with a {@code CacheLoadException}
+	 * if there is no value for the key and the loader failed
+	 */
+	public CompletableFuture<V> getAsync(K key, CacheLoader<V> loader) {
+		Entry<V> entry = entryFor(key);
+		Loaded<V> loaded = lookUp(key, entry, loader);
+		if (loaded != null) {
+			return CompletableFuture.completedFuture(loaded.value);
+		}
+		CompletableFuture<V> myFuture = new CompletableFuture<>();
+		CompletableFuture<V> future = joinOrStart(entry, myFuture);
+		if (future == myFuture) {
+			startLoad(key, entry, loader, myFuture);
+		}
+		CompletableFuture<V> result = new CompletableFuture<>();
+		future.whenComplete((value, error) -> {
+			if (error == null) {
+				result.complete(value);
+			} else {
+				result.completeExceptionally(new CacheLoadException(
+						"Unable to load value | cache: [" + name + "] | key: [" + key + "]", error));
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Get the value for a key without loading it. This does not count as a lookup, and does not
+	 * start a refresh of a stale value.
+	 *
+	 * @param key Non-null key
+	 * @return The value (possibly stale), or null if there is none
+	 */
+	public V peek(K key) {
+		if (key == null) {
+			throw new IllegalArgumentException("key cannot be null");
+		}
+		Entry<V> entry = entries.get(key);
+		Loaded<V> loaded = entry == null ? null : entry.loaded;
+		return loaded == null ? null : loaded.value;
+	}
+
+	/**
+	 * Put a value that was obtained some other way (such as from a snapshot saved by an earlier
+	 * run), but only if the key has no value and no load is in progress. The value is treated as
+	 * stale, so the first lookup returns it immediately and starts a background refresh.
+	 *
+	 * @param key Non-null key
+	 * @param value Non-null value
+	 * @return True if the value was put
+	 */
+	public boolean prime(K key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("value cannot be null");
+		}
+		Entry<V> entry = entryFor(key);
+		CompletableFuture<V> future = new CompletableFuture<>();
+		// Holding the in-flight slot keeps a concurrent load from being overwritten by the older value
+		if (!entry.inFlight.compareAndSet(null, future)) {
+			return false;
+		}
+		boolean primed = entry.loaded == null;
+		if (primed) {
+			long now = nanoClock.getAsLong();
+			entry.lastAccessNanos = now;
+			entry.loaded = new Loaded<>(value, now - ttlNanos);
+		}
+		entry.inFlight.set(null);
+		future.complete(value);
+		return primed;
+	}
+
+	/**
+	 * @return Snapshot of the counters for this cache
+	 */
+	public CacheStatistics getStatistics() {
+		return new CacheStatistics(name, hitCount.sum(), staleHitCount.sum(), missCount.sum(),
+				loadFailureCount.sum(), refreshCount.sum(), refreshFailureCount.sum(), evictionCount.sum(),
+				entries.size());
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	private Entry<V> entryFor(K key) {
+		if (key == null) {
+			throw new IllegalArgumentException("key cannot be null");
+		}
+		Entry<V> entry = entries.get(key);
+		if (entry != null) {
+			return entry;
+		}
+		entry = entries.computeIfAbsent(key, k -> new Entry<>());
+		if (entries.size() > maxEntries) {
+			evictLeastRecentlyUsed(key);
+		}
+		return entry;
+	}
+
+	private void evictLeastRecentlyUsed(K keyToKeep) {
+		// The cache is expected to hold a small number of entries, so a linear scan is good enough
+		K oldestKey = null;
+		Entry<V> oldestEntry = null;
+		for (Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+			if (e.getKey().equals(keyToKeep)) {
+				continue;
+			}
+			if (oldestEntry == null || e.getValue().lastAccessNanos < oldestEntry.lastAccessNanos) {
+				oldestKey = e.getKey();
+				oldestEntry = e.getValue();
+			}
+		}
+		if (oldestKey != null && entries.remove(oldestKey, oldestEntry)) {
+			evictionCount.increment();
+			LOGGER.debug("Evicted entry | cache: [{}] | key: [{}]", name, oldestKey);
+		}
+	}
+
+	/**
+	 * Counts the lookup, and starts a refresh if the value is stale
+	 *
+	 * @return The value (possibly stale), or null if there is none
+	 */
+	private Loaded<V> lookUp(K key, Entry<V> entry, CacheLoader<V> loader) {
+		long now = nanoClock.getAsLong();
+		entry.lastAccessNanos = now;
+		Loaded<V> loaded = entry.loaded;
+		RequestTrace trace = RequestTrace.current();
+		if (loaded != null) {
+			if (now - loaded.loadedAtNanos < ttlNanos) {
+				hitCount.increment();
+				if (trace != null) {
+					trace.addCacheLookup(name, "HIT");
+				}
+			} else {
+				staleHitCount.increment();
+				if (trace != null) {
+					trace.addCacheLookup(name, "STALE_HIT");
+				}
+				startRefresh(key, entry, loader);
+			}
+			return loaded;
+		}
+		missCount.increment();
+		if (trace != null) {
+			trace.addCacheLookup(name, "MISS");
+		}
+		return null;
+	}
+
+	private V awaitLoad(K key, Entry<V> entry, CacheLoader<V> loader) throws CacheLoadException {
+		CompletableFuture<V> myFuture = new CompletableFuture<>();
+		CompletableFuture<V> future = joinOrStart(entry, myFuture);
+		if (future == myFuture) {
+			// This thread won the race, so it does the load. Another thread may have finished
+			// a load between our first look at the entry and now, so check again.
+			Loaded<V> loaded = entry.loaded;
+			if (loaded != null) {
+				entry.inFlight.set(null);
+				myFuture.complete(loaded.value);
+			} else {
+				load(entry, loader, myFuture);
+			}
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new CacheLoadException("Unable to load value | cache: [" + name + "] | key: [" + key + "]",
+					e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CacheLoadException("Interrupted while waiting for value | cache: [" + name + "]", e);
+		}
+	}
+
+	private void startLoad(K key, Entry<V> entry, CacheLoader<V> loader, CompletableFuture<V> future) {
+		// Another thread may have finished a load between our first look at the entry and now
+		Loaded<V> loaded = entry.loaded;
+		if (loaded != null) {
+			entry.inFlight.set(null);
+			future.complete(loaded.value);
+			return;
+		}
+		// The SDK calls made by the load are added to the trace of the request that started it
+		RequestTrace trace = RequestTrace.current();
+		CacheLoader<V> tracedLoader = trace == null ? loader : trace.wrap(loader::load)::call;
+		try {
+			refreshExecutor.execute(() -> load(entry, tracedLoader, future));
+		} catch (RejectedExecutionException e) {
+			LOGGER.warn("Load rejected | cache: [{}] | key: [{}]", name, key);
+			loadFailureCount.increment();
+			entry.inFlight.set(null);
+			future.completeExceptionally(e);
+		}
+	}
+
+	private CompletableFuture<V> joinOrStart(Entry<V> entry, CompletableFuture<V> myFuture) {
+		while (true) {
+			CompletableFuture<V> existing = entry.inFlight.get();
+			if (existing != null) {
+				return existing;
+			}
+			if (entry.inFlight.compareAndSet(null, myFuture)) {
+				return myFuture;
+			}
+		}
+	}
+
+	private void load(Entry<V> entry, CacheLoader<V> loader, CompletableFuture<V> future) {
+		try {
+			V value = loader.load();
+			if (value == null) {
+				throw new IllegalStateException("Loader returned null");
+			}
+			entry.loaded = new Loaded<>(value, nanoClock.getAsLong());
+			entry.inFlight.set(null);
+			future.complete(value);
+		} catch (Throwable t) {
+			loadFailureCount.increment();
+			entry.inFlight.set(null);
+			future.completeExceptionally(t);
+		}
+	}
+
+	private void startRefresh(K key, Entry<V> entry, CacheLoader<V> loader) {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		if (!entry.inFlight.compareAndSet(null, future)) {
+			// A refresh is already running for this entry
+			return;
+		}
+		refreshCount.increment();
+		try {
+			refreshExecutor.execute(() -> refresh(key, entry, loader, future));
+		} catch (RejectedExecutionException e) {
+			LOGGER.warn("Background refresh rejected | cache: [{}] | key: [{}]", name, key);
+			refreshFailureCount.increment();
+			entry.inFlight.set(null);
+			future.completeExceptionally(e);
+		}
+	}
+
+	private void refresh(K key, Entry<V> entry, CacheLoader<V> loader, CompletableFuture<V> future) {
+		try {
+			V value = loader.load();
+			if (value == null) {
+				throw new IllegalStateException("Loader returned null");
+			}
+			Loaded<V> previous = entry.loaded;
+			if (previous != null && previous.value.equals(value)) {
+				value = previous.value;
+			}
+			entry.loaded = new Loaded<>(value, nanoClock.getAsLong());
+			entry.inFlight.set(null);
+			future.complete(value);
+			LOGGER.debug("Background refresh completed | cache: [{}] | key: [{}]", name, key);
+		} catch (Throwable t) {
+			refreshFailureCount.increment();
+			entry.inFlight.set(null);
+			future.completeExceptionally(t);
+			LOGGER.warn("Background refresh failed, keeping stale value | cache: [{}] | key: [{}]", name, key, t);
+		}
+	}
+
+	private static final class Entry<V> {
+		volatile Loaded<V> loaded;
+		volatile long lastAccessNanos;
+		final AtomicReference<CompletableFuture<V>> inFlight = new AtomicReference<>();
+	}
+
+	private static final class Loaded<V> {
+		final V value;
+		final long loadedAtNanos;
+
+		Loaded(V value, long loadedAtNanos) {
+			this.value = value;
+			this.loadedAtNanos = loadedAtNanos;
+		}
+	}
+
+}
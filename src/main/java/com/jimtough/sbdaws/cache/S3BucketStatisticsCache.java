@@ -0,0 +1,160 @@
+package com.jimtough.sbdaws.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.S3BucketStatistics;
+import com.jimtough.sbdaws.awssdk.S3BucketStatisticsReport;
+
+/**
+ * Holds the latest statistics of the S3 buckets, which are collected again on a fixed schedule.
+ *
+ * Listing every object in every bucket takes far too long to do on a request, so it is only done
+ * on a background thread. The next collection starts a fixed time after the last one ended, so
+ * collections never overlap. Readers always get the last complete report, without waiting.
+ *
+ * If a bucket fails in one collection, the statistics that it had in the previous report are
+ * kept (with their older collection time), and it is also listed as failed. If the whole
+ * collection fails, the previous report is kept.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class S3BucketStatisticsCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(S3BucketStatisticsCache.class);
+
+	private final AwsEnvironmentInterrogator interrogator;
+	private final boolean enabled;
+	private final long refreshIntervalMillis;
+	private final ScheduledThreadPoolExecutor refreshExecutor;
+
+	// Null until the first collection succeeds
+	private volatile S3BucketStatisticsReport report;
+
+	// Only written by the refresh thread
+	private volatile long refreshCount;
+	private volatile long refreshFailureCount;
+	private volatile String lastFailureMessage;
+
+	@Autowired
+	public S3BucketStatisticsCache(ConfigurationBean configurationBean, AwsEnvironmentInterrogator interrogator) {
+		this(interrogator, configurationBean.isAwsS3StatisticsEnabled(),
+				TimeUnit.MINUTES.toMillis(configurationBean.getAwsS3StatisticsRefreshIntervalMinutes()));
+	}
+
+	S3BucketStatisticsCache(AwsEnvironmentInterrogator interrogator, boolean enabled, long refreshIntervalMillis) {
+		if (interrogator == null) {
+			throw new IllegalArgumentException("interrogator cannot be null");
+		}
+		if (enabled && refreshIntervalMillis <= 0) {
+			throw new IllegalArgumentException("refreshIntervalMillis must be positive");
+		}
+		this.interrogator = interrogator;
+		this.enabled = enabled;
+		this.refreshIntervalMillis = refreshIntervalMillis;
+		this.refreshExecutor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("s3-statistics-"));
+	}
+
+	/**
+	 * Start the first collection (in the background), and the ones after it
+	 */
+	@PostConstruct
+	public void start() {
+		if (!enabled) {
+			LOGGER.info("S3 bucket statistics are disabled");
+			return;
+		}
+		refreshExecutor.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		refreshExecutor.shutdownNow();
+	}
+
+	/**
+	 * @return True if the statistics are collected
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return The latest report, or null if no collection has succeeded yet
+	 */
+	public S3BucketStatisticsReport getReport() {
+		return report;
+	}
+
+	/**
+	 * @return Number of collections that have finished, successful or not
+	 */
+	public long getRefreshCount() {
+		return refreshCount;
+	}
+
+	/**
+	 * @return Number of collections that failed completely
+	 */
+	public long getRefreshFailureCount() {
+		return refreshFailureCount;
+	}
+
+	/**
+	 * @return Message of the last collection that failed completely, or null
+	 */
+	public String getLastFailureMessage() {
+		return lastFailureMessage;
+	}
+
+	/**
+	 * Collect the statistics now, on the calling thread
+	 */
+	void refresh() {
+		try {
+			S3BucketStatisticsReport latest = interrogator.getS3BucketStatistics();
+			report = mergeWithPrevious(latest, report);
+			LOGGER.info("S3 bucket statistics refreshed | {}", report);
+		} catch (Exception e) {
+			lastFailureMessage = e.toString();
+			refreshFailureCount++;
+			LOGGER.error("Unable to refresh S3 bucket statistics. Keeping the previous report.", e);
+		} finally {
+			refreshCount++;
+		}
+	}
+
+	static S3BucketStatisticsReport mergeWithPrevious(S3BucketStatisticsReport latest, S3BucketStatisticsReport previous) {
+		if (previous == null || latest.isComplete()) {
+			return latest;
+		}
+		List<S3BucketStatistics> buckets = new ArrayList<>(latest.getBuckets());
+		Set<String> failed = new HashSet<>(latest.getFailedBuckets().keySet());
+		for (S3BucketStatistics old : previous.getBuckets()) {
+			if (failed.contains(old.getBucketName())) {
+				buckets.add(old);
+			}
+		}
+		// The bucket list is sorted by name, so this puts the old statistics back in their place
+		buckets.sort(Comparator.comparing(S3BucketStatistics::getBucketName));
+		return new S3BucketStatisticsReport(buckets, latest.getFailedBuckets(), latest.getCollectedEpochMillis());
+	}
+
+}
@@ -0,0 +1,297 @@
+package com.jimtough.sbdaws.cache;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Inventory that is shared by every task that mounts the same EFS volume, so that the number of
+ * AWS calls does not grow with the number of tasks.
+ *
+ * Every task tries to acquire (or renew) the {@code RefreshLease} on a fixed schedule. The task
+ * that holds it is the leader. Only the leader calls AWS for the IAM user, ECS clusters and S3
+ * buckets, and it saves them to the shared directory as an {@code InventorySnapshot} file, which
+ * is replaced atomically. The {@code InventoryCache} of every task (the leader included) loads
+ * its values from that file.
+ *
+ * The shared values are only used while they are younger than the lease. If the leader stops,
+ * the values get older than that, and each task calls AWS itself until another task acquires the
+ * lease and writes new values. A value that the leader could not load is left out of the file,
+ * rather than written again with a new time, so each task calls AWS itself for that value. The EC2 inventory is not shared, since it is only loaded when the
+ * API asks for it.
+ *
+ * The shared file is only read again when its attributes change. The time taken by each refresh
+ * and read is recorded as the operations "inventory.shared.refresh" and "inventory.shared.read".
+ *
+ * @author JTOUGH
+ */
+@Component
+public class SharedInventory {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SharedInventory.class);
+
+	static final String SNAPSHOT_FILE_NAME = "inventory.snapshot";
+	static final String LEASE_FILE_NAME = "refresh.lease";
+
+	private final ConfigurationBean configurationBean;
+	private final AwsEnvironmentInterrogator interrogator;
+	private final Path directory;
+	private final long refreshIntervalMillis;
+	private final long leaseMillis;
+	private final RefreshLease lease;
+	private final OperationMetrics refreshMetrics;
+	private final OperationMetrics readMetrics;
+	private final ScheduledThreadPoolExecutor leaderExecutor;
+
+	private volatile boolean leader;
+	private final AtomicLong refreshCount = new AtomicLong();
+	// The last file that was read (or written by this task), and its attributes
+	private volatile ReadSnapshot lastRead;
+
+	@Autowired
+	public SharedInventory(ConfigurationBean configurationBean, AwsEnvironmentInterrogator interrogator,
+			MetricsRegistry metricsRegistry) {
+		this(configurationBean, interrogator, metricsRegistry,
+				toDirectory(configurationBean.getInventorySharedDirectory()),
+				TimeUnit.SECONDS.toMillis(configurationBean.getInventorySharedRefreshIntervalSeconds()),
+				TimeUnit.SECONDS.toMillis(configurationBean.getInventorySharedLeaseSeconds()),
+				ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID());
+	}
+
+	SharedInventory(ConfigurationBean configurationBean, AwsEnvironmentInterrogator interrogator,
+			MetricsRegistry metricsRegistry, Path directory, long refreshIntervalMillis, long leaseMillis,
+			String ownerId) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (interrogator == null) {
+			throw new IllegalArgumentException("interrogator cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		if (directory != null && (refreshIntervalMillis <= 0 || leaseMillis <= refreshIntervalMillis)) {
+			throw new IllegalArgumentException("the lease must be longer than the refresh interval, so the leader can renew it");
+		}
+		this.configurationBean = configurationBean;
+		this.interrogator = interrogator;
+		this.directory = directory;
+		this.refreshIntervalMillis = refreshIntervalMillis;
+		this.leaseMillis = leaseMillis;
+		this.lease = directory == null ? null : new RefreshLease(directory.resolve(LEASE_FILE_NAME), ownerId, leaseMillis);
+		this.refreshMetrics = metricsRegistry.operation("inventory.shared.refresh");
+		this.readMetrics = metricsRegistry.operation("inventory.shared.read");
+		this.leaderExecutor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("shared-inventory-"));
+	}
+
+	private static Path toDirectory(String directory) {
+		return directory == null || directory.trim().isEmpty() ? null : Paths.get(directory.trim());
+	}
+
+	/**
+	 * Start trying to become the leader, on a fixed schedule
+	 */
+	@PostConstruct
+	public void start() {
+		if (!isEnabled()) {
+			LOGGER.info("The shared inventory is disabled");
+			return;
+		}
+		LOGGER.info("Shared inventory | directory: [{}] | owner: [{}]", directory, lease.getOwnerId());
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			// Every tick will fail to acquire the lease, so this task calls AWS itself
+			LOGGER.warn("Unable to create the shared inventory directory | directory: [{}]", directory, e);
+		}
+		leaderExecutor.scheduleWithFixedDelay(this::tick, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		leaderExecutor.shutdownNow();
+		if (leader) {
+			try {
+				lease.release();
+				LOGGER.info("Released the shared inventory lease");
+			} catch (IOException e) {
+				LOGGER.warn("Unable to release the shared inventory lease. It will expire instead.", e);
+			}
+			leader = false;
+		}
+	}
+
+	/**
+	 * @return True if a shared directory is configured
+	 */
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * @return True if this task held the lease at its last attempt
+	 */
+	public boolean isLeader() {
+		return leader;
+	}
+
+	/**
+	 * @return Number of times that this task has refreshed the shared inventory
+	 */
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+
+	/**
+	 * Never calls AWS. Returns null, so that the caller calls AWS itself, if the shared inventory is
+	 * disabled, missing, unreadable, older than the lease, or for other target regions.
+	 *
+	 * @return The shared inventory, or null
+	 */
+	public InventorySnapshot getLatest() {
+		if (!isEnabled()) {
+			return null;
+		}
+		InventorySnapshot snapshot = read();
+		if (snapshot == null
+				|| System.currentTimeMillis() - snapshot.getCreatedEpochMillis() > leaseMillis
+				|| !InventoryCache.targetRegionKey(configurationBean).equals(snapshot.getTargetRegionKey())
+				|| !InventoryCache.targetRegionsKey(configurationBean).equals(snapshot.getTargetRegionsKey())) {
+			return null;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Acquire or renew the lease, and refresh the shared inventory if this task is the leader
+	 */
+	void tick() {
+		boolean wasLeader = leader;
+		try {
+			leader = lease.tryAcquire();
+		} catch (IOException | RuntimeException e) {
+			leader = false;
+			LOGGER.warn("Unable to acquire the shared inventory lease | directory: [{}]", directory, e);
+		}
+		if (leader != wasLeader) {
+			LOGGER.info("Shared inventory leadership changed | leader: [{}] | owner: [{}]", leader, lease.getOwnerId());
+		}
+		if (leader) {
+			refresh();
+		}
+	}
+
+	private void refresh() {
+		long startNanos = System.nanoTime();
+		// A section that cannot be loaded is left out. Its previous value would be labelled as fresh.
+		User iamUser = null;
+		EcsClusterInventory ecsClusterInventory = null;
+		List<Bucket> s3Buckets = null;
+		try {
+			iamUser = interrogator.getIAMUser();
+		} catch (AwsSdkException | RuntimeException e) {
+			LOGGER.warn("Unable to refresh the shared IAM user", e);
+		}
+		try {
+			ecsClusterInventory = interrogator.getECSClusterInventory();
+		} catch (AwsSdkException | RuntimeException e) {
+			LOGGER.warn("Unable to refresh the shared ECS clusters", e);
+		}
+		try {
+			s3Buckets = interrogator.getS3BucketList();
+		} catch (AwsSdkException | RuntimeException e) {
+			LOGGER.warn("Unable to refresh the shared S3 buckets", e);
+		}
+		InventorySnapshot snapshot = new InventorySnapshot(System.currentTimeMillis(),
+				InventoryCache.targetRegionKey(configurationBean), InventoryCache.targetRegionsKey(configurationBean),
+				iamUser, ecsClusterInventory, s3Buckets, null, null);
+		Path file = directory.resolve(SNAPSHOT_FILE_NAME);
+		try {
+			InventorySnapshotFile.write(file, snapshot, directory);
+			lastRead = new ReadSnapshot(Files.readAttributes(file, BasicFileAttributes.class), snapshot);
+			refreshCount.incrementAndGet();
+			refreshMetrics.recordSuccess(System.nanoTime() - startNanos);
+			LOGGER.debug("Shared inventory refreshed | {}", snapshot);
+		} catch (IOException | RuntimeException e) {
+			refreshMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			LOGGER.warn("Unable to write the shared inventory | file: [{}]", file, e);
+		}
+	}
+
+	private synchronized InventorySnapshot read() {
+		Path file = directory.resolve(SNAPSHOT_FILE_NAME);
+		ReadSnapshot previousRead = lastRead;
+		long startNanos = System.nanoTime();
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			if (previousRead != null && previousRead.isSameFile(attributes)) {
+				return previousRead.snapshot;
+			}
+			InventorySnapshot snapshot = InventorySnapshotFile.read(file, directory);
+			lastRead = new ReadSnapshot(attributes, snapshot);
+			readMetrics.recordSuccess(System.nanoTime() - startNanos);
+			return snapshot;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException | RuntimeException e) {
+			// Possibly a file from a newer version of the app. Call AWS directly instead.
+			readMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			LOGGER.warn("Unable to read the shared inventory | file: [{}]", file, e);
+			return null;
+		}
+	}
+
+	private static final class ReadSnapshot {
+		final Object fileKey;
+		final FileTime lastModifiedTime;
+		final long size;
+		final InventorySnapshot snapshot;
+
+		ReadSnapshot(BasicFileAttributes attributes, InventorySnapshot snapshot) {
+			this.fileKey = attributes.fileKey();
+			this.lastModifiedTime = attributes.lastModifiedTime();
+			this.size = attributes.size();
+			this.snapshot = snapshot;
+		}
+
+		/**
+		 * The file is replaced by a rename, so a new file has a new file key (inode) where there is one
+		 */
+		boolean isSameFile(BasicFileAttributes attributes) {
+			return Objects.equals(fileKey, attributes.fileKey())
+					&& lastModifiedTime.equals(attributes.lastModifiedTime())
+					&& size == attributes.size();
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Classes that cache the results of slow or expensive lookups
+ */
+package com.jimtough.sbdaws.cache;
@@ -0,0 +1,72 @@
+package com.jimtough.sbdaws.efs;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * Immutable details of one file or directory in the EFS volume
+ *
+ * @author JTOUGH
+ */
+public final class EfsFileEntry {
+
+	private final Path path;
+	private final FileTime creationTime;
+	private final FileTime lastModifiedTime;
+	private final long size;
+	private final boolean directory;
+
+	public EfsFileEntry(Path path, FileTime creationTime, FileTime lastModifiedTime, long size, boolean directory) {
+		if (path == null) {
+			throw new IllegalArgumentException("path cannot be null");
+		}
+		this.path = path;
+		this.creationTime = creationTime;
+		this.lastModifiedTime = lastModifiedTime;
+		this.size = size;
+		this.directory = directory;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public FileTime getCreationTime() {
+		return creationTime;
+	}
+
+	public FileTime getLastModifiedTime() {
+		return lastModifiedTime;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof EfsFileEntry)) {
+			return false;
+		}
+		EfsFileEntry other = (EfsFileEntry) obj;
+		return path.equals(other.path)
+				&& Objects.equals(creationTime, other.creationTime)
+				&& Objects.equals(lastModifiedTime, other.lastModifiedTime)
+				&& size == other.size
+				&& directory == other.directory;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(path, creationTime, lastModifiedTime, size, directory);
+	}
+
+}
@@ -0,0 +1,561 @@
+package com.jimtough.sbdaws.efs;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+/**
+ * In-memory index of every file and directory in the EFS volume, sorted by path.
+ *
+ * The index is built by a full scan that reads all of the attributes of each path in a single
+ * {@code BasicFileAttributes} call. Each directory read on EFS is an NFS round trip, so the scan
+ * reads sibling directories at the same time (see {@code ParallelDirectoryWalker}).
+ *
+ * After that, the index is kept up to date by a {@code WatchService}. Change events are not
+ * reliable on NFS (which is what EFS is), so there is also a periodic full scan as a fallback.
+ * Reading the index never touches the file system.
+ *
+ * All of the scanning and event handling is started from one background thread, which waits for
+ * each scan to finish, so updates to the index never race with each other. Every update that
+ * changes the index increments its version.
+ *
+ * The files that the application writes in the volume for its own use (see
+ * {@code EfsHousekeepingPaths}) are left out of the index.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class EfsFileIndex {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EfsFileIndex.class);
+
+	private static final long WATCH_POLL_INTERVAL_MILLIS = 1000L;
+
+	// "dir" + this suffix sorts after every "dir/..." path, because '0' comes right after '/'
+	private static final String SUBTREE_UPPER_BOUND_SUFFIX = "0";
+	// "dir/" + this name sorts before every "dir/..." path, but after siblings such as "dir-2"
+	private static final String SUBTREE_LOWER_BOUND_NAME = "\u0001";
+
+	private final Path root;
+	private final long rescanIntervalMillis;
+	private final boolean watchEnabled;
+	private final ParallelDirectoryWalker walker;
+	private final EfsHousekeepingPaths housekeepingPaths;
+	private final ScheduledThreadPoolExecutor indexExecutor;
+	private final CountDownLatch firstScanDone = new CountDownLatch(1);
+	// Completed at the same time as the latch, for the callers that must not block
+	private final CompletableFuture<Void> firstScanCompleted = new CompletableFuture<>();
+	private final OperationMetrics fullScanMetrics;
+
+	// Replaced by each full scan, and updated in place by the change events
+	private volatile ConcurrentSkipListMap<Path, EfsFileEntry> entries = new ConcurrentSkipListMap<>();
+	// Incremented (by the index thread) after each change to the entries
+	private volatile long version;
+	// Returned by getEntries() until the version changes
+	private volatile EntriesSnapshot entriesSnapshot = new EntriesSnapshot(-1, Collections.emptyList());
+	// Returned by getEntries() until the first full scan finishes, if set
+	private volatile List<EfsFileEntry> primedEntries;
+
+	// Created by the index thread. Directories are registered by the walker threads during a scan.
+	private WatchService watchService;
+	private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+	private final AtomicLong fullScanCount = new AtomicLong();
+	private final AtomicLong fullScanFailureCount = new AtomicLong();
+	private final AtomicLong watchEventCount = new AtomicLong();
+	private volatile long lastFullScanMillis = -1;
+	private volatile long lastFullScanCompletedEpochMillis;
+
+	@Autowired
+	public EfsFileIndex(ConfigurationBean configurationBean, MetricsRegistry metricsRegistry) {
+		this(configurationBean.getEfsVolumeMountPath(),
+				TimeUnit.SECONDS.toMillis(configurationBean.getEfsIndexRescanIntervalSeconds()),
+				configurationBean.isEfsIndexWatchEnabled(),
+				new ParallelDirectoryWalker(
+						configurationBean.getEfsIndexWalkParallelism(),
+						configurationBean.getEfsIndexWalkMaxDepth(),
+						TimeUnit.SECONDS.toMillis(configurationBean.getEfsIndexWalkTimeoutSeconds())),
+				EfsHousekeepingPaths.of(configurationBean),
+				metricsRegistry);
+	}
+
+	/**
+	 * The full scans read up to 4 directories at the same time, with no depth limit or timeout
+	 */
+	EfsFileIndex(Path root, long rescanIntervalMillis, boolean watchEnabled, MetricsRegistry metricsRegistry) {
+		this(root, rescanIntervalMillis, watchEnabled, new ParallelDirectoryWalker(4, 0, 0), EfsHousekeepingPaths.NONE,
+				metricsRegistry);
+	}
+
+	EfsFileIndex(Path root, long rescanIntervalMillis, boolean watchEnabled, ParallelDirectoryWalker walker,
+			EfsHousekeepingPaths housekeepingPaths, MetricsRegistry metricsRegistry) {
+		if (root == null) {
+			throw new IllegalArgumentException("root cannot be null");
+		}
+		if (rescanIntervalMillis <= 0) {
+			throw new IllegalArgumentException("rescanIntervalMillis must be positive");
+		}
+		if (walker == null) {
+			throw new IllegalArgumentException("walker cannot be null");
+		}
+		if (housekeepingPaths == null) {
+			throw new IllegalArgumentException("housekeepingPaths cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.walker = walker;
+		this.housekeepingPaths = housekeepingPaths;
+		this.fullScanMetrics = metricsRegistry.operation("efs.index.fullScan");
+		this.root = root.toAbsolutePath().normalize();
+		this.rescanIntervalMillis = rescanIntervalMillis;
+		this.watchEnabled = watchEnabled;
+		this.indexExecutor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("efs-index-"));
+	}
+
+	/**
+	 * Start the first full scan (in the background), the periodic rescans, and the change watcher
+	 */
+	@PostConstruct
+	public void start() {
+		if (watchEnabled) {
+			try {
+				watchService = root.getFileSystem().newWatchService();
+			} catch (IOException | UnsupportedOperationException e) {
+				LOGGER.warn("Unable to watch the EFS volume for changes. Relying on periodic full scans only.", e);
+			}
+		}
+		indexExecutor.scheduleWithFixedDelay(this::fullScan, 0, rescanIntervalMillis, TimeUnit.MILLISECONDS);
+		if (watchService != null) {
+			indexExecutor.scheduleWithFixedDelay(this::applyWatchEvents,
+					WATCH_POLL_INTERVAL_MILLIS, WATCH_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		indexExecutor.shutdownNow();
+		walker.shutdown();
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				LOGGER.warn("Unable to close the EFS watch service", e);
+			}
+		}
+		LOGGER.info("Final EFS file index statistics | {}", getStatistics());
+	}
+
+	/**
+	 * @return Root directory of the index
+	 */
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * Waits for the first full scan if it has not finished yet. After that, this never blocks
+	 * and never touches the file system.
+	 *
+	 * The same unmodifiable list is returned until the index changes, so callers can tell that
+	 * nothing has changed by comparing references.
+	 *
+	 * @return Unmodifiable snapshot of every entry in the index, sorted by path
+	 * @throws InterruptedException Thrown if interrupted while waiting for the first full scan
+	 */
+	public List<EfsFileEntry> getEntries() throws InterruptedException {
+		if (firstScanDone.getCount() > 0) {
+			List<EfsFileEntry> primed = primedEntries;
+			if (primed != null) {
+				return primed;
+			}
+		}
+		firstScanDone.await();
+		return snapshotEntries();
+	}
+
+	/**
+	 * Same as {@link #getEntries()}, but without blocking the calling thread
+	 *
+	 * @return Completes with the entries straight away, or when the first full scan finishes
+	 */
+	public CompletableFuture<List<EfsFileEntry>> getEntriesAsync() {
+		if (firstScanDone.getCount() > 0) {
+			List<EfsFileEntry> primed = primedEntries;
+			if (primed != null) {
+				return CompletableFuture.completedFuture(primed);
+			}
+			return firstScanCompleted.thenApply(v -> snapshotEntries());
+		}
+		return CompletableFuture.completedFuture(snapshotEntries());
+	}
+
+	/**
+	 * Same as {@link #getEntries()}, but never waits for the first full scan
+	 *
+	 * @return Unmodifiable snapshot of every entry in the index, the primed entries if the first
+	 * full scan has not finished, or null if there are neither
+	 */
+	public List<EfsFileEntry> peekEntries() {
+		if (firstScanDone.getCount() > 0) {
+			return primedEntries;
+		}
+		try {
+			return getEntries();
+		} catch (InterruptedException e) {
+			// Not possible once the first scan is done
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Set the entries that {@link #getEntries()} returns until the first full scan finishes, such as
+	 * the entries saved by an earlier run. Has no effect once the first full scan has finished.
+	 * The paged listing still waits for the first full scan.
+	 *
+	 * @param entries Entries sorted by path, with paths under the root of this index
+	 */
+	public void prime(List<EfsFileEntry> entries) {
+		if (entries == null) {
+			throw new IllegalArgumentException("entries cannot be null");
+		}
+		if (firstScanDone.getCount() > 0) {
+			primedEntries = Collections.unmodifiableList(new ArrayList<>(entries));
+		}
+	}
+
+	/**
+	 * @return Number that changes whenever the contents of the index change. It is only meaningful
+	 * within this run of the application.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Get one page of the entries under a directory. Only the entries in the page are copied,
+	 * and subtrees that are deeper than the maximum depth are skipped over without being visited.
+	 *
+	 * The cursor is the relative path of the last entry in the previous page, so paging still
+	 * works if the index changes between pages.
+	 *
+	 * @param query Page request
+	 * @return Non-null page
+	 * @throws IllegalArgumentException Thrown if the subdirectory or cursor is not valid
+	 * @throws NoSuchFileException Thrown if the subdirectory is not in the index
+	 * @throws InterruptedException Thrown if interrupted while waiting for the first full scan
+	 */
+	public EfsFilePage list(EfsFileQuery query) throws NoSuchFileException, InterruptedException {
+		Path directory = resolve(query.getSubdirectory());
+		Path cursorPath = query.getCursor() == null ? null : resolve(decodeCursor(query.getCursor()));
+		if (cursorPath != null && !cursorPath.startsWith(directory)) {
+			throw new IllegalArgumentException("cursor does not belong to this directory");
+		}
+		firstScanDone.await();
+		ConcurrentSkipListMap<Path, EfsFileEntry> current = entries;
+		if (!current.containsKey(directory)) {
+			throw new NoSuchFileException(query.getSubdirectory());
+		}
+
+		boolean descending = query.isDescending();
+		// Every path under the directory sorts between the directory itself and this bound
+		Path upperBound = directory.resolveSibling(directory.getFileName() + SUBTREE_UPPER_BOUND_SUFFIX);
+		NavigableMap<Path, EfsFileEntry> view;
+		if (cursorPath == null) {
+			view = descending
+					? current.headMap(upperBound, false).descendingMap()
+					: current.tailMap(directory, true);
+		} else {
+			view = descending
+					? current.headMap(cursorPath, false).descendingMap()
+					: current.tailMap(cursorPath, false);
+		}
+
+		String prefix = directory.toString();
+		int pageSize = query.getPageSize();
+		List<EfsFileEntry> page = new ArrayList<>(pageSize);
+		boolean more = false;
+		Iterator<Map.Entry<Path, EfsFileEntry>> it = view.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Path, EfsFileEntry> entry = it.next();
+			Path path = entry.getKey();
+			if (!path.toString().startsWith(prefix)) {
+				// Left the range of paths that can be under the directory
+				break;
+			}
+			if (!path.startsWith(directory)) {
+				// A sibling with a similar name, such as "dir-2" next to "dir"
+				continue;
+			}
+			int depth = path.equals(directory) ? 0 : directory.relativize(path).getNameCount();
+			if (depth > query.getMaxDepth()) {
+				// Jump over the rest of the subtree that is too deep
+				Path ancestor = query.getMaxDepth() == 0
+						? directory
+						: directory.resolve(directory.relativize(path).subpath(0, query.getMaxDepth()));
+				it = (descending
+						? current.headMap(ancestor.resolve(SUBTREE_LOWER_BOUND_NAME), false).descendingMap()
+						: current.tailMap(ancestor.resolveSibling(ancestor.getFileName() + SUBTREE_UPPER_BOUND_SUFFIX), true))
+					.entrySet().iterator();
+				continue;
+			}
+			if (page.size() == pageSize) {
+				more = true;
+				break;
+			}
+			page.add(entry.getValue());
+		}
+		String nextCursor = more ? encodeCursor(root.relativize(page.get(page.size() - 1).getPath()).toString()) : null;
+		return new EfsFilePage(page, nextCursor);
+	}
+
+	/**
+	 * @return Snapshot of the index counters
+	 */
+	public EfsIndexStatistics getStatistics() {
+		return new EfsIndexStatistics(entries.size(), fullScanCount.get(), fullScanFailureCount.get(),
+				lastFullScanMillis, lastFullScanCompletedEpochMillis, watchEventCount.get(), watchService != null);
+	}
+
+	/**
+	 * Run a full scan now, on the index thread, and wait for it to finish
+	 */
+	void rescan() throws InterruptedException, ExecutionException {
+		indexExecutor.submit(this::fullScan).get();
+	}
+
+	/**
+	 * Apply any pending change events now, on the index thread, and wait for that to finish
+	 */
+	void applyPendingWatchEvents() throws InterruptedException, ExecutionException {
+		indexExecutor.submit(this::applyWatchEvents).get();
+	}
+
+	/**
+	 * @param relativePath Path relative to the root of the index
+	 * @return Absolute path, which is guaranteed to be inside the root of the index
+	 */
+	private Path resolve(String relativePath) {
+		Path resolved;
+		try {
+			Path relative = root.getFileSystem().getPath(relativePath);
+			if (relative.isAbsolute()) {
+				throw new IllegalArgumentException("path must be relative: [" + relativePath + "]");
+			}
+			resolved = root.resolve(relative).normalize();
+		} catch (InvalidPathException e) {
+			throw new IllegalArgumentException("invalid path: [" + relativePath + "]", e);
+		}
+		if (!resolved.startsWith(root)) {
+			throw new IllegalArgumentException("path is outside of the EFS volume: [" + relativePath + "]");
+		}
+		return resolved;
+	}
+
+	private static String encodeCursor(String relativePath) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(relativePath.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String decodeCursor(String cursor) {
+		try {
+			return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("invalid cursor", e);
+		}
+	}
+
+	private List<EfsFileEntry> snapshotEntries() {
+		// Read the version before the entries. If the index changes during the copy, the snapshot
+		// is labelled with the older version and is simply copied again next time.
+		long currentVersion = version;
+		EntriesSnapshot snapshot = entriesSnapshot;
+		if (snapshot.version != currentVersion) {
+			snapshot = new EntriesSnapshot(currentVersion, Collections.unmodifiableList(new ArrayList<>(entries.values())));
+			entriesSnapshot = snapshot;
+		}
+		return snapshot.entries;
+	}
+
+	private void fullScan() {
+		long startNanos = System.nanoTime();
+		ConcurrentSkipListMap<Path, EfsFileEntry> scanned = new ConcurrentSkipListMap<>();
+		try {
+			scanInto(root, scanned);
+			if (!scanned.equals(entries)) {
+				entries = scanned;
+				version++;
+			}
+			long durationNanos = System.nanoTime() - startNanos;
+			fullScanMetrics.recordSuccess(durationNanos);
+			lastFullScanMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+			lastFullScanCompletedEpochMillis = System.currentTimeMillis();
+			fullScanCount.incrementAndGet();
+			LOGGER.debug("EFS full scan complete | entries: [{}] | ms: [{}]", scanned.size(), lastFullScanMillis);
+		} catch (IOException | RuntimeException e) {
+			// Keep serving the previous index
+			fullScanMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			fullScanFailureCount.incrementAndGet();
+			LOGGER.error("Exception while scanning dir tree from root dir: [{}]", root, e);
+		} finally {
+			firstScanDone.countDown();
+			firstScanCompleted.complete(null);
+			primedEntries = null;
+		}
+	}
+
+	/**
+	 * Walks the tree under the start path, putting an entry for every path into the target map.
+	 * Also starts watching every directory before it is read, so that nothing created during the
+	 * walk is missed. Directories below the max depth are not read, so they are not watched either.
+	 */
+	private void scanInto(Path start, Map<Path, EfsFileEntry> target) throws IOException {
+		int startDepth = start.equals(root) ? 0 : root.relativize(start).getNameCount();
+		walker.walk(start, startDepth, target, this::watch, housekeepingPaths::contains);
+	}
+
+	private void watch(Path dir) {
+		if (watchService == null) {
+			return;
+		}
+		try {
+			// Registering a directory that is already registered returns the same key
+			watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+		} catch (IOException e) {
+			LOGGER.debug("Unable to watch directory | path: [{}]", dir, e);
+		}
+	}
+
+	private void applyWatchEvents() {
+		boolean overflow = false;
+		WatchKey key;
+		try {
+			while ((key = watchService.poll()) != null) {
+				Path dir = watchedDirectories.get(key);
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW || dir == null) {
+						overflow = true;
+						continue;
+					}
+					watchEventCount.incrementAndGet();
+					Path child = dir.resolve((Path) event.context());
+					if (event.kind() == ENTRY_DELETE) {
+						remove(child);
+					} else {
+						update(child, event.kind() == ENTRY_CREATE);
+					}
+				}
+				if (!key.reset()) {
+					watchedDirectories.remove(key);
+				}
+			}
+		} catch (RuntimeException e) {
+			LOGGER.warn("Unable to apply EFS change events", e);
+			overflow = true;
+		}
+		if (overflow) {
+			// Some events were lost, so the index can no longer be trusted
+			LOGGER.info("EFS change events were lost. Running a full scan.");
+			fullScan();
+		}
+	}
+
+	private void update(Path path, boolean created) {
+		if (housekeepingPaths.contains(path)) {
+			return;
+		}
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			if (created && attrs.isDirectory()) {
+				// Anything created inside the new directory before it was watched would otherwise be missed
+				scanInto(path, entries);
+				version++;
+			} else {
+				EfsFileEntry entry = ParallelDirectoryWalker.toEntry(path, attrs);
+				if (!entry.equals(entries.put(path, entry))) {
+					version++;
+				}
+			}
+		} catch (NoSuchFileException e) {
+			remove(path);
+		} catch (IOException e) {
+			LOGGER.debug("Unable to read file attributes | path: [{}]", path, e);
+		}
+	}
+
+	/**
+	 * Removes the path and everything under it
+	 */
+	private void remove(Path path) {
+		ConcurrentSkipListMap<Path, EfsFileEntry> current = entries;
+		boolean changed = current.remove(path) != null;
+		// Every path that starts with this string is sorted together, right after it
+		String prefix = path.toString();
+		Iterator<Path> it = current.tailMap(path, false).keySet().iterator();
+		while (it.hasNext()) {
+			Path candidate = it.next();
+			if (!candidate.toString().startsWith(prefix)) {
+				break;
+			}
+			if (candidate.startsWith(path)) {
+				it.remove();
+				changed = true;
+			}
+		}
+		if (changed) {
+			version++;
+		}
+	}
+
+	private static final class EntriesSnapshot {
+		final long version;
+		final List<EfsFileEntry> entries;
+
+		EntriesSnapshot(long version, List<EfsFileEntry> entries) {
+			this.version = version;
+			this.entries = entries;
+		}
+	}
+
+}
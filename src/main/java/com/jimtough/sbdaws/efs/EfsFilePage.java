@@ -0,0 +1,35 @@
+package com.jimtough.sbdaws.efs;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the EFS file listing
+ *
+ * @author JTOUGH
+ */
+public final class EfsFilePage {
+
+	private final List<EfsFileEntry> entries;
+	private final String nextCursor;
+
+	EfsFilePage(List<EfsFileEntry> entries, String nextCursor) {
+		this.entries = Collections.unmodifiableList(entries);
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * @return Entries in this page, in the requested order
+	 */
+	public List<EfsFileEntry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return Cursor for the next page, or null if this is the last page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.jimtough.sbdaws.efs;
+
+/**
+ * Immutable request for one page of the EFS file listing
+ *
+ * @author JTOUGH
+ */
+public final class EfsFileQuery {
+
+	private final String subdirectory;
+	private final int maxDepth;
+	private final int pageSize;
+	private final boolean descending;
+	private final String cursor;
+
+	/**
+	 * @param subdirectory Relative path of the directory to list, or null (or empty) for the whole volume
+	 * @param maxDepth Maximum depth below the listed directory. 0 lists just the directory itself.
+	 * @param pageSize Maximum number of entries in the page
+	 * @param descending True to sort by path in descending order
+	 * @param cursor Cursor returned with the previous page, or null for the first page
+	 */
+	public EfsFileQuery(String subdirectory, int maxDepth, int pageSize, boolean descending, String cursor) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("maxDepth cannot be negative");
+		}
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be at least 1");
+		}
+		this.subdirectory = subdirectory == null ? "" : subdirectory;
+		this.maxDepth = maxDepth;
+		this.pageSize = pageSize;
+		this.descending = descending;
+		this.cursor = cursor;
+	}
+
+	public String getSubdirectory() {
+		return subdirectory;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * @param nextCursor Cursor returned with the previous page
+	 * @return Query for the page after the previous one
+	 */
+	public EfsFileQuery withCursor(String nextCursor) {
+		return new EfsFileQuery(subdirectory, maxDepth, pageSize, descending, nextCursor);
+	}
+
+}
@@ -0,0 +1,362 @@
+package com.jimtough.sbdaws.efs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+/**
+ * Reads the content of files in the EFS volume, for the file download endpoint.
+ *
+ * Large files are copied with {@code FileChannel.transferTo}, so the content is never copied into
+ * a Java array. Small files are memory-mapped once, and the mapping is kept in a small LRU cache,
+ * so a file that is downloaded again and again is not even opened again. A cached mapping is only
+ * used while the size and last modified time of the file are still the same.
+ *
+ * Every path is confined to the volume. Paths that leave it with ".." are rejected, and so are
+ * symbolic links that point outside of it. The files that the application writes in the volume
+ * for its own use (see {@code EfsHousekeepingPaths}) are not served.
+ *
+ * The number of transfers in progress at the same time is limited, so that a burst of downloads
+ * cannot tie up every request thread.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class EfsFileServer {
+
+	/**
+	 * A regular file in the volume, and its attributes when it was looked up
+	 */
+	public static final class ServedFile {
+
+		private final Path path;
+		private final long size;
+		private final long lastModifiedMillis;
+
+		ServedFile(Path path, long size, long lastModifiedMillis) {
+			this.path = path;
+			this.size = size;
+			this.lastModifiedMillis = lastModifiedMillis;
+		}
+
+		/**
+		 * @return Real (absolute) path of the file
+		 */
+		public Path getPath() {
+			return path;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLastModifiedMillis() {
+			return lastModifiedMillis;
+		}
+	}
+
+	// A cached mapping, which is only valid for this size and last modified time
+	private static final class MappedFile {
+
+		private final long size;
+		private final long lastModifiedMillis;
+		private final MappedByteBuffer buffer;
+
+		private MappedFile(long size, long lastModifiedMillis, MappedByteBuffer buffer) {
+			this.size = size;
+			this.lastModifiedMillis = lastModifiedMillis;
+			this.buffer = buffer;
+		}
+	}
+
+	// A target that takes no bytes this many times in a row is given up on, rather than spun on
+	private static final int MAX_STALLED_WRITES = 50;
+	private static final long STALLED_WRITE_BACKOFF_MILLIS = 10;
+
+	private final Path root;
+	private final EfsHousekeepingPaths housekeepingPaths;
+	// Null if the number of transfers is not limited
+	private final Semaphore transferPermits;
+	private final long maxWaitMillis;
+	private final long mmapMaxBytes;
+	// Null if small files are not memory-mapped
+	private final Map<Path, MappedFile> mappedFiles;
+	private final OperationMetrics transferMetrics;
+	private final LongAdder rejectedTransfers = new LongAdder();
+	private final LongAdder mappedTransfers = new LongAdder();
+
+	// The real path of the root, found on first use, because the volume may not be mounted yet at startup
+	private volatile Path realRoot;
+
+	@Autowired
+	public EfsFileServer(ConfigurationBean configurationBean, MetricsRegistry metricsRegistry) {
+		this(configurationBean.getEfsVolumeMountPath(),
+				configurationBean.getEfsFilesMaxConcurrentTransfers(),
+				configurationBean.getEfsFilesMaxWaitMillis(),
+				configurationBean.getEfsFilesMmapMaxBytes(),
+				configurationBean.getEfsFilesMmapCacheEntries(),
+				EfsHousekeepingPaths.of(configurationBean),
+				metricsRegistry);
+	}
+
+	/**
+	 * @param root Directory that the files are served from
+	 * @param maxConcurrentTransfers Maximum number of transfers in progress at the same time. Zero or less for no limit.
+	 * @param maxWaitMillis How long a transfer may wait for a free slot before it is rejected
+	 * @param mmapMaxBytes Files up to this size are memory-mapped and cached. Zero or less to never map files.
+	 * @param mmapCacheEntries Number of mapped files that are cached. Zero or less to never map files.
+	 * @param metricsRegistry Registry for the transfer metrics
+	 */
+	public EfsFileServer(Path root, int maxConcurrentTransfers, long maxWaitMillis, long mmapMaxBytes,
+			int mmapCacheEntries, MetricsRegistry metricsRegistry) {
+		this(root, maxConcurrentTransfers, maxWaitMillis, mmapMaxBytes, mmapCacheEntries, EfsHousekeepingPaths.NONE,
+				metricsRegistry);
+	}
+
+	EfsFileServer(Path root, int maxConcurrentTransfers, long maxWaitMillis, long mmapMaxBytes,
+			int mmapCacheEntries, EfsHousekeepingPaths housekeepingPaths, MetricsRegistry metricsRegistry) {
+		if (root == null) {
+			throw new IllegalArgumentException("root cannot be null");
+		}
+		if (housekeepingPaths == null) {
+			throw new IllegalArgumentException("housekeepingPaths cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.root = root.toAbsolutePath().normalize();
+		this.housekeepingPaths = housekeepingPaths;
+		this.transferPermits = maxConcurrentTransfers > 0 ? new Semaphore(maxConcurrentTransfers) : null;
+		this.maxWaitMillis = Math.max(0, maxWaitMillis);
+		if (mmapMaxBytes > 0 && mmapCacheEntries > 0) {
+			this.mmapMaxBytes = mmapMaxBytes;
+			this.mappedFiles = Collections.synchronizedMap(new LinkedHashMap<Path, MappedFile>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Path, MappedFile> eldest) {
+					return size() > mmapCacheEntries;
+				}
+			});
+		} else {
+			this.mmapMaxBytes = 0;
+			this.mappedFiles = null;
+		}
+		this.transferMetrics = metricsRegistry.operation("efs.files.transfer");
+		metricsRegistry.counter("efs_file_transfers_rejected_total",
+				"File downloads that were rejected because too many transfers were in progress",
+				Collections.emptyMap(), rejectedTransfers::sum);
+		metricsRegistry.counter("efs_file_transfers_mapped_total",
+				"File downloads that were served from a cached memory-mapped file",
+				Collections.emptyMap(), mappedTransfers::sum);
+	}
+
+	/**
+	 * @param relativePath Path of a file, relative to the volume
+	 * @return The file and its current attributes
+	 * @throws IllegalArgumentException Thrown if the path is invalid, or if it leads outside of the volume
+	 * @throws NoSuchFileException Thrown if there is no regular file at the path
+	 * @throws IOException Thrown if the file system could not be read
+	 */
+	public ServedFile find(String relativePath) throws IOException {
+		if (relativePath == null || relativePath.isEmpty()) {
+			throw new IllegalArgumentException("path cannot be empty");
+		}
+		Path resolved;
+		try {
+			Path relative = root.getFileSystem().getPath(relativePath);
+			if (relative.isAbsolute()) {
+				throw new IllegalArgumentException("path must be relative: [" + relativePath + "]");
+			}
+			resolved = root.resolve(relative).normalize();
+		} catch (InvalidPathException e) {
+			throw new IllegalArgumentException("invalid path: [" + relativePath + "]", e);
+		}
+		if (!resolved.startsWith(root) || resolved.equals(root)) {
+			throw new IllegalArgumentException("path is outside of the EFS volume: [" + relativePath + "]");
+		}
+		// Follow symbolic links, and check that the file they lead to is still in the volume
+		Path real = resolved.toRealPath();
+		Path realRoot = getRealRoot();
+		if (!real.startsWith(realRoot)) {
+			throw new IllegalArgumentException("path is outside of the EFS volume: [" + relativePath + "]");
+		}
+		// Reported as missing, the same as in the index. Checked again after the links are followed.
+		if (housekeepingPaths.contains(resolved) || housekeepingPaths.contains(root.resolve(realRoot.relativize(real)))) {
+			throw new NoSuchFileException(relativePath, null, "not a user file");
+		}
+		BasicFileAttributes attributes = Files.readAttributes(real, BasicFileAttributes.class);
+		if (!attributes.isRegularFile()) {
+			throw new NoSuchFileException(relativePath, null, "not a regular file");
+		}
+		return new ServedFile(real, attributes.size(), attributes.lastModifiedTime().toMillis());
+	}
+
+	/**
+	 * Must be called before each transfer. If it returns true, {@link #endTransfer()} must be
+	 * called after the transfer.
+	 *
+	 * @return True if the transfer may go ahead, false if too many transfers are in progress
+	 */
+	public boolean tryStartTransfer() {
+		if (transferPermits == null) {
+			return true;
+		}
+		try {
+			if (transferPermits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		rejectedTransfers.increment();
+		return false;
+	}
+
+	public void endTransfer() {
+		if (transferPermits != null) {
+			transferPermits.release();
+		}
+	}
+
+	/**
+	 * Copies part of a file to the target. The target is not closed.
+	 *
+	 * @param file File returned by {@link #find(String)}
+	 * @param position Offset of the first byte to copy
+	 * @param count Number of bytes to copy
+	 * @param target Where the bytes are written
+	 * @throws IOException Thrown if the file could not be read, if it became shorter, or if the
+	 *         target could not be written or kept taking no bytes
+	 */
+	public void transfer(ServedFile file, long position, long count, WritableByteChannel target) throws IOException {
+		if (position < 0 || count < 0 || position + count > file.getSize()) {
+			throw new IllegalArgumentException("range is outside of the file | position: [" + position
+					+ "] | count: [" + count + "] | size: [" + file.getSize() + "]");
+		}
+		long startNanos = System.nanoTime();
+		try {
+			if (mappedFiles != null && file.getSize() <= mmapMaxBytes) {
+				transferMapped(file, position, count, target);
+			} else {
+				transferFromChannel(file, position, count, target);
+			}
+			transferMetrics.recordSuccess(System.nanoTime() - startNanos);
+		} catch (IOException | RuntimeException e) {
+			transferMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw e;
+		}
+	}
+
+	/**
+	 * @return Number of transfers that were rejected because too many were in progress
+	 */
+	public long getRejectedTransferCount() {
+		return rejectedTransfers.sum();
+	}
+
+	/**
+	 * @return Number of transfers that were served from a cached memory-mapped file
+	 */
+	public long getMappedTransferCount() {
+		return mappedTransfers.sum();
+	}
+
+	private Path getRealRoot() throws IOException {
+		Path result = realRoot;
+		if (result == null) {
+			result = root.toRealPath();
+			realRoot = result;
+		}
+		return result;
+	}
+
+	private void transferMapped(ServedFile file, long position, long count, WritableByteChannel target)
+			throws IOException {
+		MappedFile mapped = mappedFiles.get(file.getPath());
+		if (mapped == null || mapped.size != file.getSize() || mapped.lastModifiedMillis != file.getLastModifiedMillis()) {
+			try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+				mapped = new MappedFile(file.getSize(), file.getLastModifiedMillis(),
+						channel.map(FileChannel.MapMode.READ_ONLY, 0, file.getSize()));
+			}
+			mappedFiles.put(file.getPath(), mapped);
+		} else {
+			mappedTransfers.increment();
+		}
+		// Each transfer gets its own view, so that concurrent transfers of the same file do not share a position
+		ByteBuffer view = mapped.buffer.duplicate();
+		view.position((int) position);
+		view.limit((int) (position + count));
+		int stalls = 0;
+		while (view.hasRemaining()) {
+			if (target.write(view) > 0) {
+				stalls = 0;
+			} else {
+				backOff(++stalls, file);
+			}
+		}
+	}
+
+	private static void transferFromChannel(ServedFile file, long position, long count, WritableByteChannel target)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+			long end = position + count;
+			long next = position;
+			int stalls = 0;
+			while (next < end) {
+				// transferTo returns 0 at the end of the file, so a file that is now too short would never finish
+				if (end > channel.size()) {
+					throw new IOException("file became shorter during the transfer: [" + file.getPath() + "]");
+				}
+				long transferred = channel.transferTo(next, end - next, target);
+				if (transferred > 0) {
+					next += transferred;
+					stalls = 0;
+				} else {
+					backOff(++stalls, file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called when the target took no bytes, as a non-blocking or very slow target may
+	 *
+	 * @param stalls Number of times in a row that the target took no bytes
+	 * @throws IOException Thrown if the target has taken no bytes too many times in a row
+	 */
+	private static void backOff(int stalls, ServedFile file) throws IOException {
+		if (stalls > MAX_STALLED_WRITES) {
+			throw new IOException("target took no bytes after " + MAX_STALLED_WRITES + " tries: [" + file.getPath() + "]");
+		}
+		try {
+			Thread.sleep(STALLED_WRITE_BACKOFF_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted during the transfer: [" + file.getPath() + "]");
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package com.jimtough.sbdaws.efs;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+
+/**
+ * Touches a file in the EFS volume on a fixed schedule, as proof that the volume is still
+ * mounted and writable. This used to be done by running the O/S 'touch' command on every
+ * page request. Now it is done in-process, on a background thread, so it adds nothing to
+ * the request latency.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class EfsHeartbeat {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EfsHeartbeat.class);
+
+	static final String FILE_TO_TOUCH_NAME = "touchme.txt";
+
+	private final Path fileToTouch;
+	private final long intervalMillis;
+	private final ScheduledThreadPoolExecutor heartbeatExecutor;
+
+	// Only written by the heartbeat thread
+	private volatile long successCount;
+	private volatile long failureCount;
+	private volatile long lastSuccessEpochMillis;
+	private volatile long lastFailureEpochMillis;
+	private volatile String lastFailureMessage;
+	private volatile long lastLatencyMillis = -1;
+
+	@Autowired
+	public EfsHeartbeat(ConfigurationBean configurationBean) {
+		this(configurationBean.getEfsVolumeMountPath(),
+				TimeUnit.SECONDS.toMillis(configurationBean.getEfsHeartbeatIntervalSeconds()));
+	}
+
+	EfsHeartbeat(Path volumeRoot, long intervalMillis) {
+		if (volumeRoot == null) {
+			throw new IllegalArgumentException("volumeRoot cannot be null");
+		}
+		if (intervalMillis <= 0) {
+			throw new IllegalArgumentException("intervalMillis must be positive");
+		}
+		this.fileToTouch = volumeRoot.resolve(FILE_TO_TOUCH_NAME);
+		this.intervalMillis = intervalMillis;
+		this.heartbeatExecutor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("efs-heartbeat-"));
+	}
+
+	@PostConstruct
+	public void start() {
+		heartbeatExecutor.scheduleWithFixedDelay(this::touchMe, 0, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		heartbeatExecutor.shutdownNow();
+	}
+
+	/**
+	 * @return Snapshot of the heartbeat state
+	 */
+	public EfsHeartbeatStatus getStatus() {
+		return new EfsHeartbeatStatus(successCount, failureCount, lastSuccessEpochMillis,
+				lastFailureEpochMillis, lastFailureMessage, lastLatencyMillis);
+	}
+
+	/**
+	 * Same as the 'touch -a -m' command: create the file if it is missing, and then set its
+	 * last access and last modified times to now
+	 */
+	void touchMe() {
+		long startNanos = System.nanoTime();
+		try {
+			try {
+				Files.createFile(fileToTouch);
+			} catch (FileAlreadyExistsException e) {
+				// Expected every time except the first
+			}
+			FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+			Files.getFileAttributeView(fileToTouch, BasicFileAttributeView.class).setTimes(now, now, null);
+			lastLatencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+			lastSuccessEpochMillis = now.toMillis();
+			successCount++;
+			LOGGER.debug("EFS heartbeat | path: [{}] | ms: [{}]", fileToTouch, lastLatencyMillis);
+		} catch (IOException | RuntimeException e) {
+			lastLatencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+			lastFailureEpochMillis = System.currentTimeMillis();
+			lastFailureMessage = e.toString();
+			failureCount++;
+			LOGGER.error("Unable to 'touch' file | path: [{}]", fileToTouch, e);
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.jimtough.sbdaws.efs;
+
+/**
+ * Immutable snapshot of the state of the {@code EfsHeartbeat}
+ *
+ * @author JTOUGH
+ */
+public final class EfsHeartbeatStatus {
+
+	private final long successCount;
+	private final long failureCount;
+	private final long lastSuccessEpochMillis;
+	private final long lastFailureEpochMillis;
+	private final String lastFailureMessage;
+	private final long lastLatencyMillis;
+
+	EfsHeartbeatStatus(long successCount, long failureCount, long lastSuccessEpochMillis,
+			long lastFailureEpochMillis, String lastFailureMessage, long lastLatencyMillis) {
+		this.successCount = successCount;
+		this.failureCount = failureCount;
+		this.lastSuccessEpochMillis = lastSuccessEpochMillis;
+		this.lastFailureEpochMillis = lastFailureEpochMillis;
+		this.lastFailureMessage = lastFailureMessage;
+		this.lastLatencyMillis = lastLatencyMillis;
+	}
+
+	public long getSuccessCount() {
+		return successCount;
+	}
+
+	public long getFailureCount() {
+		return failureCount;
+	}
+
+	/**
+	 * @return When the file was last touched successfully, or 0 if never
+	 */
+	public long getLastSuccessEpochMillis() {
+		return lastSuccessEpochMillis;
+	}
+
+	/**
+	 * @return When the last heartbeat failed, or 0 if none has failed
+	 */
+	public long getLastFailureEpochMillis() {
+		return lastFailureEpochMillis;
+	}
+
+	/**
+	 * @return Reason for the last failure, or null if none has failed
+	 */
+	public String getLastFailureMessage() {
+		return lastFailureMessage;
+	}
+
+	/**
+	 * @return How long the most recent heartbeat took, or -1 if there has not been one yet
+	 */
+	public long getLastLatencyMillis() {
+		return lastLatencyMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "successes: " + successCount + " | failures: " + failureCount
+				+ " | last success: " + lastSuccessEpochMillis + " | last failure: " + lastFailureEpochMillis
+				+ " | last latency ms: " + lastLatencyMillis;
+	}
+
+}
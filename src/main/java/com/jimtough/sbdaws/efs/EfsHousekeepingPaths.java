@@ -0,0 +1,75 @@
+package com.jimtough.sbdaws.efs;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+
+/**
+ * Paths in the EFS volume that the application writes for its own use: the heartbeat file and
+ * the shared inventory directory. They are not user files, so the index leaves them out and the
+ * file endpoint does not serve them. A path is also hidden if it is under one of these paths.
+ *
+ * Leaving them out of the index also means that the heartbeat and the inventory snapshot do not
+ * change its version, which would otherwise change the ETag of the home page and send change
+ * events to the clients every few seconds.
+ *
+ * @author JTOUGH
+ */
+final class EfsHousekeepingPaths {
+
+	static final EfsHousekeepingPaths NONE = new EfsHousekeepingPaths(Collections.emptyList());
+
+	private final List<Path> paths;
+
+	/**
+	 * @param paths Paths to hide. They are made absolute and normalized.
+	 */
+	EfsHousekeepingPaths(List<Path> paths) {
+		if (paths == null) {
+			throw new IllegalArgumentException("paths cannot be null");
+		}
+		List<Path> normalized = new ArrayList<>(paths.size());
+		for (Path path : paths) {
+			normalized.add(path.toAbsolutePath().normalize());
+		}
+		this.paths = Collections.unmodifiableList(normalized);
+	}
+
+	/**
+	 * @return The paths that the application writes in the EFS volume
+	 */
+	static EfsHousekeepingPaths of(ConfigurationBean configurationBean) {
+		List<Path> paths = new ArrayList<>();
+		Path volumeRoot = configurationBean.getEfsVolumeMountPath();
+		if (volumeRoot != null) {
+			paths.add(volumeRoot.resolve(EfsHeartbeat.FILE_TO_TOUCH_NAME));
+		}
+		String sharedDirectory = configurationBean.getInventorySharedDirectory();
+		if (sharedDirectory != null && !sharedDirectory.trim().isEmpty()) {
+			paths.add(Paths.get(sharedDirectory.trim()));
+		}
+		return new EfsHousekeepingPaths(paths);
+	}
+
+	/**
+	 * @param path Absolute, normalized path
+	 * @return True if the path is one of the housekeeping paths, or is under one
+	 */
+	boolean contains(Path path) {
+		for (Path hidden : paths) {
+			if (path.startsWith(hidden)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	List<Path> getPaths() {
+		return paths;
+	}
+
+}
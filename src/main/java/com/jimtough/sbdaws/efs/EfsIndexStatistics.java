@@ -0,0 +1,80 @@
+package com.jimtough.sbdaws.efs;
+
+/**
+ * Immutable snapshot of the counters for the {@code EfsFileIndex}
+ *
+ * @author JTOUGH
+ */
+public final class EfsIndexStatistics {
+
+	private final int entryCount;
+	private final long fullScanCount;
+	private final long fullScanFailureCount;
+	private final long lastFullScanMillis;
+	private final long lastFullScanCompletedEpochMillis;
+	private final long watchEventCount;
+	private final boolean watching;
+
+	EfsIndexStatistics(int entryCount, long fullScanCount, long fullScanFailureCount, long lastFullScanMillis,
+			long lastFullScanCompletedEpochMillis, long watchEventCount, boolean watching) {
+		this.entryCount = entryCount;
+		this.fullScanCount = fullScanCount;
+		this.fullScanFailureCount = fullScanFailureCount;
+		this.lastFullScanMillis = lastFullScanMillis;
+		this.lastFullScanCompletedEpochMillis = lastFullScanCompletedEpochMillis;
+		this.watchEventCount = watchEventCount;
+		this.watching = watching;
+	}
+
+	/**
+	 * @return Number of files and directories in the index
+	 */
+	public int getEntryCount() {
+		return entryCount;
+	}
+
+	public long getFullScanCount() {
+		return fullScanCount;
+	}
+
+	public long getFullScanFailureCount() {
+		return fullScanFailureCount;
+	}
+
+	/**
+	 * @return How long the most recent full scan took, or -1 if there has not been one yet
+	 */
+	public long getLastFullScanMillis() {
+		return lastFullScanMillis;
+	}
+
+	/**
+	 * @return When the most recent full scan finished, or 0 if there has not been one yet
+	 */
+	public long getLastFullScanCompletedEpochMillis() {
+		return lastFullScanCompletedEpochMillis;
+	}
+
+	/**
+	 * @return Number of file system change events applied to the index since startup
+	 */
+	public long getWatchEventCount() {
+		return watchEventCount;
+	}
+
+	/**
+	 * @return True if the index is being kept up to date by a {@code WatchService}
+	 */
+	public boolean isWatching() {
+		return watching;
+	}
+
+	@Override
+	public String toString() {
+		return "entries: " + entryCount + " | full scans: " + fullScanCount
+				+ " | full scan failures: " + fullScanFailureCount
+				+ " | last full scan ms: " + lastFullScanMillis
+				+ " | watch events: " + watchEventCount + " | watching: " + watching;
+	}
+
+}
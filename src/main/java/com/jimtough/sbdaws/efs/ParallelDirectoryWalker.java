@@ -0,0 +1,217 @@
+package com.jimtough.sbdaws.efs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walks a directory tree with the sibling directories read at the same time.
+ *
+ * On EFS every directory read is an NFS round trip, so a depth-first walk on one thread spends
+ * nearly all of its time waiting. Here each directory is a fork-join task that reads the
+ * directory and the attributes of its children, then forks a task for each subdirectory. The
+ * pool's parallelism is the number of directories that can be read at the same time.
+ *
+ * The entries go into a map that the caller supplies, so they come out sorted by path whatever
+ * order the directories are read in. As with {@code Files.walkFileTree}, symbolic links are not
+ * followed, and a path that cannot be read (usually because it was deleted during the walk) is
+ * skipped. Only a start path that cannot be read fails the walk.
+ *
+ * @author JTOUGH
+ */
+class ParallelDirectoryWalker {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParallelDirectoryWalker.class);
+
+	private final ForkJoinPool pool;
+	private final int maxDepth;
+	private final long timeoutMillis;
+
+	/**
+	 * @param parallelism Number of directories that may be read at the same time
+	 * @param maxDepth Deepest level (below the root) that is included. Directories at this depth
+	 *        are included but not read. Zero or less for no limit.
+	 * @param timeoutMillis Longest time that one walk may take. Zero or less for no limit.
+	 */
+	ParallelDirectoryWalker(int parallelism, int maxDepth, long timeoutMillis) {
+		this.pool = new ForkJoinPool(Math.max(1, parallelism), forkJoinPool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+			thread.setName("efs-walk-" + thread.getPoolIndex());
+			return thread;
+		}, null, false);
+		this.maxDepth = maxDepth <= 0 ? Integer.MAX_VALUE : maxDepth;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * @return Deepest level that is included, or {@code Integer.MAX_VALUE} for no limit
+	 */
+	int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Walks the tree under the start path, putting an entry for every path into the target map
+	 *
+	 * @param start File or directory to start at. It gets an entry too.
+	 * @param startDepth Depth of the start path below the root, which counts towards the max depth
+	 * @param target Gets the entries. Must be thread-safe.
+	 * @param beforeRead Called with each directory before it is read, on a walker thread. Must be thread-safe.
+	 * @throws IOException Thrown if the start path cannot be read, or the walk does not finish in time
+	 */
+	void walk(Path start, int startDepth, Map<Path, EfsFileEntry> target, Consumer<Path> beforeRead)
+			throws IOException {
+		walk(start, startDepth, target, beforeRead, path -> false);
+	}
+
+	/**
+	 * Same as {@link #walk(Path, int, Map, Consumer)}, but leaves out some of the paths under the start path
+	 *
+	 * @param skip Returns true for a path that gets no entry, and is not read if it is a directory.
+	 *        Not called for the start path. Must be thread-safe.
+	 */
+	void walk(Path start, int startDepth, Map<Path, EfsFileEntry> target, Consumer<Path> beforeRead,
+			Predicate<Path> skip) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(start, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		target.put(start, toEntry(start, attrs));
+		if (!attrs.isDirectory() || startDepth >= maxDepth) {
+			return;
+		}
+		Walk walk = new Walk(target, beforeRead, skip);
+		ForkJoinTask<Void> task = pool.submit(new DirectoryTask(walk, start, startDepth, true));
+		try {
+			if (timeoutMillis > 0) {
+				task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			} else {
+				task.get();
+			}
+		} catch (TimeoutException e) {
+			walk.cancelled = true;
+			throw new IOException("Walk did not finish within " + timeoutMillis + " ms | start: [" + start + "]");
+		} catch (InterruptedException e) {
+			walk.cancelled = true;
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while walking | start: [" + start + "]");
+		} catch (ExecutionException e) {
+			walk.cancelled = true;
+			throw new IOException("Walk failed | start: [" + start + "]", e.getCause());
+		}
+		if (walk.startFailure != null) {
+			throw walk.startFailure;
+		}
+	}
+
+	/**
+	 * Opens a directory for reading. Overridden by the benchmark to add latency.
+	 */
+	DirectoryStream<Path> openDirectory(Path directory) throws IOException {
+		return Files.newDirectoryStream(directory);
+	}
+
+	/**
+	 * Stops the walker threads. Any walk in progress fails.
+	 */
+	void shutdown() {
+		pool.shutdownNow();
+	}
+
+	static EfsFileEntry toEntry(Path path, BasicFileAttributes attrs) {
+		return new EfsFileEntry(path, attrs.creationTime(), attrs.lastModifiedTime(), attrs.size(), attrs.isDirectory());
+	}
+
+	/**
+	 * State shared by the tasks of one walk
+	 */
+	private static final class Walk {
+		final Map<Path, EfsFileEntry> target;
+		final Consumer<Path> beforeRead;
+		final Predicate<Path> skip;
+		// Set when the caller gives up, so that the remaining tasks stop reading
+		volatile boolean cancelled;
+		volatile IOException startFailure;
+
+		Walk(Map<Path, EfsFileEntry> target, Consumer<Path> beforeRead, Predicate<Path> skip) {
+			this.target = target;
+			this.beforeRead = beforeRead;
+			this.skip = skip;
+		}
+	}
+
+	private final class DirectoryTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Walk walk;
+		private final Path directory;
+		private final int depth;
+		private final boolean start;
+
+		DirectoryTask(Walk walk, Path directory, int depth, boolean start) {
+			this.walk = walk;
+			this.directory = directory;
+			this.depth = depth;
+			this.start = start;
+		}
+
+		@Override
+		protected void compute() {
+			if (walk.cancelled) {
+				return;
+			}
+			walk.beforeRead.accept(directory);
+			List<DirectoryTask> subdirectories = new ArrayList<>();
+			try (DirectoryStream<Path> children = openDirectory(directory)) {
+				for (Path child : children) {
+					if (walk.cancelled) {
+						return;
+					}
+					if (walk.skip.test(child)) {
+						continue;
+					}
+					BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (IOException e) {
+						LOGGER.debug("Unable to read file attributes | path: [{}]", child, e);
+						continue;
+					}
+					walk.target.put(child, toEntry(child, attrs));
+					if (attrs.isDirectory() && depth + 1 < maxDepth) {
+						subdirectories.add(new DirectoryTask(walk, child, depth + 1, false));
+					}
+				}
+			} catch (IOException | DirectoryIteratorException e) {
+				IOException cause = e instanceof DirectoryIteratorException
+						? ((DirectoryIteratorException) e).getCause()
+						: (IOException) e;
+				if (start) {
+					walk.startFailure = cause;
+					return;
+				}
+				LOGGER.debug("Unable to read directory | path: [{}]", directory, cause);
+			}
+			invokeAll(subdirectories);
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Classes that read the contents of the EFS volume mounted by the application
+ */
+package com.jimtough.sbdaws.efs;
@@ -0,0 +1,47 @@
+package com.jimtough.sbdaws.events;
+
+/**
+ * One change to the inventory, as it is sent to the subscribers
+ *
+ * @author JTOUGH
+ */
+public final class InventoryChange {
+
+	private final String type;
+	private final String data;
+
+	/**
+	 * @param type Event name, such as "s3-bucket-added"
+	 * @param data Details of the change, as a single line of JSON
+	 */
+	public InventoryChange(String type, String data) {
+		if (type == null) {
+			throw new IllegalArgumentException("type cannot be null");
+		}
+		if (data == null) {
+			throw new IllegalArgumentException("data cannot be null");
+		}
+		this.type = type;
+		this.data = data;
+	}
+
+	/**
+	 * @return Event name, such as "s3-bucket-added"
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return Details of the change, as a single line of JSON
+	 */
+	public String getData() {
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + data;
+	}
+
+}
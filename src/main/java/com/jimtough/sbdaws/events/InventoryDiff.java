@@ -0,0 +1,208 @@
+package com.jimtough.sbdaws.events;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory.RegionalCluster;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Compares two successive values of each part of the inventory, and describes the differences
+ * as {@code InventoryChange}s.
+ *
+ * A change can only be detected when both values are known, so nothing is reported when either
+ * one is null. Nothing is reported either when both are the same object, which is how the caches
+ * and the EFS index return a value that has not changed.
+ *
+ * @author JTOUGH
+ */
+final class InventoryDiff {
+
+	static final String ECS_CLUSTER_ADDED = "ecs-cluster-added";
+	static final String ECS_CLUSTER_CHANGED = "ecs-cluster-changed";
+	static final String ECS_CLUSTER_REMOVED = "ecs-cluster-removed";
+	static final String S3_BUCKET_ADDED = "s3-bucket-added";
+	static final String S3_BUCKET_REMOVED = "s3-bucket-removed";
+	static final String EFS_FILE_CREATED = "efs-file-created";
+	static final String EFS_FILE_MODIFIED = "efs-file-modified";
+	static final String EFS_FILE_DELETED = "efs-file-deleted";
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private InventoryDiff() {}
+
+	/**
+	 * Clusters are matched by ARN. A cluster has changed if its status or any of its counts have.
+	 * The clusters of a region that could not be queried, in either value, are not compared, so that
+	 * a region that fails for a moment does not look like all of its clusters were removed.
+	 */
+	static void diffEcsClusters(EcsClusterInventory previous, EcsClusterInventory current,
+			List<InventoryChange> changes) {
+		if (previous == null || current == null || previous == current) {
+			return;
+		}
+		Set<String> failedRegions = new LinkedHashSet<>(previous.getFailedRegions().keySet());
+		failedRegions.addAll(current.getFailedRegions().keySet());
+		Map<String, RegionalCluster> previousByArn = new LinkedHashMap<>();
+		for (RegionalCluster regionalCluster : previous.getClusters()) {
+			if (!failedRegions.contains(regionalCluster.getRegion().value())) {
+				previousByArn.put(regionalCluster.getCluster().clusterArn(), regionalCluster);
+			}
+		}
+		for (RegionalCluster regionalCluster : current.getClusters()) {
+			if (failedRegions.contains(regionalCluster.getRegion().value())) {
+				continue;
+			}
+			RegionalCluster before = previousByArn.remove(regionalCluster.getCluster().clusterArn());
+			if (before == null) {
+				changes.add(new InventoryChange(ECS_CLUSTER_ADDED, toJson(regionalCluster)));
+			} else if (!sameCounts(before.getCluster(), regionalCluster.getCluster())) {
+				changes.add(new InventoryChange(ECS_CLUSTER_CHANGED, toJson(regionalCluster)));
+			}
+		}
+		for (RegionalCluster removed : previousByArn.values()) {
+			changes.add(new InventoryChange(ECS_CLUSTER_REMOVED, toJson(removed)));
+		}
+	}
+
+	/**
+	 * Buckets are matched by name
+	 */
+	static void diffS3Buckets(List<Bucket> previous, List<Bucket> current, List<InventoryChange> changes) {
+		if (previous == null || current == null || previous == current) {
+			return;
+		}
+		Set<String> previousNames = new LinkedHashSet<>();
+		for (Bucket bucket : previous) {
+			previousNames.add(bucket.name());
+		}
+		for (Bucket bucket : current) {
+			if (!previousNames.remove(bucket.name())) {
+				changes.add(new InventoryChange(S3_BUCKET_ADDED, bucketJson(bucket.name())));
+			}
+		}
+		for (String removedName : previousNames) {
+			changes.add(new InventoryChange(S3_BUCKET_REMOVED, bucketJson(removedName)));
+		}
+	}
+
+	/**
+	 * Both lists must be sorted by path, as the EFS index returns them, so they are compared in a
+	 * single pass. An entry has been modified if any of its attributes have changed.
+	 *
+	 * @param root Root of the EFS volume. The paths in the events are relative to it.
+	 */
+	static void diffEfsEntries(Path root, List<EfsFileEntry> previous, List<EfsFileEntry> current,
+			List<InventoryChange> changes) {
+		if (previous == null || current == null || previous == current) {
+			return;
+		}
+		int p = 0;
+		int c = 0;
+		while (p < previous.size() || c < current.size()) {
+			EfsFileEntry before = p < previous.size() ? previous.get(p) : null;
+			EfsFileEntry after = c < current.size() ? current.get(c) : null;
+			int order = before == null ? 1 : after == null ? -1 : before.getPath().compareTo(after.getPath());
+			if (order < 0) {
+				changes.add(new InventoryChange(EFS_FILE_DELETED, toJson(root, before)));
+				p++;
+			} else if (order > 0) {
+				changes.add(new InventoryChange(EFS_FILE_CREATED, toJson(root, after)));
+				c++;
+			} else {
+				if (!before.equals(after)) {
+					changes.add(new InventoryChange(EFS_FILE_MODIFIED, toJson(root, after)));
+				}
+				p++;
+				c++;
+			}
+		}
+	}
+
+	private static boolean sameCounts(Cluster before, Cluster after) {
+		return Objects.equals(before.status(), after.status())
+				&& Objects.equals(before.registeredContainerInstancesCount(), after.registeredContainerInstancesCount())
+				&& Objects.equals(before.runningTasksCount(), after.runningTasksCount())
+				&& Objects.equals(before.pendingTasksCount(), after.pendingTasksCount())
+				&& Objects.equals(before.activeServicesCount(), after.activeServicesCount());
+	}
+
+	/**
+	 * Writes: {"region":..,"name":..,"arn":..,"status":..,"registeredContainerInstances":..,
+	 * "runningTasks":..,"pendingTasks":..,"activeServices":..}
+	 */
+	private static String toJson(RegionalCluster regionalCluster) {
+		Cluster cluster = regionalCluster.getCluster();
+		return json(json -> {
+			json.writeStringField("region", regionalCluster.getRegion().value());
+			json.writeStringField("name", cluster.clusterName());
+			json.writeStringField("arn", cluster.clusterArn());
+			json.writeStringField("status", cluster.status());
+			writeCount(json, "registeredContainerInstances", cluster.registeredContainerInstancesCount());
+			writeCount(json, "runningTasks", cluster.runningTasksCount());
+			writeCount(json, "pendingTasks", cluster.pendingTasksCount());
+			writeCount(json, "activeServices", cluster.activeServicesCount());
+		});
+	}
+
+	/**
+	 * Writes: {"name":..}
+	 */
+	private static String bucketJson(String name) {
+		return json(json -> json.writeStringField("name", name));
+	}
+
+	/**
+	 * Writes the same fields as the EFS files API: {"path":..,"directory":..,"size":..,"created":..,"lastModified":..}
+	 */
+	private static String toJson(Path root, EfsFileEntry entry) {
+		return json(json -> {
+			json.writeStringField("path", root.relativize(entry.getPath()).toString());
+			json.writeBooleanField("directory", entry.isDirectory());
+			json.writeNumberField("size", entry.getSize());
+			json.writeStringField("created", entry.getCreationTime() == null ? null : entry.getCreationTime().toString());
+			json.writeStringField("lastModified",
+					entry.getLastModifiedTime() == null ? null : entry.getLastModifiedTime().toString());
+		});
+	}
+
+	private static void writeCount(JsonGenerator json, String name, Integer count) throws IOException {
+		if (count == null) {
+			json.writeNullField(name);
+		} else {
+			json.writeNumberField(name, count);
+		}
+	}
+
+	private interface JsonFields {
+		void write(JsonGenerator json) throws IOException;
+	}
+
+	private static String json(JsonFields fields) {
+		StringWriter out = new StringWriter();
+		try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+			json.writeStartObject();
+			fields.write(json);
+			json.writeEndObject();
+		} catch (IOException e) {
+			// Not possible when writing to a StringWriter
+			throw new UncheckedIOException(e);
+		}
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,397 @@
+package com.jimtough.sbdaws.events;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.cache.InventoryCache;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Sends the changes to the inventory to every subscriber of the event stream.
+ *
+ * There is one producer, however many subscribers there are. While anyone is subscribed, one
+ * background thread reads the ECS clusters and S3 buckets from the {@code InventoryCache}, and the
+ * entries of the {@code EfsFileIndex}, on a fixed schedule. It compares them with what it read the
+ * time before (see {@code InventoryDiff}), and turns each change into an event, which is encoded
+ * once and put in the buffer of every subscriber. Subscribers therefore add no AWS calls.
+ *
+ * No thread is held by an idle subscriber. The events are written by a small pool of sender
+ * threads, which only take on a subscriber while it has events in its buffer. The buffers are
+ * bounded, and a subscriber that falls too far behind is dropped, so a slow client can never hold
+ * up the producer or use up memory. A dropped client can reconnect, and gets a "resync" event.
+ *
+ * Each event has an ID. A client that reconnects with the ID of the last event it received, in
+ * the Last-Event-ID header, gets a "resync" event if it has missed anything, since the events are
+ * not kept. A "resync" event is also sent in place of a very large number of changes, such as when
+ * the EFS index finishes its first scan. A client should reload everything after a "resync".
+ *
+ * @author JTOUGH
+ */
+@Component
+public class InventoryEventPublisher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(InventoryEventPublisher.class);
+
+	static final String RESYNC = "resync";
+
+	private static final MediaType UTF8_TEXT_PLAIN = new MediaType("text", "plain", StandardCharsets.UTF_8);
+	private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("heartbeat").build();
+
+	private final InventoryCache inventoryCache;
+	private final EfsFileIndex efsFileIndex;
+	private final long pollIntervalMillis;
+	private final long heartbeatIntervalMillis;
+	private final int bufferSize;
+	private final int maxSubscribers;
+	private final int maxChangesPerPoll;
+	private final ScheduledThreadPoolExecutor producerExecutor;
+	private final ThreadPoolExecutor sendExecutor;
+	private final OperationMetrics pollMetrics;
+
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger subscriberCount = new AtomicInteger();
+	private final AtomicLong lastEventId = new AtomicLong();
+	private final LongAdder droppedSubscribers = new LongAdder();
+	private final LongAdder rejectedSubscribers = new LongAdder();
+
+	// Only used by the producer thread
+	private EcsClusterInventory previousEcsClusters;
+	private List<Bucket> previousS3Buckets;
+	private List<EfsFileEntry> previousEfsEntries;
+
+	@Autowired
+	public InventoryEventPublisher(ConfigurationBean configurationBean, InventoryCache inventoryCache,
+			EfsFileIndex efsFileIndex, MetricsRegistry metricsRegistry) {
+		this(inventoryCache, efsFileIndex, metricsRegistry,
+				TimeUnit.SECONDS.toMillis(configurationBean.getEventsPollIntervalSeconds()),
+				TimeUnit.SECONDS.toMillis(configurationBean.getEventsHeartbeatSeconds()),
+				configurationBean.getEventsSubscriberBufferSize(),
+				configurationBean.getEventsMaxSubscribers(),
+				configurationBean.getEventsMaxChangesPerPoll(),
+				configurationBean.getEventsSendThreads());
+	}
+
+	InventoryEventPublisher(InventoryCache inventoryCache, EfsFileIndex efsFileIndex, MetricsRegistry metricsRegistry,
+			long pollIntervalMillis, long heartbeatIntervalMillis, int bufferSize, int maxSubscribers,
+			int maxChangesPerPoll, int sendThreads) {
+		if (inventoryCache == null) {
+			throw new IllegalArgumentException("inventoryCache cannot be null");
+		}
+		if (efsFileIndex == null) {
+			throw new IllegalArgumentException("efsFileIndex cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		if (pollIntervalMillis <= 0 || heartbeatIntervalMillis <= 0) {
+			throw new IllegalArgumentException("the poll and heartbeat intervals must be positive");
+		}
+		if (bufferSize <= 0 || maxChangesPerPoll <= 0 || sendThreads <= 0) {
+			throw new IllegalArgumentException("the buffer size, changes per poll and send threads must be positive");
+		}
+		this.inventoryCache = inventoryCache;
+		this.efsFileIndex = efsFileIndex;
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+		this.bufferSize = bufferSize;
+		this.maxSubscribers = maxSubscribers;
+		this.maxChangesPerPoll = maxChangesPerPoll;
+		this.producerExecutor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("inventory-events-"));
+		// Each subscriber is queued at most once, so the queue is never longer than the number of subscribers
+		this.sendExecutor = new ThreadPoolExecutor(sendThreads, sendThreads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), new CustomizableThreadFactory("inventory-events-send-"));
+		this.sendExecutor.allowCoreThreadTimeOut(true);
+		this.pollMetrics = metricsRegistry.operation("events.poll");
+		metricsRegistry.gauge("events_subscribers", "Clients that are subscribed to the inventory event stream",
+				Collections.emptyMap(), subscriberCount::get);
+		metricsRegistry.counter("events_subscribers_dropped_total",
+				"Subscribers that were dropped because they fell too far behind the event stream",
+				Collections.emptyMap(), droppedSubscribers::sum);
+		metricsRegistry.counter("events_subscribers_rejected_total",
+				"Subscribers that were rejected because there were too many of them",
+				Collections.emptyMap(), rejectedSubscribers::sum);
+	}
+
+	@PostConstruct
+	public void start() {
+		producerExecutor.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+		producerExecutor.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMillis, heartbeatIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Ends every stream, so that the clients reconnect (possibly to another task)
+	 */
+	@PreDestroy
+	public void shutdown() {
+		producerExecutor.shutdownNow();
+		for (Subscriber subscriber : subscribers) {
+			subscriber.close();
+		}
+		sendExecutor.shutdown();
+	}
+
+	/**
+	 * Add a subscriber, which gets every event from now on. It is removed when its stream ends.
+	 *
+	 * @param emitter Stream of the subscriber
+	 * @param lastEventId The ID of the last event that the client received before it reconnected, or null
+	 * @return False if there are already too many subscribers, in which case the emitter is not used
+	 */
+	public boolean subscribe(SseEmitter emitter, String lastEventId) {
+		if (emitter == null) {
+			throw new IllegalArgumentException("emitter cannot be null");
+		}
+		if (subscriberCount.incrementAndGet() > maxSubscribers) {
+			subscriberCount.decrementAndGet();
+			rejectedSubscribers.increment();
+			return false;
+		}
+		Subscriber subscriber = new Subscriber(emitter);
+		emitter.onCompletion(subscriber::remove);
+		emitter.onTimeout(subscriber::remove);
+		subscribers.add(subscriber);
+		String currentEventId = Long.toString(this.lastEventId.get());
+		if (lastEventId != null && !lastEventId.equals(currentEventId)) {
+			subscriber.offer(event(currentEventId, RESYNC, "{\"reason\":\"missed-events\"}"));
+		} else {
+			// Tells the client how long to wait before it reconnects
+			subscriber.offer(SseEmitter.event().reconnectTime(pollIntervalMillis).comment("subscribed").build());
+		}
+		return true;
+	}
+
+	/**
+	 * @return Number of subscribers right now
+	 */
+	public int getSubscriberCount() {
+		return subscriberCount.get();
+	}
+
+	/**
+	 * @return Number of subscribers that have been dropped because they fell too far behind
+	 */
+	public long getDroppedSubscriberCount() {
+		return droppedSubscribers.sum();
+	}
+
+	/**
+	 * @return ID of the last event that was sent, or 0 if there has not been one
+	 */
+	public long getLastEventId() {
+		return lastEventId.get();
+	}
+
+	/**
+	 * Read the inventory, and send its changes since the last poll to every subscriber
+	 */
+	void poll() {
+		if (subscribers.isEmpty()) {
+			// There is nobody to send the changes to. The next subscriber starts from the inventory
+			// as it is when they subscribe.
+			previousEcsClusters = null;
+			previousS3Buckets = null;
+			previousEfsEntries = null;
+			return;
+		}
+		long startNanos = System.nanoTime();
+		try {
+			// Whatever cannot be read is compared again at the next poll
+			EcsClusterInventory ecsClusters = previousEcsClusters;
+			List<Bucket> s3Buckets = previousS3Buckets;
+			try {
+				ecsClusters = inventoryCache.getECSClusterInventory();
+			} catch (AwsSdkException e) {
+				LOGGER.debug("Unable to read the ECS clusters for the event stream", e);
+			}
+			try {
+				s3Buckets = inventoryCache.getS3BucketList();
+			} catch (AwsSdkException e) {
+				LOGGER.debug("Unable to read the S3 buckets for the event stream", e);
+			}
+			List<EfsFileEntry> efsEntries = efsFileIndex.peekEntries();
+			if (efsEntries == null) {
+				efsEntries = previousEfsEntries;
+			}
+
+			List<InventoryChange> changes = new ArrayList<>();
+			InventoryDiff.diffEcsClusters(previousEcsClusters, ecsClusters, changes);
+			InventoryDiff.diffS3Buckets(previousS3Buckets, s3Buckets, changes);
+			InventoryDiff.diffEfsEntries(efsFileIndex.getRoot(), previousEfsEntries, efsEntries, changes);
+			previousEcsClusters = ecsClusters;
+			previousS3Buckets = s3Buckets;
+			previousEfsEntries = efsEntries;
+			publish(changes);
+			pollMetrics.recordSuccess(System.nanoTime() - startNanos);
+		} catch (RuntimeException e) {
+			// Must not be thrown, or the poll would never be scheduled again
+			pollMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			LOGGER.warn("Unable to check the inventory for changes", e);
+		}
+	}
+
+	/**
+	 * Send a comment to every subscriber. Keeps idle streams open through proxies and load
+	 * balancers, and finds the clients that have gone away.
+	 */
+	void heartbeat() {
+		broadcast(HEARTBEAT);
+	}
+
+	private void publish(List<InventoryChange> changes) {
+		if (changes.isEmpty()) {
+			return;
+		}
+		if (changes.size() > maxChangesPerPoll) {
+			LOGGER.info("Too many inventory changes to send one by one | changes: {}", changes.size());
+			broadcast(event(Long.toString(lastEventId.incrementAndGet()), RESYNC,
+					"{\"reason\":\"too-many-changes\",\"changes\":" + changes.size() + "}"));
+			return;
+		}
+		for (InventoryChange change : changes) {
+			broadcast(event(Long.toString(lastEventId.incrementAndGet()), change.getType(), change.getData()));
+		}
+	}
+
+	/**
+	 * The event is encoded once, and the same parts are sent to every subscriber
+	 */
+	private static Set<DataWithMediaType> event(String id, String name, String data) {
+		return SseEmitter.event().id(id).name(name).data(data, UTF8_TEXT_PLAIN).build();
+	}
+
+	private void broadcast(Set<DataWithMediaType> event) {
+		for (Subscriber subscriber : subscribers) {
+			subscriber.offer(event);
+		}
+	}
+
+	/**
+	 * A client, with its buffer of events that have not been sent yet
+	 */
+	private final class Subscriber implements Runnable {
+
+		private final SseEmitter emitter;
+		private final BlockingQueue<Set<DataWithMediaType>> buffer = new ArrayBlockingQueue<>(bufferSize);
+		// True while this subscriber is queued or running on the sender pool
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		// Set when the stream must end. The sender ends it, since the emitter may be busy.
+		private volatile boolean closed;
+
+		Subscriber(SseEmitter emitter) {
+			this.emitter = emitter;
+		}
+
+		/**
+		 * Never blocks. Drops this subscriber if its buffer is full.
+		 */
+		void offer(Set<DataWithMediaType> event) {
+			if (closed) {
+				return;
+			}
+			if (!buffer.offer(event)) {
+				droppedSubscribers.increment();
+				LOGGER.debug("Dropping a subscriber that fell too far behind the event stream");
+				close();
+				return;
+			}
+			schedule();
+		}
+
+		void close() {
+			closed = true;
+			buffer.clear();
+			remove();
+			schedule();
+		}
+
+		void remove() {
+			if (subscribers.remove(this)) {
+				subscriberCount.decrementAndGet();
+			}
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					sendExecutor.execute(this);
+				} catch (RejectedExecutionException e) {
+					// Shutting down
+					scheduled.set(false);
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				Set<DataWithMediaType> event;
+				while (!closed && (event = buffer.poll()) != null) {
+					// Same as SseEmitter.send(SseEventBuilder), which cannot send an event that is already built
+					synchronized (emitter) {
+						for (DataWithMediaType part : event) {
+							emitter.send(part.getData(), part.getMediaType());
+						}
+					}
+				}
+				if (closed) {
+					emitter.complete();
+				}
+			} catch (IOException | RuntimeException e) {
+				// Usually the client has gone away
+				LOGGER.debug("Unable to send to a subscriber of the event stream | error: [{}]", e.toString());
+				closed = true;
+				buffer.clear();
+				remove();
+				try {
+					emitter.completeWithError(e);
+				} catch (RuntimeException completeError) {
+					LOGGER.debug("Unable to end the stream of a subscriber", completeError);
+				}
+			} finally {
+				scheduled.set(false);
+			}
+			// An event may have been offered after the buffer was found to be empty
+			if (!closed && !buffer.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.jimtough.sbdaws.events;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+
+/**
+ * Streams the inventory changes as Server-Sent Events at {@code GET /events}, so that a dashboard
+ * can load the home page once and then apply the changes, instead of polling the page.
+ *
+ * Events (the data is a JSON object that describes the cluster, bucket or file):
+ * <ul>
+ * <li>ecs-cluster-added, ecs-cluster-changed, ecs-cluster-removed</li>
+ * <li>s3-bucket-added, s3-bucket-removed</li>
+ * <li>efs-file-created, efs-file-modified, efs-file-deleted</li>
+ * <li>resync - the client has missed some changes, and should reload everything</li>
+ * </ul>
+ *
+ * The request is handled asynchronously, so an open stream does not hold a Tomcat thread. Each
+ * stream ends after a while (see app.properties), and the browser's {@code EventSource}
+ * reconnects with the Last-Event-ID header. If there are too many subscribers, the request gets a
+ * 503 with Retry-After.
+ *
+ * @author JTOUGH
+ */
+@RestController
+public class InventoryEventsController {
+
+	static final String RETRY_AFTER_SECONDS = "5";
+	private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+	private final InventoryEventPublisher publisher;
+	private final long streamTimeoutMillis;
+
+	@Autowired
+	public InventoryEventsController(ConfigurationBean configurationBean, InventoryEventPublisher publisher) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (publisher == null) {
+			throw new IllegalArgumentException("publisher cannot be null");
+		}
+		this.publisher = publisher;
+		this.streamTimeoutMillis = TimeUnit.MINUTES.toMillis(configurationBean.getEventsStreamTimeoutMinutes());
+	}
+
+	@RequestMapping(value = "/events", method = RequestMethod.GET)
+	public SseEmitter events(
+			@RequestHeader(name = LAST_EVENT_ID_HEADER, required = false) String lastEventId,
+			HttpServletResponse response) throws IOException {
+		SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+		if (!publisher.subscribe(emitter, lastEventId)) {
+			response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+			response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+			response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+			response.getWriter().write("too many subscribers");
+			// A null emitter tells Spring that the response is already complete
+			return null;
+		}
+		// Proxies must pass the events on as they arrive
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+		return emitter;
+	}
+
+}
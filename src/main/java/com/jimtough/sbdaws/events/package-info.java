@@ -0,0 +1,4 @@
+/**
+ * Classes that push inventory changes to clients as Server-Sent Events
+ */
+package com.jimtough.sbdaws.events;
@@ -0,0 +1,140 @@
+package com.jimtough.sbdaws.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations, with a resolution of one microsecond.
+ *
+ * The buckets are log-linear: each power of two is split into {@value #SUB_BUCKET_COUNT} equal
+ * buckets, so a percentile read from the histogram is never more than 12.5% above the true value.
+ * Recording a duration is a few arithmetic operations and atomic increments. It never locks and
+ * never allocates.
+ *
+ * @author JTOUGH
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	// Durations of 2^40 microseconds (about 12 days) or more all go in the last bucket
+	private static final int MAX_EXPONENT = 40;
+	static final int BUCKET_COUNT = bucketIndex((1L << MAX_EXPONENT) - 1) + 1;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sumMicros = new LongAdder();
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	/**
+	 * @param durationNanos Duration to record. Negative values are recorded as zero.
+	 */
+	public void record(long durationNanos) {
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(durationNanos));
+		buckets.incrementAndGet(bucketIndex(micros));
+		count.increment();
+		sumMicros.add(micros);
+		long currentMax = maxMicros.get();
+		while (micros > currentMax && !maxMicros.compareAndSet(currentMax, micros)) {
+			currentMax = maxMicros.get();
+		}
+	}
+
+	/**
+	 * The snapshot is not atomic. Durations recorded while it is taken may be partly included.
+	 *
+	 * @return Copy of the current state
+	 */
+	public Snapshot snapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return new Snapshot(counts, count.sum(), sumMicros.sum(), maxMicros.get());
+	}
+
+	static int bucketIndex(long micros) {
+		if (micros < SUB_BUCKET_COUNT) {
+			return (int) micros;
+		}
+		micros = Math.min(micros, (1L << MAX_EXPONENT) - 1);
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * @return Largest duration (in microseconds) that goes in the bucket
+	 */
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKET_COUNT;
+		return ((SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Immutable copy of the state of a {@code LatencyHistogram}
+	 */
+	public static final class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long sumMicros;
+		private final long maxMicros;
+
+		private Snapshot(long[] counts, long count, long sumMicros, long maxMicros) {
+			this.counts = counts;
+			this.count = count;
+			this.sumMicros = sumMicros;
+			this.maxMicros = maxMicros;
+		}
+
+		/**
+		 * @return Number of durations recorded
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		public long getSumMicros() {
+			return sumMicros;
+		}
+
+		public long getMaxMicros() {
+			return maxMicros;
+		}
+
+		/**
+		 * @param quantile Between 0 and 1, such as 0.99 for the 99th percentile
+		 * @return Duration in microseconds that the given fraction of the durations did not exceed,
+		 * or 0 if nothing has been recorded
+		 */
+		public long getValueAtQuantile(double quantile) {
+			if (quantile < 0 || quantile > 1) {
+				throw new IllegalArgumentException("quantile must be between 0 and 1");
+			}
+			long total = 0;
+			for (long c : counts) {
+				total += c;
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * total));
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(bucketUpperBound(i), maxMicros);
+				}
+			}
+			return maxMicros;
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.jimtough.sbdaws.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Publishes the metrics in the Prometheus text format at {@code GET /metrics}
+ *
+ * @author JTOUGH
+ */
+@RestController
+public class MetricsController {
+
+	private final MetricsRegistry metricsRegistry;
+
+	@Autowired
+	public MetricsController(MetricsRegistry metricsRegistry) {
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.metricsRegistry = metricsRegistry;
+	}
+
+	@RequestMapping(value = "/metrics", method = RequestMethod.GET)
+	public void metrics(HttpServletResponse response) throws IOException {
+		response.setContentType(MetricsRegistry.CONTENT_TYPE);
+		Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+		metricsRegistry.writeTo(out);
+		out.flush();
+	}
+
+}
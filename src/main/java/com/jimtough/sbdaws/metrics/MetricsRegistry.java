@@ -0,0 +1,210 @@
+package com.jimtough.sbdaws.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the {@code OperationMetrics} for every instrumented operation, and writes them in the
+ * Prometheus text exposition format.
+ *
+ * Other values (such as the state of a component) can be published as gauges and counters
+ * that are read from a callback each time the metrics are written.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class MetricsRegistry {
+
+	/**
+	 * Content type of the text written by {@link #writeTo(Writer)}
+	 */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final String METRIC_PREFIX = "sbdaws_";
+	private static final double[] QUANTILES = { 0.5, 0.99 };
+	private static final double MICROS_PER_SECOND = 1_000_000.0;
+
+	private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, CallbackMetric> callbackMetrics = new ConcurrentHashMap<>();
+
+	/**
+	 * @param name Name of the operation, such as "aws.iam.getUser"
+	 * @return The metrics for the operation. Created on the first call for each name.
+	 */
+	public OperationMetrics operation(String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("name cannot be null");
+		}
+		return operations.computeIfAbsent(name, OperationMetrics::new);
+	}
+
+	/**
+	 * Publish a value that can go up and down. Registering the same name and labels again replaces the callback.
+	 *
+	 * @param name Metric name, without the "sbdaws_" prefix, such as "aws_calls_in_progress"
+	 * @param help Description of the metric
+	 * @param labels Label names and values of this sample, in the order they are written. May be empty.
+	 * @param value Called each time the metrics are written. Must be fast and thread-safe.
+	 */
+	public void gauge(String name, String help, Map<String, String> labels, LongSupplier value) {
+		register("gauge", name, help, labels, value);
+	}
+
+	/**
+	 * Publish a value that only goes up. Registering the same name and labels again replaces the callback.
+	 *
+	 * @param name Metric name, without the "sbdaws_" prefix. Should end with "_total".
+	 * @param help Description of the metric
+	 * @param labels Label names and values of this sample, in the order they are written. May be empty.
+	 * @param value Called each time the metrics are written. Must be fast and thread-safe.
+	 */
+	public void counter(String name, String help, Map<String, String> labels, LongSupplier value) {
+		register("counter", name, help, labels, value);
+	}
+
+	/**
+	 * @param name Metric name, without the "sbdaws_" prefix
+	 * @param labels Label names and values of the sample
+	 * @return Current value of a gauge or counter, or null if there is no such sample
+	 */
+	public Long getCallbackValue(String name, Map<String, String> labels) {
+		CallbackMetric metric = callbackMetrics.get(name);
+		LongSupplier value = metric == null ? null : metric.samples.get(formatLabels(labels));
+		return value == null ? null : value.getAsLong();
+	}
+
+	/**
+	 * @return Every operation, sorted by name
+	 */
+	public Map<String, OperationMetrics> getOperations() {
+		return new TreeMap<>(operations);
+	}
+
+	/**
+	 * Write every metric, one line per value
+	 *
+	 * @param out Destination. It is not flushed or closed.
+	 * @throws IOException Thrown if the destination cannot be written
+	 */
+	public void writeTo(Writer out) throws IOException {
+		Map<String, OperationMetrics> sorted = getOperations();
+		Map<String, LatencyHistogram.Snapshot> latencies = new TreeMap<>();
+		for (OperationMetrics operation : sorted.values()) {
+			latencies.put(operation.getName(), operation.getLatency());
+		}
+
+		String duration = METRIC_PREFIX + "operation_duration_seconds";
+		writeHeader(out, duration, "summary", "Duration of each operation, including failures");
+		for (Map.Entry<String, LatencyHistogram.Snapshot> e : latencies.entrySet()) {
+			String label = "operation=\"" + escape(e.getKey()) + "\"";
+			LatencyHistogram.Snapshot latency = e.getValue();
+			for (double quantile : QUANTILES) {
+				writeSample(out, duration, label + ",quantile=\"" + quantile + "\"",
+						seconds(latency.getValueAtQuantile(quantile)));
+			}
+			writeSample(out, duration + "_sum", label, seconds(latency.getSumMicros()));
+			writeSample(out, duration + "_count", label, Long.toString(latency.getCount()));
+		}
+
+		String max = METRIC_PREFIX + "operation_duration_max_seconds";
+		writeHeader(out, max, "gauge", "Longest duration of each operation");
+		for (Map.Entry<String, LatencyHistogram.Snapshot> e : latencies.entrySet()) {
+			writeSample(out, max, "operation=\"" + escape(e.getKey()) + "\"", seconds(e.getValue().getMaxMicros()));
+		}
+
+		String errors = METRIC_PREFIX + "operation_errors_total";
+		writeHeader(out, errors, "counter", "Failed operations, by exception type");
+		for (OperationMetrics operation : sorted.values()) {
+			for (Map.Entry<String, Long> e : operation.getErrorCounts().entrySet()) {
+				writeSample(out, errors,
+						"operation=\"" + escape(operation.getName()) + "\",exception=\"" + escape(e.getKey()) + "\"",
+						Long.toString(e.getValue()));
+			}
+		}
+
+		for (CallbackMetric metric : new TreeMap<>(callbackMetrics).values()) {
+			writeHeader(out, metric.name, metric.type, metric.help);
+			for (Map.Entry<String, LongSupplier> e : metric.samples.entrySet()) {
+				writeSample(out, metric.name, e.getKey(), Long.toString(e.getValue().getAsLong()));
+			}
+		}
+	}
+
+	private void register(String type, String name, String help, Map<String, String> labels, LongSupplier value) {
+		if (name == null) {
+			throw new IllegalArgumentException("name cannot be null");
+		}
+		if (help == null) {
+			throw new IllegalArgumentException("help cannot be null");
+		}
+		if (labels == null) {
+			throw new IllegalArgumentException("labels cannot be null");
+		}
+		if (value == null) {
+			throw new IllegalArgumentException("value cannot be null");
+		}
+		CallbackMetric metric = callbackMetrics.computeIfAbsent(name, n -> new CallbackMetric(METRIC_PREFIX + n, type, help));
+		if (!metric.type.equals(type)) {
+			throw new IllegalArgumentException("Metric is already registered as a " + metric.type + " | name: [" + name + "]");
+		}
+		metric.samples.put(formatLabels(labels), value);
+	}
+
+	private static String formatLabels(Map<String, String> labels) {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> e : labels.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(e.getKey()).append("=\"").append(escape(e.getValue())).append('"');
+		}
+		return sb.toString();
+	}
+
+	private static void writeHeader(Writer out, String metric, String type, String help) throws IOException {
+		out.write("# HELP " + metric + " " + help + "\n");
+		out.write("# TYPE " + metric + " " + type + "\n");
+	}
+
+	private static void writeSample(Writer out, String metric, String labels, String value) throws IOException {
+		if (labels.isEmpty()) {
+			out.write(metric + " " + value + "\n");
+		} else {
+			out.write(metric + "{" + labels + "} " + value + "\n");
+		}
+	}
+
+	private static String seconds(long micros) {
+		return Double.toString(micros / MICROS_PER_SECOND);
+	}
+
+	private static String escape(String labelValue) {
+		return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * A gauge or counter whose samples are read from callbacks
+	 */
+	private static final class CallbackMetric {
+		final String name;
+		final String type;
+		final String help;
+		// Sorted by the formatted labels, so the samples are always written in the same order
+		final ConcurrentMap<String, LongSupplier> samples = new ConcurrentSkipListMap<>();
+
+		CallbackMetric(String name, String type, String help) {
+			this.name = name;
+			this.type = type;
+			this.help = help;
+		}
+	}
+
+}
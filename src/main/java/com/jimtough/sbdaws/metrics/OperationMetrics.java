@@ -0,0 +1,71 @@
+package com.jimtough.sbdaws.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and errors of one kind of operation, such as one AWS SDK call.
+ *
+ * Get the instance once (from the {@code MetricsRegistry}) and keep it. Recording is then
+ * lock-free and does not allocate, except for the first failure of each exception type.
+ *
+ * @author JTOUGH
+ */
+public final class OperationMetrics {
+
+	private final String name;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final ConcurrentMap<Class<?>, LongAdder> errorCounts = new ConcurrentHashMap<>();
+
+	OperationMetrics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param durationNanos How long the operation took
+	 */
+	public void recordSuccess(long durationNanos) {
+		latency.record(durationNanos);
+	}
+
+	/**
+	 * The duration of a failed operation is also included in the latency histogram
+	 *
+	 * @param durationNanos How long the operation took before it failed
+	 * @param errorType Type of the exception that the operation failed with
+	 */
+	public void recordFailure(long durationNanos, Class<?> errorType) {
+		latency.record(durationNanos);
+		LongAdder errorCount = errorCounts.get(errorType);
+		if (errorCount == null) {
+			errorCount = errorCounts.computeIfAbsent(errorType, k -> new LongAdder());
+		}
+		errorCount.increment();
+	}
+
+	/**
+	 * @return Copy of the latency histogram. Includes both successes and failures.
+	 */
+	public LatencyHistogram.Snapshot getLatency() {
+		return latency.snapshot();
+	}
+
+	/**
+	 * @return Number of failures for each exception type (by simple class name), sorted by name
+	 */
+	public Map<String, Long> getErrorCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		for (Map.Entry<Class<?>, LongAdder> e : errorCounts.entrySet()) {
+			counts.merge(e.getKey().getSimpleName(), e.getValue().sum(), Long::sum);
+		}
+		return counts;
+	}
+
+}
@@ -0,0 +1,274 @@
+package com.jimtough.sbdaws.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Record of what one request did: how long each phase took, the AWS SDK calls that it made,
+ * the cache lookups, and some sizes. Serialized to JSON as the response to a traced request.
+ *
+ * A trace is only created when a request asks for one. The code that could record something
+ * looks for the trace with {@link #current()}, so a request that is not traced pays for one
+ * thread-local lookup at each of those points and nothing else.
+ *
+ * The trace is current on a thread while that thread is working for the request. Work that is
+ * handed to another thread is wrapped with {@link #wrap(Callable)} to carry the trace along.
+ * Work that the request only waits for (such as a load started by another request) is not
+ * recorded.
+ *
+ * @author JTOUGH
+ */
+public final class RequestTrace {
+
+	private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+	private final long startNanos = System.nanoTime();
+	private final long startEpochMillis = System.currentTimeMillis();
+	// Written by the section threads at the same time
+	private final List<Phase> phases = Collections.synchronizedList(new ArrayList<>());
+	private final List<SdkCall> sdkCalls = Collections.synchronizedList(new ArrayList<>());
+	private final List<CacheLookup> cacheLookups = Collections.synchronizedList(new ArrayList<>());
+	private final Map<String, Long> values = Collections.synchronizedMap(new LinkedHashMap<>());
+	private volatile long finishNanos;
+
+	/**
+	 * @return The trace of the request that the calling thread is working for, or null if it is not traced
+	 */
+	public static RequestTrace current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @param task Work to do for the traced request, on another thread
+	 * @return Runs the task with this trace current, then puts back whatever was current before
+	 */
+	public <T> Callable<T> wrap(Callable<T> task) {
+		return () -> {
+			RequestTrace previous = CURRENT.get();
+			CURRENT.set(this);
+			try {
+				return task.call();
+			} finally {
+				if (previous == null) {
+					CURRENT.remove();
+				} else {
+					CURRENT.set(previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param name Short name of the phase, the same as in the Server-Timing header
+	 * @param durationNanos How long the phase took
+	 * @param description Outcome of the phase, or null
+	 */
+	public void addPhase(String name, long durationNanos, String description) {
+		phases.add(new Phase(name, toMillis(durationNanos), description));
+	}
+
+	/**
+	 * @param client Describes the SDK client (service and region)
+	 * @param operation Name of the SDK operation
+	 * @return Record of the call, to update when it finishes
+	 */
+	public SdkCall startSdkCall(String client, String operation) {
+		SdkCall call = new SdkCall(client, operation, toMillis(System.nanoTime() - startNanos));
+		sdkCalls.add(call);
+		return call;
+	}
+
+	/**
+	 * @param cache Name of the cache
+	 * @param outcome How the lookup was answered, such as "HIT" or "MISS"
+	 */
+	public void addCacheLookup(String cache, String outcome) {
+		cacheLookups.add(new CacheLookup(cache, outcome, Thread.currentThread().getName()));
+	}
+
+	/**
+	 * @param name Name of a number to include, such as a size in bytes
+	 * @param value The number
+	 */
+	public void putValue(String name, long value) {
+		values.put(name, value);
+	}
+
+	/**
+	 * Stops the clock. Anything recorded after this is still included.
+	 */
+	public void finish() {
+		finishNanos = System.nanoTime();
+	}
+
+	public long getStartEpochMillis() {
+		return startEpochMillis;
+	}
+
+	/**
+	 * @return Time from when the trace was created until {@link #finish()}, or until now if not finished
+	 */
+	public double getDurationMillis() {
+		long endNanos = finishNanos == 0 ? System.nanoTime() : finishNanos;
+		return toMillis(endNanos - startNanos);
+	}
+
+	public List<Phase> getPhases() {
+		return copyOf(phases);
+	}
+
+	public List<SdkCall> getSdkCalls() {
+		return copyOf(sdkCalls);
+	}
+
+	public List<CacheLookup> getCacheLookups() {
+		return copyOf(cacheLookups);
+	}
+
+	public Map<String, Long> getValues() {
+		synchronized (values) {
+			return new LinkedHashMap<>(values);
+		}
+	}
+
+	/**
+	 * @return Duration in milliseconds, to the nearest microsecond
+	 */
+	static double toMillis(long nanos) {
+		return Math.round(nanos / 1000.0) / 1000.0;
+	}
+
+	private static <T> List<T> copyOf(List<T> list) {
+		synchronized (list) {
+			return new ArrayList<>(list);
+		}
+	}
+
+	/**
+	 * One step of the request
+	 */
+	public static final class Phase {
+		private final String name;
+		private final double durationMillis;
+		private final String description;
+
+		Phase(String name, double durationMillis, String description) {
+			this.name = name;
+			this.durationMillis = durationMillis;
+			this.description = description;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public double getDurationMillis() {
+			return durationMillis;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	/**
+	 * One AWS SDK call, including its retries
+	 */
+	public static final class SdkCall {
+		private final String client;
+		private final String operation;
+		private final String thread = Thread.currentThread().getName();
+		private final double startOffsetMillis;
+		private final long startNanos = System.nanoTime();
+		private volatile double durationMillis = -1;
+		private volatile int retries;
+		private volatile String outcome = "IN_PROGRESS";
+
+		SdkCall(String client, String operation, double startOffsetMillis) {
+			this.client = client;
+			this.operation = operation;
+			this.startOffsetMillis = startOffsetMillis;
+		}
+
+		/**
+		 * Called by the thread that made the call, before each retry
+		 */
+		public void retried() {
+			retries++;
+		}
+
+		/**
+		 * @param outcome "OK", or the type of the exception that the call failed with
+		 */
+		public void finish(String outcome) {
+			this.durationMillis = toMillis(System.nanoTime() - startNanos);
+			this.outcome = outcome;
+		}
+
+		public String getClient() {
+			return client;
+		}
+
+		public String getOperation() {
+			return operation;
+		}
+
+		public String getThread() {
+			return thread;
+		}
+
+		/**
+		 * @return Time from the start of the request until the call was made
+		 */
+		public double getStartOffsetMillis() {
+			return startOffsetMillis;
+		}
+
+		/**
+		 * @return How long the call took, or -1 if it had not finished when the trace was written
+		 */
+		public double getDurationMillis() {
+			return durationMillis;
+		}
+
+		public int getRetries() {
+			return retries;
+		}
+
+		public String getOutcome() {
+			return outcome;
+		}
+	}
+
+	/**
+	 * One lookup in an inventory cache
+	 */
+	public static final class CacheLookup {
+		private final String cache;
+		private final String outcome;
+		private final String thread;
+
+		CacheLookup(String cache, String outcome, String thread) {
+			this.cache = cache;
+			this.outcome = outcome;
+			this.thread = thread;
+		}
+
+		public String getCache() {
+			return cache;
+		}
+
+		public String getOutcome() {
+			return outcome;
+		}
+
+		public String getThread() {
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Classes that record latency and error metrics, publish them for scraping, and trace single requests
+ */
+package com.jimtough.sbdaws.metrics;
@@ -0,0 +1,188 @@
+package com.jimtough.sbdaws.page;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+import com.jimtough.sbdaws.metrics.RequestTrace;
+
+/**
+ * Handles the home page asynchronously. The Tomcat worker thread is released as soon as the
+ * section lookups have been started, and the response is completed later by whichever thread
+ * completes the last section: a cache refresh thread, the EFS index thread, or the deadline
+ * thread. No thread waits for a section, so the number of requests in progress is not limited
+ * by the size of the Tomcat thread pool or of the section thread pool.
+ *
+ * If the data has changed, that thread also renders the page. The page is then written to the
+ * response on the render thread pool (see {@link AsyncPageRenderingConfiguration}). A page with a
+ * failed or timed-out section is rendered on that pool as it is written (see
+ * {@link RenderedHomePage}). ETags, gzip, the Server-Timing header and {@code /?trace} work the
+ * same way as in {@link HomePageController}.
+ *
+ * Enabled by setting {@code app.request.mode=async} in application.properties.
+ *
+ * @author JTOUGH
+ */
+@RestController
+@ConditionalOnProperty(name = HomePageController.REQUEST_MODE_PROPERTY, havingValue = "async")
+public class AsyncHomePageController {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncHomePageController.class);
+
+	// Every section has its own deadline, so this should only be reached if something is badly wrong
+	private static final long ASYNC_TIMEOUT_MARGIN_MILLIS = 5000L;
+
+	private static final MediaType CONTENT_TYPE = MediaType.parseMediaType(HomePageRenderer.CONTENT_TYPE);
+
+	private final HomePageService homePageService;
+	private final HomePageBodyCache homePageBodyCache;
+	private final OperationMetrics homePageMetrics;
+	private final boolean traceEnabled;
+
+	@Autowired
+	public AsyncHomePageController(ConfigurationBean configurationBean, HomePageService homePageService,
+			HomePageBodyCache homePageBodyCache, MetricsRegistry metricsRegistry) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (homePageService == null) {
+			throw new IllegalArgumentException("homePageService cannot be null");
+		}
+		if (homePageBodyCache == null) {
+			throw new IllegalArgumentException("homePageBodyCache cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.homePageService = homePageService;
+		this.homePageBodyCache = homePageBodyCache;
+		this.homePageMetrics = metricsRegistry.operation(HomePageController.HOME_PAGE_OPERATION);
+		this.traceEnabled = configurationBean.isPageTraceEnabled();
+	}
+
+	@RequestMapping("/")
+	public DeferredResult<ResponseEntity<StreamingResponseBody>> home(
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+		LOGGER.info("Request received");
+		DeferredResult<ResponseEntity<StreamingResponseBody>> deferredResult =
+				new DeferredResult<>(homePageService.getMaxFetchMillis() + ASYNC_TIMEOUT_MARGIN_MILLIS);
+		assemble(null).whenComplete((assembled, error) -> {
+			if (error != null) {
+				deferredResult.setErrorResult(error);
+			} else {
+				deferredResult.setResult(toResponse(assembled, ifNoneMatch, acceptEncoding));
+			}
+		});
+		return deferredResult;
+	}
+
+	@RequestMapping(value = "/", params = HomePageController.TRACE_PARAMETER)
+	public DeferredResult<ResponseEntity<RequestTrace>> traceHome() {
+		DeferredResult<ResponseEntity<RequestTrace>> deferredResult =
+				new DeferredResult<>(homePageService.getMaxFetchMillis() + ASYNC_TIMEOUT_MARGIN_MILLIS);
+		if (!traceEnabled) {
+			deferredResult.setResult(ResponseEntity.notFound().build());
+			return deferredResult;
+		}
+		LOGGER.info("Traced request received");
+		RequestTrace trace = new RequestTrace();
+		assemble(trace).whenComplete((assembled, error) -> {
+			if (error != null) {
+				deferredResult.setErrorResult(error);
+				return;
+			}
+			trace.finish();
+			deferredResult.setResult(ResponseEntity.ok()
+					.cacheControl(CacheControl.noStore())
+					.header(ServerTiming.HEADER_NAME, assembled.serverTiming)
+					.body(trace));
+		});
+		return deferredResult;
+	}
+
+	/**
+	 * Fetch the sections and get the rendered page, on whichever thread completes the last section
+	 *
+	 * @return Completes exceptionally if the page cannot be rendered
+	 */
+	private CompletableFuture<AssembledPage> assemble(RequestTrace trace) {
+		long startNanos = System.nanoTime();
+		CompletableFuture<AssembledPage> assembled = new CompletableFuture<>();
+		homePageService.fetchAsync(trace).whenComplete((sections, error) -> {
+			if (error != null) {
+				homePageMetrics.recordFailure(System.nanoTime() - startNanos, error.getClass());
+				assembled.completeExceptionally(error);
+				return;
+			}
+			try {
+				long renderStartNanos = System.nanoTime();
+				RenderedHomePage page = homePageBodyCache.get(sections, trace);
+				long endNanos = System.nanoTime();
+				homePageMetrics.recordSuccess(endNanos - startNanos);
+				assembled.complete(new AssembledPage(page,
+						ServerTiming.forHomePage(sections, endNanos - renderStartNanos, endNanos - startNanos, trace)));
+			} catch (IOException | RuntimeException e) {
+				homePageMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+				assembled.completeExceptionally(e);
+			}
+		});
+		return assembled;
+	}
+
+	private static ResponseEntity<StreamingResponseBody> toResponse(AssembledPage assembled, String ifNoneMatch,
+			String acceptEncoding) {
+		RenderedHomePage page = assembled.page;
+		boolean gzip = RenderedHomePage.acceptsGzip(acceptEncoding);
+		if (page.isNotModified(ifNoneMatch, gzip)) {
+			// A 304 must carry the same Vary as the 200 it stands for, so that caches key it the same way
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+					.eTag(page.getETag(gzip))
+					.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+					.header(ServerTiming.HEADER_NAME, assembled.serverTiming)
+					.build();
+		}
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+				.contentType(CONTENT_TYPE)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+				.header(ServerTiming.HEADER_NAME, assembled.serverTiming);
+		if (page.getETag(gzip) != null) {
+			builder.eTag(page.getETag(gzip));
+		}
+		if (gzip) {
+			builder.header(HttpHeaders.CONTENT_ENCODING, RenderedHomePage.GZIP_ENCODING);
+			if (!page.isStreamed()) {
+				builder.contentLength(page.getGzippedLength());
+			}
+		}
+		return builder.body(out -> page.writeTo(out, gzip));
+	}
+
+	private static final class AssembledPage {
+		final RenderedHomePage page;
+		final String serverTiming;
+
+		AssembledPage(RenderedHomePage page, String serverTiming) {
+			this.page = page;
+			this.serverTiming = serverTiming;
+		}
+	}
+
+}
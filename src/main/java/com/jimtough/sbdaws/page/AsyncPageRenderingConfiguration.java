@@ -0,0 +1,42 @@
+package com.jimtough.sbdaws.page;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+
+/**
+ * In async mode, Spring writes each {@code StreamingResponseBody} on a separate thread.
+ * Without this configuration it would create a new thread for every response.
+ *
+ * @author JTOUGH
+ */
+@Configuration
+@ConditionalOnProperty(name = HomePageController.REQUEST_MODE_PROPERTY, havingValue = "async")
+public class AsyncPageRenderingConfiguration extends WebMvcConfigurerAdapter {
+
+	@Autowired
+	private ConfigurationBean configurationBean;
+
+	@Bean
+	public ThreadPoolTaskExecutor pageRenderExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(Math.max(1, configurationBean.getPageRenderThreads()));
+		executor.setMaxPoolSize(Math.max(1, configurationBean.getPageRenderThreads()));
+		executor.setQueueCapacity(Math.max(1, configurationBean.getPageRenderQueueCapacity()));
+		executor.setAllowCoreThreadTimeOut(true);
+		executor.setThreadNamePrefix("page-render-");
+		return executor;
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(pageRenderExecutor());
+	}
+
+}
@@ -0,0 +1,245 @@
+package com.jimtough.sbdaws.page;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.awssdk.AwsServiceStatus;
+import com.jimtough.sbdaws.awssdk.CircuitBreaker;
+import com.jimtough.sbdaws.metrics.RequestTrace;
+
+/**
+ * Keeps the most recently rendered home page, compressed with gzip, and reuses it for as long
+ * as the data behind it has not changed.
+ *
+ * The inventory cache returns the same instances until the AWS data changes, and the EFS file
+ * index returns the same snapshot until the volume changes. So "unchanged" is a reference
+ * comparison of the section values, which costs nothing. The AWS circuit breaker states are also
+ * compared, so that their status line stays current. The EFS heartbeat is not on the page at all:
+ * it ticks every minute, and would change the ETag of unchanged data just as often. Each response
+ * reports it in its Server-Timing header instead (see {@link ServerTiming}).
+ *
+ * The ETag is a SHA-256 digest of the HTML that shows the data (see
+ * {@link HomePageRenderer#renderData}) and of the circuit breaker states. So the ETag changes
+ * whenever the body does, and the same data gets the same ETag in every task and after a restart.
+ * The footer is left out of the digest, because its timings differ on every render. The gzipped
+ * and the plain body are different representations, so each gets its own ETag (see
+ * {@link RenderedHomePage}).
+ *
+ * Keeping the page trades memory per page for memory per request: the gzipped copy is held once,
+ * for every request, rather than each request holding only the renderer's write buffer while it
+ * streams its own copy. Pages with a failed or timed-out section would never be reused, so they
+ * are still streamed that way. They are not kept, and have no ETag.
+ *
+ * The footer of a reused page (section timings, index statistics) is from the request that
+ * rendered it.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class HomePageBodyCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HomePageBodyCache.class);
+
+	private static final int GZIP_BUFFER_SIZE = 8192;
+
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+
+	private final HomePageRenderer homePageRenderer;
+	private final AtomicLong renderCount = new AtomicLong();
+	private final LongAdder reuseCount = new LongAdder();
+
+	private volatile CachedPage current;
+
+	@Autowired
+	public HomePageBodyCache(HomePageRenderer homePageRenderer) {
+		if (homePageRenderer == null) {
+			throw new IllegalArgumentException("homePageRenderer cannot be null");
+		}
+		this.homePageRenderer = homePageRenderer;
+	}
+
+	/**
+	 * @param sections Fetched sections
+	 * @return The cached page if it was rendered from the same data, otherwise a newly rendered page
+	 * @throws IOException Thrown if the page cannot be rendered
+	 */
+	public RenderedHomePage get(HomePageSections sections) throws IOException {
+		return get(sections, null);
+	}
+
+	/**
+	 * Same as {@link #get(HomePageSections)}, and records whether the page was reused and its size
+	 *
+	 * @param sections Fetched sections
+	 * @param trace Trace of the request, or null if it is not traced
+	 * @return The cached page if it was rendered from the same data, otherwise a newly rendered page
+	 * @throws IOException Thrown if the page cannot be rendered
+	 */
+	public RenderedHomePage get(HomePageSections sections, RequestTrace trace) throws IOException {
+		CachedPage cached = current;
+		if (cached != null && cached.isRenderedFrom(sections)) {
+			reuseCount.increment();
+			if (trace != null) {
+				trace.putValue("pageReused", 1);
+				trace.putValue("gzippedBytes", cached.page.getGzippedLength());
+			}
+			return cached.page;
+		}
+		if (!isCacheable(sections)) {
+			// Never reused, so there is nothing to gain from rendering it before it is written
+			renderCount.incrementAndGet();
+			if (trace != null) {
+				trace.putValue("pageReused", 0);
+				trace.putValue("pageStreamed", 1);
+			}
+			return new RenderedHomePage(homePageRenderer, sections);
+		}
+		MessageDigest digest = newDigest();
+		byte[] gzippedBody = renderGzipped(sections, digest, trace);
+		renderCount.incrementAndGet();
+		CachedPage rendered = new CachedPage(sections, digest, gzippedBody);
+		current = rendered;
+		LOGGER.debug("Home page rendered | ETag: [{}] | gzipped bytes: [{}]",
+				rendered.page.getETag(false), gzippedBody.length);
+		return rendered.page;
+	}
+
+	/**
+	 * @return Number of times that the page has been rendered, or handed out to be streamed
+	 */
+	public long getRenderCount() {
+		return renderCount.get();
+	}
+
+	/**
+	 * @return Number of times that the cached page was reused instead of rendered
+	 */
+	public long getReuseCount() {
+		return reuseCount.sum();
+	}
+
+	/**
+	 * @param digest Gets the HTML of the data
+	 */
+	private byte[] renderGzipped(HomePageSections sections, MessageDigest digest, RequestTrace trace)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(GZIP_BUFFER_SIZE);
+		try (CountingGZIPOutputStream gzip = new CountingGZIPOutputStream(bytes)) {
+			DigestOutputStream digesting = new DigestOutputStream(gzip, digest);
+			Writer writer = new BufferedWriter(new OutputStreamWriter(digesting, StandardCharsets.UTF_8),
+					HomePageRenderer.WRITE_BUFFER_SIZE);
+			homePageRenderer.renderData(sections, writer);
+			digesting.on(false);
+			homePageRenderer.renderFooter(sections, writer);
+			if (trace != null) {
+				gzip.finish();
+				trace.putValue("pageReused", 0);
+				trace.putValue("htmlBytes", gzip.getUncompressedLength());
+			}
+		}
+		if (trace != null) {
+			trace.putValue("gzippedBytes", bytes.size());
+		}
+		return bytes.toByteArray();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static boolean isCacheable(HomePageSections sections) {
+		return sections.getIamResult().isOk()
+				&& sections.getEcsResult().isOk()
+				&& sections.getS3Result().isOk()
+				&& sections.getEfsResult().isOk();
+	}
+
+	/**
+	 * The deflater already counts its input, so the length of the HTML costs nothing to get
+	 */
+	private static final class CountingGZIPOutputStream extends GZIPOutputStream {
+		CountingGZIPOutputStream(ByteArrayOutputStream out) throws IOException {
+			super(out, GZIP_BUFFER_SIZE);
+		}
+
+		// Only valid until the stream is closed
+		long getUncompressedLength() {
+			return def.getBytesRead();
+		}
+	}
+
+	private static final class CachedPage {
+		final Object iam;
+		final Object ecs;
+		final Object s3;
+		final Object efs;
+		final List<CircuitBreaker.State> circuitStates;
+		final RenderedHomePage page;
+
+		/**
+		 * @param digest Has been given the HTML of the data
+		 */
+		CachedPage(HomePageSections sections, MessageDigest digest, byte[] gzippedBody) {
+			this.iam = sections.getIamResult().getValue();
+			this.ecs = sections.getEcsResult().getValue();
+			this.s3 = sections.getS3Result().getValue();
+			this.efs = sections.getEfsResult().getValue();
+			this.circuitStates = circuitStates(sections.getAwsServiceStatuses());
+			this.page = new RenderedHomePage(contentHash(digest), gzippedBody);
+		}
+
+		/**
+		 * The circuit breaker states are in the footer, so they go into the digest by name
+		 */
+		private String contentHash(MessageDigest digest) {
+			for (CircuitBreaker.State state : circuitStates) {
+				digest.update(state.name().getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) ';');
+			}
+			return String.format("%064x", new BigInteger(1, digest.digest()));
+		}
+
+		boolean isRenderedFrom(HomePageSections sections) {
+			return isCacheable(sections)
+					&& iam == sections.getIamResult().getValue()
+					&& ecs == sections.getEcsResult().getValue()
+					&& s3 == sections.getS3Result().getValue()
+					&& efs == sections.getEfsResult().getValue()
+					&& circuitStates.equals(circuitStates(sections.getAwsServiceStatuses()));
+		}
+
+		private static List<CircuitBreaker.State> circuitStates(List<AwsServiceStatus> statuses) {
+			List<CircuitBreaker.State> states = new ArrayList<>();
+			if (statuses != null) {
+				for (AwsServiceStatus status : statuses) {
+					states.add(status.getCircuitState());
+				}
+			}
+			return states;
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.jimtough.sbdaws.page;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+import com.jimtough.sbdaws.metrics.RequestTrace;
+
+/**
+ * Handles the home page synchronously. The Tomcat worker thread is held until the page is complete.
+ *
+ * This is the default. Set {@code app.request.mode=async} in application.properties to use
+ * {@link AsyncHomePageController} instead.
+ *
+ * The page carries an ETag. A client that sends it back in If-None-Match gets a 304 (Not Modified)
+ * if the data has not changed. The body is sent gzipped to clients that accept it
+ * (see {@link HomePageBodyCache}).
+ *
+ * Every response has a Server-Timing header (see {@link ServerTiming}). If tracing is enabled
+ * (it is off by default), {@code /?trace} fetches and renders the page in the same way, but
+ * returns a JSON {@code RequestTrace} of the request instead of the page.
+ *
+ * @author JTOUGH
+ */
+@RestController
+@ConditionalOnProperty(name = HomePageController.REQUEST_MODE_PROPERTY, havingValue = "sync", matchIfMissing = true)
+public class HomePageController {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HomePageController.class);
+
+	/**
+	 * Selects the home page request handler. Either "sync" (the default) or "async".
+	 */
+	public static final String REQUEST_MODE_PROPERTY = "app.request.mode";
+
+	/**
+	 * Name of the operation that records the time to fetch the sections and render the page.
+	 * Writing the body to the client is not included.
+	 */
+	public static final String HOME_PAGE_OPERATION = "page.home";
+
+	/**
+	 * Query parameter that asks for a trace of the request instead of the page
+	 */
+	public static final String TRACE_PARAMETER = "trace";
+
+	private final HomePageService homePageService;
+	private final HomePageBodyCache homePageBodyCache;
+	private final OperationMetrics homePageMetrics;
+	private final boolean traceEnabled;
+
+	@Autowired
+	public HomePageController(ConfigurationBean configurationBean, HomePageService homePageService,
+			HomePageBodyCache homePageBodyCache, MetricsRegistry metricsRegistry) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (homePageService == null) {
+			throw new IllegalArgumentException("homePageService cannot be null");
+		}
+		if (homePageBodyCache == null) {
+			throw new IllegalArgumentException("homePageBodyCache cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		this.homePageService = homePageService;
+		this.homePageBodyCache = homePageBodyCache;
+		this.homePageMetrics = metricsRegistry.operation(HOME_PAGE_OPERATION);
+		this.traceEnabled = configurationBean.isPageTraceEnabled();
+	}
+
+	// Returns a kind-of-ugly HTML reply with details from the AWS SDK method call responses.
+	@RequestMapping("/")
+	public void home(
+			@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+			HttpServletResponse response) throws IOException {
+		LOGGER.info("Request received");
+		RenderedHomePage page = assemble(null, response);
+		boolean gzip = RenderedHomePage.acceptsGzip(acceptEncoding);
+		// A 304 must carry the same Vary as the 200 it stands for, so that caches key it the same way
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (page.getETag(gzip) != null) {
+			response.setHeader(HttpHeaders.ETAG, page.getETag(gzip));
+		}
+		if (page.isNotModified(ifNoneMatch, gzip)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		response.setContentType(HomePageRenderer.CONTENT_TYPE);
+		if (gzip) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, RenderedHomePage.GZIP_ENCODING);
+			if (!page.isStreamed()) {
+				response.setContentLength(page.getGzippedLength());
+			}
+		}
+		page.writeTo(response.getOutputStream(), gzip);
+	}
+
+	@RequestMapping(value = "/", params = TRACE_PARAMETER)
+	public ResponseEntity<RequestTrace> traceHome(HttpServletResponse response) throws IOException {
+		if (!traceEnabled) {
+			return ResponseEntity.notFound().build();
+		}
+		LOGGER.info("Traced request received");
+		RequestTrace trace = new RequestTrace();
+		assemble(trace, response);
+		trace.finish();
+		return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(trace);
+	}
+
+	/**
+	 * Fetch the sections and get the rendered page, and set the Server-Timing header
+	 */
+	private RenderedHomePage assemble(RequestTrace trace, HttpServletResponse response) throws IOException {
+		long startNanos = System.nanoTime();
+		HomePageSections sections;
+		RenderedHomePage page;
+		long renderStartNanos;
+		try {
+			sections = homePageService.fetch(trace);
+			renderStartNanos = System.nanoTime();
+			page = homePageBodyCache.get(sections, trace);
+		} catch (IOException | RuntimeException e) {
+			homePageMetrics.recordFailure(System.nanoTime() - startNanos, e.getClass());
+			throw e;
+		}
+		long endNanos = System.nanoTime();
+		homePageMetrics.recordSuccess(endNanos - startNanos);
+		response.setHeader(ServerTiming.HEADER_NAME,
+				ServerTiming.forHomePage(sections, endNanos - renderStartNanos, endNanos - startNanos, trace));
+		return page;
+	}
+
+}
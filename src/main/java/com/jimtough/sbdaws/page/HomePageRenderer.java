@@ -0,0 +1,285 @@
+package com.jimtough.sbdaws.page;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsServiceStatus;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory.RegionalCluster;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+import com.jimtough.sbdaws.efs.EfsIndexStatistics;
+
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Renders the kind-of-ugly HTML home page from the fetched sections.
+ *
+ * The templates are parsed once, when this component is created. The page is written to the
+ * output stream as it is rendered, rather than being built up as one large String first.
+ *
+ * When every section is there, the stream is the gzip stream of {@code HomePageBodyCache}, so the
+ * whole page does end up in memory, but only once and compressed. That copy is shared by every
+ * request until the data changes. A page with a failed or timed-out section is rendered straight
+ * into the response body instead. Either way, the memory used per request does not grow with the
+ * number of rows.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class HomePageRenderer {
+
+	/**
+	 * Content type of the rendered page
+	 */
+	public static final String CONTENT_TYPE = "text/html;charset=UTF-8";
+
+	// Rendered HTML is passed to the output stream in chunks of this size. That is the gzip stream
+	// of the body cache, or of a streamed response, so the page never exists as one large String.
+	static final int WRITE_BUFFER_SIZE = 8192;
+
+	private final String EOL = System.lineSeparator();
+	private final HtmlTemplate HTML_HELLO_MESSAGE =
+			new HtmlTemplate("<h2>Hello! This is the Spring Boot webapp that %s created.</h2>");
+
+	private final HtmlTemplate HTML_REGION_HEADER = new HtmlTemplate("<h3>This app is running in region [<b>%s</b>]</h3>");
+
+	private final HtmlTemplate HTML_IAM_USER_HEADER = new HtmlTemplate("<h3>My IAM User: [<b>%s</b>]</h3>");
+	private final HtmlTemplate HTML_IAM_USER_DETAILS = new HtmlTemplate(
+			"<ul>" + EOL +
+				"<li><b>IAM user creation date:</b> %s</li>" + EOL +
+			"</ul>");
+	private final String HTML_IAM_USER_SDK_FAILURE = "<h3><b>SDK request for IAM user details failed!</b></h3>";
+	private final String HTML_IAM_USER_SDK_TIMED_OUT = "<h3><b>SDK request for IAM user details timed out!</b></h3>";
+
+	private final HtmlTemplate HTML_ECS_CLUSTER_HEADER =
+			new HtmlTemplate("<h3>My ECS clusters (%d in total, in %d regions)</h3>");
+	private final HtmlTemplate HTML_ECS_CLUSTER_DETAILS = new HtmlTemplate(
+			"<li><b>region:</b> %s | <b>name:</b> %s | <b>containers:</b> %s | <b>services:</b> %s | <b>tasks:</b> %s</li>");
+	private final HtmlTemplate HTML_ECS_REGION_FAILURE =
+			new HtmlTemplate("<p><b>SDK request for ECS clusters in region [%s] failed:</b> %s</p>");
+	private final String HTML_ECS_CLUSTER_SDK_FAILURE = "<h3><b>SDK request for ECS cluster details failed!</b></h3>";
+	private final String HTML_ECS_CLUSTER_SDK_TIMED_OUT = "<h3><b>SDK request for ECS cluster details timed out!</b></h3>";
+
+	private final HtmlTemplate HTML_S3_BUCKETS_HEADER = new HtmlTemplate("<h3>My S3 buckets (%d in total)</h3>");
+	private final HtmlTemplate HTML_S3_BUCKET_DETAILS =
+			new HtmlTemplate("<li><b>name:</b> %s | <b>creation date:</b> %s</li>");
+	private final String HTML_S3_BUCKETS_SDK_FAILURE = "<h3><b>SDK request for S3 buckets list failed!</b></h3>";
+	private final String HTML_S3_BUCKETS_SDK_TIMED_OUT = "<h3><b>SDK request for S3 buckets list timed out!</b></h3>";
+
+	private final HtmlTemplate HTML_EFS_VOLUME_FILES_HEADER = new HtmlTemplate("<h3>Files in my EFS volume (%d in total)</h3>");
+	private final HtmlTemplate HTML_EFS_VOLUME_FILE_DETAILS = new HtmlTemplate("<li>"
+			+ "<b>file path:</b> [%s] | "
+			+ "<b>created: </b> %s | "
+			+ "<b>last modified:</b> %s | "
+			+ "<b>size: </b> %s | "
+			+ "<b>is directory?: </b> %b"
+			+ "</li>");
+	private final String HTML_EFS_VOLUME_FILES_FAILURE = "<h3><b>Unable to list the files in my EFS volume!</b></h3>";
+	private final String HTML_EFS_VOLUME_FILES_TIMED_OUT = "<h3><b>Listing the files in my EFS volume timed out!</b></h3>";
+
+	private final HtmlTemplate HTML_SECTION_OUTCOMES = new HtmlTemplate("<p><small>%s | %s | %s | %s</small></p>");
+	private final String HTML_AWS_SERVICE_STATUS_START = "<p><small>AWS circuit breakers: ";
+	private final String HTML_AWS_SERVICE_STATUS_SEPARATOR = " | ";
+	private final String HTML_AWS_SERVICE_STATUS_END = "</small></p>";
+	private final HtmlTemplate HTML_EFS_INDEX_STATISTICS = new HtmlTemplate(
+			"<p><small>EFS index: %d entries | last full scan took %d ms | %d change events applied</small></p>");
+
+	private final ConfigurationBean configurationBean;
+
+	@Autowired
+	public HomePageRenderer(ConfigurationBean configurationBean) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		this.configurationBean = configurationBean;
+	}
+
+	/**
+	 * Write the page to a stream, such as a response body. The stream is flushed after each section.
+	 *
+	 * @param sections Fetched sections
+	 * @param out Destination for the page. It is flushed but not closed.
+	 * @throws IOException Thrown if the stream cannot be written
+	 */
+	public void render(HomePageSections sections, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+		render(sections, writer);
+		writer.flush();
+	}
+
+	/**
+	 * @param sections Fetched sections
+	 * @param out Destination for the complete HTML page. It is flushed after each section.
+	 * @throws IOException Thrown if the destination cannot be written
+	 */
+	public void render(HomePageSections sections, Writer out) throws IOException {
+		renderData(sections, out);
+		renderFooter(sections, out);
+	}
+
+	/**
+	 * Write the start of the page, which shows the data of the sections. The same data always
+	 * gives the same HTML, so {@code HomePageBodyCache} takes the ETag from it.
+	 *
+	 * @param sections Fetched sections
+	 * @param out Destination for the start of the page. It is flushed after each section.
+	 * @throws IOException Thrown if the destination cannot be written
+	 */
+	void renderData(HomePageSections sections, Writer out) throws IOException {
+		SectionResult<User> iamResult = sections.getIamResult();
+		SectionResult<EcsClusterInventory> ecsResult = sections.getEcsResult();
+		SectionResult<List<Bucket>> s3Result = sections.getS3Result();
+		SectionResult<List<EfsFileEntry>> efsResult = sections.getEfsResult();
+
+		out.write("<html><body>");
+
+		// Start with a simple greeting that includes one of the values from the properties file.
+		// This should insert YOUR name if you edited the "maven-filter-values.properties" file.
+		HTML_HELLO_MESSAGE.write(out, configurationBean.getMyName());
+
+		HTML_REGION_HEADER.write(out, configurationBean.getAwsTargetRegion().value());
+
+		// Add the IAM user details to the HTML response
+		if (iamResult.isOk()) {
+			User user = iamResult.getValue();
+			HTML_IAM_USER_HEADER.write(out, user != null ? user.userName() : "UNKNOWN");
+			if (user != null) {
+				HTML_IAM_USER_DETAILS.write(out, user.createDate());
+			}
+		} else if (iamResult.getStatus() == SectionResult.Status.TIMED_OUT) {
+			out.write(HTML_IAM_USER_SDK_TIMED_OUT);
+		} else {
+			out.write(HTML_IAM_USER_SDK_FAILURE);
+		}
+		out.flush();
+
+		// Add the ECS cluster details to the HTML response
+		if (ecsResult.isOk()) {
+			EcsClusterInventory inventory = ecsResult.getValue();
+			List<RegionalCluster> clusterList = inventory.getClusters();
+			HTML_ECS_CLUSTER_HEADER.write(out, clusterList.size(), inventory.getRegions().size());
+			for (Map.Entry<String, String> failedRegion : inventory.getFailedRegions().entrySet()) {
+				HTML_ECS_REGION_FAILURE.write(out, failedRegion.getKey(), failedRegion.getValue());
+				out.write(EOL);
+			}
+			if (!clusterList.isEmpty()) {
+				out.write("<ul>");
+				out.write(EOL);
+				for (RegionalCluster regionalCluster : clusterList) {
+					Cluster cluster = regionalCluster.getCluster();
+					HTML_ECS_CLUSTER_DETAILS.write(out,
+							regionalCluster.getRegion().value(),
+							cluster.clusterName(),
+							cluster.registeredContainerInstancesCount(),
+							cluster.activeServicesCount(),
+							cluster.runningTasksCount());
+					out.write(EOL);
+				}
+				out.write("</ul>");
+				out.write(EOL);
+			}
+		} else if (ecsResult.getStatus() == SectionResult.Status.TIMED_OUT) {
+			out.write(HTML_ECS_CLUSTER_SDK_TIMED_OUT);
+		} else {
+			out.write(HTML_ECS_CLUSTER_SDK_FAILURE);
+		}
+		out.flush();
+
+		// Add the S3 bucket details to the HTML response
+		if (s3Result.isOk()) {
+			List<Bucket> bucketList = s3Result.getValue();
+			HTML_S3_BUCKETS_HEADER.write(out, bucketList.size());
+			if (!bucketList.isEmpty()) {
+				out.write("<ul>");
+				out.write(EOL);
+				for (Bucket bucket : bucketList) {
+					HTML_S3_BUCKET_DETAILS.write(out, bucket.name(), bucket.creationDate());
+					out.write(EOL);
+				}
+				out.write("</ul>");
+				out.write(EOL);
+			}
+		} else if (s3Result.getStatus() == SectionResult.Status.TIMED_OUT) {
+			out.write(HTML_S3_BUCKETS_SDK_TIMED_OUT);
+		} else {
+			out.write(HTML_S3_BUCKETS_SDK_FAILURE);
+		}
+		out.flush();
+
+		// Add the EFS volume contents to the HTML response
+		if (efsResult.isOk()) {
+			List<EfsFileEntry> efsVolumeMountDirContents = efsResult.getValue();
+			HTML_EFS_VOLUME_FILES_HEADER.write(out, efsVolumeMountDirContents.size());
+			if (!efsVolumeMountDirContents.isEmpty()) {
+				out.write("<ul>");
+				out.write(EOL);
+				for (EfsFileEntry entry : efsVolumeMountDirContents) {
+					HTML_EFS_VOLUME_FILE_DETAILS.write(out,
+							entry.getPath(),
+							entry.getCreationTime(),
+							entry.getLastModifiedTime(),
+							entry.getSize(),
+							entry.isDirectory());
+					out.write(EOL);
+				}
+				out.write("</ul>");
+				out.write(EOL);
+			}
+		} else if (efsResult.getStatus() == SectionResult.Status.TIMED_OUT) {
+			out.write(HTML_EFS_VOLUME_FILES_TIMED_OUT);
+		} else {
+			out.write(HTML_EFS_VOLUME_FILES_FAILURE);
+		}
+
+		out.write("<br/><p>Visit me here: <a href='http://blog.jimtough.com'>http://blog.jimtough.com</a></p>");
+		out.flush();
+	}
+
+	/**
+	 * Write the end of the page: how each section was fetched, the AWS circuit breakers and the
+	 * EFS index. These change from one request to the next even when the data does not.
+	 *
+	 * @param sections Fetched sections
+	 * @param out Destination for the end of the page. It is flushed.
+	 * @throws IOException Thrown if the destination cannot be written
+	 */
+	void renderFooter(HomePageSections sections, Writer out) throws IOException {
+		// Show how long each section took, and whether it succeeded
+		HTML_SECTION_OUTCOMES.write(out,
+				sections.getIamResult(), sections.getEcsResult(), sections.getS3Result(), sections.getEfsResult());
+		List<AwsServiceStatus> awsServiceStatuses = sections.getAwsServiceStatuses();
+		if (awsServiceStatuses != null && !awsServiceStatuses.isEmpty()) {
+			out.write(HTML_AWS_SERVICE_STATUS_START);
+			for (int i = 0; i < awsServiceStatuses.size(); i++) {
+				if (i > 0) {
+					out.write(HTML_AWS_SERVICE_STATUS_SEPARATOR);
+				}
+				HtmlEscaper.escape(awsServiceStatuses.get(i).toString(), out);
+			}
+			out.write(HTML_AWS_SERVICE_STATUS_END);
+		}
+		EfsIndexStatistics efsIndexStatistics = sections.getEfsIndexStatistics();
+		if (efsIndexStatistics != null) {
+			HTML_EFS_INDEX_STATISTICS.write(out,
+					efsIndexStatistics.getEntryCount(),
+					efsIndexStatistics.getLastFullScanMillis(),
+					efsIndexStatistics.getWatchEventCount());
+		}
+
+		out.write("</body></html>");
+		out.flush();
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.jimtough.sbdaws.page;
+
+import java.util.List;
+
+import com.jimtough.sbdaws.awssdk.AwsServiceStatus;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+import com.jimtough.sbdaws.efs.EfsHeartbeatStatus;
+import com.jimtough.sbdaws.efs.EfsIndexStatistics;
+
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Outcome of fetching every section of the home page
+ *
+ * @author JTOUGH
+ */
+public final class HomePageSections {
+
+	private final SectionResult<User> iamResult;
+	private final SectionResult<EcsClusterInventory> ecsResult;
+	private final SectionResult<List<Bucket>> s3Result;
+	private final SectionResult<List<EfsFileEntry>> efsResult;
+	private final EfsIndexStatistics efsIndexStatistics;
+	private final EfsHeartbeatStatus efsHeartbeatStatus;
+	private final List<AwsServiceStatus> awsServiceStatuses;
+
+	HomePageSections(
+			SectionResult<User> iamResult,
+			SectionResult<EcsClusterInventory> ecsResult,
+			SectionResult<List<Bucket>> s3Result,
+			SectionResult<List<EfsFileEntry>> efsResult,
+			EfsIndexStatistics efsIndexStatistics,
+			EfsHeartbeatStatus efsHeartbeatStatus,
+			List<AwsServiceStatus> awsServiceStatuses) {
+		this.iamResult = iamResult;
+		this.ecsResult = ecsResult;
+		this.s3Result = s3Result;
+		this.efsResult = efsResult;
+		this.efsIndexStatistics = efsIndexStatistics;
+		this.efsHeartbeatStatus = efsHeartbeatStatus;
+		this.awsServiceStatuses = awsServiceStatuses;
+	}
+
+	public SectionResult<User> getIamResult() {
+		return iamResult;
+	}
+
+	public SectionResult<EcsClusterInventory> getEcsResult() {
+		return ecsResult;
+	}
+
+	public SectionResult<List<Bucket>> getS3Result() {
+		return s3Result;
+	}
+
+	public SectionResult<List<EfsFileEntry>> getEfsResult() {
+		return efsResult;
+	}
+
+	/**
+	 * @return EFS file index counters, or null if not available
+	 */
+	public EfsIndexStatistics getEfsIndexStatistics() {
+		return efsIndexStatistics;
+	}
+
+	/**
+	 * @return State of the EFS heartbeat, or null if not available
+	 */
+	public EfsHeartbeatStatus getEfsHeartbeatStatus() {
+		return efsHeartbeatStatus;
+	}
+
+	/**
+	 * @return State of the circuit breaker and bulkhead of each AWS service, or null if not available
+	 */
+	public List<AwsServiceStatus> getAwsServiceStatuses() {
+		return awsServiceStatuses;
+	}
+
+}
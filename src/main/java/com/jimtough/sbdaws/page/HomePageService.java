@@ -0,0 +1,174 @@
+package com.jimtough.sbdaws.page;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.cache.InventoryCache;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.efs.EfsHeartbeat;
+import com.jimtough.sbdaws.metrics.RequestTrace;
+import com.jimtough.sbdaws.page.PageSectionFetcher.PendingSection;
+
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Fetches the data for every section of the home page at the same time.
+ * The page takes about as long as the slowest section (or that section's deadline),
+ * instead of the sum of all the sections.
+ *
+ * In the async mode, no thread waits for a section. Each section is a lookup that completes
+ * when the data is there, and a cache miss joins the load that is in flight for its value.
+ *
+ * For a traced request, the trace is carried to the section threads (or, in the async mode, to
+ * the cache loads), so that the cache lookups and AWS SDK calls made for each section are added to it.
+ *
+ * @author JTOUGH
+ */
+@Component
+public class HomePageService {
+
+	private final PageSectionFetcher sectionFetcher;
+	// Results of the AWS SDK calls are cached, so most requests do not call AWS at all
+	private final InventoryCache inventoryCache;
+	// Only asked for the state of the circuit breakers. The SDK calls go through the inventory cache.
+	private final AwsEnvironmentInterrogator awsEnvironmentInterrogator;
+	// The heartbeat runs on its own schedule. Requests only read its status.
+	private final EfsHeartbeat efsHeartbeat;
+	// The EFS listing comes from an in-memory index, so it does not touch the file system
+	private final EfsFileIndex efsFileIndex;
+
+	@Autowired
+	public HomePageService(PageSectionFetcher sectionFetcher, InventoryCache inventoryCache,
+			AwsEnvironmentInterrogator awsEnvironmentInterrogator, EfsHeartbeat efsHeartbeat, EfsFileIndex efsFileIndex) {
+		if (sectionFetcher == null) {
+			throw new IllegalArgumentException("sectionFetcher cannot be null");
+		}
+		if (inventoryCache == null) {
+			throw new IllegalArgumentException("inventoryCache cannot be null");
+		}
+		if (awsEnvironmentInterrogator == null) {
+			throw new IllegalArgumentException("awsEnvironmentInterrogator cannot be null");
+		}
+		if (efsHeartbeat == null) {
+			throw new IllegalArgumentException("efsHeartbeat cannot be null");
+		}
+		if (efsFileIndex == null) {
+			throw new IllegalArgumentException("efsFileIndex cannot be null");
+		}
+		this.sectionFetcher = sectionFetcher;
+		this.inventoryCache = inventoryCache;
+		this.awsEnvironmentInterrogator = awsEnvironmentInterrogator;
+		this.efsHeartbeat = efsHeartbeat;
+		this.efsFileIndex = efsFileIndex;
+	}
+
+	/**
+	 * Fetch all of the sections, blocking the calling thread until every section has
+	 * finished or reached its deadline
+	 *
+	 * @return Non-null result
+	 */
+	public HomePageSections fetch() {
+		return fetch(null);
+	}
+
+	/**
+	 * Same as {@link #fetch()}, for a request that may be traced
+	 *
+	 * @param trace Trace of the request, or null if it is not traced
+	 * @return Non-null result
+	 */
+	public HomePageSections fetch(RequestTrace trace) {
+		PendingSection<User> pendingIam = startIam(trace);
+		PendingSection<EcsClusterInventory> pendingEcs = startEcs(trace);
+		PendingSection<List<Bucket>> pendingS3 = startS3(trace);
+		PendingSection<List<EfsFileEntry>> pendingEfs = startEfs(trace);
+		return new HomePageSections(
+				sectionFetcher.await(pendingIam),
+				sectionFetcher.await(pendingEcs),
+				sectionFetcher.await(pendingS3),
+				sectionFetcher.await(pendingEfs),
+				efsFileIndex.getStatistics(),
+				efsHeartbeat.getStatus(),
+				awsEnvironmentInterrogator.getServiceStatuses());
+	}
+
+	/**
+	 * Fetch all of the sections without blocking the calling thread
+	 *
+	 * @return Completes when every section has finished or reached its deadline. Never completes exceptionally.
+	 */
+	public CompletableFuture<HomePageSections> fetchAsync() {
+		return fetchAsync(null);
+	}
+
+	/**
+	 * Same as {@link #fetchAsync()}, for a request that may be traced
+	 *
+	 * @param trace Trace of the request, or null if it is not traced
+	 * @return Completes when every section has finished or reached its deadline. Never completes exceptionally.
+	 */
+	public CompletableFuture<HomePageSections> fetchAsync(RequestTrace trace) {
+		CompletableFuture<SectionResult<User>> iam = sectionFetcher.awaitAsync(
+				startAsync(PageSection.IAM, inventoryCache::getIAMUserAsync, trace));
+		CompletableFuture<SectionResult<EcsClusterInventory>> ecs = sectionFetcher.awaitAsync(
+				startAsync(PageSection.ECS, inventoryCache::getECSClusterInventoryAsync, trace));
+		CompletableFuture<SectionResult<List<Bucket>>> s3 = sectionFetcher.awaitAsync(
+				startAsync(PageSection.S3, inventoryCache::getS3BucketListAsync, trace));
+		CompletableFuture<SectionResult<List<EfsFileEntry>>> efs = sectionFetcher.awaitAsync(
+				startAsync(PageSection.EFS, efsFileIndex::getEntriesAsync, trace));
+		return CompletableFuture.allOf(iam, ecs, s3, efs)
+				.thenApply(v -> new HomePageSections(iam.join(), ecs.join(), s3.join(), efs.join(),
+						efsFileIndex.getStatistics(), efsHeartbeat.getStatus(),
+						awsEnvironmentInterrogator.getServiceStatuses()));
+	}
+
+	/**
+	 * @return Longest time that {@link #fetch()} or {@link #fetchAsync()} can take
+	 */
+	public long getMaxFetchMillis() {
+		return sectionFetcher.getMaxTimeoutMillis();
+	}
+
+	private PendingSection<User> startIam(RequestTrace trace) {
+		return start(PageSection.IAM, inventoryCache::getIAMUser, trace);
+	}
+
+	private PendingSection<EcsClusterInventory> startEcs(RequestTrace trace) {
+		return start(PageSection.ECS, inventoryCache::getECSClusterInventory, trace);
+	}
+
+	private PendingSection<List<Bucket>> startS3(RequestTrace trace) {
+		return start(PageSection.S3, inventoryCache::getS3BucketList, trace);
+	}
+
+	private PendingSection<List<EfsFileEntry>> startEfs(RequestTrace trace) {
+		return start(PageSection.EFS, efsFileIndex::getEntries, trace);
+	}
+
+	private <T> PendingSection<T> start(PageSection section, Callable<T> fetchTask, RequestTrace trace) {
+		return sectionFetcher.start(section, trace == null ? fetchTask : trace.wrap(fetchTask));
+	}
+
+	private <T> PendingSection<T> startAsync(PageSection section, Callable<CompletableFuture<T>> lookup,
+			RequestTrace trace) {
+		CompletableFuture<T> fetch;
+		try {
+			// The lookup only starts the fetch, so it runs on the calling thread
+			fetch = (trace == null ? lookup : trace.wrap(lookup)).call();
+		} catch (Exception e) {
+			fetch = new CompletableFuture<>();
+			fetch.completeExceptionally(e);
+		}
+		return sectionFetcher.start(section, fetch);
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.jimtough.sbdaws.page;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Escapes text so it is safe to write inside an HTML element or a quoted attribute value
+ *
+ * @author JTOUGH
+ */
+public final class HtmlEscaper {
+
+	private HtmlEscaper() {}
+
+	/**
+	 * Writes the text, replacing {@code & < > " '} with character references.
+	 * Runs of characters that do not need escaping are written in one call.
+	 *
+	 * @param text Text to escape
+	 * @param out Destination
+	 * @throws IOException Thrown if the destination cannot be written
+	 */
+	public static void escape(String text, Writer out) throws IOException {
+		int runStart = 0;
+		for (int i = 0; i < text.length(); i++) {
+			String replacement;
+			switch (text.charAt(i)) {
+				case '&': replacement = "&amp;"; break;
+				case '<': replacement = "&lt;"; break;
+				case '>': replacement = "&gt;"; break;
+				case '"': replacement = "&quot;"; break;
+				case '\'': replacement = "&#39;"; break;
+				default: continue;
+			}
+			if (i > runStart) {
+				out.write(text, runStart, i - runStart);
+			}
+			out.write(replacement);
+			runStart = i + 1;
+		}
+		if (runStart < text.length()) {
+			out.write(text, runStart, text.length() - runStart);
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.jimtough.sbdaws.page;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fragment of HTML with placeholders for values, parsed once when it is created.
+ *
+ * The placeholders use the {@code String.format()} syntax, but only {@code %s}, {@code %d}
+ * and {@code %b} are supported, and each value is simply written with {@code String.valueOf()}.
+ * Writing a row does not parse anything and does not build an intermediate String.
+ * Every value is HTML-escaped.
+ *
+ * @author JTOUGH
+ */
+public final class HtmlTemplate {
+
+	private final String[] literals;
+
+	/**
+	 * @param pattern Template text, with a {@code %s}, {@code %d} or {@code %b} for each value
+	 * @throws IllegalArgumentException Thrown if the pattern contains any other {@code %} conversion
+	 */
+	public HtmlTemplate(String pattern) {
+		if (pattern == null) {
+			throw new IllegalArgumentException("pattern cannot be null");
+		}
+		List<String> parts = new ArrayList<>();
+		int literalStart = 0;
+		for (int i = 0; i < pattern.length(); i++) {
+			if (pattern.charAt(i) != '%') {
+				continue;
+			}
+			char conversion = i + 1 < pattern.length() ? pattern.charAt(i + 1) : 0;
+			if (conversion != 's' && conversion != 'd' && conversion != 'b') {
+				throw new IllegalArgumentException("Unsupported placeholder at index " + i + " | pattern: [" + pattern + "]");
+			}
+			parts.add(pattern.substring(literalStart, i));
+			literalStart = i + 2;
+			i++;
+		}
+		parts.add(pattern.substring(literalStart));
+		this.literals = parts.toArray(new String[parts.size()]);
+	}
+
+	/**
+	 * @return Number of values that must be passed to {@link #write(Writer, Object...)}
+	 */
+	public int getPlaceholderCount() {
+		return literals.length - 1;
+	}
+
+	/**
+	 * @param out Destination
+	 * @param values One value for each placeholder, in order. Null values are written as "null".
+	 * @throws IOException Thrown if the destination cannot be written
+	 */
+	public void write(Writer out, Object... values) throws IOException {
+		if (values.length != getPlaceholderCount()) {
+			throw new IllegalArgumentException("Expected " + getPlaceholderCount() + " values but got " + values.length);
+		}
+		for (int i = 0; i < values.length; i++) {
+			out.write(literals[i]);
+			HtmlEscaper.escape(String.valueOf(values[i]), out);
+		}
+		out.write(literals[values.length]);
+	}
+
+}
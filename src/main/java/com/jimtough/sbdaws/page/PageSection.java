@@ -0,0 +1,15 @@
+package com.jimtough.sbdaws.page;
+
+/**
+ * The independent sections of the HTML page. The data for each section is fetched separately.
+ *
+ * @author JTOUGH
+ */
+public enum PageSection {
+
+	IAM,
+	ECS,
+	S3,
+	EFS;
+
+}
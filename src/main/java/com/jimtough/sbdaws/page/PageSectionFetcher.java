@@ -0,0 +1,282 @@
+package com.jimtough.sbdaws.page;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.OperationMetrics;
+
+/**
+ * Fetches the data for the page sections concurrently, each with its own deadline.
+ *
+ * A fetch either runs on a dedicated, bounded thread pool, or is a {@code CompletableFuture} that
+ * completes without holding a thread, such as a lookup that joins a load in the inventory cache.
+ * The async page mode uses only the second kind, so that a slow AWS call does not hold a section
+ * thread for every request that is waiting for it. If the pool is saturated, a fetch is rejected
+ * immediately and its section is reported as failed, rather than queueing without limit.
+ * A fetch that misses its deadline is reported as timed out but is allowed to finish in the
+ * background, so its result still ends up in the inventory cache for the next request.
+ * The latency of every section is recorded as the operation "page.section.&lt;section&gt;".
+ *
+ * @author JTOUGH
+ */
+@Component
+public class PageSectionFetcher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PageSectionFetcher.class);
+
+	private final ThreadPoolExecutor sectionExecutor;
+	// Completes the async waits when a deadline passes. The tasks are tiny, so one thread is plenty.
+	private final ScheduledThreadPoolExecutor deadlineScheduler;
+	private final Map<PageSection, Long> timeoutMillis = new EnumMap<>(PageSection.class);
+	private final Map<PageSection, SectionStatistics> statistics = new EnumMap<>(PageSection.class);
+	private final Map<PageSection, OperationMetrics> metrics = new EnumMap<>(PageSection.class);
+
+	@Autowired
+	public PageSectionFetcher(ConfigurationBean configurationBean, MetricsRegistry metricsRegistry) {
+		if (configurationBean == null) {
+			throw new IllegalArgumentException("configurationBean cannot be null");
+		}
+		if (metricsRegistry == null) {
+			throw new IllegalArgumentException("metricsRegistry cannot be null");
+		}
+		int threads = Math.max(1, configurationBean.getPageSectionThreads());
+		this.sectionExecutor = new ThreadPoolExecutor(threads, threads,
+				60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, configurationBean.getPageSectionQueueCapacity())),
+				new CustomizableThreadFactory("page-section-"), new ThreadPoolExecutor.AbortPolicy());
+		this.sectionExecutor.allowCoreThreadTimeOut(true);
+		this.deadlineScheduler = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("page-section-deadline-"));
+		this.deadlineScheduler.setRemoveOnCancelPolicy(true);
+		timeoutMillis.put(PageSection.IAM, configurationBean.getPageSectionIamTimeoutMillis());
+		timeoutMillis.put(PageSection.ECS, configurationBean.getPageSectionEcsTimeoutMillis());
+		timeoutMillis.put(PageSection.S3, configurationBean.getPageSectionS3TimeoutMillis());
+		timeoutMillis.put(PageSection.EFS, configurationBean.getPageSectionEfsTimeoutMillis());
+		for (PageSection section : PageSection.values()) {
+			statistics.put(section, new SectionStatistics(section));
+			metrics.put(section, metricsRegistry.operation("page.section." + section.name().toLowerCase()));
+		}
+	}
+
+	/**
+	 * Start fetching the data for a section in the background
+	 *
+	 * @param section Page section
+	 * @param fetchTask Fetches the section data
+	 * @return Handle to pass to {@link #await(PendingSection)}
+	 */
+	public <T> PendingSection<T> start(PageSection section, Callable<T> fetchTask) {
+		long startNanos = System.nanoTime();
+		PendingSection<T> pending = new PendingSection<>(section, startNanos,
+				startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis.get(section)));
+		try {
+			sectionExecutor.execute(() -> {
+				try {
+					T value = fetchTask.call();
+					pending.finish();
+					pending.future.complete(value);
+				} catch (Throwable t) {
+					pending.finish();
+					pending.future.completeExceptionally(t);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			LOGGER.warn("Section fetch rejected because the section thread pool is saturated | section: [{}]", section);
+			pending.finish();
+			pending.future.completeExceptionally(e);
+		}
+		return pending;
+	}
+
+	/**
+	 * Start a section whose data is fetched without a section thread, such as a lookup in the
+	 * inventory cache that joins a load that is already in flight. Nothing blocks while it runs.
+	 *
+	 * @param section Page section
+	 * @param fetch Fetch of the section data, already started
+	 * @return Handle to pass to {@link #await(PendingSection)} or {@link #awaitAsync(PendingSection)}
+	 */
+	public <T> PendingSection<T> start(PageSection section, CompletableFuture<T> fetch) {
+		long startNanos = System.nanoTime();
+		PendingSection<T> pending = new PendingSection<>(section, startNanos,
+				startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis.get(section)));
+		fetch.whenComplete((value, error) -> {
+			pending.finish();
+			if (error == null) {
+				pending.future.complete(value);
+			} else {
+				pending.future.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+						? error.getCause()
+						: error);
+			}
+		});
+		return pending;
+	}
+
+	/**
+	 * Wait for a section fetch to finish, but no longer than the deadline for that section.
+	 * The deadline is measured from when the fetch was started.
+	 *
+	 * @param pending Handle returned by {@link #start(PageSection, Callable)}
+	 * @return Non-null result
+	 */
+	public <T> SectionResult<T> await(PendingSection<T> pending) {
+		PageSection section = pending.section;
+		SectionResult<T> result;
+		try {
+			T value = pending.future.get(Math.max(0, pending.deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+			result = SectionResult.ok(section, pending.elapsedMillis(), value);
+		} catch (TimeoutException e) {
+			result = SectionResult.timedOut(section, pending.elapsedMillis());
+		} catch (ExecutionException e) {
+			result = SectionResult.failed(section, pending.elapsedMillis(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result = SectionResult.failed(section, pending.elapsedMillis(), e);
+		}
+		record(pending, result);
+		return result;
+	}
+
+	/**
+	 * Same as {@link #await(PendingSection)}, but without blocking the calling thread.
+	 * The returned future is completed by the thread that completes the fetch, or by the
+	 * deadline thread if the deadline passes first.
+	 *
+	 * @param pending Handle returned by {@link #start(PageSection, Callable)}
+	 * @return Completes with a non-null result. Never completes exceptionally.
+	 */
+	public <T> CompletableFuture<SectionResult<T>> awaitAsync(PendingSection<T> pending) {
+		PageSection section = pending.section;
+		CompletableFuture<SectionResult<T>> resultFuture = new CompletableFuture<>();
+		AtomicBoolean decided = new AtomicBoolean();
+		ScheduledFuture<?> deadline;
+		try {
+			deadline = deadlineScheduler.schedule(
+					() -> complete(pending, decided, resultFuture,
+							SectionResult.timedOut(section, pending.elapsedMillis())),
+					Math.max(0, pending.deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e) {
+			// Only happens during shutdown
+			complete(pending, decided, resultFuture, SectionResult.failed(section, pending.elapsedMillis(), e));
+			return resultFuture;
+		}
+		pending.future.whenComplete((value, error) -> {
+			deadline.cancel(false);
+			complete(pending, decided, resultFuture, error == null
+					? SectionResult.ok(section, pending.elapsedMillis(), value)
+					: SectionResult.failed(section, pending.elapsedMillis(), error));
+		});
+		return resultFuture;
+	}
+
+	/**
+	 * @return Longest deadline of any section
+	 */
+	public long getMaxTimeoutMillis() {
+		long max = 0;
+		for (long millis : timeoutMillis.values()) {
+			max = Math.max(max, millis);
+		}
+		return max;
+	}
+
+	/**
+	 * @return Running counters for each page section
+	 */
+	public Map<PageSection, SectionStatistics> getStatistics() {
+		return Collections.unmodifiableMap(statistics);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		sectionExecutor.shutdownNow();
+		deadlineScheduler.shutdownNow();
+	}
+
+	private <T> void complete(PendingSection<T> pending, AtomicBoolean decided,
+			CompletableFuture<SectionResult<T>> resultFuture, SectionResult<T> result) {
+		// Whichever of the section thread and the deadline thread gets here first decides the outcome.
+		// It is recorded before the future completes, so the caller already sees it in the statistics.
+		if (decided.compareAndSet(false, true)) {
+			record(pending, result);
+			resultFuture.complete(result);
+		}
+	}
+
+	private void record(PendingSection<?> pending, SectionResult<?> result) {
+		statistics.get(result.getSection()).record(result);
+		OperationMetrics sectionMetrics = metrics.get(result.getSection());
+		switch (result.getStatus()) {
+			case OK:
+				sectionMetrics.recordSuccess(pending.elapsedNanos());
+				break;
+			case FAILED:
+				sectionMetrics.recordFailure(pending.elapsedNanos(), result.getError().getClass());
+				break;
+			case TIMED_OUT:
+				sectionMetrics.recordFailure(pending.elapsedNanos(), TimeoutException.class);
+				break;
+		}
+		if (result.isOk()) {
+			LOGGER.debug("Section fetched | {}", result);
+		} else {
+			LOGGER.warn("Section not fetched | {}", result, result.getError());
+		}
+	}
+
+	/**
+	 * A section fetch that has been started
+	 *
+	 * @param <T> Type of the section data
+	 */
+	public static final class PendingSection<T> {
+
+		private final PageSection section;
+		private final long startNanos;
+		private final long deadlineNanos;
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+		private volatile long finishNanos;
+
+		private PendingSection(PageSection section, long startNanos, long deadlineNanos) {
+			this.section = section;
+			this.startNanos = startNanos;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		private void finish() {
+			finishNanos = System.nanoTime();
+		}
+
+		private long elapsedNanos() {
+			long endNanos = future.isDone() ? finishNanos : System.nanoTime();
+			return endNanos - startNanos;
+		}
+
+		private long elapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(elapsedNanos());
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.jimtough.sbdaws.page;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.util.StreamUtils;
+
+/**
+ * A home page that has already been rendered and compressed with gzip.
+ * Sending it to a client is a copy of the compressed bytes. It is only decompressed for
+ * clients that do not accept gzip.
+ *
+ * A page with a failed or timed-out section is never reused, so it is not rendered in advance.
+ * It is streamed instead: rendered straight into the response body (through gzip, if the client
+ * accepts it) as the body is written. Such a request only holds the write buffer of the renderer
+ * and the buffers of the gzip stream, however many rows the page has.
+ *
+ * @author JTOUGH
+ */
+public final class RenderedHomePage {
+
+	/**
+	 * Value of the Content-Encoding header when the compressed body is sent
+	 */
+	public static final String GZIP_ENCODING = "gzip";
+
+	// Added to the ETag of the gzipped body, which is a different representation of the same page
+	private static final String GZIP_ETAG_SUFFIX = "-gz";
+
+	private final String contentHash;
+	// Null if the page is streamed
+	private final byte[] gzippedBody;
+	private final HomePageRenderer renderer;
+	private final HomePageSections sections;
+
+	/**
+	 * @param contentHash Digest of the page, or null if this page must not be cached by clients
+	 * @param gzippedBody The page, compressed with gzip
+	 */
+	RenderedHomePage(String contentHash, byte[] gzippedBody) {
+		this.contentHash = contentHash;
+		this.gzippedBody = gzippedBody;
+		this.renderer = null;
+		this.sections = null;
+	}
+
+	/**
+	 * A page that is rendered when it is written, and has no ETag
+	 *
+	 * @param renderer Renders the page into the response body
+	 * @param sections Fetched sections
+	 */
+	RenderedHomePage(HomePageRenderer renderer, HomePageSections sections) {
+		this.contentHash = null;
+		this.gzippedBody = null;
+		this.renderer = renderer;
+		this.sections = sections;
+	}
+
+	/**
+	 * @param gzip True for the ETag of the compressed body, false for the plain HTML
+	 * @return Strong entity tag (including the quotes), or null if this page must not be cached
+	 * by clients because some of its sections failed or timed out
+	 */
+	public String getETag(boolean gzip) {
+		if (contentHash == null) {
+			return null;
+		}
+		return "\"" + contentHash + (gzip ? GZIP_ETAG_SUFFIX : "") + "\"";
+	}
+
+	/**
+	 * @return Length of the body that {@code writeTo(out, true)} writes, or -1 if the page is
+	 * streamed and the length is not known until it has been written
+	 */
+	public int getGzippedLength() {
+		return gzippedBody == null ? -1 : gzippedBody.length;
+	}
+
+	/**
+	 * @return True if the page is rendered as it is written
+	 */
+	public boolean isStreamed() {
+		return gzippedBody == null;
+	}
+
+	/**
+	 * @param ifNoneMatch Value of the If-None-Match request header (may be null)
+	 * @param gzip True if the compressed body would be sent
+	 * @return True if the client already has this page, and can be sent a 304 (Not Modified)
+	 */
+	public boolean isNotModified(String ifNoneMatch, boolean gzip) {
+		String eTag = getETag(gzip);
+		if (eTag == null || ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			// If-None-Match uses the weak comparison, so a "W/" prefix is ignored
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param out Response body. It is not closed.
+	 * @param gzip True to write the compressed bytes, false to write the plain HTML
+	 * @throws IOException Thrown if the response body cannot be written
+	 */
+	public void writeTo(OutputStream out, boolean gzip) throws IOException {
+		if (gzippedBody == null) {
+			stream(out, gzip);
+			return;
+		}
+		if (gzip) {
+			out.write(gzippedBody);
+		} else {
+			try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzippedBody))) {
+				StreamUtils.copy(in, out);
+			}
+		}
+		out.flush();
+	}
+
+	private void stream(OutputStream out, boolean gzip) throws IOException {
+		if (!gzip) {
+			renderer.render(sections, out);
+			return;
+		}
+		// Closing the gzip stream frees its deflater, but must leave the response body open
+		try (GZIPOutputStream gzipOut =
+				new GZIPOutputStream(StreamUtils.nonClosing(out), HomePageRenderer.WRITE_BUFFER_SIZE)) {
+			renderer.render(sections, gzipOut);
+		}
+		out.flush();
+	}
+
+	/**
+	 * @param acceptEncoding Value of the Accept-Encoding request header (may be null)
+	 * @return True if the client accepts a gzip body
+	 */
+	public static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.trim().split(";");
+			if (parts[0].trim().equalsIgnoreCase(GZIP_ENCODING)) {
+				// "gzip;q=0" means the client does not want it
+				return !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"));
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.jimtough.sbdaws.page;
+
+/**
+ * Outcome of fetching the data for one section of the page
+ *
+ * @param <T> Type of the section data
+ * @author JTOUGH
+ */
+public final class SectionResult<T> {
+
+	public enum Status {
+		OK,
+		FAILED,
+		TIMED_OUT
+	}
+
+	private final PageSection section;
+	private final Status status;
+	private final long durationMillis;
+	private final T value;
+	private final Throwable error;
+
+	private SectionResult(PageSection section, Status status, long durationMillis, T value, Throwable error) {
+		this.section = section;
+		this.status = status;
+		this.durationMillis = durationMillis;
+		this.value = value;
+		this.error = error;
+	}
+
+	static <T> SectionResult<T> ok(PageSection section, long durationMillis, T value) {
+		return new SectionResult<>(section, Status.OK, durationMillis, value, null);
+	}
+
+	static <T> SectionResult<T> failed(PageSection section, long durationMillis, Throwable error) {
+		return new SectionResult<>(section, Status.FAILED, durationMillis, null, error);
+	}
+
+	static <T> SectionResult<T> timedOut(PageSection section, long durationMillis) {
+		return new SectionResult<>(section, Status.TIMED_OUT, durationMillis, null, null);
+	}
+
+	public PageSection getSection() {
+		return section;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public boolean isOk() {
+		return status == Status.OK;
+	}
+
+	/**
+	 * @return Time from when the fetch was started until it finished (or until the deadline passed)
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return Section data, or null if the status is not {@code OK}
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * @return Cause of the failure, or null if the status is not {@code FAILED}
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return section + ": " + status + " (" + durationMillis + " ms)";
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.jimtough.sbdaws.page;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running counters of the outcomes for one page section
+ *
+ * @author JTOUGH
+ */
+public final class SectionStatistics {
+
+	private final PageSection section;
+	private final LongAdder okCount = new LongAdder();
+	private final LongAdder failedCount = new LongAdder();
+	private final LongAdder timedOutCount = new LongAdder();
+	private final LongAdder totalDurationMillis = new LongAdder();
+	private volatile SectionResult<?> lastResult;
+
+	SectionStatistics(PageSection section) {
+		this.section = section;
+	}
+
+	void record(SectionResult<?> result) {
+		switch (result.getStatus()) {
+			case OK:
+				okCount.increment();
+				break;
+			case FAILED:
+				failedCount.increment();
+				break;
+			case TIMED_OUT:
+				timedOutCount.increment();
+				break;
+		}
+		totalDurationMillis.add(result.getDurationMillis());
+		lastResult = result;
+	}
+
+	public PageSection getSection() {
+		return section;
+	}
+
+	public long getOkCount() {
+		return okCount.sum();
+	}
+
+	public long getFailedCount() {
+		return failedCount.sum();
+	}
+
+	public long getTimedOutCount() {
+		return timedOutCount.sum();
+	}
+
+	/**
+	 * @return Sum of the durations of every fetch of this section
+	 */
+	public long getTotalDurationMillis() {
+		return totalDurationMillis.sum();
+	}
+
+	/**
+	 * @return Most recent outcome, or null if this section has never been fetched
+	 */
+	public SectionResult<?> getLastResult() {
+		return lastResult;
+	}
+
+	@Override
+	public String toString() {
+		return "section: [" + section + "] | ok: " + getOkCount() + " | failed: " + getFailedCount()
+				+ " | timed out: " + getTimedOutCount() + " | total ms: " + getTotalDurationMillis();
+	}
+
+}
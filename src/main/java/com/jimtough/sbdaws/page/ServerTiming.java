@@ -0,0 +1,84 @@
+package com.jimtough.sbdaws.page;
+
+import java.util.concurrent.TimeUnit;
+
+import com.jimtough.sbdaws.efs.EfsHeartbeatStatus;
+import com.jimtough.sbdaws.efs.EfsIndexStatistics;
+import com.jimtough.sbdaws.metrics.RequestTrace;
+
+/**
+ * Builds the Server-Timing header of the home page. Browser developer tools show it next to the
+ * network timings of the request. The metrics are:
+ * <ul>
+ * <li>{@code iam}, {@code ecs}, {@code s3}, {@code efs}: fetching each section. They are fetched at
+ *     the same time, so the slowest of them holds up the page. A section that failed or timed out
+ *     has that as its description.</li>
+ * <li>{@code render}: rendering and compressing the page. Close to zero when the cached page is
+ *     reused, and when a page with a failed or timed-out section is streamed, because that page is
+ *     only rendered after the headers have been sent.</li>
+ * <li>{@code total}: from the start of the fetches to the end of the rendering</li>
+ * <li>{@code efs-scan}, {@code efs-heartbeat}: the most recent full scan of the EFS index and touch of
+ *     the heartbeat file. They run on their own schedules, not during the request, so they are not
+ *     part of the total. The heartbeat is not shown on the page, so this is also where a failing
+ *     heartbeat shows up.</li>
+ * </ul>
+ *
+ * @author JTOUGH
+ */
+final class ServerTiming {
+
+	static final String HEADER_NAME = "Server-Timing";
+
+	private ServerTiming() {
+	}
+
+	/**
+	 * @param sections Fetched sections
+	 * @param renderNanos Time taken to get the rendered page
+	 * @param totalNanos Time taken to fetch the sections and get the rendered page
+	 * @param trace Gets the same timings as phases, or null if the request is not traced
+	 * @return Value of the Server-Timing header
+	 */
+	static String forHomePage(HomePageSections sections, long renderNanos, long totalNanos, RequestTrace trace) {
+		StringBuilder sb = new StringBuilder(192);
+		appendSection(sb, sections.getIamResult(), trace);
+		appendSection(sb, sections.getEcsResult(), trace);
+		appendSection(sb, sections.getS3Result(), trace);
+		appendSection(sb, sections.getEfsResult(), trace);
+		append(sb, "render", renderNanos, null, trace);
+		append(sb, "total", totalNanos, null, trace);
+		EfsIndexStatistics indexStatistics = sections.getEfsIndexStatistics();
+		if (indexStatistics != null && indexStatistics.getLastFullScanMillis() >= 0) {
+			append(sb, "efs-scan", TimeUnit.MILLISECONDS.toNanos(indexStatistics.getLastFullScanMillis()),
+					"last full scan", trace);
+		}
+		EfsHeartbeatStatus heartbeatStatus = sections.getEfsHeartbeatStatus();
+		if (heartbeatStatus != null && heartbeatStatus.getLastLatencyMillis() >= 0) {
+			append(sb, "efs-heartbeat", TimeUnit.MILLISECONDS.toNanos(heartbeatStatus.getLastLatencyMillis()),
+					heartbeatStatus.getLastFailureEpochMillis() > heartbeatStatus.getLastSuccessEpochMillis()
+							? "last heartbeat FAILED" : "last heartbeat", trace);
+		}
+		return sb.toString();
+	}
+
+	private static void appendSection(StringBuilder sb, SectionResult<?> result, RequestTrace trace) {
+		append(sb, result.getSection().name().toLowerCase(),
+				TimeUnit.MILLISECONDS.toNanos(result.getDurationMillis()),
+				result.isOk() ? null : result.getStatus().name(), trace);
+	}
+
+	private static void append(StringBuilder sb, String name, long nanos, String description, RequestTrace trace) {
+		if (sb.length() > 0) {
+			sb.append(", ");
+		}
+		// Milliseconds, to the nearest microsecond
+		sb.append(name).append(";dur=").append(Math.round(nanos / 1000.0) / 1000.0);
+		if (description != null) {
+			sb.append(";desc=\"").append(description).append('"');
+		}
+		if (trace != null) {
+			trace.addPhase(name, nanos, description);
+		}
+	}
+
+}
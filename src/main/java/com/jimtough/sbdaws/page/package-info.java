@@ -0,0 +1,4 @@
+/**
+ * Classes that assemble the HTML page returned by the application
+ */
+package com.jimtough.sbdaws.page;
@@ -0,0 +1,60 @@
+package com.jimtough.sbdaws.api;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code ByteRange} class
+ *
+ * @author JTOUGH
+ */
+public class ByteRangeTest {
+
+	private static void assertRange(long start, long end, ByteRange range) {
+		assertNotNull(range);
+		assertNotSame(ByteRange.UNSATISFIABLE, range);
+		assertEquals(start, range.getStart());
+		assertEquals(end, range.getEnd());
+		assertEquals(end - start + 1, range.getLength());
+	}
+
+	@Test
+	public void testClosedRange() {
+		assertRange(0, 99, ByteRange.parse("bytes=0-99", 1000));
+		assertRange(500, 999, ByteRange.parse("bytes=500-5000", 1000));
+		assertRange(999, 999, ByteRange.parse("bytes=999-999", 1000));
+	}
+
+	@Test
+	public void testOpenRange() {
+		assertRange(100, 999, ByteRange.parse("bytes=100-", 1000));
+	}
+
+	@Test
+	public void testSuffixRange() {
+		assertRange(900, 999, ByteRange.parse("bytes=-100", 1000));
+		assertRange(0, 999, ByteRange.parse("bytes=-5000", 1000));
+	}
+
+	@Test
+	public void testUnsatisfiableRange() {
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", 1000));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-2000", 1000));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 1000));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=0-", 0));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0));
+	}
+
+	@Test
+	public void testIgnoredRange() {
+		assertNull(ByteRange.parse(null, 1000));
+		assertNull(ByteRange.parse("items=0-10", 1000));
+		assertNull(ByteRange.parse("bytes=0-10,20-30", 1000));
+		assertNull(ByteRange.parse("bytes=10-5", 1000));
+		assertNull(ByteRange.parse("bytes=abc-", 1000));
+		assertNull(ByteRange.parse("bytes=5", 1000));
+		assertNull(ByteRange.parse("bytes=--5", 1000));
+	}
+
+}
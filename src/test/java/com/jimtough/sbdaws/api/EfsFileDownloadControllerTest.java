@@ -0,0 +1,188 @@
+package com.jimtough.sbdaws.api;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.util.StreamUtils;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.efs.EfsFileServer;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+/**
+ * Starts the file download endpoint in an embedded Tomcat, and checks the status codes and
+ * headers for whole files, ranges, conditional requests, bad paths and a full transfer limit.
+ *
+ * @author JTOUGH
+ */
+public class EfsFileDownloadControllerTest {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private ConfigurableApplicationContext context;
+	private String baseUrl;
+	private byte[] content;
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import({
+		ConfigurationBean.class,
+		MetricsRegistry.class,
+		EfsFileServer.class,
+		EfsFileDownloadController.class
+	})
+	static class DownloadTestConfiguration {
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		Path root = temporaryFolder.newFolder("volume").toPath();
+		content = new byte[1024 * 1024];
+		new Random(3).nextBytes(content);
+		Files.createDirectories(root.resolve("reports"));
+		Files.write(root.resolve("reports/data.bin"), content);
+		Files.write(root.resolve("notes.txt"), "hello".getBytes("UTF-8"));
+		Files.write(temporaryFolder.getRoot().toPath().resolve("secret.txt"), "secret".getBytes("UTF-8"));
+		Files.createDirectories(root.resolve(".sbdaws-shared"));
+		Files.write(root.resolve(".sbdaws-shared/inventory.snapshot"), "inventory".getBytes("UTF-8"));
+		context = new SpringApplicationBuilder(DownloadTestConfiguration.class).run(
+				"--server.port=0",
+				"--aws.target.region=us-east-1",
+				"--efs.volume.mountPath=" + root.toAbsolutePath(),
+				"--efs.files.maxConcurrentTransfers=1",
+				"--efs.files.mmapMaxBytes=1024",
+				"--inventory.shared.directory=" + root.resolve(".sbdaws-shared").toAbsolutePath());
+		int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+		baseUrl = "http://localhost:" + port;
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (context != null) {
+			context.close();
+		}
+	}
+
+	private HttpURLConnection get(String path, String headerName, String headerValue) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		if (headerName != null) {
+			connection.setRequestProperty(headerName, headerValue);
+		}
+		return connection;
+	}
+
+	private static byte[] body(HttpURLConnection connection) throws Exception {
+		try (InputStream is = connection.getInputStream()) {
+			return StreamUtils.copyToByteArray(is);
+		}
+	}
+
+	@Test
+	public void testWholeFile() throws Exception {
+		HttpURLConnection connection = get("/files/reports/data.bin", null, null);
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("bytes", connection.getHeaderField("Accept-Ranges"));
+		assertEquals(content.length, connection.getContentLengthLong());
+		assertNotNull(connection.getHeaderField("Last-Modified"));
+		assertArrayEquals(content, body(connection));
+
+		HttpURLConnection small = get("/files/notes.txt", null, null);
+		assertEquals(200, small.getResponseCode());
+		assertTrue(small.getContentType().startsWith("text/plain"));
+		assertEquals("hello", new String(body(small), "UTF-8"));
+	}
+
+	@Test
+	public void testHead() throws Exception {
+		HttpURLConnection connection = get("/files/reports/data.bin", null, null);
+		connection.setRequestMethod("HEAD");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals(content.length, connection.getContentLengthLong());
+	}
+
+	@Test
+	public void testRange() throws Exception {
+		HttpURLConnection connection = get("/files/reports/data.bin", "Range", "bytes=1000-1999");
+		assertEquals(206, connection.getResponseCode());
+		assertEquals("bytes 1000-1999/" + content.length, connection.getHeaderField("Content-Range"));
+		assertEquals(1000, connection.getContentLengthLong());
+		assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), body(connection));
+
+		HttpURLConnection suffix = get("/files/reports/data.bin", "Range", "bytes=-10");
+		assertEquals(206, suffix.getResponseCode());
+		assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length), body(suffix));
+	}
+
+	@Test
+	public void testUnsatisfiableRange() throws Exception {
+		HttpURLConnection connection = get("/files/notes.txt", "Range", "bytes=100-");
+		assertEquals(416, connection.getResponseCode());
+		assertEquals("bytes */5", connection.getHeaderField("Content-Range"));
+	}
+
+	@Test
+	public void testIfModifiedSince() throws Exception {
+		HttpURLConnection first = get("/files/notes.txt", null, null);
+		assertEquals(200, first.getResponseCode());
+		String lastModified = first.getHeaderField("Last-Modified");
+		body(first);
+
+		assertEquals(304, get("/files/notes.txt", "If-Modified-Since", lastModified).getResponseCode());
+		assertEquals(200, get("/files/notes.txt", "If-Modified-Since", "Thu, 01 Jan 1970 00:00:00 GMT").getResponseCode());
+	}
+
+	@Test
+	public void testNotFound() throws Exception {
+		assertEquals(404, get("/files/reports/missing.bin", null, null).getResponseCode());
+		assertEquals(404, get("/files/reports", null, null).getResponseCode());
+		// The inventory that the tasks share is not a user file
+		assertEquals(404, get("/files/.sbdaws-shared/inventory.snapshot", null, null).getResponseCode());
+		assertEquals(404, get("/files/reports/../.sbdaws-shared/inventory.snapshot", null, null).getResponseCode());
+	}
+
+	@Test
+	public void testPathCannotLeaveTheVolume() throws Exception {
+		for (String path : Arrays.asList("/files/../secret.txt", "/files/%2e%2e/secret.txt", "/files/reports/%2e%2e/%2e%2e/secret.txt")) {
+			HttpURLConnection connection = get(path, null, null);
+			assertNotEquals(path, 200, connection.getResponseCode());
+		}
+	}
+
+	@Test
+	public void testTooManyTransfers() throws Exception {
+		EfsFileServer server = context.getBean(EfsFileServer.class);
+		// Take the only transfer slot
+		assertTrue(server.tryStartTransfer());
+		try {
+			HttpURLConnection connection = get("/files/notes.txt", null, null);
+			assertEquals(503, connection.getResponseCode());
+			assertEquals(EfsFileDownloadController.RETRY_AFTER_SECONDS, connection.getHeaderField("Retry-After"));
+			// A 304 does not need a slot
+			String lastModified = connection.getHeaderField("Last-Modified");
+			assertEquals(304, get("/files/notes.txt", "If-Modified-Since", lastModified).getResponseCode());
+		} finally {
+			server.endTransfer();
+		}
+		assertEquals(200, get("/files/notes.txt", null, null).getResponseCode());
+		assertEquals(1, server.getRejectedTransferCount());
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.jimtough.sbdaws.api;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.efs.EfsFilePage;
+import com.jimtough.sbdaws.efs.EfsFileQuery;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+/**
+ * JUnit test for the JSON written by the {@code EfsFilesController} class, and for its 304 responses
+ *
+ * @author JTOUGH
+ */
+public class EfsFilesControllerTest {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path root;
+	private ConfigurationBean configurationBean;
+	private EfsFileIndex index;
+
+	@Before public void setUp() throws Exception {
+		root = temporaryFolder.getRoot().toPath().toAbsolutePath();
+		Files.createDirectories(root.resolve("reports"));
+		Files.write(root.resolve("reports/q1 \"final\".csv"), new byte[42]);
+		Files.write(root.resolve("reports/q2.csv"), new byte[7]);
+		configurationBean = new ConfigurationBean() {
+			@Override public Path getEfsVolumeMountPath() { return root; }
+			@Override public long getEfsIndexRescanIntervalSeconds() { return TimeUnit.HOURS.toSeconds(1); }
+			@Override public boolean isEfsIndexWatchEnabled() { return false; }
+			@Override public int getEfsApiDefaultPageSize() { return 100; }
+			@Override public int getEfsApiMaxPageSize() { return 1000; }
+		};
+		index = new EfsFileIndex(configurationBean, new MetricsRegistry());
+		index.start();
+	}
+
+	@After public void tearDown() throws Exception {
+		index.shutdown();
+	}
+
+	private JsonNode write(EfsFilePage page) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonGenerator json = new JsonFactory().createGenerator(out, JsonEncoding.UTF8)) {
+			EfsFilesController.writePage(json, index.getRoot(), page);
+		}
+		return new ObjectMapper().readTree(out.toByteArray());
+	}
+
+	@Test
+	public void testPageIsWrittenAsJson() throws Exception {
+		JsonNode first = write(index.list(new EfsFileQuery("reports", Integer.MAX_VALUE, 2, false, null)));
+
+		assertEquals(2, first.get("entries").size());
+		JsonNode dir = first.get("entries").get(0);
+		assertEquals("reports", dir.get("path").asText());
+		assertTrue(dir.get("directory").asBoolean());
+		JsonNode file = first.get("entries").get(1);
+		assertEquals("reports/q1 \"final\".csv", file.get("path").asText());
+		assertFalse(file.get("directory").asBoolean());
+		assertEquals(42, file.get("size").asLong());
+		assertEquals(Files.getLastModifiedTime(root.resolve("reports/q1 \"final\".csv")).toString(),
+				file.get("lastModified").asText());
+		assertTrue(first.get("nextCursor").isTextual());
+
+		EfsFileQuery nextQuery = new EfsFileQuery("reports", Integer.MAX_VALUE, 2, false, first.get("nextCursor").asText());
+		JsonNode second = write(index.list(nextQuery));
+		assertEquals(1, second.get("entries").size());
+		assertEquals("reports/q2.csv", second.get("entries").get(0).get("path").asText());
+		assertTrue(second.get("nextCursor").isNull());
+	}
+
+	@Test
+	public void testNotModifiedDoesNotListTheIndex() throws Exception {
+		AtomicInteger listCount = new AtomicInteger();
+		EfsFileIndex countingIndex = new EfsFileIndex(configurationBean, new MetricsRegistry()) {
+			@Override
+			public EfsFilePage list(EfsFileQuery query) {
+				listCount.incrementAndGet();
+				throw new AssertionError("the index should not be listed for a 304");
+			}
+		};
+		// A request whose If-None-Match matches, so that checkNotModified() returns true
+		List<String> eTags = new ArrayList<>();
+		WebRequest notModified = (WebRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { WebRequest.class }, (proxy, method, args) -> {
+					if (method.getName().equals("checkNotModified")) {
+						eTags.add((String) args[0]);
+						return true;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+		EfsFilesController controller = new EfsFilesController(configurationBean, countingIndex);
+		controller.listFiles("reports", null, null, "asc", null, notModified, null);
+		assertEquals(0, listCount.get());
+		assertEquals(1, eTags.size());
+		assertTrue(eTags.get(0), eTags.get(0).endsWith("-0\""));
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code AdaptiveConcurrencyLimiter} class, using a fake clock for the cooldown
+ *
+ * @author JTOUGH
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+	private static final long COOLDOWN_MILLIS = 1000;
+
+	private final AtomicLong nanoTime = new AtomicLong();
+	private AdaptiveConcurrencyLimiter limiter;
+
+	@Before public void setUp() throws Exception {
+		// Starts at 8, between 1 and 16
+		limiter = new AdaptiveConcurrencyLimiter(8, 1, 16, COOLDOWN_MILLIS, nanoTime::get);
+	}
+
+	private void advanceMillis(long millis) {
+		nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	@Test
+	public void testLimitGrowsByAboutOnePerWindowOfSuccesses() {
+		for (int i = 0; i < 8; i++) {
+			limiter.onSuccess();
+		}
+		assertEquals(8, limiter.getLimit());
+		limiter.onSuccess();
+		assertEquals(9, limiter.getLimit());
+		for (int i = 0; i < 1000; i++) {
+			limiter.onSuccess();
+		}
+		assertEquals(16, limiter.getLimit());
+	}
+
+	@Test
+	public void testThrottleHalvesLimitOncePerCooldown() {
+		limiter.onThrottle();
+		assertEquals(4, limiter.getLimit());
+		// The other requests that were already in progress
+		limiter.onThrottle();
+		limiter.onThrottle();
+		assertEquals(4, limiter.getLimit());
+		advanceMillis(COOLDOWN_MILLIS);
+		limiter.onThrottle();
+		assertEquals(2, limiter.getLimit());
+		for (int i = 0; i < 5; i++) {
+			advanceMillis(COOLDOWN_MILLIS);
+			limiter.onThrottle();
+		}
+		assertEquals(1, limiter.getLimit());
+		assertEquals(9, limiter.getThrottleCount());
+		assertEquals(7, limiter.getDecreaseCount());
+	}
+
+	@Test
+	public void testAcquireWaitsForRelease() throws Exception {
+		limiter.onThrottle();
+		limiter.onThrottle();
+		advanceMillis(COOLDOWN_MILLIS);
+		limiter.onThrottle();
+		assertEquals(2, limiter.getLimit());
+		assertTrue(limiter.tryAcquire(0));
+		assertTrue(limiter.tryAcquire(0));
+		assertFalse(limiter.tryAcquire(0));
+		assertFalse(limiter.tryAcquire(50));
+		assertEquals(2, limiter.getInFlight());
+
+		CountDownLatch waiting = new CountDownLatch(1);
+		AtomicBoolean acquired = new AtomicBoolean();
+		Thread waiter = new Thread(() -> {
+			try {
+				waiting.countDown();
+				acquired.set(limiter.tryAcquire(10_000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		waiter.start();
+		waiting.await();
+		limiter.release();
+		waiter.join(10_000);
+		assertTrue(acquired.get());
+		assertEquals(2, limiter.getInFlight());
+	}
+
+	@Test
+	public void testZeroMaxLimitMeansNoLimit() throws Exception {
+		limiter = new AdaptiveConcurrencyLimiter(0, 0, 0, COOLDOWN_MILLIS, nanoTime::get);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(limiter.tryAcquire(0));
+		}
+		limiter.onThrottle();
+		assertEquals(0, limiter.getLimit());
+		assertEquals(100, limiter.getInFlight());
+		assertEquals(1, limiter.getThrottleCount());
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.iam.model.User;
+
+/**
+ * JUnit test for the {@code AwsClientRegistry} class.
+ *
+ * The SDK clients are pointed at a local stand-in HTTP server instead of the real AWS endpoints,
+ * so this test does not need AWS credentials or network access.
+ *
+ * @author JTOUGH
+ */
+public class AwsClientRegistryTest {
+
+	private static final String IAM_GET_USER_RESPONSE =
+			"<GetUserResponse xmlns=\"https://iam.amazonaws.com/doc/2010-05-08/\">" +
+				"<GetUserResult><User>" +
+					"<Path>/</Path>" +
+					"<UserName>standin-user</UserName>" +
+					"<UserId>AIDASTANDINUSER00000</UserId>" +
+					"<Arn>arn:aws:iam::123456789012:user/standin-user</Arn>" +
+					"<CreateDate>2018-01-07T00:00:00Z</CreateDate>" +
+				"</User></GetUserResult>" +
+				"<ResponseMetadata><RequestId>standin-request</RequestId></ResponseMetadata>" +
+			"</GetUserResponse>";
+
+	@BeforeClass
+	public static void oneTimeSetUp() {
+		// The stand-in server does not check request signatures, but the SDK needs credentials to sign with
+		System.setProperty(ConfigurationBean.SYSPROPKEY_AWS_ACCESS_KEY_ID, "AKIASTANDIN000000000");
+		System.setProperty(ConfigurationBean.SYSPROPKEY_AWS_SECRET_ACCESS_KEY, "standin-secret-key");
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		System.clearProperty(ConfigurationBean.SYSPROPKEY_AWS_ACCESS_KEY_ID);
+		System.clearProperty(ConfigurationBean.SYSPROPKEY_AWS_SECRET_ACCESS_KEY);
+	}
+
+	private HttpServer standInServer;
+	private AtomicInteger requestCount;
+	private Set<InetSocketAddress> clientConnections;
+	private AwsClientRegistry clientRegistry;
+
+	@Before public void setUp() throws Exception {
+		requestCount = new AtomicInteger();
+		clientConnections = ConcurrentHashMap.newKeySet();
+		standInServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		standInServer.createContext("/", this::handleStandInRequest);
+		standInServer.start();
+
+		ConfigurationBean cbMock = mock(ConfigurationBean.class);
+		when(cbMock.getAwsTargetRegion()).thenReturn(Region.US_EAST_1);
+		when(cbMock.getAwsSdkHttpMaxConnections()).thenReturn(4);
+		when(cbMock.getAwsSdkHttpConnectionMaxIdleSeconds()).thenReturn(60L);
+		URI standInEndpoint = URI.create("http://127.0.0.1:" + standInServer.getAddress().getPort());
+		when(cbMock.getAwsSdkIamEndpointOverride()).thenReturn(standInEndpoint);
+		when(cbMock.getAwsSdkS3EndpointOverride()).thenReturn(standInEndpoint);
+		clientRegistry = new AwsClientRegistry(cbMock);
+	}
+
+	@After public void tearDown() throws Exception {
+		clientRegistry.shutdown();
+		standInServer.stop(0);
+	}
+
+	private void handleStandInRequest(HttpExchange exchange) throws IOException {
+		// The request body must be fully consumed, otherwise the connection cannot be kept alive
+		try (InputStream is = exchange.getRequestBody()) {
+			while (is.read() != -1) {
+				// discard
+			}
+		}
+		// Each distinct client-side socket address is one TCP connection
+		clientConnections.add(exchange.getRemoteAddress());
+		requestCount.incrementAndGet();
+		byte[] body = IAM_GET_USER_RESPONSE.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "text/xml");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+
+	@Test
+	public void testSameClientReturnedForSameServiceAndRegion() throws Exception {
+		assertSame(clientRegistry.getIamClient(), clientRegistry.getIamClient());
+		assertSame(clientRegistry.getS3Client(Region.US_EAST_1), clientRegistry.getS3Client(Region.US_EAST_1));
+		assertNotSame(clientRegistry.getS3Client(Region.US_EAST_1), clientRegistry.getS3Client(Region.US_WEST_2));
+		assertEquals(3, clientRegistry.getClientCount());
+	}
+
+	@Test
+	public void testConnectionReusedAcrossCalls() throws Exception {
+		AwsEnvironmentInterrogator interrogator =
+				new AwsEnvironmentInterrogator(mock(ConfigurationBean.class), clientRegistry, new MetricsRegistry());
+		final int numberOfCalls = 20;
+		for (int i = 0; i < numberOfCalls; i++) {
+			User user = interrogator.getIAMUser();
+			assertEquals("standin-user", user.userName());
+		}
+		assertEquals(numberOfCalls, requestCount.get());
+		// Every call went over the single pooled connection of the shared IAM client
+		assertEquals(1, clientConnections.size());
+		assertEquals(1, clientRegistry.getClientCount());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testGetClientAfterShutdown() throws Exception {
+		clientRegistry.getIamClient();
+		clientRegistry.shutdown();
+		assertEquals(0, clientRegistry.getClientCount());
+		clientRegistry.getIamClient();
+	}
+
+}
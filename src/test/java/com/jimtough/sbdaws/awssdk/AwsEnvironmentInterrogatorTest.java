@@ -14,6 +14,7 @@ import org.junit.Test;
 
 import com.jimtough.sbdaws.ConfigurationBean;
 import com.jimtough.sbdaws.PropertiesLoader;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
 
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.ecs.model.Cluster;
@@ -43,16 +44,23 @@ public class AwsEnvironmentInterrogatorTest {
 	}
 
 	private ConfigurationBean cbMock;
+	private AwsClientRegistry clientRegistry;
 	private AwsEnvironmentInterrogator interrogator;
 	
 	@Before public void setUp() throws Exception {
 		cbMock = mock(ConfigurationBean.class);
 		when(cbMock.getAwsTargetRegion()).thenReturn(targetAwsRegion);
-		interrogator = new AwsEnvironmentInterrogator(cbMock);
+		when(cbMock.getAwsSdkHttpMaxConnections()).thenReturn(10);
+		when(cbMock.getAwsSdkHttpConnectionMaxIdleSeconds()).thenReturn(60L);
+		clientRegistry = new AwsClientRegistry(cbMock);
+		interrogator = new AwsEnvironmentInterrogator(cbMock, clientRegistry, new MetricsRegistry());
 	}
 	
 	@After public void tearDown() throws Exception {
+		interrogator.shutdown();
 		interrogator = null;
+		clientRegistry.shutdown();
+		clientRegistry = null;
 	}
 
 	@Test
@@ -0,0 +1,120 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import software.amazon.awssdk.AmazonServiceException;
+
+/**
+ * JUnit test for the retry condition, backoff and permit of the {@code AwsRequestPolicy} class.
+ * {@code AwsStandInServerTest} checks it with real SDK clients.
+ *
+ * @author JTOUGH
+ */
+public class AwsRequestPolicyTest {
+
+	private AdaptiveConcurrencyLimiter limiter;
+	private RetryBudget retryBudget;
+	private AwsRequestPolicy requestPolicy;
+
+	@Before public void setUp() throws Exception {
+		limiter = new AdaptiveConcurrencyLimiter(8, 1, 16, 0);
+		retryBudget = new RetryBudget(10, 2);
+		// 3 retries, delays capped at 100, 200, 400 ms, never more than 300 ms
+		requestPolicy = new AwsRequestPolicy("test", limiter, retryBudget, 3, 100, 300, 0);
+	}
+
+	@After public void tearDown() throws Exception {
+		AwsRequestPolicy.releaseThreadState();
+	}
+
+	private static AmazonServiceException serviceException(String errorCode, int statusCode) {
+		AmazonServiceException e = new AmazonServiceException("injected");
+		e.setErrorCode(errorCode);
+		e.setStatusCode(statusCode);
+		return e;
+	}
+
+	@Test
+	public void testThrottlingIsRetriedAndReported() {
+		assertTrue(requestPolicy.shouldRetry(null, serviceException("Throttling", 400), 0));
+		assertEquals(1, limiter.getThrottleCount());
+		assertEquals(4, limiter.getLimit());
+		assertTrue(requestPolicy.shouldRetry(null, serviceException("SlowDown", 503), 1));
+		assertEquals(2, limiter.getThrottleCount());
+	}
+
+	@Test
+	public void testLastErrorIsReportedButNotRetried() {
+		assertFalse(requestPolicy.shouldRetry(null, serviceException("ThrottlingException", 400), 3));
+		assertEquals(1, limiter.getThrottleCount());
+		assertEquals(2, retryBudget.getAvailableRetries());
+		// The SDK only asks the condition while fewer than this many retries have been made
+		assertEquals(4, requestPolicy.toRetryPolicy().getMaxErrorRetry());
+	}
+
+	@Test
+	public void testClientErrorIsNotRetried() {
+		assertFalse(requestPolicy.shouldRetry(null, serviceException("NoSuchEntity", 404), 0));
+		assertTrue(requestPolicy.shouldRetry(null, serviceException("ServiceFailure", 500), 0));
+		assertEquals(0, limiter.getThrottleCount());
+	}
+
+	@Test
+	public void testRetriesStopWhenBudgetIsEmpty() {
+		assertTrue(requestPolicy.shouldRetry(null, serviceException("ServiceFailure", 500), 0));
+		assertTrue(requestPolicy.shouldRetry(null, serviceException("ServiceFailure", 500), 0));
+		assertFalse(requestPolicy.shouldRetry(null, serviceException("ServiceFailure", 500), 0));
+		assertEquals(1, retryBudget.getExhaustedCount());
+	}
+
+	@Test
+	public void testBackoffIsJitteredAndCapped() {
+		assertEquals(100, requestPolicy.getDelayCapMillis(0));
+		assertEquals(200, requestPolicy.getDelayCapMillis(1));
+		assertEquals(300, requestPolicy.getDelayCapMillis(2));
+		assertEquals(300, requestPolicy.getDelayCapMillis(100));
+		boolean sawShortDelay = false;
+		for (int i = 0; i < 1000; i++) {
+			long delay = requestPolicy.delayBeforeNextRetry(null, null, 2);
+			assertTrue(delay >= 0 && delay <= 300);
+			sawShortDelay |= delay < 150;
+		}
+		assertTrue(sawShortDelay);
+	}
+
+	@Test
+	public void testRetryKeepsThePermit() {
+		requestPolicy.beforeMarshalling(null);
+		requestPolicy.beforeRequest(null);
+		requestPolicy.beforeRequest(null);
+		assertEquals(1, limiter.getInFlight());
+		requestPolicy.afterError(null, null, new IllegalStateException());
+		assertEquals(0, limiter.getInFlight());
+		assertFalse(AwsRequestPolicy.releaseThreadState());
+	}
+
+	@Test
+	public void testPermitOfRequestThatFailedBeforeItWasSentIsReleased() {
+		// Neither afterResponse nor afterError is called
+		requestPolicy.beforeMarshalling(null);
+		requestPolicy.beforeRequest(null);
+		assertEquals(1, limiter.getInFlight());
+		requestPolicy.beforeMarshalling(null);
+		assertEquals(0, limiter.getInFlight());
+
+		requestPolicy.beforeRequest(null);
+		AdaptiveConcurrencyLimiter otherLimiter = new AdaptiveConcurrencyLimiter(8, 1, 16, 0);
+		AwsRequestPolicy otherPolicy = new AwsRequestPolicy("other", otherLimiter, retryBudget, 3, 100, 300, 0);
+		otherPolicy.beforeRequest(null);
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, otherLimiter.getInFlight());
+
+		assertTrue(AwsRequestPolicy.releaseThreadState());
+		assertEquals(0, otherLimiter.getInFlight());
+	}
+
+}
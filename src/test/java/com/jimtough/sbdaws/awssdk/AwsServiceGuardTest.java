@@ -0,0 +1,137 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code AwsServiceGuard} class
+ *
+ * @author JTOUGH
+ */
+public class AwsServiceGuardTest {
+
+	private static final String KEY = "us-east-1";
+
+	private final AtomicInteger sdkCallCount = new AtomicInteger();
+	private ExecutorService executor;
+
+	@After public void tearDown() throws Exception {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private static AwsServiceGuard guard(int maxConcurrentCalls) {
+		// Opens after 2 calls with 50% failed, and stays open for the rest of the test
+		return new AwsServiceGuard(AwsService.ECS, new CircuitBreaker(10, 2, 50, 60_000, 1), maxConcurrentCalls, 0);
+	}
+
+	private String succeed(String value) {
+		sdkCallCount.incrementAndGet();
+		return value;
+	}
+
+	private String failingCall() throws AwsSdkException {
+		sdkCallCount.incrementAndGet();
+		throw new AwsSdkException("SDK call failed", new IllegalStateException());
+	}
+
+	@Test
+	public void testOpenCircuitReturnsLastKnownGoodValue() throws Exception {
+		AwsServiceGuard guard = guard(0);
+		assertEquals("good", guard.call(KEY, () -> succeed("good")));
+		try {
+			guard.call(KEY, this::failingCall);
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertFalse(e.isShortCircuited());
+		}
+		assertEquals(CircuitBreaker.State.OPEN, guard.getStatus().getCircuitState());
+
+		assertEquals("good", guard.call(KEY, () -> succeed("not called")));
+		assertEquals(2, sdkCallCount.get());
+		assertEquals(1, guard.getStatus().getCircuitOpenRejectionCount());
+	}
+
+	@Test
+	public void testOpenCircuitWithoutLastKnownGoodValueFailsFast() throws Exception {
+		AwsServiceGuard guard = guard(0);
+		for (int i = 0; i < 2; i++) {
+			try {
+				guard.call(KEY, this::failingCall);
+				fail("expected an AwsSdkException");
+			} catch (AwsSdkException e) {
+				assertFalse(e.isShortCircuited());
+			}
+		}
+		try {
+			guard.call("other-key", () -> succeed("not called"));
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertTrue(e.isShortCircuited());
+			assertNull(e.getCause());
+		}
+		assertEquals(2, sdkCallCount.get());
+	}
+
+	@Test
+	public void testFullBulkheadShortCircuits() throws Exception {
+		AwsServiceGuard guard = guard(1);
+		assertEquals("first", guard.call(KEY, () -> succeed("first")));
+
+		CountDownLatch callStarted = new CountDownLatch(1);
+		CountDownLatch releaseCall = new CountDownLatch(1);
+		executor = Executors.newSingleThreadExecutor();
+		Future<String> slowCall = executor.submit(() -> guard.call(KEY, () -> {
+			callStarted.countDown();
+			try {
+				releaseCall.await();
+			} catch (InterruptedException e) {
+				throw new AwsSdkException("interrupted", e);
+			}
+			return succeed("second");
+		}));
+		assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+		assertEquals(1, guard.getStatus().getCallsInProgress());
+
+		// The only slot is taken, so this call gets the last known good value without calling the SDK
+		assertEquals("first", guard.call(KEY, () -> succeed("not called")));
+		assertEquals(1, guard.getStatus().getBulkheadRejectionCount());
+
+		releaseCall.countDown();
+		assertEquals("second", slowCall.get(5, TimeUnit.SECONDS));
+		assertEquals(2, sdkCallCount.get());
+		assertEquals(0, guard.getStatus().getCallsInProgress());
+		// A full bulkhead is not a failure of the service
+		assertEquals(CircuitBreaker.State.CLOSED, guard.getStatus().getCircuitState());
+	}
+
+	@Test
+	public void testPermitIsReleasedWhenRequestFailsBeforeItIsSent() throws Exception {
+		AwsServiceGuard guard = guard(0);
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 16, 0);
+		AwsRequestPolicy requestPolicy = new AwsRequestPolicy("test", limiter, new RetryBudget(10, 2), 3, 100, 300, 0);
+		try {
+			guard.call(KEY, () -> {
+				requestPolicy.beforeMarshalling(null);
+				requestPolicy.beforeRequest(null);
+				// Fails before it is sent, and the SDK does not call afterError
+				throw new AwsSdkException("SDK call failed", new IllegalStateException());
+			});
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertFalse(e.isShortCircuited());
+		}
+		assertEquals(0, limiter.getInFlight());
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code CircuitBreaker} class, using a fake clock
+ *
+ * @author JTOUGH
+ */
+public class CircuitBreakerTest {
+
+	private static final long OPEN_MILLIS = 30_000;
+
+	private final AtomicLong nanoTime = new AtomicLong();
+	private CircuitBreaker circuitBreaker;
+
+	@Before public void setUp() throws Exception {
+		// Window of 10 calls, at least 4 calls, opens at 50% failed, 2 probes
+		circuitBreaker = new CircuitBreaker(10, 4, 50, OPEN_MILLIS, 2, nanoTime::get);
+	}
+
+	private void advanceMillis(long millis) {
+		nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	private void call(boolean succeed) {
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		if (succeed) {
+			circuitBreaker.onSuccess();
+		} else {
+			circuitBreaker.onFailure();
+		}
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++) {
+			call(false);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testStaysClosedBelowMinimumCalls() {
+		call(false);
+		call(false);
+		call(false);
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertEquals(100, circuitBreaker.getFailureRatePercent());
+	}
+
+	@Test
+	public void testOpensAtFailureRateThreshold() {
+		call(true);
+		call(true);
+		call(true);
+		call(false);
+		call(false);
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		call(false);
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+		assertEquals(1, circuitBreaker.getOpenCount());
+	}
+
+	@Test
+	public void testOldOutcomesLeaveTheWindow() {
+		// 3 failures followed by 10 successes: the failures are no longer in the window
+		for (int i = 0; i < 3; i++) {
+			call(false);
+		}
+		for (int i = 0; i < 10; i++) {
+			call(true);
+		}
+		assertEquals(0, circuitBreaker.getFailureRatePercent());
+		call(false);
+		assertEquals(10, circuitBreaker.getFailureRatePercent());
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+	@Test
+	public void testHalfOpenProbesCloseTheBreaker() {
+		open();
+		advanceMillis(OPEN_MILLIS - 1);
+		assertFalse(circuitBreaker.tryAcquirePermission());
+		advanceMillis(1);
+
+		// Only the configured number of probes are permitted
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		assertFalse(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onSuccess();
+		assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		circuitBreaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertEquals(0, circuitBreaker.getFailureRatePercent());
+	}
+
+	@Test
+	public void testFailedProbeOpensTheBreakerAgain() {
+		open();
+		advanceMillis(OPEN_MILLIS);
+		assertTrue(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertEquals(2, circuitBreaker.getOpenCount());
+		// A new open period starts from the failed probe
+		advanceMillis(OPEN_MILLIS - 1);
+		assertFalse(circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testZeroThresholdNeverOpens() {
+		circuitBreaker = new CircuitBreaker(10, 4, 0, OPEN_MILLIS, 2, nanoTime::get);
+		for (int i = 0; i < 100; i++) {
+			call(false);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+
+}
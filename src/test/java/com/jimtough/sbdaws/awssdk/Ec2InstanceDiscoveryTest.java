@@ -0,0 +1,202 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ec2.EC2Client;
+import software.amazon.awssdk.services.ec2.model.DescribeInstanceStatusRequest;
+import software.amazon.awssdk.services.ec2.model.DescribeInstanceStatusResponse;
+import software.amazon.awssdk.services.ec2.model.DescribeInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.DescribeInstancesResponse;
+import software.amazon.awssdk.services.ec2.model.Instance;
+import software.amazon.awssdk.services.ec2.model.InstanceState;
+import software.amazon.awssdk.services.ec2.model.InstanceStatus;
+import software.amazon.awssdk.services.ec2.model.InstanceStatusSummary;
+import software.amazon.awssdk.services.ec2.model.Placement;
+import software.amazon.awssdk.services.ec2.model.Reservation;
+import software.amazon.awssdk.services.ec2.model.Tag;
+
+/**
+ * JUnit test for the {@code Ec2InstanceDiscovery} class, using a stubbed EC2 client
+ *
+ * @author JTOUGH
+ */
+public class Ec2InstanceDiscoveryTest {
+
+	private ExecutorService statusExecutor;
+	private MetricsRegistry metricsRegistry;
+
+	@Before public void setUp() throws Exception {
+		statusExecutor = Executors.newFixedThreadPool(2);
+		metricsRegistry = new MetricsRegistry();
+	}
+
+	@After public void tearDown() throws Exception {
+		statusExecutor.shutdownNow();
+	}
+
+	private static String instanceId(int i) {
+		return String.format("i-%017x", i);
+	}
+
+	private static String state(int i) {
+		return i % 10 == 0 ? "stopped" : "running";
+	}
+
+	/**
+	 * Stand-in for the EC2 service. The instances of each page are generated when it is asked for.
+	 * The stopped instances have no status checks, like in EC2.
+	 */
+	private static class StubEC2Client implements EC2Client {
+
+		final int numberOfInstances;
+		final int pageSizeLimit;
+		final AtomicInteger describeInstancesCallCount = new AtomicInteger();
+		final AtomicInteger describeStatusCallCount = new AtomicInteger();
+		volatile boolean failStatus;
+
+		StubEC2Client(int numberOfInstances, int pageSizeLimit) {
+			this.numberOfInstances = numberOfInstances;
+			this.pageSizeLimit = pageSizeLimit;
+		}
+
+		@Override
+		public DescribeInstancesResponse describeInstances(DescribeInstancesRequest request) {
+			describeInstancesCallCount.incrementAndGet();
+			int start = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+			int end = Math.min(start + Math.min(pageSizeLimit, request.maxResults()), numberOfInstances);
+			// Two instances per reservation, like two instances launched together
+			List<Reservation> reservations = new ArrayList<>();
+			for (int i = start; i < end; i += 2) {
+				List<Instance> instances = new ArrayList<>();
+				for (int j = i; j < Math.min(i + 2, end); j++) {
+					instances.add(Instance.builder()
+							.instanceId(instanceId(j))
+							.instanceType("t2.micro")
+							.state(InstanceState.builder().name(state(j)).build())
+							.placement(Placement.builder().availabilityZone("us-east-1a").build())
+							.launchTime(new Date(1_500_000_000_000L + j))
+							.privateIpAddress("10.0." + (j / 256 % 256) + "." + (j % 256))
+							.tags(Arrays.asList(
+									Tag.builder().key("Name").value("web-" + j).build(),
+									Tag.builder().key("env").value(j % 2 == 0 ? "prod" : "test").build()))
+							.build());
+				}
+				reservations.add(Reservation.builder().instances(instances).build());
+			}
+			return DescribeInstancesResponse.builder()
+					.reservations(reservations)
+					.nextToken(end < numberOfInstances ? String.valueOf(end) : null)
+					.build();
+		}
+
+		@Override
+		public DescribeInstanceStatusResponse describeInstanceStatus(DescribeInstanceStatusRequest request) {
+			describeStatusCallCount.incrementAndGet();
+			assertEquals(Boolean.TRUE, request.includeAllInstances());
+			if (failStatus) {
+				throw new IllegalStateException("RequestLimitExceeded");
+			}
+			int start = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+			int end = Math.min(start + Math.min(pageSizeLimit, request.maxResults()), numberOfInstances);
+			List<InstanceStatus> statuses = new ArrayList<>();
+			for (int i = start; i < end; i++) {
+				if (state(i).equals("running")) {
+					statuses.add(InstanceStatus.builder()
+							.instanceId(instanceId(i))
+							.instanceStatus(InstanceStatusSummary.builder().status(i % 7 == 0 ? "impaired" : "ok").build())
+							.systemStatus(InstanceStatusSummary.builder().status("ok").build())
+							.build());
+				}
+			}
+			return DescribeInstanceStatusResponse.builder()
+					.instanceStatuses(statuses)
+					.nextToken(end < numberOfInstances ? String.valueOf(end) : null)
+					.build();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Test
+	public void testEveryPageIsRead() throws Exception {
+		StubEC2Client ec2 = new StubEC2Client(2500, Ec2InstanceDiscovery.MAX_RESULTS_PER_REQUEST);
+		Ec2InstanceInventory inventory = new Ec2InstanceDiscovery(statusExecutor, metricsRegistry)
+				.discover(ec2, Region.US_EAST_1);
+
+		assertEquals(2500, inventory.size());
+		assertEquals(3, ec2.describeInstancesCallCount.get());
+		assertEquals(3, ec2.describeStatusCallCount.get());
+		assertEquals(Integer.valueOf(250), inventory.getStateCounts().get("stopped"));
+		assertEquals(Integer.valueOf(2250), inventory.getStateCounts().get("running"));
+		assertEquals(3, metricsRegistry.getOperations().get("aws.ec2.describeInstances").getLatency().getCount());
+		assertEquals(3, metricsRegistry.getOperations().get("aws.ec2.describeInstanceStatus").getLatency().getCount());
+	}
+
+	@Test
+	public void testStatusChecksAreJoinedToInstances() throws Exception {
+		StubEC2Client ec2 = new StubEC2Client(30, 8);
+		Ec2InstanceInventory inventory = new Ec2InstanceDiscovery(statusExecutor, metricsRegistry)
+				.discover(ec2, Region.US_EAST_1);
+
+		List<Ec2InstanceSummary> instances = inventory.find(new Ec2InstanceQuery(null, null, null, 100, null)).getInstances();
+		assertEquals(30, instances.size());
+		Ec2InstanceSummary impaired = instances.get(7);
+		assertEquals(instanceId(7), impaired.getInstanceId());
+		assertEquals("running", impaired.getState());
+		assertEquals("impaired", impaired.getInstanceStatus());
+		assertEquals("ok", impaired.getSystemStatus());
+		assertEquals("t2.micro", impaired.getInstanceType());
+		assertEquals("us-east-1a", impaired.getAvailabilityZone());
+		assertEquals(1_500_000_000_007L, impaired.getLaunchEpochMillis());
+		assertEquals("10.0.0.7", impaired.getPrivateIpAddress());
+		assertEquals("web-7", impaired.getTags().get("Name"));
+		assertEquals("test", impaired.getTags().get("env"));
+		Ec2InstanceSummary stopped = instances.get(10);
+		assertEquals("stopped", stopped.getState());
+		assertNull(stopped.getInstanceStatus());
+		assertNull(stopped.getSystemStatus());
+	}
+
+	@Test
+	public void testNoInstances() throws Exception {
+		StubEC2Client ec2 = new StubEC2Client(0, 100);
+		Ec2InstanceInventory inventory = new Ec2InstanceDiscovery(statusExecutor, metricsRegistry)
+				.discover(ec2, Region.US_EAST_1);
+
+		assertEquals(0, inventory.size());
+		assertEquals(Collections.emptyMap(), inventory.getStateCounts());
+		assertNull(inventory.find(new Ec2InstanceQuery(null, null, null, 100, null)).getNextCursor());
+	}
+
+	@Test
+	public void testStatusFailureFailsTheDiscovery() throws Exception {
+		StubEC2Client ec2 = new StubEC2Client(30, 8);
+		ec2.failStatus = true;
+		try {
+			new Ec2InstanceDiscovery(statusExecutor, metricsRegistry).discover(ec2, Region.US_EAST_1);
+			fail("expected the status failure to be thrown");
+		} catch (IllegalStateException e) {
+			assertEquals("RequestLimitExceeded", e.getMessage());
+		}
+		assertFalse(metricsRegistry.getOperations().get("aws.ec2.describeInstanceStatus").getErrorCounts().isEmpty());
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * JUnit test for the {@code Ec2InstanceInventory} class
+ *
+ * @author JTOUGH
+ */
+public class Ec2InstanceInventoryTest {
+
+	private static final int NUMBER_OF_INSTANCES = 1000;
+
+	private Ec2InstanceInventory inventory;
+
+	@Before public void setUp() throws Exception {
+		// Added in reverse order, to show that the inventory sorts them
+		List<Ec2InstanceSummary> instances = new ArrayList<>();
+		for (int i = NUMBER_OF_INSTANCES - 1; i >= 0; i--) {
+			Map<String, String> tags = new LinkedHashMap<>();
+			tags.put("env", i % 3 == 0 ? "prod" : "test");
+			if (i % 2 == 0) {
+				tags.put("team", "blue");
+			}
+			instances.add(new Ec2InstanceSummary(instanceId(i), "m5.large", "us-east-1b", state(i),
+					"ok", "ok", 0, null, tags));
+		}
+		inventory = new Ec2InstanceInventory(Region.US_EAST_1, instances, 1234L);
+	}
+
+	private static String instanceId(int i) {
+		return String.format("i-%08d", i);
+	}
+
+	private static String state(int i) {
+		return i % 5 == 0 ? "stopped" : "running";
+	}
+
+	/**
+	 * Reads every page of the query, and checks that no instance is returned twice
+	 */
+	private List<Ec2InstanceSummary> readAllPages(Ec2InstanceQuery query) {
+		List<Ec2InstanceSummary> all = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		Ec2InstancePage page = inventory.find(query);
+		while (true) {
+			assertTrue(page.getInstances().size() <= query.getPageSize());
+			for (Ec2InstanceSummary instance : page.getInstances()) {
+				assertTrue("returned twice: " + instance.getInstanceId(), seen.add(instance.getInstanceId()));
+				all.add(instance);
+			}
+			if (page.getNextCursor() == null) {
+				return all;
+			}
+			assertEquals(query.getPageSize(), page.getInstances().size());
+			query = query.withCursor(page.getNextCursor());
+			page = inventory.find(query);
+		}
+	}
+
+	@Test
+	public void testPagesCoverEveryInstanceInOrder() throws Exception {
+		List<Ec2InstanceSummary> all = readAllPages(new Ec2InstanceQuery(null, null, null, 64, null));
+		assertEquals(NUMBER_OF_INSTANCES, all.size());
+		for (int i = 0; i < NUMBER_OF_INSTANCES; i++) {
+			assertEquals(instanceId(i), all.get(i).getInstanceId());
+		}
+	}
+
+	@Test
+	public void testLastPageThatIsExactlyFullHasNoCursor() throws Exception {
+		List<Ec2InstanceSummary> all = readAllPages(new Ec2InstanceQuery(null, null, null, 100, null));
+		assertEquals(NUMBER_OF_INSTANCES, all.size());
+		Ec2InstancePage lastPage = inventory.find(new Ec2InstanceQuery(null, null, null, 100, instanceId(899)));
+		assertEquals(100, lastPage.getInstances().size());
+		assertNull(lastPage.getNextCursor());
+	}
+
+	@Test
+	public void testFilterByState() throws Exception {
+		List<Ec2InstanceSummary> stopped = readAllPages(new Ec2InstanceQuery("stopped", null, null, 7, null));
+		assertEquals(NUMBER_OF_INSTANCES / 5, stopped.size());
+		for (Ec2InstanceSummary instance : stopped) {
+			assertEquals("stopped", instance.getState());
+		}
+		assertEquals(Integer.valueOf(NUMBER_OF_INSTANCES / 5), inventory.getStateCounts().get("stopped"));
+		assertTrue(inventory.find(new Ec2InstanceQuery("terminated", null, null, 10, null)).getInstances().isEmpty());
+	}
+
+	@Test
+	public void testFilterByTag() throws Exception {
+		List<Ec2InstanceSummary> blue = readAllPages(new Ec2InstanceQuery(null, "team", null, 50, null));
+		assertEquals(NUMBER_OF_INSTANCES / 2, blue.size());
+		List<Ec2InstanceSummary> prod = readAllPages(new Ec2InstanceQuery(null, "env", "prod", 50, null));
+		assertEquals(334, prod.size());
+		for (Ec2InstanceSummary instance : prod) {
+			assertEquals("prod", instance.getTags().get("env"));
+		}
+	}
+
+	@Test
+	public void testFilterByStateAndTag() throws Exception {
+		List<Ec2InstanceSummary> matches = readAllPages(new Ec2InstanceQuery("running", "env", "prod", 10, null));
+		int expected = 0;
+		for (int i = 0; i < NUMBER_OF_INSTANCES; i++) {
+			if (i % 3 == 0 && i % 5 != 0) {
+				expected++;
+			}
+		}
+		assertEquals(expected, matches.size());
+	}
+
+	@Test
+	public void testCursorOfRemovedInstanceStillWorks() throws Exception {
+		// After a refresh, the instance that a cursor points to may no longer exist
+		List<Ec2InstanceSummary> remaining = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			if (i != 4) {
+				remaining.add(new Ec2InstanceSummary(instanceId(i), null, null, "running", null, null, 0, null, null));
+			}
+		}
+		Ec2InstanceInventory refreshed = new Ec2InstanceInventory(Region.US_EAST_1, remaining, 5678L);
+		Ec2InstancePage page = refreshed.find(new Ec2InstanceQuery(null, null, null, 3, instanceId(4)));
+		assertEquals(instanceId(5), page.getInstances().get(0).getInstanceId());
+		assertEquals(instanceId(7), page.getNextCursor());
+		assertEquals(Collections.emptyMap(), page.getInstances().get(0).getTags());
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.metrics.LatencyHistogram;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.services.ecs.ECSClient;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.ecs.model.DescribeClustersRequest;
+import software.amazon.awssdk.services.ecs.model.DescribeClustersResponse;
+import software.amazon.awssdk.services.ecs.model.ListClustersRequest;
+import software.amazon.awssdk.services.ecs.model.ListClustersResponse;
+
+/**
+ * JUnit test for the {@code EcsClusterDiscovery} class, using a stubbed ECS client
+ *
+ * @author JTOUGH
+ */
+public class EcsClusterDiscoveryTest {
+
+	private ExecutorService describeExecutor;
+	private MetricsRegistry metricsRegistry;
+
+	@Before public void setUp() throws Exception {
+		describeExecutor = Executors.newFixedThreadPool(4);
+		metricsRegistry = new MetricsRegistry();
+	}
+
+	@After public void tearDown() throws Exception {
+		describeExecutor.shutdownNow();
+	}
+
+	/**
+	 * Stand-in for the ECS service. Counts the SDK calls made against it.
+	 */
+	private static class StubECSClient implements ECSClient {
+
+		final List<String> allClusterArns = new ArrayList<>();
+		final AtomicInteger listCallCount = new AtomicInteger();
+		final AtomicInteger describeCallCount = new AtomicInteger();
+		final AtomicInteger describeInProgress = new AtomicInteger();
+		final AtomicInteger maxDescribeInProgress = new AtomicInteger();
+		final int pageSizeLimit;
+		final long describeDelayMillis;
+
+		StubECSClient(int numberOfClusters, int pageSizeLimit, long describeDelayMillis) {
+			for (int i = 0; i < numberOfClusters; i++) {
+				allClusterArns.add("arn:aws:ecs:us-east-1:123456789012:cluster/cluster-" + i);
+			}
+			this.pageSizeLimit = pageSizeLimit;
+			this.describeDelayMillis = describeDelayMillis;
+		}
+
+		@Override
+		public ListClustersResponse listClusters(ListClustersRequest request) {
+			listCallCount.incrementAndGet();
+			int start = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+			int pageSize = Math.min(pageSizeLimit, request.maxResults() == null ? 100 : request.maxResults());
+			int end = Math.min(start + pageSize, allClusterArns.size());
+			return ListClustersResponse.builder()
+					.clusterArns(allClusterArns.subList(start, end))
+					.nextToken(end < allClusterArns.size() ? String.valueOf(end) : null)
+					.build();
+		}
+
+		@Override
+		public DescribeClustersResponse describeClusters(DescribeClustersRequest request) {
+			describeCallCount.incrementAndGet();
+			maxDescribeInProgress.accumulateAndGet(describeInProgress.incrementAndGet(), Math::max);
+			try {
+				assertTrue(request.clusters().size() <= EcsClusterDiscovery.MAX_CLUSTERS_PER_DESCRIBE_REQUEST);
+				Thread.sleep(describeDelayMillis);
+				List<Cluster> clusters = request.clusters().stream()
+						.map(arn -> Cluster.builder()
+								.clusterArn(arn)
+								.clusterName(arn.substring(arn.lastIndexOf('/') + 1))
+								.registeredContainerInstancesCount(1)
+								.activeServicesCount(2)
+								.runningTasksCount(3)
+								.build())
+						.collect(Collectors.toList());
+				return DescribeClustersResponse.builder().clusters(clusters).build();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				describeInProgress.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Test
+	public void testHundredsOfClustersUseBatchedCalls() throws Exception {
+		StubECSClient ecsClient = new StubECSClient(350, 100, 50);
+		List<Cluster> clusterList = new EcsClusterDiscovery(describeExecutor, metricsRegistry).discover(ecsClient);
+
+		assertEquals(350, clusterList.size());
+		// Order must match the order that ListClusters returned the ARNs
+		for (int i = 0; i < clusterList.size(); i++) {
+			assertEquals(ecsClient.allClusterArns.get(i), clusterList.get(i).clusterArn());
+		}
+		// 4 pages of ARNs, and 4 describe batches (instead of 1 list call + 350 describe calls)
+		assertEquals(4, ecsClient.listCallCount.get());
+		assertEquals(4, ecsClient.describeCallCount.get());
+		assertTrue("describe batches should run concurrently", ecsClient.maxDescribeInProgress.get() > 1);
+
+		// Every SDK call is timed
+		assertEquals(4, metricsRegistry.operation("aws.ecs.listClusters").getLatency().getCount());
+		LatencyHistogram.Snapshot describeLatency = metricsRegistry.operation("aws.ecs.describeClusters").getLatency();
+		assertEquals(4, describeLatency.getCount());
+		assertTrue(describeLatency.getValueAtQuantile(0.5) >= 50_000);
+	}
+
+	@Test
+	public void testSmallListPagesAreCombinedIntoFullBatches() throws Exception {
+		// The API is allowed to return fewer results per page than requested
+		StubECSClient ecsClient = new StubECSClient(250, 30, 0);
+		List<Cluster> clusterList = new EcsClusterDiscovery(describeExecutor, metricsRegistry).discover(ecsClient);
+
+		assertEquals(250, clusterList.size());
+		assertEquals(9, ecsClient.listCallCount.get());
+		assertEquals(3, ecsClient.describeCallCount.get());
+	}
+
+	@Test
+	public void testNoClusters() throws Exception {
+		StubECSClient ecsClient = new StubECSClient(0, 100, 0);
+		List<Cluster> clusterList = new EcsClusterDiscovery(describeExecutor, metricsRegistry).discover(ecsClient);
+
+		assertTrue(clusterList.isEmpty());
+		assertEquals(1, ecsClient.listCallCount.get());
+		assertEquals(0, ecsClient.describeCallCount.get());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testDescribeFailureIsThrown() throws Exception {
+		StubECSClient ecsClient = new StubECSClient(150, 100, 0) {
+			@Override
+			public DescribeClustersResponse describeClusters(DescribeClustersRequest request) {
+				throw new IllegalStateException("Rate exceeded");
+			}
+		};
+		try {
+			new EcsClusterDiscovery(describeExecutor, metricsRegistry).discover(ecsClient);
+		} finally {
+			// The second batch may be cancelled before it starts
+			assertTrue(metricsRegistry.operation("aws.ecs.describeClusters")
+					.getErrorCounts().get("IllegalStateException") >= 1);
+		}
+	}
+
+}
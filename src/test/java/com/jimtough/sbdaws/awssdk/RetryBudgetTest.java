@@ -0,0 +1,58 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code RetryBudget} class
+ *
+ * @author JTOUGH
+ */
+public class RetryBudgetTest {
+
+	@Test
+	public void testStartsFull() {
+		RetryBudget retryBudget = new RetryBudget(10, 3);
+		assertEquals(3, retryBudget.getAvailableRetries());
+		assertTrue(retryBudget.tryRetry());
+		assertTrue(retryBudget.tryRetry());
+		assertTrue(retryBudget.tryRetry());
+		assertFalse(retryBudget.tryRetry());
+		assertEquals(1, retryBudget.getExhaustedCount());
+	}
+
+	@Test
+	public void testRequestsEarnRetries() {
+		RetryBudget retryBudget = new RetryBudget(10, 3);
+		while (retryBudget.tryRetry()) {
+			// Empty the budget
+		}
+		for (int i = 0; i < 9; i++) {
+			retryBudget.onRequest();
+		}
+		assertFalse(retryBudget.tryRetry());
+		retryBudget.onRequest();
+		assertTrue(retryBudget.tryRetry());
+		assertFalse(retryBudget.tryRetry());
+	}
+
+	@Test
+	public void testSavingsAreCapped() {
+		RetryBudget retryBudget = new RetryBudget(50, 2);
+		for (int i = 0; i < 100; i++) {
+			retryBudget.onRequest();
+		}
+		assertEquals(2, retryBudget.getAvailableRetries());
+	}
+
+	@Test
+	public void testZeroPercentNeverRefills() {
+		RetryBudget retryBudget = new RetryBudget(0, 0);
+		for (int i = 0; i < 100; i++) {
+			retryBudget.onRequest();
+		}
+		assertFalse(retryBudget.tryRetry());
+	}
+
+}
@@ -0,0 +1,237 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetBucketLocationRequest;
+import software.amazon.awssdk.services.s3.model.GetBucketLocationResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * JUnit test for the {@code S3BucketStatisticsCollector} class, using a stubbed S3 client
+ *
+ * @author JTOUGH
+ */
+public class S3BucketStatisticsCollectorTest {
+
+	private static final int MAX_KEYS = 1000;
+
+	private ExecutorService listExecutor;
+	private MetricsRegistry metricsRegistry;
+
+	@Before public void setUp() throws Exception {
+		listExecutor = Executors.newFixedThreadPool(4);
+		metricsRegistry = new MetricsRegistry();
+	}
+
+	@After public void tearDown() throws Exception {
+		listExecutor.shutdownNow();
+	}
+
+	private static String objectKey(int i) {
+		return String.format("key-%08d", i);
+	}
+
+	private static int objectSize(int i) {
+		return i % 100 + 1;
+	}
+
+	private static long expectedTotalBytes(int numberOfObjects) {
+		long total = 0;
+		for (int i = 0; i < numberOfObjects; i++) {
+			total += objectSize(i);
+		}
+		return total;
+	}
+
+	/**
+	 * Stand-in for the S3 service. The objects of a bucket are generated as each page is asked for,
+	 * so a bucket can be very large without using much memory in the test.
+	 */
+	private static class StubS3Client implements S3Client {
+
+		final Map<String, Integer> objectCounts = new ConcurrentHashMap<>();
+		final Map<String, String> locations = new ConcurrentHashMap<>();
+		final AtomicInteger listCallCount = new AtomicInteger();
+		final AtomicInteger locationCallCount = new AtomicInteger();
+		volatile String failingBucket;
+
+		@Override
+		public GetBucketLocationResponse getBucketLocation(GetBucketLocationRequest request) {
+			locationCallCount.incrementAndGet();
+			return GetBucketLocationResponse.builder()
+					.locationConstraint(locations.get(request.bucket()))
+					.build();
+		}
+
+		@Override
+		public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+			listCallCount.incrementAndGet();
+			if (request.bucket().equals(failingBucket)) {
+				throw new IllegalStateException("access denied: " + request.bucket());
+			}
+			int objectCount = objectCounts.get(request.bucket());
+			int start;
+			if (request.continuationToken() != null) {
+				start = Integer.parseInt(request.continuationToken());
+			} else if (request.startAfter() != null) {
+				start = firstIndexAfter(request.startAfter(), objectCount);
+			} else {
+				start = 0;
+			}
+			int pageSize = request.maxKeys() == null ? MAX_KEYS : Math.min(MAX_KEYS, request.maxKeys());
+			int end = Math.min(start + pageSize, objectCount);
+			List<S3Object> contents = new ArrayList<>(end - start);
+			for (int i = start; i < end; i++) {
+				contents.add(S3Object.builder().key(objectKey(i)).size(objectSize(i)).build());
+			}
+			return ListObjectsV2Response.builder()
+					.contents(contents)
+					.isTruncated(end < objectCount)
+					.nextContinuationToken(end < objectCount ? String.valueOf(end) : null)
+					.build();
+		}
+
+		private static int firstIndexAfter(String startAfter, int objectCount) {
+			int low = 0;
+			int high = objectCount;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (objectKey(middle).compareTo(startAfter) <= 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private S3BucketStatisticsCollector newCollector(List<String> shardSplitKeys, int maxKeysPerPage) {
+		return new S3BucketStatisticsCollector(listExecutor, shardSplitKeys, maxKeysPerPage, metricsRegistry);
+	}
+
+	@Test
+	public void testEveryObjectIsCountedOnce() throws Exception {
+		StubS3Client s3 = new StubS3Client();
+		s3.objectCounts.put("bucket-a", 2500);
+		s3.objectCounts.put("bucket-b", 0);
+		S3BucketStatisticsReport report = newCollector(Collections.emptyList(), 0)
+				.collect(Arrays.asList("bucket-a", "bucket-b"), s3, region -> s3);
+
+		assertTrue(report.isComplete());
+		assertEquals(2, report.getBuckets().size());
+		S3BucketStatistics bucketA = report.getBuckets().get(0);
+		assertEquals("bucket-a", bucketA.getBucketName());
+		assertEquals(Region.US_EAST_1.value(), bucketA.getRegion());
+		assertEquals(2500, bucketA.getObjectCount());
+		assertEquals(expectedTotalBytes(2500), bucketA.getTotalBytes());
+		assertEquals(3, bucketA.getListPageCount());
+		S3BucketStatistics bucketB = report.getBuckets().get(1);
+		assertEquals(0, bucketB.getObjectCount());
+		assertEquals(1, bucketB.getListPageCount());
+		assertEquals(4, metricsRegistry.getOperations().get("aws.s3.listObjectsV2").getLatency().getCount());
+	}
+
+	@Test
+	public void testShardsCoverEveryKeyExactlyOnce() throws Exception {
+		StubS3Client s3 = new StubS3Client();
+		s3.objectCounts.put("bucket-a", 2500);
+		// Unsorted, one key that exists, one between two keys, and one past the last key
+		List<String> splitKeys = Arrays.asList(objectKey(1800), objectKey(333) + "x", "zzz");
+		S3BucketStatisticsReport report = newCollector(splitKeys, 250)
+				.collect(Collections.singletonList("bucket-a"), s3, region -> s3);
+
+		S3BucketStatistics bucketA = report.getBuckets().get(0);
+		assertEquals(2500, bucketA.getObjectCount());
+		assertEquals(expectedTotalBytes(2500), bucketA.getTotalBytes());
+		// 334 + 1467 + 699 + 0 keys, in pages of 250
+		assertEquals(2 + 6 + 3 + 1, bucketA.getListPageCount());
+	}
+
+	@Test
+	public void testBucketRegionIsLookedUpOnce() throws Exception {
+		StubS3Client s3 = new StubS3Client();
+		StubS3Client euS3 = new StubS3Client();
+		s3.objectCounts.put("bucket-eu", 10);
+		s3.locations.put("bucket-eu", "EU");
+		euS3.objectCounts.put("bucket-eu", 10);
+		S3BucketStatisticsCollector collector = newCollector(Collections.emptyList(), 0);
+
+		for (int i = 0; i < 3; i++) {
+			S3BucketStatisticsReport report = collector.collect(Collections.singletonList("bucket-eu"), s3,
+					region -> Region.EU_WEST_1.value().equals(region.value()) ? euS3 : s3);
+			assertEquals(Region.EU_WEST_1.value(), report.getBuckets().get(0).getRegion());
+		}
+		assertEquals(1, s3.locationCallCount.get());
+		assertEquals(0, s3.listCallCount.get());
+		assertEquals(3, euS3.listCallCount.get());
+	}
+
+	@Test
+	public void testFailedBucketIsReportedAndOthersAreNot() throws Exception {
+		StubS3Client s3 = new StubS3Client();
+		s3.objectCounts.put("bucket-a", 100);
+		s3.objectCounts.put("bucket-b", 100);
+		s3.failingBucket = "bucket-b";
+		S3BucketStatisticsReport report = newCollector(Collections.singletonList(objectKey(50)), 0)
+				.collect(Arrays.asList("bucket-a", "bucket-b"), s3, region -> s3);
+
+		assertFalse(report.isComplete());
+		assertEquals(1, report.getBuckets().size());
+		assertEquals("bucket-a", report.getBuckets().get(0).getBucketName());
+		assertEquals("access denied: bucket-b", report.getFailedBuckets().get("bucket-b"));
+		assertFalse(metricsRegistry.getOperations().get("aws.s3.listObjectsV2").getErrorCounts().isEmpty());
+	}
+
+	@Test
+	public void testLargeBucketIsCountedWithoutHoldingItsKeys() throws Exception {
+		final int numberOfObjects = 1_000_000;
+		StubS3Client s3 = new StubS3Client();
+		s3.objectCounts.put("bucket-large", numberOfObjects);
+		List<String> splitKeys = Arrays.asList(objectKey(250_000), objectKey(500_000), objectKey(750_000));
+		S3BucketStatisticsReport report = newCollector(splitKeys, 0)
+				.collect(Collections.singletonList("bucket-large"), s3, region -> s3);
+
+		S3BucketStatistics bucket = report.getBuckets().get(0);
+		assertEquals(numberOfObjects, bucket.getObjectCount());
+		assertEquals(expectedTotalBytes(numberOfObjects), bucket.getTotalBytes());
+		// The last page of each of the first three shards stops at the split key
+		assertEquals(1000 + 3, bucket.getListPageCount());
+	}
+
+	@Test
+	public void testCompareKeysUsesCodePointOrder() throws Exception {
+		// U+FF21 is before U+1F600 in UTF-8, but after its surrogate pair in UTF-16
+		String fullWidth = "\uFF21";
+		String emoji = new String(Character.toChars(0x1F600));
+		assertTrue(fullWidth.compareTo(emoji) > 0);
+		assertTrue(S3BucketStatisticsCollector.compareKeys(fullWidth, emoji) < 0);
+		assertTrue(S3BucketStatisticsCollector.compareKeys("a", "ab") < 0);
+		assertEquals(0, S3BucketStatisticsCollector.compareKeys("ab", "ab"));
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.jimtough.sbdaws.awssdk;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code SingleFlight} class
+ *
+ * @author JTOUGH
+ */
+public class SingleFlightTest {
+
+	private static final int CALLER_COUNT = 200;
+
+	private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+	private final AtomicInteger callCount = new AtomicInteger();
+	private final CountDownLatch callStarted = new CountDownLatch(1);
+	private final CountDownLatch releaseCall = new CountDownLatch(1);
+	private ExecutorService executor;
+
+	@Before public void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool(CALLER_COUNT);
+	}
+
+	@After public void tearDown() throws Exception {
+		executor.shutdownNow();
+	}
+
+	// Blocks until the test releases it, so that every other caller arrives while it is in progress
+	private String blockingCall(String value, AwsSdkException failure) throws AwsSdkException {
+		callCount.incrementAndGet();
+		callStarted.countDown();
+		try {
+			releaseCall.await();
+		} catch (InterruptedException e) {
+			throw new AwsSdkException("interrupted", e);
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		return value;
+	}
+
+	private List<Future<String>> startCallers(String key, AwsSdkException failure) throws Exception {
+		List<Future<String>> futures = new ArrayList<>();
+		futures.add(executor.submit(() -> singleFlight.execute(key, () -> blockingCall("value", failure))));
+		assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i < CALLER_COUNT; i++) {
+			futures.add(executor.submit(() -> singleFlight.execute(key, () -> blockingCall("value", failure))));
+		}
+		// Every caller has to be waiting before the call is released
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (singleFlight.getSharedCount() < CALLER_COUNT - 1) {
+			assertTrue("callers did not all arrive in time", System.nanoTime() < deadline);
+			Thread.sleep(10);
+		}
+		releaseCall.countDown();
+		return futures;
+	}
+
+	@Test
+	public void testConcurrentCallersShareOneCall() throws Exception {
+		List<Future<String>> futures = startCallers("us-east-1", null);
+		for (Future<String> future : futures) {
+			assertEquals("value", future.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, callCount.get());
+		assertEquals(1, singleFlight.getCallCount());
+		assertEquals(CALLER_COUNT - 1, singleFlight.getSharedCount());
+
+		// The call is finished, so the next caller makes a new one
+		assertEquals("again", singleFlight.execute("us-east-1", () -> "again"));
+		assertEquals(2, singleFlight.getCallCount());
+	}
+
+	@Test
+	public void testEveryCallerGetsTheFailure() throws Exception {
+		AwsSdkException failure = new AwsSdkException("SDK call failed", true);
+		List<Future<String>> futures = startCallers("us-east-1", failure);
+		for (Future<String> future : futures) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail("expected an AwsSdkException");
+			} catch (ExecutionException e) {
+				assertSame(failure, e.getCause());
+			}
+		}
+		assertEquals(1, callCount.get());
+	}
+
+	@Test
+	public void testDifferentKeysDoNotShare() throws Exception {
+		assertEquals("a", singleFlight.execute("us-east-1", () -> singleFlight.execute("eu-west-1", () -> "a")));
+		assertEquals(2, singleFlight.getCallCount());
+		assertEquals(0, singleFlight.getSharedCount());
+	}
+
+}
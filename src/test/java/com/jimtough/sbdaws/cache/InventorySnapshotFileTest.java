@@ -0,0 +1,181 @@
+package com.jimtough.sbdaws.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jimtough.sbdaws.awssdk.Ec2InstanceInventory;
+import com.jimtough.sbdaws.awssdk.Ec2InstanceSummary;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory.RegionalCluster;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JUnit test for the {@code InventorySnapshotFile} class
+ *
+ * @author JTOUGH
+ */
+public class InventorySnapshotFileTest {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path efsRoot;
+	private Path file;
+
+	@Before public void setUp() throws Exception {
+		efsRoot = temporaryFolder.newFolder("datafiles").toPath().toAbsolutePath();
+		file = temporaryFolder.getRoot().toPath().resolve("snapshots/inventory.snapshot");
+	}
+
+	private InventorySnapshot fullSnapshot(int numberOfInstances) {
+		User user = User.builder().userName("jtough").userId("AIDA123").arn("arn:aws:iam::123:user/jtough")
+				.path("/").createDate(new Date(1_400_000_000_000L)).build();
+		Map<String, String> failedRegions = new LinkedHashMap<>();
+		failedRegions.put("eu-west-1", "timed out");
+		EcsClusterInventory ecs = new EcsClusterInventory(Arrays.asList(Region.US_EAST_1, Region.EU_WEST_1),
+				Collections.singletonList(new RegionalCluster(Region.US_EAST_1, Cluster.builder()
+						.clusterName("web").clusterArn("arn:aws:ecs:us-east-1:123:cluster/web")
+						.registeredContainerInstancesCount(3).activeServicesCount(2).runningTasksCount(null)
+						.build())),
+				failedRegions);
+		List<Bucket> buckets = Arrays.asList(
+				Bucket.builder().name("bucket-a").creationDate(new Date(1_500_000_000_000L)).build(),
+				Bucket.builder().name("bucket-b").build());
+		List<Ec2InstanceSummary> instances = new ArrayList<>();
+		for (int i = 0; i < numberOfInstances; i++) {
+			instances.add(new Ec2InstanceSummary(String.format("i-%08d", i), "t2.micro", "us-east-1a",
+					i % 2 == 0 ? "running" : "stopped", i % 2 == 0 ? "ok" : null, i % 2 == 0 ? "ok" : null,
+					1_500_000_000_000L + i, "10.0.0." + (i % 256),
+					Collections.singletonMap("Name", "web-" + i)));
+		}
+		Ec2InstanceInventory ec2 = new Ec2InstanceInventory(Region.US_EAST_1, instances, 1_600_000_000_000L);
+		List<EfsFileEntry> efsEntries = Arrays.asList(
+				new EfsFileEntry(efsRoot, FileTime.fromMillis(1000L), FileTime.fromMillis(2000L), 4096, true),
+				new EfsFileEntry(efsRoot.resolve("a/b.txt"), null, FileTime.fromMillis(3000L), 10, false));
+		return new InventorySnapshot(1_700_000_000_000L, "us-east-1", "us-east-1,eu-west-1", user, ecs, buckets,
+				ec2, efsEntries);
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		InventorySnapshot written = fullSnapshot(5);
+		long bytes = InventorySnapshotFile.write(file, written, efsRoot);
+		assertEquals(Files.size(file), bytes);
+
+		InventorySnapshot read = InventorySnapshotFile.read(file, efsRoot);
+		assertEquals(1_700_000_000_000L, read.getCreatedEpochMillis());
+		assertEquals("us-east-1", read.getTargetRegionKey());
+		assertEquals("us-east-1,eu-west-1", read.getTargetRegionsKey());
+		assertEquals(written.getIamUser(), read.getIamUser());
+		assertEquals(written.getS3Buckets(), read.getS3Buckets());
+		assertNull(read.getS3Buckets().get(1).creationDate());
+
+		EcsClusterInventory ecs = read.getEcsClusterInventory();
+		assertEquals(2, ecs.getRegions().size());
+		assertEquals("eu-west-1", ecs.getRegions().get(1).value());
+		assertEquals("timed out", ecs.getFailedRegions().get("eu-west-1"));
+		Cluster cluster = ecs.getClusters().get(0).getCluster();
+		assertEquals("us-east-1", ecs.getClusters().get(0).getRegion().value());
+		assertEquals("web", cluster.clusterName());
+		assertEquals(Integer.valueOf(3), cluster.registeredContainerInstancesCount());
+		assertEquals(Integer.valueOf(2), cluster.activeServicesCount());
+		assertNull(cluster.runningTasksCount());
+
+		Ec2InstanceInventory ec2 = read.getEc2InstanceInventory();
+		assertEquals(5, ec2.size());
+		assertEquals(1_600_000_000_000L, ec2.getCollectedEpochMillis());
+		assertEquals(written.getEc2InstanceInventory().getStateCounts(), ec2.getStateCounts());
+		Ec2InstanceSummary stopped = ec2.getInstances().get(1);
+		assertEquals("i-00000001", stopped.getInstanceId());
+		assertEquals("stopped", stopped.getState());
+		assertNull(stopped.getInstanceStatus());
+		assertEquals(1_500_000_000_001L, stopped.getLaunchEpochMillis());
+		assertEquals("web-1", stopped.getTags().get("Name"));
+
+		// Paths are saved relative to the volume, so they follow the volume to a new mount point
+		Path newRoot = temporaryFolder.newFolder("mounted-elsewhere").toPath().toAbsolutePath();
+		List<EfsFileEntry> efsEntries = InventorySnapshotFile.read(file, newRoot).getEfsEntries();
+		assertEquals(newRoot, efsEntries.get(0).getPath());
+		assertEquals(newRoot.resolve("a/b.txt"), efsEntries.get(1).getPath());
+		assertEquals(written.getEfsEntries(), read.getEfsEntries());
+	}
+
+	@Test
+	public void testAbsentSections() throws Exception {
+		InventorySnapshotFile.write(file, new InventorySnapshot(1L, "us-east-1", "us-east-1",
+				null, null, null, null, null), efsRoot);
+		InventorySnapshot read = InventorySnapshotFile.read(file, efsRoot);
+		assertNull(read.getIamUser());
+		assertNull(read.getEcsClusterInventory());
+		assertNull(read.getS3Buckets());
+		assertNull(read.getEc2InstanceInventory());
+		assertNull(read.getEfsEntries());
+	}
+
+	@Test
+	public void testDamagedFileIsRejected() throws Exception {
+		InventorySnapshotFile.write(file, fullSnapshot(200), efsRoot);
+		byte[] bytes = Files.readAllBytes(file);
+
+		byte[] flipped = bytes.clone();
+		flipped[flipped.length / 2] ^= 0x5A;
+		Files.write(file, flipped);
+		assertUnreadable();
+
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+		assertUnreadable();
+
+		Files.write(file, "not a snapshot".getBytes("US-ASCII"));
+		assertUnreadable();
+	}
+
+	private void assertUnreadable() {
+		try {
+			InventorySnapshotFile.read(file, efsRoot);
+			fail("expected the damaged snapshot to be rejected");
+		} catch (IOException | RuntimeException e) {
+			// Expected. What matters is that no values are returned.
+		}
+	}
+
+	@Test
+	public void testFailedWriteKeepsPreviousFile() throws Exception {
+		InventorySnapshotFile.write(file, fullSnapshot(3), efsRoot);
+		byte[] before = Files.readAllBytes(file);
+
+		// An EFS entry outside of the volume makes the write fail part way through
+		InventorySnapshot bad = new InventorySnapshot(2L, "us-east-1", "us-east-1", null, null, null, null,
+				Collections.singletonList(new EfsFileEntry(temporaryFolder.getRoot().toPath().toAbsolutePath(),
+						null, null, 0, true)));
+		try {
+			InventorySnapshotFile.write(file, bad, efsRoot);
+			fail("expected IOException");
+		} catch (IOException e) {
+			// Expected
+		}
+		assertArrayEquals(before, Files.readAllBytes(file));
+		// The temporary file is cleaned up
+		assertEquals(1, Files.list(file.getParent()).count());
+	}
+
+}
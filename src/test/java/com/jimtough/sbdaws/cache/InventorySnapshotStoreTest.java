@@ -0,0 +1,189 @@
+package com.jimtough.sbdaws.cache;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsClientRegistry;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JUnit test for the {@code InventorySnapshotStore} class. Each "run" of the app gets its own
+ * caches and store, sharing only the snapshot file.
+ *
+ * @author JTOUGH
+ */
+public class InventorySnapshotStoreTest {
+
+	private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path efsRoot;
+	private Path file;
+	private ConfigurationBean configurationBean;
+	private AtomicInteger awsCallCount;
+	private volatile Region targetRegion;
+
+	private AwsEnvironmentInterrogator interrogator;
+	private InventoryCache inventoryCache;
+	private EfsFileIndex efsFileIndex;
+	private MetricsRegistry metricsRegistry;
+	private InventorySnapshotStore store;
+
+	@Before public void setUp() throws Exception {
+		efsRoot = temporaryFolder.newFolder("datafiles").toPath().toAbsolutePath();
+		Files.write(efsRoot.resolve("a.txt"), new byte[5]);
+		file = temporaryFolder.getRoot().toPath().resolve("inventory.snapshot");
+		awsCallCount = new AtomicInteger();
+		targetRegion = Region.US_EAST_1;
+		configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return targetRegion; }
+			@Override public long getInventoryCacheIamUserTtlSeconds() { return 300; }
+			@Override public long getInventoryCacheS3BucketsTtlSeconds() { return 300; }
+			@Override public int getInventoryCacheMaxEntriesPerResource() { return 16; }
+			@Override public Path getEfsVolumeMountPath() { return efsRoot; }
+			@Override public long getEfsIndexRescanIntervalSeconds() { return 3600; }
+		};
+	}
+
+	@After public void tearDown() throws Exception {
+		stopRun();
+	}
+
+	/**
+	 * Start a new run of the app, which loads the snapshot file if there is one
+	 */
+	private void startRun() throws Exception {
+		interrogator = new AwsEnvironmentInterrogator(configurationBean, new AwsClientRegistry(configurationBean),
+				new MetricsRegistry()) {
+			@Override
+			public User getIAMUser() throws AwsSdkException {
+				awsCallCount.incrementAndGet();
+				return User.builder().userName("jtough").build();
+			}
+
+			@Override
+			public List<Bucket> getS3BucketList() throws AwsSdkException {
+				awsCallCount.incrementAndGet();
+				return Arrays.asList(Bucket.builder().name("bucket-a").build(), Bucket.builder().name("bucket-b").build());
+			}
+		};
+		inventoryCache = new InventoryCache(configurationBean, interrogator);
+		metricsRegistry = new MetricsRegistry();
+		// Never started, so the index only has what the snapshot primes it with
+		efsFileIndex = new EfsFileIndex(configurationBean, metricsRegistry);
+		store = new InventorySnapshotStore(inventoryCache, efsFileIndex, metricsRegistry, file, true,
+				TimeUnit.HOURS.toMillis(1), MAX_AGE_MILLIS);
+		store.start();
+	}
+
+	private void stopRun() {
+		if (store != null) {
+			store.shutdown();
+			inventoryCache.shutdown();
+			efsFileIndex.shutdown();
+			interrogator.shutdown();
+			store = null;
+		}
+	}
+
+	@Test
+	public void testWarmRestartServesFromSnapshot() throws Exception {
+		startRun();
+		assertFalse(store.load());
+		assertEquals("jtough", inventoryCache.getIAMUser().userName());
+		assertEquals(2, inventoryCache.getS3BucketList().size());
+		efsFileIndex.prime(Collections.singletonList(new EfsFileEntry(efsRoot.resolve("a.txt"), null, null, 5, false)));
+		assertEquals(2, awsCallCount.get());
+		// Shutdown writes the snapshot
+		stopRun();
+		assertTrue(Files.isRegularFile(file));
+
+		startRun();
+		// Served from the snapshot, without calling AWS or waiting for the EFS scan
+		assertEquals("jtough", inventoryCache.getIAMUser().userName());
+		assertEquals("bucket-b", inventoryCache.getS3BucketList().get(1).name());
+		assertEquals(efsRoot.resolve("a.txt"), efsFileIndex.getEntries().get(0).getPath());
+		assertEquals(1, metricsRegistry.getOperations().get("inventory.snapshot.load").getLatency().getCount());
+		// The first lookups start background refreshes, which do call AWS
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (awsCallCount.get() < 4) {
+			assertTrue("background refreshes did not run", System.nanoTime() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testUnchangedInventoryIsNotWrittenAgain() throws Exception {
+		startRun();
+		inventoryCache.getIAMUser();
+		assertTrue(store.write());
+		assertFalse(store.write());
+		inventoryCache.getS3BucketList();
+		assertTrue(store.write());
+		assertEquals(2, metricsRegistry.getOperations().get("inventory.snapshot.write").getLatency().getCount());
+
+		// Nothing has changed since the snapshot was loaded either
+		stopRun();
+		startRun();
+		assertFalse(store.write());
+	}
+
+	@Test
+	public void testSnapshotOfOtherRegionIsOnlyUsedForGlobalValues() throws Exception {
+		startRun();
+		inventoryCache.getIAMUser();
+		inventoryCache.getS3BucketList();
+		stopRun();
+
+		targetRegion = Region.EU_WEST_1;
+		startRun();
+		inventoryCache.getIAMUser();
+		assertEquals(0, inventoryCache.getStatistics().get(0).getMissCount());
+		inventoryCache.getS3BucketList();
+		assertEquals(1, inventoryCache.getStatistics().get(2).getMissCount());
+	}
+
+	@Test
+	public void testDamagedSnapshotIsIgnored() throws Exception {
+		Files.write(file, new byte[] { 1, 2, 3 });
+		startRun();
+		assertNull(efsFileIndex.peekEntries());
+		assertEquals(1, metricsRegistry.getOperations().get("inventory.snapshot.load").getErrorCounts().size());
+		// The app works as if there were no snapshot
+		assertEquals("jtough", inventoryCache.getIAMUser().userName());
+		assertEquals(1, inventoryCache.getStatistics().get(0).getMissCount());
+	}
+
+	@Test
+	public void testOldSnapshotIsIgnored() throws Exception {
+		InventorySnapshotFile.write(file, new InventorySnapshot(
+				System.currentTimeMillis() - MAX_AGE_MILLIS - 60_000L, "us-east-1", "us-east-1",
+				User.builder().userName("old").build(), null, null, null, null), efsRoot);
+		startRun();
+		assertEquals("jtough", inventoryCache.getIAMUser().userName());
+	}
+
+}
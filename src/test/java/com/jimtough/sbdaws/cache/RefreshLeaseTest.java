@@ -0,0 +1,75 @@
+package com.jimtough.sbdaws.cache;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test for the {@code RefreshLease} class. See {@code SharedInventoryMultiProcessTest} for
+ * the same lease used by several processes.
+ *
+ * @author JTOUGH
+ */
+public class RefreshLeaseTest {
+
+	private static final long LEASE_MILLIS = 90_000L;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path leaseFile;
+	private AtomicLong fakeClock;
+	private RefreshLease taskA;
+	private RefreshLease taskB;
+
+	@Before public void setUp() throws Exception {
+		leaseFile = temporaryFolder.getRoot().toPath().resolve("refresh.lease");
+		fakeClock = new AtomicLong(1_000_000L);
+		taskA = new RefreshLease(leaseFile, "task-a", LEASE_MILLIS, fakeClock::get);
+		taskB = new RefreshLease(leaseFile, "task-b", LEASE_MILLIS, fakeClock::get);
+	}
+
+	@Test
+	public void testOnlyOneHolderUntilExpiry() throws Exception {
+		assertTrue(taskA.tryAcquire());
+		assertFalse(taskB.tryAcquire());
+		assertEquals("task-a\n" + (1_000_000L + LEASE_MILLIS) + "\n",
+				new String(Files.readAllBytes(leaseFile), StandardCharsets.UTF_8));
+
+		// The holder renews the lease, which pushes back its expiry
+		fakeClock.addAndGet(LEASE_MILLIS - 1);
+		assertTrue(taskA.tryAcquire());
+		fakeClock.addAndGet(LEASE_MILLIS - 1);
+		assertFalse(taskB.tryAcquire());
+
+		// The holder stops renewing, so the lease expires and the other task takes over
+		fakeClock.addAndGet(2);
+		assertTrue(taskB.tryAcquire());
+		assertFalse(taskA.tryAcquire());
+	}
+
+	@Test
+	public void testReleasedLeaseCanBeTakenAtOnce() throws Exception {
+		assertTrue(taskA.tryAcquire());
+		// Releasing a lease that is held by another task has no effect
+		taskB.release();
+		assertFalse(taskB.tryAcquire());
+		taskA.release();
+		assertTrue(taskB.tryAcquire());
+	}
+
+	@Test
+	public void testDamagedLeaseFileCanBeTaken() throws Exception {
+		Files.write(leaseFile, "not a lease".getBytes(StandardCharsets.UTF_8));
+		assertTrue(taskA.tryAcquire());
+		assertFalse(taskB.tryAcquire());
+	}
+
+}
@@ -0,0 +1,261 @@
+package com.jimtough.sbdaws.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.metrics.RequestTrace;
+
+/**
+ * JUnit test for the {@code RefreshingCache} class
+ *
+ * @author JTOUGH
+ */
+public class RefreshingCacheTest {
+
+	private static final long TTL_SECONDS = 60;
+	private static final String KEY = "us-east-1";
+
+	private AtomicLong fakeNanoClock;
+	private List<Runnable> queuedRefreshes;
+	private ExecutorService callerPool;
+
+	@Before public void setUp() throws Exception {
+		fakeNanoClock = new AtomicLong(0);
+		queuedRefreshes = new ArrayList<>();
+		callerPool = Executors.newFixedThreadPool(200);
+	}
+
+	@After public void tearDown() throws Exception {
+		callerPool.shutdownNow();
+	}
+
+	private RefreshingCache<String, String> newCache(int maxEntries) {
+		// Background refreshes are queued and only run when the test says so
+		return new RefreshingCache<>("test", TTL_SECONDS, TimeUnit.SECONDS, maxEntries,
+				queuedRefreshes::add, fakeNanoClock::get);
+	}
+
+	private void advanceClockPastTtl() {
+		fakeNanoClock.addAndGet(TimeUnit.SECONDS.toNanos(TTL_SECONDS + 1));
+	}
+
+	@Test
+	public void testConcurrentMissesShareOneLoad() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		AtomicInteger loadCount = new AtomicInteger();
+		CacheLoader<String> slowLoader = () -> {
+			loadCount.incrementAndGet();
+			Thread.sleep(200);
+			return "value";
+		};
+		final int numberOfCallers = 200;
+		CountDownLatch startGate = new CountDownLatch(1);
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < numberOfCallers; i++) {
+			results.add(callerPool.submit(() -> {
+				startGate.await();
+				return cache.get(KEY, slowLoader);
+			}));
+		}
+		startGate.countDown();
+		for (Future<String> result : results) {
+			assertEquals("value", result.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(1, loadCount.get());
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(numberOfCallers, statistics.getHitCount() + statistics.getMissCount());
+		assertEquals(0, statistics.getLoadFailureCount());
+	}
+
+	@Test
+	public void testAsyncMissesJoinTheLoadInFlight() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		AtomicInteger loadCount = new AtomicInteger();
+		CacheLoader<String> loader = () -> "v" + loadCount.incrementAndGet();
+		CompletableFuture<String> first = cache.getAsync(KEY, loader);
+		CompletableFuture<String> second = cache.getAsync(KEY, loader);
+		// The load runs on the refresh executor, so neither lookup blocked
+		assertFalse(first.isDone());
+		assertFalse(second.isDone());
+		assertEquals(1, queuedRefreshes.size());
+
+		// A blocking lookup joins the same load
+		Future<String> blocking = callerPool.submit(() -> cache.get(KEY, loader));
+		while (cache.getStatistics().getMissCount() < 3) {
+			Thread.sleep(10);
+		}
+		queuedRefreshes.remove(0).run();
+		assertEquals("v1", first.get());
+		assertEquals("v1", second.get());
+		assertEquals("v1", blocking.get(10, TimeUnit.SECONDS));
+		assertEquals(1, loadCount.get());
+
+		// Once loaded, the lookup is already complete
+		assertTrue(cache.getAsync(KEY, loader).isDone());
+		assertEquals(3, cache.getStatistics().getMissCount());
+		assertEquals(1, cache.getStatistics().getHitCount());
+	}
+
+	@Test
+	public void testAsyncLoadFailure() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		IllegalStateException failure = new IllegalStateException("AWS is down");
+		CompletableFuture<String> result = cache.getAsync(KEY, () -> { throw failure; });
+		queuedRefreshes.remove(0).run();
+		try {
+			result.get();
+			fail("Expected ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof CacheLoadException);
+			assertSame(failure, e.getCause().getCause());
+		}
+		assertEquals(1, cache.getStatistics().getLoadFailureCount());
+	}
+
+	@Test
+	public void testFreshValueIsHit() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		AtomicInteger loadCount = new AtomicInteger();
+		assertEquals("v1", cache.get(KEY, () -> "v" + loadCount.incrementAndGet()));
+		assertEquals("v1", cache.get(KEY, () -> "v" + loadCount.incrementAndGet()));
+		assertEquals(1, loadCount.get());
+		assertEquals(1, cache.getStatistics().getMissCount());
+		assertEquals(1, cache.getStatistics().getHitCount());
+		assertTrue(queuedRefreshes.isEmpty());
+	}
+
+	@Test
+	public void testStaleValueServedWhileOneRefreshRuns() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		AtomicInteger loadCount = new AtomicInteger();
+		CacheLoader<String> loader = () -> "v" + loadCount.incrementAndGet();
+		assertEquals("v1", cache.get(KEY, loader));
+		advanceClockPastTtl();
+		for (int i = 0; i < 50; i++) {
+			assertEquals("v1", cache.get(KEY, loader));
+		}
+		// Only one refresh is started, no matter how many lookups see the stale value
+		assertEquals(1, queuedRefreshes.size());
+		assertEquals(1, loadCount.get());
+		queuedRefreshes.remove(0).run();
+		assertEquals("v2", cache.get(KEY, loader));
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(50, statistics.getStaleHitCount());
+		assertEquals(1, statistics.getRefreshCount());
+		assertEquals(1, statistics.getHitCount());
+	}
+
+	@Test
+	public void testRefreshWithEqualValueKeepsInstance() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		String first = cache.get(KEY, () -> new String("same"));
+		advanceClockPastTtl();
+		cache.get(KEY, () -> new String("same"));
+		queuedRefreshes.remove(0).run();
+		assertSame(first, cache.get(KEY, () -> new String("same")));
+		assertEquals(1, cache.getStatistics().getHitCount());
+	}
+
+	@Test
+	public void testFailedRefreshKeepsStaleValue() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		assertEquals("v1", cache.get(KEY, () -> "v1"));
+		advanceClockPastTtl();
+		assertEquals("v1", cache.get(KEY, () -> { throw new IllegalStateException("AWS is down"); }));
+		queuedRefreshes.remove(0).run();
+		assertEquals(1, cache.getStatistics().getRefreshFailureCount());
+		// The stale value is still served, and the next lookup tries another refresh
+		assertEquals("v1", cache.get(KEY, () -> "v2"));
+		assertEquals(1, queuedRefreshes.size());
+	}
+
+	@Test
+	public void testLoadFailureIsThrownAndNextLookupRetries() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		IllegalStateException failure = new IllegalStateException("AWS is down");
+		try {
+			cache.get(KEY, () -> { throw failure; });
+			fail("Expected CacheLoadException");
+		} catch (CacheLoadException e) {
+			assertSame(failure, e.getCause());
+		}
+		assertEquals(1, cache.getStatistics().getLoadFailureCount());
+		assertEquals("v1", cache.get(KEY, () -> "v1"));
+	}
+
+	@Test
+	public void testPrimedValueIsServedAsStale() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		assertNull(cache.peek(KEY));
+		assertTrue(cache.prime(KEY, "from-snapshot"));
+		assertEquals("from-snapshot", cache.peek(KEY));
+		// Served without waiting for a load, but a refresh is started right away
+		assertEquals("from-snapshot", cache.get(KEY, () -> "loaded"));
+		assertEquals(1, queuedRefreshes.size());
+		queuedRefreshes.remove(0).run();
+		assertEquals("loaded", cache.get(KEY, () -> "not called"));
+		assertEquals(0, cache.getStatistics().getMissCount());
+	}
+
+	@Test
+	public void testPrimeDoesNotReplaceLoadedValue() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		assertEquals("v1", cache.get(KEY, () -> "v1"));
+		assertFalse(cache.prime(KEY, "from-snapshot"));
+		assertEquals("v1", cache.get(KEY, () -> "v2"));
+		assertTrue(queuedRefreshes.isEmpty());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntryEvicted() throws Exception {
+		RefreshingCache<String, String> cache = newCache(2);
+		cache.get("a", () -> "a1");
+		fakeNanoClock.incrementAndGet();
+		cache.get("b", () -> "b1");
+		fakeNanoClock.incrementAndGet();
+		// Touch "a" so that "b" becomes the least recently used entry
+		cache.get("a", () -> "a2");
+		fakeNanoClock.incrementAndGet();
+		cache.get("c", () -> "c1");
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(2, statistics.getSize());
+		assertEquals(1, statistics.getEvictionCount());
+		assertEquals("a1", cache.get("a", () -> "a3"));
+		assertEquals("b2", cache.get("b", () -> "b2"));
+	}
+
+	@Test
+	public void testTracedLookupsAreRecorded() throws Exception {
+		RefreshingCache<String, String> cache = newCache(4);
+		RequestTrace trace = new RequestTrace();
+		trace.wrap(() -> cache.get(KEY, () -> "value")).call();
+		trace.wrap(() -> cache.get(KEY, () -> "value")).call();
+		advanceClockPastTtl();
+		trace.wrap(() -> cache.get(KEY, () -> "value")).call();
+		// Not traced
+		cache.get(KEY, () -> "value");
+		List<String> outcomes = new ArrayList<>();
+		for (RequestTrace.CacheLookup lookup : trace.getCacheLookups()) {
+			assertEquals("test", lookup.getCache());
+			outcomes.add(lookup.getOutcome());
+		}
+		assertEquals(Arrays.asList("MISS", "HIT", "STALE_HIT"), outcomes);
+	}
+
+}
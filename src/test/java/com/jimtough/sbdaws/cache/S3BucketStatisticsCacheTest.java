@@ -0,0 +1,130 @@
+package com.jimtough.sbdaws.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsClientRegistry;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.S3BucketStatistics;
+import com.jimtough.sbdaws.awssdk.S3BucketStatisticsReport;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * JUnit test for the {@code S3BucketStatisticsCache} class
+ *
+ * @author JTOUGH
+ */
+public class S3BucketStatisticsCacheTest {
+
+	private Deque<Object> queuedResults;
+	private AwsEnvironmentInterrogator interrogator;
+	private S3BucketStatisticsCache cache;
+
+	@Before public void setUp() throws Exception {
+		queuedResults = new ArrayDeque<>();
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+		};
+		// Each collection returns (or throws) the next queued result
+		interrogator = new AwsEnvironmentInterrogator(configurationBean, new AwsClientRegistry(configurationBean),
+				new MetricsRegistry()) {
+			@Override
+			public S3BucketStatisticsReport getS3BucketStatistics() throws AwsSdkException {
+				Object result = queuedResults.removeFirst();
+				if (result instanceof AwsSdkException) {
+					throw (AwsSdkException) result;
+				}
+				return (S3BucketStatisticsReport) result;
+			}
+		};
+		// The schedule is never started, so the test calls refresh() itself
+		cache = new S3BucketStatisticsCache(interrogator, true, 60_000L);
+	}
+
+	@After public void tearDown() throws Exception {
+		cache.shutdown();
+		interrogator.shutdown();
+	}
+
+	private static S3BucketStatistics bucket(String name, long objectCount, long collectedEpochMillis) {
+		return new S3BucketStatistics(name, "us-east-1", objectCount, objectCount * 10, 1, collectedEpochMillis, 5);
+	}
+
+	@Test
+	public void testNoReportUntilFirstCollection() throws Exception {
+		assertNull(cache.getReport());
+		assertEquals(0, cache.getRefreshCount());
+
+		S3BucketStatisticsReport first = new S3BucketStatisticsReport(
+				Collections.singletonList(bucket("bucket-a", 3, 1000L)), Collections.emptyMap(), 1000L);
+		queuedResults.add(first);
+		cache.refresh();
+		assertSame(first, cache.getReport());
+		assertEquals(1, cache.getRefreshCount());
+		assertEquals(0, cache.getRefreshFailureCount());
+	}
+
+	@Test
+	public void testFailedCollectionKeepsPreviousReport() throws Exception {
+		S3BucketStatisticsReport first = new S3BucketStatisticsReport(
+				Collections.singletonList(bucket("bucket-a", 3, 1000L)), Collections.emptyMap(), 1000L);
+		queuedResults.add(first);
+		queuedResults.add(new AwsSdkException("ListBuckets failed", new RuntimeException("boom")));
+		cache.refresh();
+		cache.refresh();
+
+		assertSame(first, cache.getReport());
+		assertEquals(2, cache.getRefreshCount());
+		assertEquals(1, cache.getRefreshFailureCount());
+		assertTrue(cache.getLastFailureMessage().contains("ListBuckets failed"));
+	}
+
+	@Test
+	public void testFailedBucketKeepsPreviousStatistics() throws Exception {
+		S3BucketStatisticsReport first = new S3BucketStatisticsReport(
+				Arrays.asList(bucket("bucket-a", 3, 1000L), bucket("bucket-b", 4, 1000L), bucket("bucket-c", 5, 1000L)),
+				Collections.emptyMap(), 1000L);
+		S3BucketStatisticsReport second = new S3BucketStatisticsReport(
+				Arrays.asList(bucket("bucket-a", 30, 2000L), bucket("bucket-c", 50, 2000L)),
+				Collections.singletonMap("bucket-b", "access denied"), 2000L);
+		queuedResults.add(first);
+		queuedResults.add(second);
+		cache.refresh();
+		cache.refresh();
+
+		S3BucketStatisticsReport merged = cache.getReport();
+		assertEquals(2000L, merged.getCollectedEpochMillis());
+		assertEquals(3, merged.getBuckets().size());
+		assertEquals("bucket-a", merged.getBuckets().get(0).getBucketName());
+		assertEquals(30, merged.getBuckets().get(0).getObjectCount());
+		assertEquals("bucket-b", merged.getBuckets().get(1).getBucketName());
+		assertEquals(4, merged.getBuckets().get(1).getObjectCount());
+		assertEquals(1000L, merged.getBuckets().get(1).getCollectedEpochMillis());
+		assertEquals(50, merged.getBuckets().get(2).getObjectCount());
+		assertEquals("access denied", merged.getFailedBuckets().get("bucket-b"));
+	}
+
+	@Test
+	public void testDeletedBucketIsDropped() throws Exception {
+		S3BucketStatisticsReport first = new S3BucketStatisticsReport(
+				Arrays.asList(bucket("bucket-a", 3, 1000L), bucket("bucket-b", 4, 1000L)),
+				Collections.emptyMap(), 1000L);
+		S3BucketStatisticsReport second = new S3BucketStatisticsReport(
+				Collections.singletonList(bucket("bucket-a", 30, 2000L)), Collections.emptyMap(), 2000L);
+
+		assertSame(second, S3BucketStatisticsCache.mergeWithPrevious(second, first));
+	}
+
+}
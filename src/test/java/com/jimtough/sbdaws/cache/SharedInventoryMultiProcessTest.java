@@ -0,0 +1,147 @@
+package com.jimtough.sbdaws.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs several JVMs that share a local directory, each with a {@code SharedInventory}, to check
+ * that exactly one of them refreshes the inventory at a time. See {@code SharedInventoryTestProcess}.
+ *
+ * @author JTOUGH
+ */
+public class SharedInventoryMultiProcessTest {
+
+	private static final int PROCESS_COUNT = 4;
+	private static final long REFRESH_INTERVAL_MILLIS = 100L;
+	private static final long LEASE_MILLIS = 1500L;
+	private static final long WAIT_SECONDS = 30L;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path directory;
+	private final List<Process> processes = new ArrayList<>();
+
+	@Before public void setUp() throws Exception {
+		directory = temporaryFolder.newFolder("shared").toPath();
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for (int i = 0; i < PROCESS_COUNT; i++) {
+			ProcessBuilder processBuilder = new ProcessBuilder(java,
+					"-cp", System.getProperty("java.class.path"),
+					SharedInventoryTestProcess.class.getName(),
+					directory.toString(), ownerId(i),
+					Long.toString(REFRESH_INTERVAL_MILLIS), Long.toString(LEASE_MILLIS));
+			// Log output goes to a file, so that a full pipe never blocks the process
+			processBuilder.redirectErrorStream(true);
+			processBuilder.redirectOutput(temporaryFolder.newFile("process-" + i + ".out"));
+			processes.add(processBuilder.start());
+		}
+	}
+
+	@After public void tearDown() throws Exception {
+		for (Process process : processes) {
+			process.destroyForcibly().waitFor(WAIT_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	private static String ownerId(int index) {
+		return "task-" + index;
+	}
+
+	@Test
+	public void testOneRefresherAcrossProcesses() throws Exception {
+		// Every process sees the inventory, although only one of them refreshes it
+		waitFor("every process to read the shared inventory", () -> readLines(SharedInventoryTestProcess.READ_LOG_FILE_NAME).size() == PROCESS_COUNT);
+		int refreshCount = readLines(SharedInventoryTestProcess.REFRESH_LOG_FILE_NAME).size();
+		waitFor("more refreshes", () -> readLines(SharedInventoryTestProcess.REFRESH_LOG_FILE_NAME).size() >= refreshCount + 10);
+		List<String[]> refreshes = readRefreshes();
+		Set<String> refreshers = owners(refreshes);
+		assertEquals(refreshers.toString(), 1, refreshers.size());
+
+		// Kill the leader without releasing the lease. Another process takes over once it expires.
+		String firstLeader = refreshers.iterator().next();
+		Process leaderProcess = processes.get(Integer.parseInt(firstLeader.substring("task-".length())));
+		assertTrue(leaderProcess.destroyForcibly().waitFor(WAIT_SECONDS, TimeUnit.SECONDS));
+		int refreshCountAtKill = refreshes.size();
+		waitFor("a new leader", () -> owners(readRefreshes()).size() > 1);
+		waitFor("more refreshes", () -> readLines(SharedInventoryTestProcess.REFRESH_LOG_FILE_NAME).size() >= refreshCountAtKill + 10);
+
+		refreshes = readRefreshes();
+		refreshers = owners(refreshes);
+		assertEquals(refreshers.toString(), 2, refreshers.size());
+		// The leaders did not overlap, and the new one waited for the lease of the old one to expire
+		long lastOfFirstLeader = 0;
+		long firstOfSecondLeader = 0;
+		boolean secondLeaderStarted = false;
+		for (String[] refresh : refreshes) {
+			if (refresh[0].equals(firstLeader)) {
+				assertFalse("refreshers overlapped", secondLeaderStarted);
+				lastOfFirstLeader = Long.parseLong(refresh[1]);
+			} else if (!secondLeaderStarted) {
+				secondLeaderStarted = true;
+				firstOfSecondLeader = Long.parseLong(refresh[1]);
+			}
+		}
+		assertTrue(firstOfSecondLeader - lastOfFirstLeader >= LEASE_MILLIS - REFRESH_INTERVAL_MILLIS);
+	}
+
+	private void waitFor(String description, BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+		while (!condition.getAsBoolean()) {
+			assertTrue("timed out waiting for " + description, System.nanoTime() < deadline);
+			Thread.sleep(50);
+		}
+	}
+
+	private List<String> readLines(String fileName) {
+		Path file = directory.resolve(fileName);
+		try {
+			if (!Files.exists(file)) {
+				return Collections.emptyList();
+			}
+			List<String> lines = new ArrayList<>();
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				// Skip a line that is still being appended
+				if (!line.isEmpty()) {
+					lines.add(line);
+				}
+			}
+			return lines;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to read " + file, e);
+		}
+	}
+
+	private List<String[]> readRefreshes() {
+		List<String[]> refreshes = new ArrayList<>();
+		for (String line : readLines(SharedInventoryTestProcess.REFRESH_LOG_FILE_NAME)) {
+			refreshes.add(line.split(" "));
+		}
+		return refreshes;
+	}
+
+	private static Set<String> owners(List<String[]> refreshes) {
+		Set<String> owners = new LinkedHashSet<>();
+		for (String[] refresh : refreshes) {
+			owners.add(refresh[0]);
+		}
+		return owners;
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.jimtough.sbdaws.cache;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsClientRegistry;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JUnit test for the {@code SharedInventory} class, with two "tasks" in this JVM that share a
+ * temporary directory
+ *
+ * @author JTOUGH
+ */
+public class SharedInventoryTest {
+
+	private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path directory;
+	private ConfigurationBean configurationBean;
+	private CountingInterrogator leaderInterrogator;
+	private CountingInterrogator followerInterrogator;
+	private SharedInventory leader;
+	private SharedInventory follower;
+	private InventoryCache followerCache;
+
+	/**
+	 * Counts the AWS calls of one task
+	 */
+	private static class CountingInterrogator extends AwsEnvironmentInterrogator {
+
+		final AtomicInteger callCount = new AtomicInteger();
+		final String userName;
+		volatile boolean s3Down = true;
+
+		CountingInterrogator(ConfigurationBean configurationBean, String userName) {
+			super(configurationBean, new AwsClientRegistry(configurationBean), new MetricsRegistry());
+			this.userName = userName;
+		}
+
+		@Override
+		public User getIAMUser() throws AwsSdkException {
+			callCount.incrementAndGet();
+			return User.builder().userName(userName).build();
+		}
+
+		@Override
+		public EcsClusterInventory getECSClusterInventory() throws AwsSdkException {
+			callCount.incrementAndGet();
+			return new EcsClusterInventory(Collections.singletonList(Region.US_EAST_1), Collections.emptyList(),
+					Collections.emptyMap());
+		}
+
+		@Override
+		public List<Bucket> getS3BucketList() throws AwsSdkException {
+			callCount.incrementAndGet();
+			if (s3Down) {
+				throw new AwsSdkException("S3 is down", null);
+			}
+			return Collections.emptyList();
+		}
+	}
+
+	@Before public void setUp() throws Exception {
+		directory = temporaryFolder.newFolder("shared").toPath();
+		configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+			@Override public long getInventoryCacheIamUserTtlSeconds() { return 300; }
+			@Override public int getInventoryCacheMaxEntriesPerResource() { return 16; }
+		};
+		leaderInterrogator = new CountingInterrogator(configurationBean, "from-leader");
+		followerInterrogator = new CountingInterrogator(configurationBean, "from-follower");
+		leader = newSharedInventory(leaderInterrogator, "leader");
+		follower = newSharedInventory(followerInterrogator, "follower");
+		followerCache = new InventoryCache(configurationBean, followerInterrogator, follower);
+	}
+
+	private SharedInventory newSharedInventory(AwsEnvironmentInterrogator interrogator, String ownerId) {
+		// Never started, so the test runs the ticks itself
+		return new SharedInventory(configurationBean, interrogator, new MetricsRegistry(), directory,
+				TimeUnit.MINUTES.toMillis(1), LEASE_MILLIS, ownerId);
+	}
+
+	@After public void tearDown() throws Exception {
+		followerCache.shutdown();
+		leader.shutdown();
+		follower.shutdown();
+		leaderInterrogator.shutdown();
+		followerInterrogator.shutdown();
+	}
+
+	@Test
+	public void testFollowerUsesLeaderRefresh() throws Exception {
+		leader.tick();
+		follower.tick();
+		assertTrue(leader.isLeader());
+		assertFalse(follower.isLeader());
+		assertEquals(1, leader.getRefreshCount());
+		assertEquals(0, follower.getRefreshCount());
+		assertEquals(3, leaderInterrogator.callCount.get());
+
+		assertEquals("from-leader", followerCache.getIAMUser().userName());
+		assertEquals(1, followerCache.getECSClusterInventory().getRegions().size());
+		assertEquals(0, followerInterrogator.callCount.get());
+
+		// The leader could not load the S3 buckets, so the follower calls AWS for them itself
+		try {
+			followerCache.getS3BucketList();
+			fail("expected AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertEquals(1, followerInterrogator.callCount.get());
+		}
+	}
+
+	@Test
+	public void testValueThatFailsToRefreshIsNotSharedAgain() throws Exception {
+		leaderInterrogator.s3Down = false;
+		leader.tick();
+		assertNotNull(follower.getLatest().getS3Buckets());
+
+		// The old value must not be written again as if it had just been loaded
+		leaderInterrogator.s3Down = true;
+		leader.tick();
+		assertEquals(2, leader.getRefreshCount());
+		InventorySnapshot latest = follower.getLatest();
+		assertEquals("from-leader", latest.getIamUser().userName());
+		assertNull(latest.getS3Buckets());
+		try {
+			followerCache.getS3BucketList();
+			fail("expected AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertEquals(1, followerInterrogator.callCount.get());
+		}
+	}
+
+	@Test
+	public void testFollowerCallsAwsWhenSharedInventoryIsTooOld() throws Exception {
+		InventorySnapshotFile.write(directory.resolve(SharedInventory.SNAPSHOT_FILE_NAME),
+				new InventorySnapshot(System.currentTimeMillis() - LEASE_MILLIS - 1, "us-east-1", "us-east-1",
+						User.builder().userName("from-old-leader").build(), null, null, null, null),
+				directory);
+		assertNull(follower.getLatest());
+		assertEquals("from-follower", followerCache.getIAMUser().userName());
+		assertEquals(1, followerInterrogator.callCount.get());
+	}
+
+	@Test
+	public void testNothingSharedBeforeFirstRefresh() throws Exception {
+		assertNull(follower.getLatest());
+		assertEquals("from-follower", followerCache.getIAMUser().userName());
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.jimtough.sbdaws.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsClientRegistry;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * One "task" of {@code SharedInventoryMultiProcessTest}, run in its own JVM. It runs a
+ * {@code SharedInventory} on the shared directory until it is killed, with fake AWS calls.
+ *
+ * Each refresh appends a line with the owner ID and time to {@code refreshes.log}. The first
+ * time that the task sees a shared inventory, it appends its owner ID to {@code reads.log}.
+ *
+ * Arguments: shared directory, owner ID, refresh interval millis, lease millis
+ *
+ * @author JTOUGH
+ */
+public class SharedInventoryTestProcess {
+
+	static final String REFRESH_LOG_FILE_NAME = "refreshes.log";
+	static final String READ_LOG_FILE_NAME = "reads.log";
+
+	public static void main(String[] args) throws Exception {
+		final Path directory = Paths.get(args[0]);
+		final String ownerId = args[1];
+		long refreshIntervalMillis = Long.parseLong(args[2]);
+		long leaseMillis = Long.parseLong(args[3]);
+
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+		};
+		AwsEnvironmentInterrogator interrogator = new AwsEnvironmentInterrogator(configurationBean,
+				new AwsClientRegistry(configurationBean), new MetricsRegistry()) {
+			@Override
+			public User getIAMUser() throws AwsSdkException {
+				append(directory.resolve(REFRESH_LOG_FILE_NAME), ownerId + " " + System.currentTimeMillis());
+				return User.builder().userName(ownerId).build();
+			}
+
+			@Override
+			public EcsClusterInventory getECSClusterInventory() throws AwsSdkException {
+				return new EcsClusterInventory(Collections.singletonList(Region.US_EAST_1), Collections.emptyList(),
+						Collections.emptyMap());
+			}
+
+			@Override
+			public List<Bucket> getS3BucketList() throws AwsSdkException {
+				return Collections.emptyList();
+			}
+		};
+		SharedInventory sharedInventory = new SharedInventory(configurationBean, interrogator, new MetricsRegistry(),
+				directory, refreshIntervalMillis, leaseMillis, ownerId);
+		sharedInventory.start();
+
+		while (sharedInventory.getLatest() == null) {
+			Thread.sleep(20);
+		}
+		append(directory.resolve(READ_LOG_FILE_NAME), ownerId);
+		// Keep going until the test kills this process
+		Thread.sleep(Long.MAX_VALUE);
+	}
+
+	private static void append(Path file, String line) {
+		try {
+			// Each line is written with one append, so lines from several processes do not mix
+			Files.write(file, (line + "\n").getBytes(StandardCharsets.UTF_8),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to append to " + file, e);
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.jimtough.sbdaws.efs;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+/**
+ * JUnit test for {@code EfsFileIndex.list()}, using a large synthetic tree in a temporary directory.
+ * Every page sequence is checked against a plain {@code Files.walk()} of the same tree.
+ *
+ * @author JTOUGH
+ */
+public class EfsFileIndexListTest {
+
+	private static final int TOP_LEVEL_DIRS = 20;
+	private static final int SUBDIRS_PER_DIR = 10;
+	private static final int FILES_PER_SUBDIR = 25;
+
+	@ClassRule public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private static Path root;
+	private static EfsFileIndex index;
+
+	@BeforeClass public static void setUpClass() throws Exception {
+		root = temporaryFolder.getRoot().toPath().toAbsolutePath();
+		for (int d = 0; d < TOP_LEVEL_DIRS; d++) {
+			// Names like "dir-1", "dir-1-x" and "dir-10" sort close together, which is the tricky case
+			for (int s = 0; s < SUBDIRS_PER_DIR; s++) {
+				Path subdir = Files.createDirectories(root.resolve("dir-" + d).resolve("sub-" + s));
+				for (int f = 0; f < FILES_PER_SUBDIR; f++) {
+					Files.write(subdir.resolve("file-" + f + ".txt"), new byte[f]);
+				}
+			}
+			Files.write(root.resolve("dir-" + d + "-x"), new byte[1]);
+		}
+		index = new EfsFileIndex(root, TimeUnit.HOURS.toMillis(1), false, new MetricsRegistry());
+		index.start();
+	}
+
+	@AfterClass public static void tearDownClass() throws Exception {
+		index.shutdown();
+	}
+
+	private static List<Path> walk(Path start, int maxDepth) throws Exception {
+		return Files.walk(start, maxDepth).map(Path::toAbsolutePath).sorted().collect(Collectors.toList());
+	}
+
+	private static List<Path> listAllPages(EfsFileQuery firstQuery) throws Exception {
+		List<Path> paths = new ArrayList<>();
+		EfsFileQuery query = firstQuery;
+		while (true) {
+			EfsFilePage page = index.list(query);
+			assertTrue(page.getEntries().size() <= query.getPageSize());
+			page.getEntries().forEach(e -> paths.add(e.getPath()));
+			if (page.getNextCursor() == null) {
+				return paths;
+			}
+			assertEquals(query.getPageSize(), page.getEntries().size());
+			query = query.withCursor(page.getNextCursor());
+		}
+	}
+
+	@Test
+	public void testWholeVolumeAscending() throws Exception {
+		List<Path> expected = walk(root, Integer.MAX_VALUE);
+		assertTrue(expected.size() > 5000);
+		assertEquals(expected, listAllPages(new EfsFileQuery(null, Integer.MAX_VALUE, 333, false, null)));
+	}
+
+	@Test
+	public void testWholeVolumeDescending() throws Exception {
+		List<Path> expected = walk(root, Integer.MAX_VALUE);
+		Collections.reverse(expected);
+		assertEquals(expected, listAllPages(new EfsFileQuery("", Integer.MAX_VALUE, 1000, true, null)));
+	}
+
+	@Test
+	public void testSubdirectoryExcludesSimilarlyNamedSiblings() throws Exception {
+		List<Path> expected = walk(root.resolve("dir-1"), Integer.MAX_VALUE);
+		assertEquals(expected, listAllPages(new EfsFileQuery("dir-1", Integer.MAX_VALUE, 50, false, null)));
+		Collections.reverse(expected);
+		assertEquals(expected, listAllPages(new EfsFileQuery("dir-1", Integer.MAX_VALUE, 50, true, null)));
+	}
+
+	@Test
+	public void testMaxDepth() throws Exception {
+		for (int maxDepth = 0; maxDepth <= 3; maxDepth++) {
+			List<Path> expected = walk(root, maxDepth);
+			assertEquals(expected, listAllPages(new EfsFileQuery(null, maxDepth, 7, false, null)));
+			Collections.reverse(expected);
+			assertEquals(expected, listAllPages(new EfsFileQuery(null, maxDepth, 7, true, null)));
+		}
+		assertEquals(walk(root.resolve("dir-3"), 1),
+				listAllPages(new EfsFileQuery("dir-3/", 1, 4, false, null)));
+	}
+
+	@Test
+	public void testSinglePage() throws Exception {
+		EfsFilePage page = index.list(new EfsFileQuery("dir-2/sub-4", 1, 100, false, null));
+		assertEquals(FILES_PER_SUBDIR + 1, page.getEntries().size());
+		assertNull(page.getNextCursor());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testSubdirectoryOutsideVolumeIsRejected() throws Exception {
+		index.list(new EfsFileQuery("dir-1/../../etc", Integer.MAX_VALUE, 10, false, null));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testAbsoluteSubdirectoryIsRejected() throws Exception {
+		index.list(new EfsFileQuery("/etc", Integer.MAX_VALUE, 10, false, null));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testGarbageCursorIsRejected() throws Exception {
+		index.list(new EfsFileQuery(null, Integer.MAX_VALUE, 10, false, "not base64!"));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testCursorFromAnotherDirectoryIsRejected() throws Exception {
+		EfsFilePage page = index.list(new EfsFileQuery("dir-1", Integer.MAX_VALUE, 10, false, null));
+		index.list(new EfsFileQuery("dir-2", Integer.MAX_VALUE, 10, false, page.getNextCursor()));
+	}
+
+	@Test(expected=NoSuchFileException.class)
+	public void testMissingSubdirectory() throws Exception {
+		index.list(new EfsFileQuery("no-such-dir", Integer.MAX_VALUE, 10, false, null));
+	}
+
+}
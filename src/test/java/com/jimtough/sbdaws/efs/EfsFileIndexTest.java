@@ -0,0 +1,250 @@
+package com.jimtough.sbdaws.efs;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+/**
+ * JUnit test for the {@code EfsFileIndex} class, using a temporary directory as the EFS volume
+ *
+ * @author JTOUGH
+ */
+public class EfsFileIndexTest {
+
+	// Long enough that the periodic rescan never runs during a test
+	private static final long RESCAN_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path root;
+	private EfsFileIndex index;
+
+	@Before public void setUp() throws Exception {
+		root = temporaryFolder.getRoot().toPath().toAbsolutePath();
+		Files.write(root.resolve("b.txt"), new byte[10]);
+		Files.createDirectories(root.resolve("a/nested"));
+		Files.write(root.resolve("a/nested/c.txt"), new byte[3]);
+		Files.write(root.resolve("a-sibling.txt"), new byte[0]);
+	}
+
+	@After public void tearDown() throws Exception {
+		if (index != null) {
+			index.shutdown();
+		}
+	}
+
+	private List<Path> paths() throws Exception {
+		return index.getEntries().stream().map(EfsFileEntry::getPath).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testFullScanReadsEveryPathSorted() throws Exception {
+		index = new EfsFileIndex(root, RESCAN_INTERVAL_MILLIS, false, new MetricsRegistry());
+		index.start();
+
+		List<EfsFileEntry> entries = index.getEntries();
+		assertEquals(6, entries.size());
+		// Same order as the Files.walk() + sort listing that the index replaced
+		List<Path> expected = Files.walk(root).map(Path::toAbsolutePath).sorted().collect(Collectors.toList());
+		assertEquals(expected, paths());
+
+		EfsFileEntry rootEntry = entries.get(0);
+		assertEquals(root, rootEntry.getPath());
+		assertTrue(rootEntry.isDirectory());
+		EfsFileEntry bEntry = entries.get(entries.size() - 1);
+		assertEquals(root.resolve("b.txt"), bEntry.getPath());
+		assertEquals(10, bEntry.getSize());
+		assertFalse(bEntry.isDirectory());
+		assertEquals(Files.getLastModifiedTime(root.resolve("b.txt")), bEntry.getLastModifiedTime());
+		assertNotNull(bEntry.getCreationTime());
+
+		EfsIndexStatistics statistics = index.getStatistics();
+		assertEquals(6, statistics.getEntryCount());
+		assertEquals(1, statistics.getFullScanCount());
+		assertTrue(statistics.getLastFullScanMillis() >= 0);
+		assertFalse(statistics.isWatching());
+	}
+
+	@Test
+	public void testRescanPicksUpChangesWithoutWatching() throws Exception {
+		index = new EfsFileIndex(root, RESCAN_INTERVAL_MILLIS, false, new MetricsRegistry());
+		index.start();
+		assertEquals(6, index.getEntries().size());
+
+		Files.write(root.resolve("new.txt"), new byte[1]);
+		Files.delete(root.resolve("a/nested/c.txt"));
+		// Nothing changes until the next full scan
+		assertEquals(6, index.getEntries().size());
+
+		index.rescan();
+		List<Path> paths = paths();
+		assertEquals(6, paths.size());
+		assertTrue(paths.contains(root.resolve("new.txt")));
+		assertFalse(paths.contains(root.resolve("a/nested/c.txt")));
+		assertEquals(2, index.getStatistics().getFullScanCount());
+	}
+
+	@Test
+	public void testPrimedEntriesServedUntilFirstScan() throws Exception {
+		index = new EfsFileIndex(root, RESCAN_INTERVAL_MILLIS, false, new MetricsRegistry());
+		assertNull(index.peekEntries());
+		List<EfsFileEntry> saved = Collections.singletonList(
+				new EfsFileEntry(root.resolve("saved.txt"), null, null, 1, false));
+		index.prime(saved);
+		// Not started yet, so these would block forever without the primed entries
+		assertEquals(saved, index.getEntries());
+		assertEquals(saved, index.peekEntries());
+
+		index.start();
+		index.rescan();
+		assertEquals(6, index.getEntries().size());
+		assertEquals(6, index.peekEntries().size());
+		// Too late to prime once the index has been scanned
+		index.prime(saved);
+		assertEquals(6, index.getEntries().size());
+	}
+
+	@Test
+	public void testVersionAndSnapshotOnlyChangeWithContents() throws Exception {
+		index = new EfsFileIndex(root, RESCAN_INTERVAL_MILLIS, false, new MetricsRegistry());
+		index.start();
+		List<EfsFileEntry> first = index.getEntries();
+		long firstVersion = index.getVersion();
+
+		// A rescan that finds the same contents is not a change
+		index.rescan();
+		assertEquals(firstVersion, index.getVersion());
+		assertSame(first, index.getEntries());
+
+		Files.write(root.resolve("new.txt"), new byte[1]);
+		index.rescan();
+		assertNotEquals(firstVersion, index.getVersion());
+		List<EfsFileEntry> second = index.getEntries();
+		assertNotSame(first, second);
+		assertEquals(7, second.size());
+		assertSame(second, index.getEntries());
+	}
+
+	@Test
+	public void testWatchEventsUpdateIndexIncrementally() throws Exception {
+		index = new EfsFileIndex(root, RESCAN_INTERVAL_MILLIS, true, new MetricsRegistry());
+		index.start();
+		assertEquals(6, index.getEntries().size());
+		assertTrue(index.getStatistics().isWatching());
+
+		// A new directory that already has contents when the event is handled
+		Path newDir = Files.createDirectories(root.resolve("new-dir/deeper"));
+		Files.write(newDir.resolve("d.txt"), new byte[4]);
+		Files.write(root.resolve("b.txt"), new byte[20]);
+		waitUntil(() -> paths().contains(newDir.resolve("d.txt")));
+		waitUntil(() -> sizeOf(root.resolve("b.txt")) == 20);
+
+		// Deleting a directory removes everything under it, but not its siblings
+		Files.delete(root.resolve("a/nested/c.txt"));
+		Files.delete(root.resolve("a/nested"));
+		waitUntil(() -> !paths().contains(root.resolve("a/nested")));
+		List<Path> paths = paths();
+		assertFalse(paths.contains(root.resolve("a/nested/c.txt")));
+		assertTrue(paths.contains(root.resolve("a")));
+		assertTrue(paths.contains(root.resolve("a-sibling.txt")));
+
+		// Only the first full scan ran. Everything else came from change events.
+		assertEquals(1, index.getStatistics().getFullScanCount());
+		assertTrue(index.getStatistics().getWatchEventCount() > 0);
+		assertEquals(Files.walk(root).map(Path::toAbsolutePath).sorted().collect(Collectors.toList()), paths());
+	}
+
+	@Test
+	public void testHousekeepingPathsAreLeftOut() throws Exception {
+		Path shared = Files.createDirectories(root.resolve(".shared"));
+		Files.write(shared.resolve("inventory.snapshot"), new byte[5]);
+		index = new EfsFileIndex(root, RESCAN_INTERVAL_MILLIS, true, new ParallelDirectoryWalker(4, 0, 0),
+				new EfsHousekeepingPaths(Arrays.asList(shared)), new MetricsRegistry());
+		index.start();
+		assertEquals(6, index.getEntries().size());
+		assertFalse(paths().contains(shared));
+
+		// Writing the housekeeping files changes the shared directory, which the watch reports
+		long version = index.getVersion();
+		Files.write(shared.resolve("inventory.snapshot"), new byte[6]);
+		Files.write(shared.resolve("refresh.lease"), new byte[1]);
+		Thread.sleep(200);
+		index.applyPendingWatchEvents();
+		assertEquals(6, index.getEntries().size());
+		assertFalse(paths().contains(shared.resolve("refresh.lease")));
+		assertEquals(version, index.getVersion());
+
+		// Nor does a full scan pick them up
+		index.rescan();
+		assertEquals(version, index.getVersion());
+	}
+
+	@Test
+	public void testHeartbeatDoesNotChangeTheIndex() throws Exception {
+		Path fileToTouch = root.resolve(EfsHeartbeat.FILE_TO_TOUCH_NAME);
+		Files.write(fileToTouch, new byte[0]);
+		index = new EfsFileIndex(root, RESCAN_INTERVAL_MILLIS, true, new ParallelDirectoryWalker(4, 0, 0),
+				new EfsHousekeepingPaths(Arrays.asList(fileToTouch)), new MetricsRegistry());
+		index.start();
+		assertFalse(paths().contains(fileToTouch));
+
+		long version = index.getVersion();
+		EfsHeartbeat heartbeat = new EfsHeartbeat(root, TimeUnit.HOURS.toMillis(1));
+		heartbeat.touchMe();
+		Thread.sleep(200);
+		heartbeat.touchMe();
+		assertEquals(2, heartbeat.getStatus().getSuccessCount());
+		Thread.sleep(200);
+		index.applyPendingWatchEvents();
+		assertEquals(version, index.getVersion());
+		index.rescan();
+		assertEquals(version, index.getVersion());
+	}
+
+	@Test
+	public void testMissingRootGivesEmptyIndex() throws Exception {
+		index = new EfsFileIndex(root.resolve("does-not-exist"), RESCAN_INTERVAL_MILLIS, false, new MetricsRegistry());
+		index.start();
+
+		assertTrue(index.getEntries().isEmpty());
+		assertEquals(0, index.getStatistics().getFullScanCount());
+		assertEquals(1, index.getStatistics().getFullScanFailureCount());
+	}
+
+	private long sizeOf(Path path) throws Exception {
+		return index.getEntries().stream()
+				.filter(e -> e.getPath().equals(path))
+				.findFirst()
+				.map(EfsFileEntry::getSize)
+				.orElse(-1L);
+	}
+
+	private interface Condition {
+		boolean isMet() throws Exception;
+	}
+
+	// Change events are delivered asynchronously (and polled on some platforms), so allow some time
+	private void waitUntil(Condition condition) throws Exception {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+		while (!condition.isMet()) {
+			assertTrue("condition not met in time", System.nanoTime() < deadline);
+			Thread.sleep(50);
+			index.applyPendingWatchEvents();
+		}
+	}
+
+}
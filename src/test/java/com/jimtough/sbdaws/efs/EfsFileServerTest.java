@@ -0,0 +1,208 @@
+package com.jimtough.sbdaws.efs;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.jimtough.sbdaws.efs.EfsFileServer.ServedFile;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+/**
+ * JUnit test for the {@code EfsFileServer} class, using a temporary directory as the volume
+ *
+ * @author JTOUGH
+ */
+public class EfsFileServerTest {
+
+	private static final int MMAP_MAX_BYTES = 1024;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path root;
+	private byte[] smallContent;
+	private byte[] largeContent;
+
+	@Before
+	public void setUp() throws Exception {
+		root = temporaryFolder.newFolder("volume").toPath();
+		Random random = new Random(17);
+		smallContent = new byte[100];
+		random.nextBytes(smallContent);
+		largeContent = new byte[3 * 1024 * 1024];
+		random.nextBytes(largeContent);
+		Files.createDirectories(root.resolve("dir"));
+		Files.write(root.resolve("dir/small.bin"), smallContent);
+		Files.write(root.resolve("large.bin"), largeContent);
+	}
+
+	private EfsFileServer newServer(int maxConcurrentTransfers) {
+		return new EfsFileServer(root, maxConcurrentTransfers, 0, MMAP_MAX_BYTES, 4, new MetricsRegistry());
+	}
+
+	private static byte[] transfer(EfsFileServer server, ServedFile file, long position, long count) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		server.transfer(file, position, count, Channels.newChannel(out));
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testFind() throws Exception {
+		ServedFile file = newServer(0).find("dir/small.bin");
+		assertEquals(root.toRealPath().resolve("dir/small.bin"), file.getPath());
+		assertEquals(smallContent.length, file.getSize());
+		assertEquals(Files.getLastModifiedTime(root.resolve("dir/small.bin")).toMillis(), file.getLastModifiedMillis());
+	}
+
+	@Test
+	public void testPathsOutsideOfTheVolumeAreRejected() throws Exception {
+		Files.write(temporaryFolder.getRoot().toPath().resolve("secret.txt"), new byte[1]);
+		EfsFileServer server = newServer(0);
+		for (String path : Arrays.asList("../secret.txt", "dir/../../secret.txt", "/etc/passwd", "", ".", "dir/..")) {
+			try {
+				server.find(path);
+				fail("Expected an IllegalArgumentException for [" + path + "]");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSymbolicLinkOutOfTheVolumeIsRejected() throws Exception {
+		Path secret = temporaryFolder.getRoot().toPath().resolve("secret.txt");
+		Files.write(secret, new byte[1]);
+		Files.createSymbolicLink(root.resolve("link.txt"), secret);
+		newServer(0).find("link.txt");
+	}
+
+	@Test
+	public void testSymbolicLinkWithinTheVolumeIsFollowed() throws Exception {
+		Files.createSymbolicLink(root.resolve("link.bin"), root.resolve("dir/small.bin"));
+		assertEquals(smallContent.length, newServer(0).find("link.bin").getSize());
+	}
+
+	@Test(expected = NoSuchFileException.class)
+	public void testMissingFile() throws Exception {
+		newServer(0).find("dir/missing.bin");
+	}
+
+	@Test(expected = NoSuchFileException.class)
+	public void testDirectoryIsNotServed() throws Exception {
+		newServer(0).find("dir");
+	}
+
+	@Test
+	public void testTransferLargeFile() throws Exception {
+		EfsFileServer server = newServer(0);
+		ServedFile file = server.find("large.bin");
+		assertArrayEquals(largeContent, transfer(server, file, 0, largeContent.length));
+		assertArrayEquals(Arrays.copyOfRange(largeContent, 1000, 2_000_000), transfer(server, file, 1000, 2_000_000 - 1000));
+		assertEquals(0, server.getMappedTransferCount());
+	}
+
+	@Test
+	public void testSmallFileIsMappedOnce() throws Exception {
+		EfsFileServer server = newServer(0);
+		ServedFile file = server.find("dir/small.bin");
+		assertArrayEquals(smallContent, transfer(server, file, 0, smallContent.length));
+		assertArrayEquals(Arrays.copyOfRange(smallContent, 10, 20), transfer(server, file, 10, 10));
+		assertArrayEquals(smallContent, transfer(server, server.find("dir/small.bin"), 0, smallContent.length));
+		assertEquals(2, server.getMappedTransferCount());
+	}
+
+	@Test
+	public void testChangedSmallFileIsMappedAgain() throws Exception {
+		EfsFileServer server = newServer(0);
+		Path path = root.resolve("dir/small.bin");
+		transfer(server, server.find("dir/small.bin"), 0, smallContent.length);
+
+		byte[] newContent = Arrays.copyOf(smallContent, 50);
+		Files.write(path, newContent);
+		Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 5000));
+		ServedFile changed = server.find("dir/small.bin");
+		assertArrayEquals(newContent, transfer(server, changed, 0, changed.getSize()));
+		assertEquals(0, server.getMappedTransferCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testFileThatBecameShorterFailsTheTransfer() throws Exception {
+		EfsFileServer server = newServer(0);
+		ServedFile file = server.find("large.bin");
+		try (FileChannel channel = FileChannel.open(root.resolve("large.bin"), StandardOpenOption.WRITE)) {
+			channel.truncate(1000);
+		}
+		try {
+			// Starts before the new end of the file, but the range goes past it
+			transfer(server, file, 10, largeContent.length - 10);
+			fail("expected an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("file became shorter"));
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testTargetThatTakesNoBytesFailsTheTransfer() throws Exception {
+		// Like a non-blocking channel whose buffer stays full
+		WritableByteChannel stalled = new WritableByteChannel() {
+			@Override public int write(ByteBuffer src) { return 0; }
+			@Override public boolean isOpen() { return true; }
+			@Override public void close() { }
+		};
+		EfsFileServer server = newServer(0);
+		for (String path : Arrays.asList("large.bin", "dir/small.bin")) {
+			ServedFile file = server.find(path);
+			try {
+				server.transfer(file, 0, file.getSize(), stalled);
+				fail("expected an IOException for " + path);
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("target took no bytes"));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRangePastTheEndIsRejected() throws Exception {
+		EfsFileServer server = newServer(0);
+		transfer(server, server.find("dir/small.bin"), 50, smallContent.length);
+	}
+
+	@Test
+	public void testConcurrentTransfersAreLimited() throws Exception {
+		EfsFileServer server = newServer(2);
+		assertTrue(server.tryStartTransfer());
+		assertTrue(server.tryStartTransfer());
+		assertFalse(server.tryStartTransfer());
+		assertEquals(1, server.getRejectedTransferCount());
+
+		server.endTransfer();
+		assertTrue(server.tryStartTransfer());
+		assertEquals(1, server.getRejectedTransferCount());
+	}
+
+	@Test
+	public void testUnlimitedTransfers() throws Exception {
+		EfsFileServer server = newServer(0);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(server.tryStartTransfer());
+		}
+		assertEquals(0, server.getRejectedTransferCount());
+	}
+
+}
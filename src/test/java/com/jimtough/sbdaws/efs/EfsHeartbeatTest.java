@@ -0,0 +1,83 @@
+package com.jimtough.sbdaws.efs;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test for the {@code EfsHeartbeat} class, using a temporary directory as the volume
+ *
+ * @author JTOUGH
+ */
+public class EfsHeartbeatTest {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testNoHeartbeatYet() throws Exception {
+		EfsHeartbeat heartbeat = new EfsHeartbeat(temporaryFolder.getRoot().toPath(), TimeUnit.HOURS.toMillis(1));
+		EfsHeartbeatStatus status = heartbeat.getStatus();
+		assertEquals(0, status.getSuccessCount());
+		assertEquals(0, status.getLastSuccessEpochMillis());
+		assertEquals(-1, status.getLastLatencyMillis());
+	}
+
+	@Test
+	public void testTouchCreatesThenUpdatesFile() throws Exception {
+		Path root = temporaryFolder.getRoot().toPath();
+		Path fileToTouch = root.resolve(EfsHeartbeat.FILE_TO_TOUCH_NAME);
+		EfsHeartbeat heartbeat = new EfsHeartbeat(root, TimeUnit.HOURS.toMillis(1));
+
+		heartbeat.touchMe();
+		assertTrue(Files.exists(fileToTouch));
+		assertEquals(1, heartbeat.getStatus().getSuccessCount());
+
+		FileTime longAgo = FileTime.fromMillis(0);
+		Files.setLastModifiedTime(fileToTouch, longAgo);
+		heartbeat.touchMe();
+
+		EfsHeartbeatStatus status = heartbeat.getStatus();
+		assertEquals(2, status.getSuccessCount());
+		assertEquals(0, status.getFailureCount());
+		assertTrue(Files.getLastModifiedTime(fileToTouch).compareTo(longAgo) > 0);
+		assertTrue(status.getLastSuccessEpochMillis() > 0);
+		assertTrue(status.getLastLatencyMillis() >= 0);
+	}
+
+	@Test
+	public void testFailureIsRecorded() throws Exception {
+		Path missingVolume = temporaryFolder.getRoot().toPath().resolve("not-mounted");
+		EfsHeartbeat heartbeat = new EfsHeartbeat(missingVolume, TimeUnit.HOURS.toMillis(1));
+
+		heartbeat.touchMe();
+
+		EfsHeartbeatStatus status = heartbeat.getStatus();
+		assertEquals(0, status.getSuccessCount());
+		assertEquals(1, status.getFailureCount());
+		assertTrue(status.getLastFailureEpochMillis() > 0);
+		assertNotNull(status.getLastFailureMessage());
+	}
+
+	@Test
+	public void testScheduledHeartbeat() throws Exception {
+		EfsHeartbeat heartbeat = new EfsHeartbeat(temporaryFolder.getRoot().toPath(), 10);
+		heartbeat.start();
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (heartbeat.getStatus().getSuccessCount() < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(heartbeat.getStatus().getSuccessCount() >= 3);
+		} finally {
+			heartbeat.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.jimtough.sbdaws.efs;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit test for the {@code ParallelDirectoryWalker} class, using a temporary directory tree
+ *
+ * @author JTOUGH
+ */
+public class ParallelDirectoryWalkerTest {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path root;
+	private ParallelDirectoryWalker walker;
+
+	@Before public void setUp() throws Exception {
+		root = temporaryFolder.getRoot().toPath().toAbsolutePath();
+		// 3 levels of 3 directories, with a file in each directory
+		for (int a = 0; a < 3; a++) {
+			for (int b = 0; b < 3; b++) {
+				for (int c = 0; c < 3; c++) {
+					Path directory = Files.createDirectories(root.resolve("d" + a).resolve("d" + b).resolve("d" + c));
+					Files.write(directory.resolve("file.txt"), new byte[c]);
+				}
+				Files.write(root.resolve("d" + a).resolve("d" + b).resolve("file.txt"), new byte[b]);
+			}
+			Files.write(root.resolve("d" + a).resolve("file.txt"), new byte[a]);
+		}
+	}
+
+	@After public void tearDown() throws Exception {
+		if (walker != null) {
+			walker.shutdown();
+		}
+	}
+
+	/**
+	 * Adds a delay to every directory read, like an NFS round trip, and counts the reads in progress
+	 */
+	private static class SlowWalker extends ParallelDirectoryWalker {
+
+		private final long latencyMillis;
+		private final AtomicInteger readsInProgress = new AtomicInteger();
+		private final AtomicInteger maxReadsInProgress = new AtomicInteger();
+
+		SlowWalker(int parallelism, long timeoutMillis, long latencyMillis) {
+			super(parallelism, 0, timeoutMillis);
+			this.latencyMillis = latencyMillis;
+		}
+
+		@Override
+		DirectoryStream<Path> openDirectory(Path directory) throws IOException {
+			maxReadsInProgress.accumulateAndGet(readsInProgress.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} finally {
+				readsInProgress.decrementAndGet();
+			}
+			return super.openDirectory(directory);
+		}
+	}
+
+	private static List<Path> walkSorted(Path start, int maxDepth) throws IOException {
+		return Files.walk(start, maxDepth).map(Path::toAbsolutePath).sorted().collect(Collectors.toList());
+	}
+
+	@Test
+	public void testSameResultAsFilesWalk() throws Exception {
+		walker = new ParallelDirectoryWalker(4, 0, 0);
+		ConcurrentSkipListMap<Path, EfsFileEntry> target = new ConcurrentSkipListMap<>();
+		Set<Path> readDirectories = ConcurrentHashMap.newKeySet();
+		walker.walk(root, 0, target, readDirectories::add);
+		assertEquals(walkSorted(root, Integer.MAX_VALUE), new ArrayList<>(target.keySet()));
+		assertEquals(1 + 3 + 9 + 27, readDirectories.size());
+		assertEquals(2, target.get(root.resolve("d1/d2/file.txt")).getSize());
+		assertTrue(target.get(root.resolve("d1/d2")).isDirectory());
+	}
+
+	@Test
+	public void testMaxDepth() throws Exception {
+		walker = new ParallelDirectoryWalker(4, 2, 0);
+		ConcurrentSkipListMap<Path, EfsFileEntry> target = new ConcurrentSkipListMap<>();
+		Set<Path> readDirectories = ConcurrentHashMap.newKeySet();
+		walker.walk(root, 0, target, readDirectories::add);
+		assertEquals(walkSorted(root, 2), new ArrayList<>(target.keySet()));
+		// The directories at the max depth are listed, but not read
+		assertEquals(1 + 3, readDirectories.size());
+
+		// A walk that starts below the root counts the depth from the root
+		target.clear();
+		walker.walk(root.resolve("d0"), 1, target, path -> {});
+		assertEquals(walkSorted(root.resolve("d0"), 1), new ArrayList<>(target.keySet()));
+	}
+
+	@Test
+	public void testSiblingDirectoriesAreReadAtTheSameTime() throws Exception {
+		SlowWalker slowWalker = new SlowWalker(8, 0, 20);
+		walker = slowWalker;
+		ConcurrentSkipListMap<Path, EfsFileEntry> target = new ConcurrentSkipListMap<>();
+		walker.walk(root, 0, target, path -> {});
+		assertEquals(walkSorted(root, Integer.MAX_VALUE), new ArrayList<>(target.keySet()));
+		assertTrue(slowWalker.maxReadsInProgress.get() > 1);
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		walker = new SlowWalker(1, 100, 50);
+		try {
+			walker.walk(root, 0, new ConcurrentSkipListMap<>(), path -> {});
+			fail("expected an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Walk did not finish within 100 ms"));
+		}
+	}
+
+	@Test(expected = NoSuchFileException.class)
+	public void testMissingStartFails() throws Exception {
+		walker = new ParallelDirectoryWalker(4, 0, 0);
+		walker.walk(root.resolve("does-not-exist"), 0, new ConcurrentSkipListMap<>(), path -> {});
+	}
+
+	@Test
+	public void testFileAsStart() throws Exception {
+		walker = new ParallelDirectoryWalker(4, 0, 0);
+		ConcurrentSkipListMap<Path, EfsFileEntry> target = new ConcurrentSkipListMap<>();
+		walker.walk(root.resolve("d0/file.txt"), 2, target, path -> fail("not a directory"));
+		assertEquals(1, target.size());
+	}
+
+}
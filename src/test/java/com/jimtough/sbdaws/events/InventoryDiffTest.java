@@ -0,0 +1,135 @@
+package com.jimtough.sbdaws.events;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory.RegionalCluster;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JUnit test for the {@code InventoryDiff} class
+ *
+ * @author JTOUGH
+ */
+public class InventoryDiffTest {
+
+	private static final Path ROOT = Paths.get("/datafiles");
+
+	private static RegionalCluster cluster(Region region, String name, int runningTasks) {
+		return new RegionalCluster(region, Cluster.builder()
+				.clusterName(name)
+				.clusterArn("arn:aws:ecs:" + region.value() + ":123456789012:cluster/" + name)
+				.registeredContainerInstancesCount(2)
+				.activeServicesCount(1)
+				.runningTasksCount(runningTasks)
+				.build());
+	}
+
+	private static EcsClusterInventory inventory(List<RegionalCluster> clusters, String... failedRegions) {
+		Map<String, String> failures = new LinkedHashMap<>();
+		for (String failedRegion : failedRegions) {
+			failures.put(failedRegion, "unavailable");
+		}
+		return new EcsClusterInventory(Arrays.asList(Region.US_EAST_1, Region.US_WEST_2), clusters, failures);
+	}
+
+	private static EfsFileEntry entry(String relativePath, long size) {
+		return new EfsFileEntry(ROOT.resolve(relativePath), FileTime.fromMillis(1000L), FileTime.fromMillis(2000L + size),
+				size, false);
+	}
+
+	@Test
+	public void testEcsClusters() {
+		EcsClusterInventory before = inventory(Arrays.asList(
+				cluster(Region.US_EAST_1, "kept", 3),
+				cluster(Region.US_EAST_1, "changed", 3),
+				cluster(Region.US_EAST_1, "removed", 3)));
+		EcsClusterInventory after = inventory(Arrays.asList(
+				cluster(Region.US_EAST_1, "kept", 3),
+				cluster(Region.US_EAST_1, "changed", 4),
+				cluster(Region.US_WEST_2, "added", 0)));
+		List<InventoryChange> changes = new ArrayList<>();
+		InventoryDiff.diffEcsClusters(before, after, changes);
+		assertEquals(3, changes.size());
+		assertEquals(InventoryDiff.ECS_CLUSTER_CHANGED, changes.get(0).getType());
+		assertEquals("{\"region\":\"us-east-1\",\"name\":\"changed\","
+				+ "\"arn\":\"arn:aws:ecs:us-east-1:123456789012:cluster/changed\",\"status\":\"ACTIVE\","
+				+ "\"registeredContainerInstances\":2,\"runningTasks\":4,\"pendingTasks\":0,\"activeServices\":1}",
+				changes.get(0).getData());
+		assertEquals(InventoryDiff.ECS_CLUSTER_ADDED, changes.get(1).getType());
+		assertTrue(changes.get(1).getData().contains("\"name\":\"added\""));
+		assertEquals(InventoryDiff.ECS_CLUSTER_REMOVED, changes.get(2).getType());
+		assertTrue(changes.get(2).getData().contains("\"name\":\"removed\""));
+	}
+
+	@Test
+	public void testEcsClustersOfFailedRegionAreNotCompared() {
+		EcsClusterInventory before = inventory(Arrays.asList(
+				cluster(Region.US_EAST_1, "east", 3),
+				cluster(Region.US_WEST_2, "west", 3)));
+		EcsClusterInventory failed = inventory(Collections.singletonList(cluster(Region.US_EAST_1, "east", 3)),
+				Region.US_WEST_2.value());
+		List<InventoryChange> changes = new ArrayList<>();
+		InventoryDiff.diffEcsClusters(before, failed, changes);
+		InventoryDiff.diffEcsClusters(failed, before, changes);
+		assertEquals(Collections.emptyList(), changes);
+	}
+
+	@Test
+	public void testS3Buckets() {
+		List<Bucket> before = Arrays.asList(Bucket.builder().name("a").build(), Bucket.builder().name("b").build());
+		List<Bucket> after = Arrays.asList(Bucket.builder().name("b").build(), Bucket.builder().name("c").build());
+		List<InventoryChange> changes = new ArrayList<>();
+		InventoryDiff.diffS3Buckets(before, after, changes);
+		assertEquals(2, changes.size());
+		assertEquals(InventoryDiff.S3_BUCKET_ADDED, changes.get(0).getType());
+		assertEquals("{\"name\":\"c\"}", changes.get(0).getData());
+		assertEquals(InventoryDiff.S3_BUCKET_REMOVED, changes.get(1).getType());
+		assertEquals("{\"name\":\"a\"}", changes.get(1).getData());
+	}
+
+	@Test
+	public void testEfsEntries() {
+		List<EfsFileEntry> before = Arrays.asList(entry("a.txt", 1), entry("b.txt", 1), entry("d.txt", 1));
+		List<EfsFileEntry> after = Arrays.asList(entry("b.txt", 2), entry("c.txt", 1), entry("d.txt", 1),
+				entry("e.txt", 1));
+		List<InventoryChange> changes = new ArrayList<>();
+		InventoryDiff.diffEfsEntries(ROOT, before, after, changes);
+		assertEquals(4, changes.size());
+		assertEquals(InventoryDiff.EFS_FILE_DELETED, changes.get(0).getType());
+		assertTrue(changes.get(0).getData().startsWith("{\"path\":\"a.txt\""));
+		assertEquals(InventoryDiff.EFS_FILE_MODIFIED, changes.get(1).getType());
+		assertTrue(changes.get(1).getData().startsWith("{\"path\":\"b.txt\",\"directory\":false,\"size\":2,"));
+		assertEquals(InventoryDiff.EFS_FILE_CREATED, changes.get(2).getType());
+		assertTrue(changes.get(2).getData().startsWith("{\"path\":\"c.txt\""));
+		assertEquals(InventoryDiff.EFS_FILE_CREATED, changes.get(3).getType());
+		assertTrue(changes.get(3).getData().startsWith("{\"path\":\"e.txt\""));
+	}
+
+	@Test
+	public void testNothingReportedWithoutBothValues() {
+		List<Bucket> buckets = Collections.singletonList(Bucket.builder().name("a").build());
+		List<InventoryChange> changes = new ArrayList<>();
+		InventoryDiff.diffS3Buckets(null, buckets, changes);
+		InventoryDiff.diffS3Buckets(buckets, null, changes);
+		InventoryDiff.diffEfsEntries(ROOT, null, Collections.singletonList(entry("a.txt", 1)), changes);
+		assertEquals(Collections.emptyList(), changes);
+	}
+
+}
@@ -0,0 +1,253 @@
+package com.jimtough.sbdaws.events;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsClientRegistry;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.cache.InventoryCache;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JUnit test for the {@code InventoryEventPublisher} class. The test runs the polls itself.
+ *
+ * @author JTOUGH
+ */
+public class InventoryEventPublisherTest {
+
+	private static final int BUFFER_SIZE = 4;
+	private static final int MAX_SUBSCRIBERS = 3;
+	private static final int MAX_CHANGES_PER_POLL = 5;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path efsRoot;
+	private ConfigurationBean configurationBean;
+	private AwsEnvironmentInterrogator interrogator;
+	private InventoryCache inventoryCache;
+	private EfsFileIndex efsFileIndex;
+	private InventoryEventPublisher publisher;
+	private volatile List<Bucket> s3Buckets;
+	private final AtomicInteger cacheReadCount = new AtomicInteger();
+
+	/**
+	 * Records what is sent, and can be made to block like a client that has stopped reading
+	 */
+	private static class RecordingEmitter extends SseEmitter {
+
+		private final StringBuilder sent = new StringBuilder();
+		private final CountDownLatch unblocked;
+		private volatile boolean completed;
+
+		RecordingEmitter(boolean blocked) {
+			this.unblocked = new CountDownLatch(blocked ? 1 : 0);
+		}
+
+		@Override
+		public void send(Object object, MediaType mediaType) throws IOException {
+			try {
+				unblocked.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			synchronized (sent) {
+				sent.append(object);
+			}
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		String getSent() {
+			synchronized (sent) {
+				return sent.toString();
+			}
+		}
+	}
+
+	@Before public void setUp() throws Exception {
+		efsRoot = temporaryFolder.getRoot().toPath();
+		s3Buckets = buckets("bucket-a");
+		configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+			@Override public int getInventoryCacheMaxEntriesPerResource() { return 16; }
+			@Override public Path getEfsVolumeMountPath() { return efsRoot; }
+			@Override public long getEfsIndexRescanIntervalSeconds() { return 3600; }
+		};
+		interrogator = new AwsEnvironmentInterrogator(configurationBean, new AwsClientRegistry(configurationBean),
+				new MetricsRegistry());
+		inventoryCache = new InventoryCache(configurationBean, interrogator) {
+			@Override
+			public EcsClusterInventory getECSClusterInventory() throws AwsSdkException {
+				cacheReadCount.incrementAndGet();
+				throw new AwsSdkException("ECS is down", null);
+			}
+
+			@Override
+			public List<Bucket> getS3BucketList() throws AwsSdkException {
+				cacheReadCount.incrementAndGet();
+				return s3Buckets;
+			}
+		};
+		// Never started, so the index only has the entries that the test primes it with
+		efsFileIndex = new EfsFileIndex(configurationBean, new MetricsRegistry());
+		efsFileIndex.prime(Collections.emptyList());
+		publisher = new InventoryEventPublisher(inventoryCache, efsFileIndex, new MetricsRegistry(),
+				1000L, 1000L, BUFFER_SIZE, MAX_SUBSCRIBERS, MAX_CHANGES_PER_POLL, 2);
+	}
+
+	@After public void tearDown() throws Exception {
+		publisher.shutdown();
+		inventoryCache.shutdown();
+		efsFileIndex.shutdown();
+		interrogator.shutdown();
+	}
+
+	private static List<Bucket> buckets(String... names) {
+		List<Bucket> buckets = new ArrayList<>();
+		for (String name : names) {
+			buckets.add(Bucket.builder().name(name).build());
+		}
+		return buckets;
+	}
+
+	private void waitFor(String description, BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertTrue("timed out waiting for " + description, System.nanoTime() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testChangesAreSentToEverySubscriber() throws Exception {
+		RecordingEmitter first = new RecordingEmitter(false);
+		RecordingEmitter second = new RecordingEmitter(false);
+		assertTrue(publisher.subscribe(first, null));
+		assertTrue(publisher.subscribe(second, null));
+		publisher.poll();
+		assertEquals(0, publisher.getLastEventId());
+
+		s3Buckets = buckets("bucket-a", "bucket-b");
+		efsFileIndex.prime(Collections.singletonList(
+				new EfsFileEntry(efsRoot.resolve("a.txt"), FileTime.fromMillis(1000L), FileTime.fromMillis(2000L), 5, false)));
+		publisher.poll();
+		assertEquals(2, publisher.getLastEventId());
+
+		String expected = "id:1\nevent:s3-bucket-added\ndata:{\"name\":\"bucket-b\"}\n\n"
+				+ "id:2\nevent:efs-file-created\ndata:{\"path\":\"a.txt\",\"directory\":false,\"size\":5,"
+				+ "\"created\":\"1970-01-01T00:00:01Z\",\"lastModified\":\"1970-01-01T00:00:02Z\"}\n\n";
+		for (RecordingEmitter emitter : new RecordingEmitter[] { first, second }) {
+			waitFor("the events", () -> emitter.getSent().endsWith(expected));
+			// Sent when subscribing
+			assertTrue(emitter.getSent().startsWith("retry:1000\n:subscribed\n\n"));
+		}
+
+		// Nothing has changed, so nothing more is sent
+		publisher.poll();
+		assertEquals(2, publisher.getLastEventId());
+	}
+
+	@Test
+	public void testSlowSubscriberIsDroppedWithoutHoldingUpOthers() throws Exception {
+		RecordingEmitter slow = new RecordingEmitter(true);
+		RecordingEmitter fast = new RecordingEmitter(false);
+		assertTrue(publisher.subscribe(slow, null));
+		assertTrue(publisher.subscribe(fast, null));
+		publisher.poll();
+		for (int i = 0; i < BUFFER_SIZE + 2; i++) {
+			s3Buckets = buckets("bucket-a", "bucket-" + i);
+			publisher.poll();
+			// The fast client keeps up
+			String added = "event:s3-bucket-added\ndata:{\"name\":\"bucket-" + i + "\"}";
+			waitFor("the fast client", () -> fast.getSent().contains(added));
+		}
+		assertEquals(1, publisher.getDroppedSubscriberCount());
+		assertEquals(1, publisher.getSubscriberCount());
+
+		// The slow client's stream is ended once its sender is free
+		slow.unblocked.countDown();
+		waitFor("the slow stream to end", () -> slow.completed);
+		assertFalse(slow.getSent().contains("bucket-5"));
+	}
+
+	@Test
+	public void testTooManySubscribersAreRejected() throws Exception {
+		for (int i = 0; i < MAX_SUBSCRIBERS; i++) {
+			assertTrue(publisher.subscribe(new RecordingEmitter(false), null));
+		}
+		assertFalse(publisher.subscribe(new RecordingEmitter(false), null));
+		assertEquals(MAX_SUBSCRIBERS, publisher.getSubscriberCount());
+	}
+
+	@Test
+	public void testReconnectAfterMissedEventsGetsResync() throws Exception {
+		RecordingEmitter upToDate = new RecordingEmitter(false);
+		assertTrue(publisher.subscribe(upToDate, "0"));
+		publisher.poll();
+		s3Buckets = buckets("bucket-b");
+		publisher.poll();
+		waitFor("the events", () -> upToDate.getSent().contains("id:2\n"));
+		assertFalse(upToDate.getSent().contains("resync"));
+
+		RecordingEmitter missedEvents = new RecordingEmitter(false);
+		assertTrue(publisher.subscribe(missedEvents, "1"));
+		waitFor("the resync", () -> missedEvents.getSent().equals(
+				"id:2\nevent:resync\ndata:{\"reason\":\"missed-events\"}\n\n"));
+	}
+
+	@Test
+	public void testTooManyChangesAreSentAsResync() throws Exception {
+		RecordingEmitter emitter = new RecordingEmitter(false);
+		assertTrue(publisher.subscribe(emitter, null));
+		publisher.poll();
+		s3Buckets = buckets("bucket-a", "1", "2", "3", "4", "5", "6");
+		publisher.poll();
+		assertEquals(1, publisher.getLastEventId());
+		waitFor("the resync", () -> emitter.getSent().endsWith(
+				"id:1\nevent:resync\ndata:{\"reason\":\"too-many-changes\",\"changes\":6}\n\n"));
+	}
+
+	@Test
+	public void testNoPollingWithoutSubscribers() throws Exception {
+		publisher.poll();
+		publisher.heartbeat();
+		assertEquals(0, cacheReadCount.get());
+
+		RecordingEmitter emitter = new RecordingEmitter(false);
+		assertTrue(publisher.subscribe(emitter, null));
+		publisher.poll();
+		assertEquals(2, cacheReadCount.get());
+		publisher.heartbeat();
+		waitFor("the heartbeat", () -> emitter.getSent().endsWith(":heartbeat\n\n"));
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.jimtough.sbdaws.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code LatencyHistogram} class
+ *
+ * @author JTOUGH
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBucketBoundsAreContiguous() {
+		assertEquals(0, LatencyHistogram.bucketIndex(0));
+		assertEquals(0, LatencyHistogram.bucketUpperBound(0));
+		for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+			long lowerBound = LatencyHistogram.bucketUpperBound(i - 1) + 1;
+			long upperBound = LatencyHistogram.bucketUpperBound(i);
+			assertTrue(upperBound >= lowerBound);
+			assertEquals(i, LatencyHistogram.bucketIndex(lowerBound));
+			assertEquals(i, LatencyHistogram.bucketIndex(upperBound));
+			// The width of a bucket is never more than 1/8 of its lower bound
+			assertTrue(upperBound - lowerBound + 1 <= Math.max(1, lowerBound / LatencyHistogram.SUB_BUCKET_COUNT));
+		}
+		// Anything too large for the histogram goes in the last bucket
+		assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testQuantilesAreWithinBucketWidth() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.snapshot().getValueAtQuantile(0.99));
+		// 1 ms to 1000 ms
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1000, snapshot.getCount());
+		assertEquals(500_500_000L, snapshot.getSumMicros());
+		assertEquals(1_000_000L, snapshot.getMaxMicros());
+		assertWithin(500_000L, snapshot.getValueAtQuantile(0.5));
+		assertWithin(990_000L, snapshot.getValueAtQuantile(0.99));
+		assertEquals(1_000_000L, snapshot.getValueAtQuantile(1.0));
+	}
+
+	@Test
+	public void testNegativeDurationRecordedAsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1, snapshot.getCount());
+		assertEquals(0, snapshot.getValueAtQuantile(0.5));
+	}
+
+	@Test
+	public void testConcurrentRecordingLosesNothing() throws Exception {
+		final int threadCount = 8;
+		final int recordsPerThread = 100_000;
+		LatencyHistogram histogram = new LatencyHistogram();
+		CountDownLatch startSignal = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			final long micros = t + 1;
+			Thread thread = new Thread(() -> {
+				try {
+					startSignal.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < recordsPerThread; i++) {
+					histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		startSignal.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(threadCount * recordsPerThread, snapshot.getCount());
+		assertEquals((long) recordsPerThread * (threadCount * (threadCount + 1) / 2), snapshot.getSumMicros());
+		assertEquals(threadCount, snapshot.getMaxMicros());
+	}
+
+	private static void assertWithin(long expectedMicros, long actualMicros) {
+		assertTrue("expected about " + expectedMicros + " but got " + actualMicros,
+				actualMicros >= expectedMicros && actualMicros <= expectedMicros + expectedMicros / 8);
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.jimtough.sbdaws.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code MetricsRegistry} class
+ *
+ * @author JTOUGH
+ */
+public class MetricsRegistryTest {
+
+	@Test
+	public void testOperationIsCreatedOnce() {
+		MetricsRegistry registry = new MetricsRegistry();
+		OperationMetrics operation = registry.operation("aws.iam.getUser");
+		assertSame(operation, registry.operation("aws.iam.getUser"));
+		assertEquals("aws.iam.getUser", operation.getName());
+	}
+
+	@Test
+	public void testErrorCountsByExceptionType() {
+		OperationMetrics operation = new MetricsRegistry().operation("aws.s3.listBuckets");
+		operation.recordSuccess(TimeUnit.MILLISECONDS.toNanos(10));
+		operation.recordFailure(TimeUnit.MILLISECONDS.toNanos(20), IllegalStateException.class);
+		operation.recordFailure(TimeUnit.MILLISECONDS.toNanos(30), IllegalStateException.class);
+		operation.recordFailure(TimeUnit.MILLISECONDS.toNanos(40), IllegalArgumentException.class);
+
+		Map<String, Long> errorCounts = operation.getErrorCounts();
+		assertEquals(2, errorCounts.size());
+		assertEquals(Long.valueOf(2), errorCounts.get("IllegalStateException"));
+		assertEquals(Long.valueOf(1), errorCounts.get("IllegalArgumentException"));
+		// Failures are included in the latency
+		assertEquals(4, operation.getLatency().getCount());
+		assertEquals(40_000L, operation.getLatency().getMaxMicros());
+	}
+
+	@Test
+	public void testPrometheusTextFormat() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.operation("page.home").recordSuccess(TimeUnit.MILLISECONDS.toNanos(250));
+		registry.operation("aws.ecs.listClusters").recordFailure(TimeUnit.MILLISECONDS.toNanos(2), IllegalStateException.class);
+
+		StringWriter out = new StringWriter();
+		registry.writeTo(out);
+		String text = out.toString();
+
+		assertTrue(text.contains("# TYPE sbdaws_operation_duration_seconds summary\n"));
+		assertTrue(text.contains("sbdaws_operation_duration_seconds{operation=\"page.home\",quantile=\"0.5\"} 0.25\n"));
+		assertTrue(text.contains("sbdaws_operation_duration_seconds_count{operation=\"page.home\"} 1\n"));
+		assertTrue(text.contains("sbdaws_operation_duration_seconds_sum{operation=\"page.home\"} 0.25\n"));
+		assertTrue(text.contains("sbdaws_operation_duration_max_seconds{operation=\"aws.ecs.listClusters\"} 0.002\n"));
+		assertTrue(text.contains(
+				"sbdaws_operation_errors_total{operation=\"aws.ecs.listClusters\",exception=\"IllegalStateException\"} 1\n"));
+		assertFalse(text.contains("operation=\"page.home\",exception="));
+		// Operations are sorted by name
+		assertTrue(text.indexOf("aws.ecs.listClusters") < text.indexOf("page.home"));
+	}
+
+	@Test
+	public void testCallbackGaugesAndCounters() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		AtomicLong state = new AtomicLong(2);
+		Map<String, String> labels = new LinkedHashMap<>();
+		labels.put("service", "S3");
+		labels.put("reason", "circuit_open");
+		registry.gauge("aws_circuit_breaker_state", "State", Collections.singletonMap("service", "ECS"), state::get);
+		registry.gauge("aws_circuit_breaker_state", "State", Collections.singletonMap("service", "IAM"), () -> 0);
+		registry.counter("aws_short_circuited_calls_total", "Short-circuited", labels, () -> 7);
+		registry.counter("uptime_checks_total", "No labels", Collections.emptyMap(), () -> 1);
+
+		StringWriter out = new StringWriter();
+		registry.writeTo(out);
+		String text = out.toString();
+
+		assertTrue(text.contains("# TYPE sbdaws_aws_circuit_breaker_state gauge\n"));
+		assertTrue(text.contains("sbdaws_aws_circuit_breaker_state{service=\"ECS\"} 2\n"));
+		assertTrue(text.contains("# TYPE sbdaws_aws_short_circuited_calls_total counter\n"));
+		assertTrue(text.contains("sbdaws_aws_short_circuited_calls_total{service=\"S3\",reason=\"circuit_open\"} 7\n"));
+		assertTrue(text.contains("sbdaws_uptime_checks_total 1\n"));
+		// Samples are sorted by their labels
+		assertTrue(text.indexOf("service=\"ECS\"") < text.indexOf("service=\"IAM\""));
+
+		// The value is read each time
+		state.set(0);
+		assertEquals(Long.valueOf(0), registry.getCallbackValue("aws_circuit_breaker_state",
+				Collections.singletonMap("service", "ECS")));
+		assertNull(registry.getCallbackValue("aws_circuit_breaker_state", Collections.singletonMap("service", "S3")));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMetricCannotChangeType() {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.gauge("aws_calls_in_progress", "In progress", Collections.emptyMap(), () -> 0);
+		registry.counter("aws_calls_in_progress", "In progress", Collections.emptyMap(), () -> 0);
+	}
+
+}
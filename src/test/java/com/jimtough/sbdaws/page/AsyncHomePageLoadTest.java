@@ -0,0 +1,218 @@
+package com.jimtough.sbdaws.page;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.util.StreamUtils;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsClientRegistry;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.cache.InventoryCache;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.efs.EfsHeartbeat;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Load test for the async home page mode.
+ *
+ * Starts the real request handlers in an embedded Tomcat that has only a few worker threads.
+ * Every section fetch is slowed down to simulate slow AWS responses. Many more requests than
+ * there are Tomcat threads are sent at once, and all of them must be in progress at the same
+ * time (that is, none of them waits in a queue for a Tomcat thread).
+ *
+ * @author JTOUGH
+ */
+public class AsyncHomePageLoadTest {
+
+	private static final int TOMCAT_MAX_THREADS = 4;
+	private static final int CONCURRENT_REQUESTS = 100;
+	private static final long SECTION_DELAY_MILLIS = 1000L;
+
+	// Number of slow IAM fetches in progress. One per request.
+	private static final AtomicInteger iamFetchesInProgress = new AtomicInteger();
+	private static final AtomicInteger maxIamFetchesInProgress = new AtomicInteger();
+
+	// Completes the simulated AWS responses
+	private static final ScheduledExecutorService delayExecutor = Executors.newSingleThreadScheduledExecutor();
+
+	private ConfigurableApplicationContext context;
+	private ExecutorService clientExecutor;
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import({
+		ConfigurationBean.class,
+		MetricsRegistry.class,
+		PageSectionFetcher.class,
+		HomePageService.class,
+		HomePageRenderer.class,
+		HomePageBodyCache.class,
+		HomePageController.class,
+		AsyncHomePageController.class,
+		AsyncPageRenderingConfiguration.class
+	})
+	static class LoadTestConfiguration {
+
+		@Bean
+		AwsClientRegistry awsClientRegistry(ConfigurationBean configurationBean) {
+			return new AwsClientRegistry(configurationBean);
+		}
+
+		@Bean
+		AwsEnvironmentInterrogator awsEnvironmentInterrogator(ConfigurationBean configurationBean,
+				AwsClientRegistry clientRegistry, MetricsRegistry metricsRegistry) {
+			return new AwsEnvironmentInterrogator(configurationBean, clientRegistry, metricsRegistry);
+		}
+
+		// Simulates slow AWS responses (and a cache that never has the value). Each lookup is a load
+		// in flight that completes later, without holding a thread.
+		@Bean
+		InventoryCache inventoryCache(ConfigurationBean configurationBean, AwsEnvironmentInterrogator interrogator) {
+			return new InventoryCache(configurationBean, interrogator) {
+				@Override
+				public CompletableFuture<User> getIAMUserAsync() {
+					maxIamFetchesInProgress.accumulateAndGet(iamFetchesInProgress.incrementAndGet(), Math::max);
+					return later(User.builder().userName("load-test-user").build())
+							.whenComplete((user, error) -> iamFetchesInProgress.decrementAndGet());
+				}
+
+				@Override
+				public CompletableFuture<EcsClusterInventory> getECSClusterInventoryAsync() {
+					return later(new EcsClusterInventory(Collections.singletonList(Region.US_EAST_1),
+							Collections.emptyList(), Collections.emptyMap()));
+				}
+
+				@Override
+				public CompletableFuture<List<Bucket>> getS3BucketListAsync() {
+					return later(Collections.emptyList());
+				}
+			};
+		}
+
+		@Bean
+		EfsHeartbeat efsHeartbeat(ConfigurationBean configurationBean) {
+			return new EfsHeartbeat(configurationBean) {
+				@Override
+				public void start() {
+				}
+			};
+		}
+
+		@Bean
+		EfsFileIndex efsFileIndex(ConfigurationBean configurationBean, MetricsRegistry metricsRegistry) {
+			return new EfsFileIndex(configurationBean, metricsRegistry) {
+				@Override
+				public void start() {
+				}
+
+				@Override
+				public CompletableFuture<List<EfsFileEntry>> getEntriesAsync() {
+					return later(Collections.emptyList());
+				}
+			};
+		}
+
+		private static <T> CompletableFuture<T> later(T value) {
+			CompletableFuture<T> future = new CompletableFuture<>();
+			delayExecutor.schedule(() -> future.complete(value), SECTION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+			return future;
+		}
+	}
+
+	@Before public void setUp() throws Exception {
+		iamFetchesInProgress.set(0);
+		maxIamFetchesInProgress.set(0);
+		clientExecutor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+		context = new SpringApplicationBuilder(LoadTestConfiguration.class).run(
+				"--server.port=0",
+				"--server.tomcat.max-threads=" + TOMCAT_MAX_THREADS,
+				"--server.tomcat.min-spare-threads=" + TOMCAT_MAX_THREADS,
+				"--" + HomePageController.REQUEST_MODE_PROPERTY + "=async",
+				"--aws.target.region=us-east-1",
+				// The section thread pool keeps its default size, which is far smaller than the number of sections
+				"--my.name=load-test");
+	}
+
+	@After public void tearDown() throws Exception {
+		clientExecutor.shutdownNow();
+		if (context != null) {
+			context.close();
+		}
+	}
+
+	@Test
+	public void testConcurrencyFarAboveTomcatThreadCount() throws Exception {
+		assertTrue(context.getBeansOfType(HomePageController.class).isEmpty());
+		assertFalse(context.getBeansOfType(AsyncHomePageController.class).isEmpty());
+
+		int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+		URL homePageUrl = new URL("http://localhost:" + port + "/");
+		CountDownLatch startGate = new CountDownLatch(1);
+		List<Future<String>> responses = new ArrayList<>();
+		for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+			responses.add(clientExecutor.submit(() -> {
+				startGate.await();
+				HttpURLConnection connection = (HttpURLConnection) homePageUrl.openConnection();
+				try (InputStream is = connection.getInputStream()) {
+					assertEquals(200, connection.getResponseCode());
+					return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+				} finally {
+					connection.disconnect();
+				}
+			}));
+		}
+
+		long startNanos = System.nanoTime();
+		startGate.countDown();
+		for (Future<String> response : responses) {
+			String html = response.get(30, TimeUnit.SECONDS);
+			assertTrue(html.contains("load-test-user"));
+			assertTrue(html.contains("IAM: OK"));
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+		// Every request was in progress at the same time, even though there are only a few Tomcat threads
+		assertEquals(CONCURRENT_REQUESTS, maxIamFetchesInProgress.get());
+		// There are far more sections than section threads, but no section needed one
+		for (SectionStatistics statistics : context.getBean(PageSectionFetcher.class).getStatistics().values()) {
+			assertEquals(statistics.toString(), 0, statistics.getFailedCount());
+			assertEquals(statistics.toString(), 0, statistics.getTimedOutCount());
+		}
+		// In sync mode, the requests would be queued and this would take at least
+		// (CONCURRENT_REQUESTS / TOMCAT_MAX_THREADS) * SECTION_DELAY_MILLIS = 25 seconds
+		assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 3 * SECTION_DELAY_MILLIS);
+	}
+
+}
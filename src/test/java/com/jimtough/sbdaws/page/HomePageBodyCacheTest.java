@@ -0,0 +1,279 @@
+package com.jimtough.sbdaws.page;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsService;
+import com.jimtough.sbdaws.awssdk.AwsServiceStatus;
+import com.jimtough.sbdaws.awssdk.CircuitBreaker;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JUnit test for the {@code HomePageBodyCache} and {@code RenderedHomePage} classes
+ *
+ * @author JTOUGH
+ */
+public class HomePageBodyCacheTest {
+
+	private final User user = User.builder().userName("cache-test-user").createDate(new Date(0)).build();
+	private final EcsClusterInventory clusters = new EcsClusterInventory(
+			Collections.singletonList(Region.US_EAST_1), Collections.emptyList(), Collections.emptyMap());
+	private final List<Bucket> buckets = Collections.emptyList();
+	private final List<EfsFileEntry> efsEntries = Collections.singletonList(
+			new EfsFileEntry(Paths.get("/datafiles/a.txt"), FileTime.fromMillis(0), FileTime.fromMillis(0), 1, false));
+
+	private AtomicInteger renderCount;
+	private HomePageBodyCache cache;
+
+	@Before public void setUp() throws Exception {
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public String getMyName() { return "Jim"; }
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+		};
+		renderCount = new AtomicInteger();
+		HomePageRenderer renderer = new HomePageRenderer(configurationBean) {
+			@Override
+			void renderData(HomePageSections sections, Writer out) throws IOException {
+				renderCount.incrementAndGet();
+				super.renderData(sections, out);
+			}
+		};
+		cache = new HomePageBodyCache(renderer);
+	}
+
+	private HomePageSections sections(List<EfsFileEntry> efs) {
+		return sections(efs, null);
+	}
+
+	private HomePageSections sections(List<EfsFileEntry> efs, List<AwsServiceStatus> awsServiceStatuses) {
+		return sections(clusters, efs, awsServiceStatuses);
+	}
+
+	private HomePageSections sections(EcsClusterInventory ecs, List<EfsFileEntry> efs,
+			List<AwsServiceStatus> awsServiceStatuses) {
+		return new HomePageSections(
+				SectionResult.ok(PageSection.IAM, 1, user),
+				SectionResult.ok(PageSection.ECS, 1, ecs),
+				SectionResult.ok(PageSection.S3, 1, buckets),
+				SectionResult.ok(PageSection.EFS, 1, efs),
+				null,
+				null,
+				awsServiceStatuses);
+	}
+
+	private static List<AwsServiceStatus> ecsCircuit(CircuitBreaker.State state, long shortCircuitCount) {
+		return Collections.singletonList(new AwsServiceStatus(AwsService.ECS, state, 0, 0, shortCircuitCount, 0));
+	}
+
+	private static String html(RenderedHomePage page) throws IOException {
+		ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		page.writeTo(plain, false);
+		return new String(plain.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testUnchangedDataIsNotRenderedAgain() throws Exception {
+		RenderedHomePage first = cache.get(sections(efsEntries));
+		assertNotNull(first.getETag(true));
+		for (int i = 0; i < 100; i++) {
+			// New result objects, but the same values
+			assertSame(first, cache.get(sections(efsEntries)));
+		}
+		assertEquals(1, renderCount.get());
+		assertEquals(1, cache.getRenderCount());
+		assertEquals(100, cache.getReuseCount());
+	}
+
+	@Test
+	public void testChangedDataGetsNewETag() throws Exception {
+		RenderedHomePage first = cache.get(sections(efsEntries));
+		List<EfsFileEntry> changed = new ArrayList<>(efsEntries);
+		changed.add(new EfsFileEntry(Paths.get("/datafiles/b.txt"), FileTime.fromMillis(0), FileTime.fromMillis(0), 2, false));
+		RenderedHomePage second = cache.get(sections(changed));
+		assertEquals(2, renderCount.get());
+		assertNotEquals(first.getETag(true), second.getETag(true));
+		assertFalse(second.isNotModified(first.getETag(true), true));
+		assertTrue(second.isNotModified(second.getETag(true), true));
+	}
+
+	@Test
+	public void testEqualDataGetsSameETag() throws Exception {
+		RenderedHomePage first = cache.get(sections(efsEntries));
+		// Equal values in new instances, as after a restart or in another task, are rendered again
+		List<EfsFileEntry> copy = Collections.singletonList(
+				new EfsFileEntry(Paths.get("/datafiles/a.txt"), FileTime.fromMillis(0), FileTime.fromMillis(0), 1, false));
+		RenderedHomePage second = new HomePageBodyCache(new HomePageRenderer(new ConfigurationBean() {
+			@Override public String getMyName() { return "Jim"; }
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+		})).get(sections(copy));
+		assertNotSame(first, second);
+		assertEquals(first.getETag(true), second.getETag(true));
+		assertEquals(first.getETag(false), second.getETag(false));
+	}
+
+	@Test
+	public void testETagFollowsTheRenderedData() throws Exception {
+		// Equal inventories, as far as equals() goes, but the page shows the failure message
+		EcsClusterInventory timedOut = new EcsClusterInventory(Collections.singletonList(Region.US_EAST_1),
+				Collections.emptyList(), Collections.singletonMap("us-east-1", "timed out"));
+		EcsClusterInventory throttled = new EcsClusterInventory(Collections.singletonList(Region.US_EAST_1),
+				Collections.emptyList(), Collections.singletonMap("us-east-1", "throttled"));
+		assertEquals(timedOut, throttled);
+		RenderedHomePage first = cache.get(sections(timedOut, efsEntries, null));
+		RenderedHomePage second = cache.get(sections(throttled, efsEntries, null));
+		assertTrue(html(second).contains("throttled"));
+		assertNotEquals(first.getETag(true), second.getETag(true));
+
+		// The footer is not part of the ETag, so different section timings do not change it
+		HomePageSections slower = new HomePageSections(
+				SectionResult.ok(PageSection.IAM, 900, user),
+				SectionResult.ok(PageSection.ECS, 900, throttled),
+				SectionResult.ok(PageSection.S3, 900, buckets),
+				SectionResult.ok(PageSection.EFS, 900, efsEntries),
+				null,
+				null,
+				null);
+		RenderedHomePage third = new HomePageBodyCache(new HomePageRenderer(new ConfigurationBean() {
+			@Override public String getMyName() { return "Jim"; }
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+		})).get(slower);
+		assertNotEquals(html(second), html(third));
+		assertEquals(second.getETag(true), third.getETag(true));
+	}
+
+	@Test
+	public void testEachCodingHasItsOwnETag() throws Exception {
+		RenderedHomePage page = cache.get(sections(efsEntries));
+		String gzipETag = page.getETag(true);
+		String plainETag = page.getETag(false);
+		assertTrue(plainETag.matches("\"[0-9a-f]+\""));
+		assertEquals(plainETag.substring(0, plainETag.length() - 1) + "-gz\"", gzipETag);
+		assertTrue(page.isNotModified(gzipETag, true));
+		assertTrue(page.isNotModified(plainETag, false));
+		// A client that switches codings must not get a 304 for the body that it does not have
+		assertFalse(page.isNotModified(plainETag, true));
+		assertFalse(page.isNotModified(gzipETag, false));
+	}
+
+	@Test
+	public void testCircuitBreakerStateChangeIsRenderedAgain() throws Exception {
+		RenderedHomePage closed = cache.get(sections(efsEntries, ecsCircuit(CircuitBreaker.State.CLOSED, 0)));
+		RenderedHomePage open = cache.get(sections(efsEntries, ecsCircuit(CircuitBreaker.State.OPEN, 1)));
+		assertNotEquals(closed.getETag(true), open.getETag(true));
+		assertTrue(html(open).contains("ECS OPEN"));
+		// Only the state matters. The short-circuit count alone does not make the page stale.
+		assertSame(open, cache.get(sections(efsEntries, ecsCircuit(CircuitBreaker.State.OPEN, 50))));
+		assertEquals(2, renderCount.get());
+	}
+
+	@Test
+	public void testFailedSectionIsNotCached() throws Exception {
+		HomePageSections degraded = new HomePageSections(
+				SectionResult.ok(PageSection.IAM, 1, user),
+				SectionResult.timedOut(PageSection.ECS, 5000),
+				SectionResult.ok(PageSection.S3, 1, buckets),
+				SectionResult.ok(PageSection.EFS, 1, efsEntries),
+				null,
+				null,
+				null);
+		RenderedHomePage first = cache.get(degraded);
+		assertNotSame(first, cache.get(degraded));
+		assertEquals(2, cache.getRenderCount());
+		assertNull(first.getETag(true));
+		assertNull(first.getETag(false));
+		assertFalse(first.isNotModified("*", true));
+	}
+
+	@Test
+	public void testFailedSectionIsStreamed() throws Exception {
+		HomePageSections degraded = new HomePageSections(
+				SectionResult.ok(PageSection.IAM, 1, user),
+				SectionResult.failed(PageSection.ECS, 5, new IllegalStateException()),
+				SectionResult.ok(PageSection.S3, 1, buckets),
+				SectionResult.ok(PageSection.EFS, 1, efsEntries),
+				null,
+				null,
+				null);
+		RenderedHomePage page = cache.get(degraded);
+		assertTrue(page.isStreamed());
+		assertEquals(-1, page.getGzippedLength());
+		// Nothing is rendered until the page is written to the response
+		assertEquals(0, renderCount.get());
+
+		AtomicInteger closeCount = new AtomicInteger();
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream() {
+			@Override
+			public void close() {
+				closeCount.incrementAndGet();
+			}
+		};
+		page.writeTo(gzipped, true);
+		assertEquals(1, renderCount.get());
+		assertEquals(0, closeCount.get());
+		String unzipped = StreamUtils.copyToString(
+				new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray())), StandardCharsets.UTF_8);
+		String plain = html(page);
+		assertEquals(plain, unzipped);
+		assertTrue(plain.contains("SDK request for ECS cluster details failed!"));
+		assertTrue(plain.endsWith("</body></html>"));
+	}
+
+	@Test
+	public void testGzippedAndPlainBodiesMatch() throws Exception {
+		RenderedHomePage page = cache.get(sections(efsEntries));
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		page.writeTo(gzipped, true);
+		assertEquals(page.getGzippedLength(), gzipped.size());
+		String unzipped = StreamUtils.copyToString(
+				new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray())), StandardCharsets.UTF_8);
+		String plain = html(page);
+		assertEquals(plain, unzipped);
+		assertTrue(plain.contains("cache-test-user"));
+		assertTrue(plain.endsWith("</body></html>"));
+	}
+
+	@Test
+	public void testIfNoneMatchParsing() throws Exception {
+		RenderedHomePage page = new RenderedHomePage("abc1", new byte[0]);
+		assertTrue(page.isNotModified("\"abc1\"", false));
+		assertTrue(page.isNotModified("\"x\", W/\"abc1\"", false));
+		assertTrue(page.isNotModified("\"x\", W/\"abc1-gz\"", true));
+		assertTrue(page.isNotModified("*", false));
+		assertFalse(page.isNotModified("\"abc2\"", false));
+		assertFalse(page.isNotModified("abc1", false));
+		assertFalse(page.isNotModified(null, false));
+	}
+
+	@Test
+	public void testAcceptsGzip() throws Exception {
+		assertTrue(RenderedHomePage.acceptsGzip("gzip, deflate, br"));
+		assertTrue(RenderedHomePage.acceptsGzip("deflate;q=1.0, GZIP;q=0.5"));
+		assertFalse(RenderedHomePage.acceptsGzip("gzip;q=0"));
+		assertFalse(RenderedHomePage.acceptsGzip("identity"));
+		assertFalse(RenderedHomePage.acceptsGzip(null));
+	}
+
+}
@@ -0,0 +1,263 @@
+package com.jimtough.sbdaws.page;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.api.EfsFilesController;
+import com.jimtough.sbdaws.awssdk.AwsClientRegistry;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.cache.InventoryCache;
+import com.jimtough.sbdaws.efs.EfsFileIndex;
+import com.jimtough.sbdaws.efs.EfsHeartbeat;
+import com.jimtough.sbdaws.metrics.MetricsController;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * Starts the real request handlers in an embedded Tomcat, and checks that the home page and the
+ * EFS files API answer a matching If-None-Match with a 304, and that the page is only rendered
+ * once while the data stays the same, even though the EFS heartbeat ticks. Also checks that every
+ * request shows up on the metrics page, and that every response has a Server-Timing header.
+ *
+ * @author JTOUGH
+ */
+public class HomePageConditionalGetTest {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private ConfigurableApplicationContext context;
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import({
+		ConfigurationBean.class,
+		MetricsRegistry.class,
+		MetricsController.class,
+		PageSectionFetcher.class,
+		HomePageService.class,
+		HomePageRenderer.class,
+		HomePageBodyCache.class,
+		HomePageController.class,
+		AsyncHomePageController.class,
+		AsyncPageRenderingConfiguration.class,
+		EfsHeartbeat.class,
+		EfsFileIndex.class,
+		EfsFilesController.class
+	})
+	static class ConditionalGetTestConfiguration {
+
+		@Bean
+		AwsClientRegistry awsClientRegistry(ConfigurationBean configurationBean) {
+			return new AwsClientRegistry(configurationBean);
+		}
+
+		@Bean
+		AwsEnvironmentInterrogator awsEnvironmentInterrogator(ConfigurationBean configurationBean,
+				AwsClientRegistry clientRegistry, MetricsRegistry metricsRegistry) {
+			return new AwsEnvironmentInterrogator(configurationBean, clientRegistry, metricsRegistry);
+		}
+
+		// Always returns the same instances, like the real cache does while the AWS data is unchanged
+		@Bean
+		InventoryCache inventoryCache(ConfigurationBean configurationBean, AwsEnvironmentInterrogator interrogator) {
+			User user = User.builder().userName("etag-test-user").build();
+			EcsClusterInventory clusters = new EcsClusterInventory(Collections.singletonList(Region.US_EAST_1),
+					Collections.emptyList(), Collections.emptyMap());
+			List<Bucket> buckets = Collections.emptyList();
+			return new InventoryCache(configurationBean, interrogator) {
+				@Override public User getIAMUser() { return user; }
+				@Override public EcsClusterInventory getECSClusterInventory() { return clusters; }
+				@Override public List<Bucket> getS3BucketList() { return buckets; }
+				@Override public CompletableFuture<User> getIAMUserAsync() {
+					return CompletableFuture.completedFuture(user);
+				}
+				@Override public CompletableFuture<EcsClusterInventory> getECSClusterInventoryAsync() {
+					return CompletableFuture.completedFuture(clusters);
+				}
+				@Override public CompletableFuture<List<Bucket>> getS3BucketListAsync() {
+					return CompletableFuture.completedFuture(buckets);
+				}
+			};
+		}
+	}
+
+	@After public void tearDown() throws Exception {
+		if (context != null) {
+			context.close();
+		}
+	}
+
+	private String start(String requestMode, String... extraArgs) throws Exception {
+		Files.write(temporaryFolder.getRoot().toPath().resolve("a.txt"), new byte[3]);
+		List<String> args = new ArrayList<>(Arrays.asList(
+				"--server.port=0",
+				"--" + HomePageController.REQUEST_MODE_PROPERTY + "=" + requestMode,
+				"--aws.target.region=us-east-1",
+				"--my.name=etag-test",
+				"--efs.volume.mountPath=" + temporaryFolder.getRoot().getAbsolutePath(),
+				"--efs.index.watchEnabled=false",
+				"--efs.heartbeat.intervalSeconds=1",
+				// Rescans that find nothing new must not change the ETag
+				"--efs.index.rescanIntervalSeconds=1"));
+		args.addAll(Arrays.asList(extraArgs));
+		context = new SpringApplicationBuilder(ConditionalGetTestConfiguration.class).run(args.toArray(new String[0]));
+		int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+		return "http://localhost:" + port;
+	}
+
+	private static HttpURLConnection get(String url, String ifNoneMatch) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		if (ifNoneMatch != null) {
+			connection.setRequestProperty("If-None-Match", ifNoneMatch);
+		}
+		return connection;
+	}
+
+	private static void waitForHeartbeat(EfsHeartbeat heartbeat, long successCount) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (heartbeat.getStatus().getSuccessCount() <= successCount && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertTrue(heartbeat.getStatus().getSuccessCount() > successCount);
+	}
+
+	private void checkHomePage(String baseUrl) throws Exception {
+		// The first touch creates the heartbeat file, so let it happen before the page is rendered
+		EfsHeartbeat heartbeat = context.getBean(EfsHeartbeat.class);
+		waitForHeartbeat(heartbeat, 0);
+
+		HttpURLConnection first = get(baseUrl + "/", null);
+		assertEquals(200, first.getResponseCode());
+		assertEquals("gzip", first.getHeaderField("Content-Encoding"));
+		assertEquals("Accept-Encoding", first.getHeaderField("Vary"));
+		String eTag = first.getHeaderField("ETag");
+		assertNotNull(eTag);
+		String serverTiming = first.getHeaderField("Server-Timing");
+		assertTrue(serverTiming, serverTiming.matches("iam;dur=[0-9.]+, ecs;dur=[0-9.]+, s3;dur=[0-9.]+, efs;dur=[0-9.]+, "
+				+ "render;dur=[0-9.]+, total;dur=[0-9.]+, efs-scan;dur=[0-9.]+;desc=\"last full scan\", "
+				+ "efs-heartbeat;dur=[0-9.]+;desc=\"last heartbeat\""));
+		try (InputStream is = new GZIPInputStream(first.getInputStream())) {
+			String html = StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+			assertTrue(html.contains("etag-test-user"));
+			assertTrue(html.contains("a.txt"));
+		}
+
+		// The heartbeat ticks while the inventory stays the same, so the client still has the current page
+		waitForHeartbeat(heartbeat, heartbeat.getStatus().getSuccessCount());
+		for (int i = 0; i < 10; i++) {
+			HttpURLConnection again = get(baseUrl + "/", eTag);
+			assertEquals(304, again.getResponseCode());
+			assertEquals(eTag, again.getHeaderField("ETag"));
+			assertEquals("Accept-Encoding", again.getHeaderField("Vary"));
+			assertNotNull(again.getHeaderField("Server-Timing"));
+		}
+
+		HttpURLConnection stale = get(baseUrl + "/", "\"some-other-version\"");
+		assertEquals(200, stale.getResponseCode());
+		StreamUtils.drain(stale.getInputStream());
+
+		HomePageBodyCache bodyCache = context.getBean(HomePageBodyCache.class);
+		assertEquals(1, bodyCache.getRenderCount());
+		assertEquals(11, bodyCache.getReuseCount());
+
+		HttpURLConnection metrics = get(baseUrl + "/metrics", null);
+		assertEquals(200, metrics.getResponseCode());
+		assertTrue(metrics.getContentType().startsWith("text/plain"));
+		String text = StreamUtils.copyToString(metrics.getInputStream(), StandardCharsets.UTF_8);
+		assertTrue(text.contains("sbdaws_operation_duration_seconds_count{operation=\"page.home\"} 12\n"));
+		assertTrue(text.contains("sbdaws_operation_duration_seconds_count{operation=\"page.section.iam\"} 12\n"));
+		assertTrue(text.contains("sbdaws_operation_duration_seconds_count{operation=\"efs.index.fullScan\"}"));
+
+		HttpURLConnection traced = get(baseUrl + "/?trace", null);
+		assertEquals(200, traced.getResponseCode());
+		assertTrue(traced.getContentType().startsWith("application/json"));
+		assertEquals("no-store", traced.getHeaderField("Cache-Control"));
+		assertNotNull(traced.getHeaderField("Server-Timing"));
+		JsonNode trace = new ObjectMapper().readTree(traced.getInputStream());
+		List<String> phases = new ArrayList<>();
+		for (JsonNode phase : trace.get("phases")) {
+			phases.add(phase.get("name").asText());
+		}
+		assertEquals(Arrays.asList("iam", "ecs", "s3", "efs", "render", "total", "efs-scan", "efs-heartbeat"), phases);
+		// The cached page was reused, and the inventory cache is replaced by one that makes no calls
+		assertEquals(1, trace.get("values").get("pageReused").asInt());
+		assertTrue(trace.get("values").get("gzippedBytes").asInt() > 0);
+		assertEquals(0, trace.get("sdkCalls").size());
+		assertTrue(trace.get("durationMillis").asDouble() > 0);
+		assertEquals(1, bodyCache.getRenderCount());
+	}
+
+	@Test
+	public void testSyncHomePage() throws Exception {
+		checkHomePage(start("sync", "--page.trace.enabled=true"));
+	}
+
+	@Test
+	public void testAsyncHomePage() throws Exception {
+		checkHomePage(start("async", "--page.trace.enabled=true"));
+	}
+
+	@Test
+	public void testTraceIsDisabledByDefault() throws Exception {
+		String baseUrl = start("sync");
+		assertEquals(404, get(baseUrl + "/?trace", null).getResponseCode());
+		assertEquals(200, get(baseUrl + "/", null).getResponseCode());
+	}
+
+	@Test
+	public void testEfsFilesApi() throws Exception {
+		String url = start("sync") + "/api/efs/files";
+		HttpURLConnection first = get(url, null);
+		assertEquals(200, first.getResponseCode());
+		String eTag = first.getHeaderField("ETag");
+		assertNotNull(eTag);
+		StreamUtils.drain(first.getInputStream());
+
+		assertEquals(304, get(url, eTag).getResponseCode());
+
+		Files.write(temporaryFolder.getRoot().toPath().resolve("b.txt"), new byte[1]);
+		// The next rescan picks up the new file
+		long deadline = System.currentTimeMillis() + 5000;
+		HttpURLConnection changed = get(url, eTag);
+		while (changed.getResponseCode() == 304 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+			changed = get(url, eTag);
+		}
+		assertEquals(200, changed.getResponseCode());
+		assertNotEquals(eTag, changed.getHeaderField("ETag"));
+	}
+
+}
@@ -0,0 +1,200 @@
+package com.jimtough.sbdaws.page;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsService;
+import com.jimtough.sbdaws.awssdk.AwsServiceStatus;
+import com.jimtough.sbdaws.awssdk.CircuitBreaker;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory.RegionalCluster;
+import com.jimtough.sbdaws.efs.EfsFileEntry;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JUnit test for the {@code HomePageRenderer} class. The allocations of the renderer are
+ * measured by {@code HomePageRenderBenchmark} instead.
+ *
+ * @author JTOUGH
+ */
+public class HomePageRendererTest {
+
+	private static final int LARGE_EFS_FILE_COUNT = 20000;
+
+	private HomePageRenderer renderer;
+
+	@Before public void setUp() throws Exception {
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public String getMyName() { return "Jim <Tough>"; }
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+		};
+		renderer = new HomePageRenderer(configurationBean);
+	}
+
+	@Test
+	public void testTemplateWritesEscapedValues() throws Exception {
+		HtmlTemplate template = new HtmlTemplate("<li>%s | %d | %b</li>");
+		assertEquals(3, template.getPlaceholderCount());
+		StringWriter out = new StringWriter();
+		template.write(out, "<script>alert('x') & \"y\"</script>", 42, true);
+		assertEquals("<li>&lt;script&gt;alert(&#39;x&#39;) &amp; &quot;y&quot;&lt;/script&gt; | 42 | true</li>",
+				out.toString());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testTemplateRejectsUnsupportedPlaceholder() throws Exception {
+		new HtmlTemplate("<li>%5.2f</li>");
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testTemplateRejectsWrongNumberOfValues() throws Exception {
+		new HtmlTemplate("<li>%s %s</li>").write(new StringWriter(), "only one");
+	}
+
+	@Test
+	public void testRenderAllSectionsOk() throws Exception {
+		User user = User.builder().userName("jim&co").createDate(new Date(0)).build();
+		Cluster cluster = Cluster.builder()
+				.clusterName("my-cluster")
+				.registeredContainerInstancesCount(1)
+				.activeServicesCount(2)
+				.runningTasksCount(3)
+				.build();
+		// One of the two regions could not be listed
+		EcsClusterInventory clusters = new EcsClusterInventory(
+				Arrays.asList(Region.US_EAST_1, Region.EU_WEST_1),
+				Collections.singletonList(new RegionalCluster(Region.US_EAST_1, cluster)),
+				Collections.singletonMap("eu-west-1", "Throttled"));
+		Bucket bucket = Bucket.builder().name("my-bucket").creationDate(new Date(0)).build();
+		HomePageSections sections = new HomePageSections(
+				SectionResult.ok(PageSection.IAM, 1, user),
+				SectionResult.ok(PageSection.ECS, 2, clusters),
+				SectionResult.ok(PageSection.S3, 3, Collections.singletonList(bucket)),
+				SectionResult.ok(PageSection.EFS, 4, efsFileEntries(2)),
+				null,
+				null,
+				Arrays.asList(
+						new AwsServiceStatus(AwsService.IAM, CircuitBreaker.State.CLOSED, 0, 0, 0, 0),
+						new AwsServiceStatus(AwsService.ECS, CircuitBreaker.State.OPEN, 60, 0, 2, 1)));
+
+		StringWriter out = new StringWriter();
+		renderer.render(sections, out);
+		String html = out.toString();
+
+		assertTrue(html.startsWith("<html><body>"));
+		assertTrue(html.endsWith("</body></html>"));
+		assertTrue(html.contains("that Jim &lt;Tough&gt; created"));
+		assertTrue(html.contains("[<b>us-east-1</b>]"));
+		assertTrue(html.contains("My IAM User: [<b>jim&amp;co</b>]"));
+		assertTrue(html.contains("My ECS clusters (1 in total, in 2 regions)"));
+		assertTrue(html.contains("<li><b>region:</b> us-east-1 | <b>name:</b> my-cluster"
+				+ " | <b>containers:</b> 1 | <b>services:</b> 2 | <b>tasks:</b> 3</li>"));
+		assertTrue(html.contains("SDK request for ECS clusters in region [eu-west-1] failed:</b> Throttled"));
+		assertTrue(html.contains("My S3 buckets (1 in total)"));
+		assertTrue(html.contains("<li><b>name:</b> my-bucket | <b>creation date:</b> "));
+		assertTrue(html.contains("Files in my EFS volume (2 in total)"));
+		assertTrue(html.contains("<b>file path:</b> [/datafiles/file-1.txt]"));
+		assertTrue(html.contains("IAM: OK (1 ms) | ECS: OK (2 ms) | S3: OK (3 ms) | EFS: OK (4 ms)"));
+		assertTrue(html.contains("AWS circuit breakers: IAM CLOSED (0% failed, 0 short-circuited)"
+				+ " | ECS OPEN (60% failed, 3 short-circuited)</small>"));
+	}
+
+	@Test
+	public void testRenderFailedAndTimedOutSections() throws Exception {
+		HomePageSections sections = new HomePageSections(
+				SectionResult.failed(PageSection.IAM, 1, new IllegalStateException()),
+				SectionResult.timedOut(PageSection.ECS, 5000),
+				SectionResult.failed(PageSection.S3, 3, new IllegalStateException()),
+				SectionResult.timedOut(PageSection.EFS, 5000),
+				null,
+				null,
+				null);
+
+		StringWriter out = new StringWriter();
+		renderer.render(sections, out);
+		String html = out.toString();
+
+		assertTrue(html.contains("SDK request for IAM user details failed!"));
+		assertTrue(html.contains("SDK request for ECS cluster details timed out!"));
+		assertTrue(html.contains("SDK request for S3 buckets list failed!"));
+		assertTrue(html.contains("Listing the files in my EFS volume timed out!"));
+		assertTrue(html.contains("ECS: TIMED_OUT (5000 ms)"));
+	}
+
+	@Test
+	public void testLargeListingIsWrittenInChunks() throws Exception {
+		HomePageSections sections = new HomePageSections(
+				SectionResult.timedOut(PageSection.IAM, 0),
+				SectionResult.timedOut(PageSection.ECS, 0),
+				SectionResult.timedOut(PageSection.S3, 0),
+				SectionResult.ok(PageSection.EFS, 0, efsFileEntries(LARGE_EFS_FILE_COUNT)),
+				null,
+				null,
+				null);
+		ChunkRecordingOutputStream out = new ChunkRecordingOutputStream();
+		renderer.render(sections, out);
+
+		// The page goes out as it is rendered, in buffer-sized chunks, not as one large write at the end
+		assertTrue(out.writeCount > 1);
+		assertTrue("largest write: " + out.largestWrite, out.largestWrite <= HomePageRenderer.WRITE_BUFFER_SIZE);
+
+		StringWriter expected = new StringWriter();
+		renderer.render(sections, expected);
+		String html = new String(out.bytes.toByteArray(), StandardCharsets.UTF_8);
+		assertEquals(expected.toString(), html);
+		assertTrue(html.contains("Files in my EFS volume (" + LARGE_EFS_FILE_COUNT + " in total)"));
+		assertTrue(html.contains("[/datafiles/file-" + (LARGE_EFS_FILE_COUNT - 1) + ".txt]"));
+	}
+
+	/**
+	 * Keeps what is written, and records the size of each write
+	 */
+	private static class ChunkRecordingOutputStream extends OutputStream {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int writeCount;
+		int largestWrite;
+
+		@Override
+		public void write(int b) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			bytes.write(b, off, len);
+			writeCount++;
+			largestWrite = Math.max(largestWrite, len);
+		}
+	}
+
+	private static List<EfsFileEntry> efsFileEntries(int count) {
+		List<EfsFileEntry> entries = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Path path = Paths.get("/datafiles", "file-" + i + ".txt");
+			FileTime time = FileTime.fromMillis(1515283200000L + i);
+			entries.add(new EfsFileEntry(path, time, time, i, false));
+		}
+		return entries;
+	}
+
+}
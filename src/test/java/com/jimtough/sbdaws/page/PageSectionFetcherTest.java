@@ -0,0 +1,157 @@
+package com.jimtough.sbdaws.page;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.page.PageSectionFetcher.PendingSection;
+
+/**
+ * JUnit test for the {@code PageSectionFetcher} class
+ *
+ * @author JTOUGH
+ */
+public class PageSectionFetcherTest {
+
+	private static final int SECTION_THREADS = 4;
+	private static final long TIMEOUT_MILLIS = 500;
+
+	private PageSectionFetcher fetcher;
+	// Released at the end of each test, so that no fetch is left sleeping
+	private CountDownLatch release;
+
+	@Before public void setUp() throws Exception {
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public int getPageSectionThreads() { return SECTION_THREADS; }
+			@Override public int getPageSectionQueueCapacity() { return 1; }
+			@Override public long getPageSectionIamTimeoutMillis() { return TIMEOUT_MILLIS; }
+			@Override public long getPageSectionEcsTimeoutMillis() { return TIMEOUT_MILLIS; }
+			@Override public long getPageSectionS3TimeoutMillis() { return TIMEOUT_MILLIS; }
+			@Override public long getPageSectionEfsTimeoutMillis() { return TIMEOUT_MILLIS * 2; }
+		};
+		fetcher = new PageSectionFetcher(configurationBean, new MetricsRegistry());
+		release = new CountDownLatch(1);
+	}
+
+	@After public void tearDown() throws Exception {
+		release.countDown();
+		fetcher.shutdown();
+	}
+
+	private String waitForRelease() throws InterruptedException {
+		release.await();
+		return "released";
+	}
+
+	@Test
+	public void testSectionsAreFetchedAtTheSameTime() throws Exception {
+		// Each fetch waits until all of them have started, so they can only finish if they run in parallel
+		CountDownLatch allStarted = new CountDownLatch(SECTION_THREADS);
+		List<PendingSection<String>> pending = new ArrayList<>();
+		for (PageSection section : PageSection.values()) {
+			pending.add(fetcher.start(section, () -> {
+				allStarted.countDown();
+				assertTrue(allStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+				return section.name();
+			}));
+		}
+		for (int i = 0; i < pending.size(); i++) {
+			SectionResult<String> result = fetcher.await(pending.get(i));
+			assertTrue(result.toString(), result.isOk());
+			assertEquals(PageSection.values()[i], result.getSection());
+			assertEquals(PageSection.values()[i].name(), result.getValue());
+		}
+		for (SectionStatistics statistics : fetcher.getStatistics().values()) {
+			assertEquals(1, statistics.getOkCount());
+		}
+	}
+
+	@Test
+	public void testDeadlineGivesTimedOutResult() throws Exception {
+		long startNanos = System.nanoTime();
+		SectionResult<String> result = fetcher.await(fetcher.start(PageSection.IAM, this::waitForRelease));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		assertEquals(SectionResult.Status.TIMED_OUT, result.getStatus());
+		assertNull(result.getValue());
+		assertNull(result.getError());
+		assertTrue("took " + elapsedMillis + " ms", elapsedMillis >= TIMEOUT_MILLIS && elapsedMillis < TIMEOUT_MILLIS * 4);
+		assertTrue(result.getDurationMillis() >= TIMEOUT_MILLIS);
+
+		SectionStatistics statistics = fetcher.getStatistics().get(PageSection.IAM);
+		assertEquals(1, statistics.getTimedOutCount());
+		assertSame(result, statistics.getLastResult());
+	}
+
+	@Test
+	public void testAsyncDeadlineGivesTimedOutResult() throws Exception {
+		CompletableFuture<String> neverCompleted = new CompletableFuture<>();
+		CompletableFuture<SectionResult<String>> result =
+				fetcher.awaitAsync(fetcher.start(PageSection.S3, neverCompleted));
+		assertFalse(result.isDone());
+		assertEquals(SectionResult.Status.TIMED_OUT, result.get(TIMEOUT_MILLIS * 4, TimeUnit.MILLISECONDS).getStatus());
+
+		// Completing the fetch after the deadline does not change the outcome, and is not counted again
+		neverCompleted.complete("late");
+		assertEquals(SectionResult.Status.TIMED_OUT, result.get().getStatus());
+		SectionStatistics statistics = fetcher.getStatistics().get(PageSection.S3);
+		assertEquals(1, statistics.getTimedOutCount());
+		assertEquals(0, statistics.getOkCount());
+	}
+
+	@Test
+	public void testFailedFetchGivesFailedResult() throws Exception {
+		IllegalStateException failure = new IllegalStateException("AWS is down");
+		SectionResult<String> result = fetcher.await(fetcher.start(PageSection.ECS, () -> { throw failure; }));
+		assertEquals(SectionResult.Status.FAILED, result.getStatus());
+		assertSame(failure, result.getError());
+		assertNull(result.getValue());
+
+		CompletableFuture<String> failed = new CompletableFuture<>();
+		failed.completeExceptionally(failure);
+		SectionResult<String> asyncResult = fetcher.awaitAsync(fetcher.start(PageSection.ECS, failed)).get();
+		assertEquals(SectionResult.Status.FAILED, asyncResult.getStatus());
+		assertSame(failure, asyncResult.getError());
+
+		assertEquals(2, fetcher.getStatistics().get(PageSection.ECS).getFailedCount());
+	}
+
+	@Test
+	public void testFutureFetchNeedsNoSectionThread() throws Exception {
+		// Fill every section thread and the queue
+		List<PendingSection<String>> blocked = new ArrayList<>();
+		for (int i = 0; i < SECTION_THREADS + 1; i++) {
+			blocked.add(fetcher.start(PageSection.EFS, this::waitForRelease));
+		}
+		// The pool rejects the next task straight away
+		SectionResult<String> rejected = fetcher.await(fetcher.start(PageSection.IAM, () -> "not run"));
+		assertEquals(SectionResult.Status.FAILED, rejected.getStatus());
+
+		// A fetch that is a future does not need a thread at all
+		CompletableFuture<String> lookup = new CompletableFuture<>();
+		CompletableFuture<SectionResult<String>> result = fetcher.awaitAsync(fetcher.start(PageSection.IAM, lookup));
+		lookup.complete("value");
+		assertTrue(result.isDone());
+		assertEquals("value", result.get().getValue());
+
+		release.countDown();
+		for (PendingSection<String> pending : blocked) {
+			assertEquals("released", fetcher.await(pending).getValue());
+		}
+	}
+
+	@Test
+	public void testMaxTimeout() throws Exception {
+		assertEquals(TIMEOUT_MILLIS * 2, fetcher.getMaxTimeoutMillis());
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.jimtough.sbdaws.page;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code SectionResult} class
+ *
+ * @author JTOUGH
+ */
+public class SectionResultTest {
+
+	@Test
+	public void testOk() throws Exception {
+		SectionResult<String> result = SectionResult.ok(PageSection.IAM, 12, "value");
+		assertEquals(PageSection.IAM, result.getSection());
+		assertEquals(SectionResult.Status.OK, result.getStatus());
+		assertTrue(result.isOk());
+		assertEquals(12, result.getDurationMillis());
+		assertEquals("value", result.getValue());
+		assertNull(result.getError());
+		assertEquals("IAM: OK (12 ms)", result.toString());
+	}
+
+	@Test
+	public void testFailed() throws Exception {
+		IllegalStateException failure = new IllegalStateException("AWS is down");
+		SectionResult<String> result = SectionResult.failed(PageSection.ECS, 3, failure);
+		assertEquals(SectionResult.Status.FAILED, result.getStatus());
+		assertFalse(result.isOk());
+		assertNull(result.getValue());
+		assertSame(failure, result.getError());
+		assertEquals("ECS: FAILED (3 ms)", result.toString());
+	}
+
+	@Test
+	public void testTimedOut() throws Exception {
+		SectionResult<String> result = SectionResult.timedOut(PageSection.S3, 3000);
+		assertEquals(SectionResult.Status.TIMED_OUT, result.getStatus());
+		assertFalse(result.isOk());
+		assertNull(result.getValue());
+		assertNull(result.getError());
+		assertEquals(3000, result.getDurationMillis());
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.jimtough.sbdaws.page;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * JUnit test for the {@code SectionStatistics} class
+ *
+ * @author JTOUGH
+ */
+public class SectionStatisticsTest {
+
+	@Test
+	public void testCounters() throws Exception {
+		SectionStatistics statistics = new SectionStatistics(PageSection.EFS);
+		assertEquals(PageSection.EFS, statistics.getSection());
+		assertNull(statistics.getLastResult());
+
+		statistics.record(SectionResult.ok(PageSection.EFS, 10, "value"));
+		statistics.record(SectionResult.ok(PageSection.EFS, 20, "value"));
+		statistics.record(SectionResult.failed(PageSection.EFS, 5, new IllegalStateException()));
+		SectionResult<String> timedOut = SectionResult.timedOut(PageSection.EFS, 5000);
+		statistics.record(timedOut);
+
+		assertEquals(2, statistics.getOkCount());
+		assertEquals(1, statistics.getFailedCount());
+		assertEquals(1, statistics.getTimedOutCount());
+		assertEquals(10 + 20 + 5 + 5000, statistics.getTotalDurationMillis());
+		assertSame(timedOut, statistics.getLastResult());
+		assertEquals("section: [EFS] | ok: 2 | failed: 1 | timed out: 1 | total ms: 5035", statistics.toString());
+	}
+
+	@Test
+	public void testConcurrentRecordsAreAllCounted() throws Exception {
+		SectionStatistics statistics = new SectionStatistics(PageSection.IAM);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> tasks = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				tasks.add(pool.submit(() -> {
+					for (int j = 0; j < 1000; j++) {
+						statistics.record(SectionResult.ok(PageSection.IAM, 1, "value"));
+					}
+				}));
+			}
+			for (Future<?> task : tasks) {
+				task.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(8000, statistics.getOkCount());
+		assertEquals(8000, statistics.getTotalDurationMillis());
+	}
+
+}
@@ -0,0 +1,617 @@
+package com.jimtough.sbdaws.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the AWS services that this application calls. It answers these operations
+ * with generated data, in the wire format that the AWS SDK expects:
+ * <ul>
+ * <li>IAM GetUser (query protocol, XML response)</li>
+ * <li>ECS ListClusters and DescribeClusters (JSON 1.1 protocol), with paging</li>
+ * <li>S3 ListBuckets, GetBucketLocation and ListObjectsV2 (REST protocol, XML response), with paging</li>
+ * </ul>
+ *
+ * All of the services share one endpoint. Point the SDK clients at {@link #getEndpoint()} with the
+ * {@code aws.sdk.endpointOverride} property. Request signatures are not checked, but the SDK still
+ * needs some credentials to sign with.
+ *
+ * The latency, error rate, throttling and size of the data set can be changed while the server is
+ * running. A throttled request gets the throttling error of its service (IAM Throttling, ECS
+ * ThrottlingException, S3 SlowDown), which the SDK retries and reports as a throttling exception.
+ * Run {@link #main(String[])} to start one on its own.
+ *
+ * @author JTOUGH
+ */
+public class AwsStandInServer implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AwsStandInServer.class);
+
+	public static final String IAM_USER_NAME = "standin-user";
+	public static final String ACCOUNT_ID = "123456789012";
+
+	// Operation names, as used by getRequestCount()
+	public static final String IAM_GET_USER = "GetUser";
+	public static final String ECS_LIST_CLUSTERS = "ListClusters";
+	public static final String ECS_DESCRIBE_CLUSTERS = "DescribeClusters";
+	public static final String S3_LIST_BUCKETS = "ListBuckets";
+	public static final String S3_GET_BUCKET_LOCATION = "GetBucketLocation";
+	public static final String S3_LIST_OBJECTS_V2 = "ListObjectsV2";
+
+	private static final String ECS_TARGET_PREFIX = "AmazonEC2ContainerServiceV20141113.";
+	private static final String ECS_CONTENT_TYPE = "application/x-amz-json-1.1";
+	private static final String XML_CONTENT_TYPE = "text/xml";
+	private static final int ECS_MAX_LIST_RESULTS = 100;
+	private static final int S3_MAX_KEYS = 1000;
+	private static final String BUCKET_NAME_PREFIX = "standin-bucket-";
+	private static final String S3_XML_NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+	private static final Instant CREATION_DATE = Instant.parse("2018-01-07T00:00:00Z");
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ConcurrentMap<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+	private final LongAdder errorCount = new LongAdder();
+	private final LongAdder throttleCount = new LongAdder();
+	private final AtomicInteger requestsInProgress = new AtomicInteger();
+	private final AtomicInteger maxRequestsInProgress = new AtomicInteger();
+
+	private volatile long latencyMillis;
+	private volatile double errorRate;
+	private volatile double throttleRate;
+	private volatile int throttleAboveRequestsInProgress;
+	private volatile int clusterCount;
+	private volatile int bucketCount;
+	private volatile int objectsPerBucket;
+
+	/**
+	 * Starts the server on a free port of the loopback address
+	 *
+	 * @param clusterCount Number of ECS clusters in the data set
+	 * @param bucketCount Number of S3 buckets in the data set
+	 * @throws IOException Thrown if the server cannot be started
+	 */
+	public AwsStandInServer(int clusterCount, int bucketCount) throws IOException {
+		this(0, clusterCount, bucketCount);
+	}
+
+	/**
+	 * @param port Port to listen on, or 0 for any free port
+	 * @param clusterCount Number of ECS clusters in the data set
+	 * @param bucketCount Number of S3 buckets in the data set
+	 * @throws IOException Thrown if the server cannot be started
+	 */
+	public AwsStandInServer(int port, int clusterCount, int bucketCount) throws IOException {
+		setClusterCount(clusterCount);
+		setBucketCount(bucketCount);
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		// Requests sleep to simulate latency, so every request gets its own thread
+		this.executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("aws-standin-"));
+		this.server.setExecutor(executor);
+		this.server.createContext("/", this::handle);
+		this.server.start();
+		LOGGER.info("AWS stand-in server started | endpoint: [{}]", getEndpoint());
+	}
+
+	/**
+	 * @return Endpoint to use as the AWS SDK endpoint override
+	 */
+	public URI getEndpoint() {
+		return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+	}
+
+	/**
+	 * @param latencyMillis Delay added to every response
+	 */
+	public void setLatencyMillis(long latencyMillis) {
+		if (latencyMillis < 0) {
+			throw new IllegalArgumentException("latencyMillis cannot be negative");
+		}
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @param errorRate Fraction of requests (between 0 and 1) that get a 500 error instead of data
+	 */
+	public void setErrorRate(double errorRate) {
+		if (errorRate < 0 || errorRate > 1) {
+			throw new IllegalArgumentException("errorRate must be between 0 and 1");
+		}
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * @param throttleRate Fraction of requests (between 0 and 1) that get a throttling error instead of data
+	 */
+	public void setThrottleRate(double throttleRate) {
+		if (throttleRate < 0 || throttleRate > 1) {
+			throw new IllegalArgumentException("throttleRate must be between 0 and 1");
+		}
+		this.throttleRate = throttleRate;
+	}
+
+	/**
+	 * Throttles like a service with a fixed capacity
+	 *
+	 * @param maxRequestsInProgress A request that arrives while this many are already in progress gets a
+	 *        throttling error. Zero for no limit.
+	 */
+	public void setThrottleAboveRequestsInProgress(int maxRequestsInProgress) {
+		if (maxRequestsInProgress < 0) {
+			throw new IllegalArgumentException("maxRequestsInProgress cannot be negative");
+		}
+		this.throttleAboveRequestsInProgress = maxRequestsInProgress;
+	}
+
+	public void setClusterCount(int clusterCount) {
+		if (clusterCount < 0) {
+			throw new IllegalArgumentException("clusterCount cannot be negative");
+		}
+		this.clusterCount = clusterCount;
+	}
+
+	public void setBucketCount(int bucketCount) {
+		if (bucketCount < 0) {
+			throw new IllegalArgumentException("bucketCount cannot be negative");
+		}
+		this.bucketCount = bucketCount;
+	}
+
+	/**
+	 * @param objectsPerBucket Number of objects in each S3 bucket. Object N is named "object-N",
+	 *        with N zero-padded to 8 digits, and its size is {@link #objectSize(int)}.
+	 */
+	public void setObjectsPerBucket(int objectsPerBucket) {
+		if (objectsPerBucket < 0) {
+			throw new IllegalArgumentException("objectsPerBucket cannot be negative");
+		}
+		this.objectsPerBucket = objectsPerBucket;
+	}
+
+	/**
+	 * @param index Index of an object in its bucket
+	 * @return Size of the object, which is between 1 and 1000 bytes
+	 */
+	public static int objectSize(int index) {
+		return index % 1000 + 1;
+	}
+
+	/**
+	 * @param index Index of an object in its bucket
+	 * @return Key of the object
+	 */
+	public static String objectKey(int index) {
+		return String.format("object-%08d", index);
+	}
+
+	/**
+	 * @param operation Operation name, such as {@link #ECS_DESCRIBE_CLUSTERS}
+	 * @return Number of requests received for the operation, including those that got an error
+	 */
+	public long getRequestCount(String operation) {
+		LongAdder count = requestCounts.get(operation);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * @return Number of requests received for each operation, sorted by operation name
+	 */
+	public Map<String, Long> getRequestCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		requestCounts.forEach((operation, count) -> counts.put(operation, count.sum()));
+		return counts;
+	}
+
+	/**
+	 * @return Largest number of requests that were in progress at the same time
+	 */
+	public int getMaxRequestsInProgress() {
+		return maxRequestsInProgress.get();
+	}
+
+	/**
+	 * @return Number of requests that got an injected error
+	 */
+	public long getErrorCount() {
+		return errorCount.sum();
+	}
+
+	/**
+	 * @return Number of requests that got a throttling error
+	 */
+	public long getThrottleCount() {
+		return throttleCount.sum();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+		LOGGER.info("AWS stand-in server stopped | requests: {}", getRequestCounts());
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		int inProgress = requestsInProgress.incrementAndGet();
+		maxRequestsInProgress.accumulateAndGet(inProgress, Math::max);
+		try {
+			// The request body must be fully consumed, otherwise the connection cannot be kept alive
+			byte[] requestBody = readFully(exchange.getRequestBody());
+			String ecsTarget = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+			if (ecsTarget != null && ecsTarget.startsWith(ECS_TARGET_PREFIX)) {
+				handleEcs(exchange, ecsTarget.substring(ECS_TARGET_PREFIX.length()), requestBody);
+			} else if ("POST".equals(exchange.getRequestMethod())
+					&& new String(requestBody, StandardCharsets.UTF_8).contains("Action=" + IAM_GET_USER)) {
+				handleIamGetUser(exchange);
+			} else if ("GET".equals(exchange.getRequestMethod()) && "/".equals(exchange.getRequestURI().getPath())) {
+				handleS3ListBuckets(exchange);
+			} else if ("GET".equals(exchange.getRequestMethod())) {
+				handleS3Bucket(exchange);
+			} else {
+				LOGGER.warn("Unsupported request | method: [{}] | URI: [{}]", exchange.getRequestMethod(), exchange.getRequestURI());
+				send(exchange, 400, XML_CONTENT_TYPE, "<Error><Code>InvalidAction</Code>"
+						+ "<Message>Not supported by the stand-in server</Message></Error>");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Stand-in request failed", e);
+			send(exchange, 500, XML_CONTENT_TYPE, "<Error><Code>InternalError</Code></Error>");
+		} finally {
+			requestsInProgress.decrementAndGet();
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Response that a request gets instead of data
+	 */
+	private enum Fault {
+		NONE,
+		ERROR,
+		THROTTLE;
+	}
+
+	/**
+	 * Counts the request, decides whether it is throttled (at once, as AWS does), otherwise waits
+	 * out the latency and decides whether it gets an error
+	 *
+	 * @return The fault that the request should get
+	 */
+	private Fault begin(String operation) throws InterruptedException {
+		requestCounts.computeIfAbsent(operation, k -> new LongAdder()).increment();
+		int capacity = throttleAboveRequestsInProgress;
+		double rate = throttleRate;
+		if ((capacity > 0 && requestsInProgress.get() > capacity)
+				|| (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate)) {
+			throttleCount.increment();
+			return Fault.THROTTLE;
+		}
+		long delay = latencyMillis;
+		if (delay > 0) {
+			TimeUnit.MILLISECONDS.sleep(delay);
+		}
+		rate = errorRate;
+		if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+			errorCount.increment();
+			return Fault.ERROR;
+		}
+		return Fault.NONE;
+	}
+
+	private void handleIamGetUser(HttpExchange exchange) throws IOException, InterruptedException {
+		Fault fault = begin(IAM_GET_USER);
+		if (fault == Fault.THROTTLE) {
+			send(exchange, 400, XML_CONTENT_TYPE,
+					"<ErrorResponse xmlns=\"https://iam.amazonaws.com/doc/2010-05-08/\">"
+					+ "<Error><Type>Sender</Type><Code>Throttling</Code><Message>Rate exceeded</Message></Error>"
+					+ "<RequestId>" + requestId() + "</RequestId>"
+					+ "</ErrorResponse>");
+			return;
+		}
+		if (fault == Fault.ERROR) {
+			send(exchange, 500, XML_CONTENT_TYPE,
+					"<ErrorResponse xmlns=\"https://iam.amazonaws.com/doc/2010-05-08/\">"
+					+ "<Error><Type>Receiver</Type><Code>ServiceFailure</Code><Message>Injected error</Message></Error>"
+					+ "<RequestId>" + requestId() + "</RequestId>"
+					+ "</ErrorResponse>");
+			return;
+		}
+		send(exchange, 200, XML_CONTENT_TYPE,
+				"<GetUserResponse xmlns=\"https://iam.amazonaws.com/doc/2010-05-08/\">"
+				+ "<GetUserResult><User>"
+				+ "<Path>/</Path>"
+				+ "<UserName>" + IAM_USER_NAME + "</UserName>"
+				+ "<UserId>AIDASTANDINUSER00000</UserId>"
+				+ "<Arn>arn:aws:iam::" + ACCOUNT_ID + ":user/" + IAM_USER_NAME + "</Arn>"
+				+ "<CreateDate>" + CREATION_DATE + "</CreateDate>"
+				+ "</User></GetUserResult>"
+				+ "<ResponseMetadata><RequestId>" + requestId() + "</RequestId></ResponseMetadata>"
+				+ "</GetUserResponse>");
+	}
+
+	private void handleEcs(HttpExchange exchange, String operation, byte[] requestBody)
+			throws IOException, InterruptedException {
+		if (!ECS_LIST_CLUSTERS.equals(operation) && !ECS_DESCRIBE_CLUSTERS.equals(operation)) {
+			send(exchange, 400, ECS_CONTENT_TYPE,
+					"{\"__type\":\"InvalidParameterException\",\"message\":\"Not supported by the stand-in server\"}");
+			return;
+		}
+		Fault fault = begin(operation);
+		if (fault == Fault.THROTTLE) {
+			send(exchange, 400, ECS_CONTENT_TYPE, "{\"__type\":\"ThrottlingException\",\"message\":\"Rate exceeded\"}");
+			return;
+		}
+		if (fault == Fault.ERROR) {
+			send(exchange, 500, ECS_CONTENT_TYPE, "{\"__type\":\"ServerException\",\"message\":\"Injected error\"}");
+			return;
+		}
+		JsonNode request = requestBody.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(requestBody);
+		ObjectNode response = objectMapper.createObjectNode();
+		if (ECS_LIST_CLUSTERS.equals(operation)) {
+			int start = request.hasNonNull("nextToken") ? Integer.parseInt(request.get("nextToken").asText()) : 0;
+			int maxResults = request.hasNonNull("maxResults")
+					? Math.min(ECS_MAX_LIST_RESULTS, request.get("maxResults").asInt())
+					: ECS_MAX_LIST_RESULTS;
+			int total = clusterCount;
+			int end = Math.min(total, start + maxResults);
+			ArrayNode arns = response.putArray("clusterArns");
+			for (int i = start; i < end; i++) {
+				arns.add(clusterArn(i));
+			}
+			if (end < total) {
+				response.put("nextToken", Integer.toString(end));
+			}
+		} else {
+			ArrayNode clusters = response.putArray("clusters");
+			ArrayNode failures = response.putArray("failures");
+			for (JsonNode arnNode : request.path("clusters")) {
+				String arn = arnNode.asText();
+				int index = clusterIndex(arn);
+				if (index < 0 || index >= clusterCount) {
+					failures.addObject().put("arn", arn).put("reason", "MISSING");
+					continue;
+				}
+				clusters.addObject()
+						.put("clusterArn", arn)
+						.put("clusterName", "standin-cluster-" + index)
+						.put("status", "ACTIVE")
+						.put("registeredContainerInstancesCount", index % 10)
+						.put("runningTasksCount", index % 20)
+						.put("pendingTasksCount", 0)
+						.put("activeServicesCount", index % 5);
+			}
+		}
+		send(exchange, 200, ECS_CONTENT_TYPE, objectMapper.writeValueAsString(response));
+	}
+
+	private void handleS3ListBuckets(HttpExchange exchange) throws IOException, InterruptedException {
+		if (sendS3Fault(exchange, begin(S3_LIST_BUCKETS))) {
+			return;
+		}
+		int total = bucketCount;
+		StringBuilder body = new StringBuilder(200 + total * 120);
+		body.append("<ListAllMyBucketsResult xmlns=\"").append(S3_XML_NAMESPACE).append("\">")
+				.append("<Owner><ID>standin-owner</ID><DisplayName>standin</DisplayName></Owner>")
+				.append("<Buckets>");
+		for (int i = 0; i < total; i++) {
+			body.append("<Bucket><Name>").append(BUCKET_NAME_PREFIX).append(i).append("</Name>")
+					.append("<CreationDate>").append(CREATION_DATE.plusSeconds(i)).append("</CreationDate></Bucket>");
+		}
+		body.append("</Buckets></ListAllMyBucketsResult>");
+		send(exchange, 200, XML_CONTENT_TYPE, body.toString());
+	}
+
+	/**
+	 * GetBucketLocation or ListObjectsV2, for a path-style request to "/bucket-name"
+	 */
+	private void handleS3Bucket(HttpExchange exchange) throws IOException, InterruptedException {
+		String bucketName = exchange.getRequestURI().getPath().replaceAll("^/|/$", "");
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		String operation = query.containsKey("location") ? S3_GET_BUCKET_LOCATION
+				: "2".equals(query.get("list-type")) ? S3_LIST_OBJECTS_V2 : null;
+		if (operation == null) {
+			send(exchange, 400, XML_CONTENT_TYPE, "<Error><Code>InvalidRequest</Code>"
+					+ "<Message>Not supported by the stand-in server</Message></Error>");
+			return;
+		}
+		if (sendS3Fault(exchange, begin(operation))) {
+			return;
+		}
+		if (!bucketExists(bucketName)) {
+			send(exchange, 404, XML_CONTENT_TYPE, "<Error><Code>NoSuchBucket</Code>"
+					+ "<Message>The specified bucket does not exist</Message><BucketName>" + bucketName
+					+ "</BucketName><RequestId>" + requestId() + "</RequestId></Error>");
+			return;
+		}
+		if (S3_GET_BUCKET_LOCATION.equals(operation)) {
+			// Buckets in us-east-1 have an empty location
+			send(exchange, 200, XML_CONTENT_TYPE, "<LocationConstraint xmlns=\"" + S3_XML_NAMESPACE + "\"/>");
+			return;
+		}
+
+		int total = objectsPerBucket;
+		int maxKeys = query.containsKey("max-keys") ? Math.min(S3_MAX_KEYS, Integer.parseInt(query.get("max-keys"))) : S3_MAX_KEYS;
+		int start;
+		if (query.containsKey("continuation-token")) {
+			start = Integer.parseInt(query.get("continuation-token"));
+		} else if (query.containsKey("start-after")) {
+			start = firstIndexAfter(query.get("start-after"), total);
+		} else {
+			start = 0;
+		}
+		int end = Math.min(total, start + maxKeys);
+		boolean truncated = end < total;
+		StringBuilder body = new StringBuilder(300 + (end - start) * 200);
+		body.append("<ListBucketResult xmlns=\"").append(S3_XML_NAMESPACE).append("\">")
+				.append("<Name>").append(bucketName).append("</Name><Prefix></Prefix>")
+				.append("<KeyCount>").append(end - start).append("</KeyCount>")
+				.append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+				.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+		if (truncated) {
+			body.append("<NextContinuationToken>").append(end).append("</NextContinuationToken>");
+		}
+		for (int i = start; i < end; i++) {
+			body.append("<Contents><Key>").append(objectKey(i)).append("</Key>")
+					.append("<LastModified>").append(CREATION_DATE).append("</LastModified>")
+					.append("<ETag>&quot;").append(Integer.toHexString(i)).append("&quot;</ETag>")
+					.append("<Size>").append(objectSize(i)).append("</Size>")
+					.append("<StorageClass>STANDARD</StorageClass></Contents>");
+		}
+		body.append("</ListBucketResult>");
+		send(exchange, 200, XML_CONTENT_TYPE, body.toString());
+	}
+
+	private boolean bucketExists(String bucketName) {
+		if (!bucketName.startsWith(BUCKET_NAME_PREFIX)) {
+			return false;
+		}
+		try {
+			int index = Integer.parseInt(bucketName.substring(BUCKET_NAME_PREFIX.length()));
+			return index >= 0 && index < bucketCount;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return Index of the first object whose key comes after the given key
+	 */
+	private static int firstIndexAfter(String key, int total) {
+		int low = 0;
+		int high = total;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (objectKey(middle).compareTo(key) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+		Map<String, String> query = new HashMap<>();
+		if (rawQuery == null || rawQuery.isEmpty()) {
+			return query;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+		}
+		return query;
+	}
+
+	private static String clusterArn(int index) {
+		return "arn:aws:ecs:us-east-1:" + ACCOUNT_ID + ":cluster/standin-cluster-" + index;
+	}
+
+	private static int clusterIndex(String arn) {
+		String prefix = "cluster/standin-cluster-";
+		int at = arn.lastIndexOf(prefix);
+		if (at < 0) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(arn.substring(at + prefix.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static String requestId() {
+		return Long.toHexString(ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * @return True if the fault has been sent, false if there is none
+	 */
+	private static boolean sendS3Fault(HttpExchange exchange, Fault fault) throws IOException {
+		if (fault == Fault.THROTTLE) {
+			send(exchange, 503, XML_CONTENT_TYPE, "<Error><Code>SlowDown</Code>"
+					+ "<Message>Please reduce your request rate.</Message>"
+					+ "<RequestId>" + requestId() + "</RequestId></Error>");
+			return true;
+		}
+		if (fault == Fault.ERROR) {
+			send(exchange, 500, XML_CONTENT_TYPE, "<Error><Code>InternalError</Code><Message>Injected error</Message>"
+					+ "<RequestId>" + requestId() + "</RequestId></Error>");
+			return true;
+		}
+		return false;
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = is.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", contentType);
+		exchange.getResponseHeaders().add("x-amzn-RequestId", requestId());
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+
+	/**
+	 * Runs a stand-in server until the process is killed.
+	 * Arguments (all optional): port, cluster count, bucket count, latency in ms, error rate, throttle rate.
+	 */
+	public static void main(String[] args) throws Exception {
+		AwsStandInServer server = new AwsStandInServer(
+				(int) argument(args, 0, 4566),
+				(int) argument(args, 1, 100),
+				(int) argument(args, 2, 100));
+		server.setLatencyMillis((long) argument(args, 3, 50));
+		server.setErrorRate(argument(args, 4, 0));
+		server.setThrottleRate(argument(args, 5, 0));
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		System.out.println("AWS stand-in server listening at " + server.getEndpoint()
+				+ " | set aws.sdk.endpointOverride to this URL");
+		Thread.currentThread().join();
+	}
+
+	private static double argument(String[] args, int index, double defaultValue) {
+		return args.length > index ? Double.parseDouble(args[index]) : defaultValue;
+	}
+
+}
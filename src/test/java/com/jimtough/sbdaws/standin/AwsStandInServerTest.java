@@ -0,0 +1,527 @@
+package com.jimtough.sbdaws.standin;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.awssdk.AwsClientRegistry;
+import com.jimtough.sbdaws.awssdk.AwsEnvironmentInterrogator;
+import com.jimtough.sbdaws.awssdk.AwsSdkException;
+import com.jimtough.sbdaws.awssdk.AwsService;
+import com.jimtough.sbdaws.awssdk.CircuitBreaker;
+import com.jimtough.sbdaws.awssdk.EcsClusterInventory;
+import com.jimtough.sbdaws.awssdk.S3BucketStatistics;
+import com.jimtough.sbdaws.awssdk.S3BucketStatisticsReport;
+import com.jimtough.sbdaws.metrics.MetricsRegistry;
+import com.jimtough.sbdaws.metrics.RequestTrace;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ecs.ECSClient;
+import software.amazon.awssdk.services.ecs.model.Cluster;
+import software.amazon.awssdk.services.iam.model.GetUserRequest;
+import software.amazon.awssdk.services.iam.model.User;
+import software.amazon.awssdk.services.s3.model.Bucket;
+
+/**
+ * JUnit test for the {@code AwsStandInServer} class, using the real SDK clients
+ * (through the {@code AwsEnvironmentInterrogator}) to check the wire format of each response
+ *
+ * @author JTOUGH
+ */
+public class AwsStandInServerTest {
+
+	@BeforeClass
+	public static void oneTimeSetUp() {
+		// The stand-in server does not check request signatures, but the SDK needs credentials to sign with
+		System.setProperty(ConfigurationBean.SYSPROPKEY_AWS_ACCESS_KEY_ID, "AKIASTANDIN000000000");
+		System.setProperty(ConfigurationBean.SYSPROPKEY_AWS_SECRET_ACCESS_KEY, "standin-secret-key");
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		System.clearProperty(ConfigurationBean.SYSPROPKEY_AWS_ACCESS_KEY_ID);
+		System.clearProperty(ConfigurationBean.SYSPROPKEY_AWS_SECRET_ACCESS_KEY);
+	}
+
+	private AwsStandInServer standInServer;
+	private AwsClientRegistry clientRegistry;
+	private AwsEnvironmentInterrogator interrogator;
+
+	@Before public void setUp() throws Exception {
+		standInServer = new AwsStandInServer(250, 30);
+		URI endpoint = standInServer.getEndpoint();
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+			@Override public int getAwsSdkHttpMaxConnections() { return 10; }
+			@Override public long getAwsSdkHttpConnectionMaxIdleSeconds() { return 60L; }
+			@Override public URI getAwsSdkIamEndpointOverride() { return endpoint; }
+			@Override public URI getAwsSdkEcsEndpointOverride() { return endpoint; }
+			@Override public URI getAwsSdkS3EndpointOverride() { return endpoint; }
+			@Override public int getAwsEcsDescribeClustersParallelism() { return 4; }
+		};
+		clientRegistry = new AwsClientRegistry(configurationBean);
+		interrogator = new AwsEnvironmentInterrogator(configurationBean, clientRegistry, new MetricsRegistry());
+	}
+
+	@After public void tearDown() throws Exception {
+		interrogator.shutdown();
+		clientRegistry.shutdown();
+		standInServer.close();
+	}
+
+	@Test
+	public void testGetIAMUser() throws Exception {
+		User user = interrogator.getIAMUser();
+		assertEquals(AwsStandInServer.IAM_USER_NAME, user.userName());
+		assertEquals("arn:aws:iam::123456789012:user/standin-user", user.arn());
+		assertNotNull(user.createDate());
+		assertEquals(1, standInServer.getRequestCount(AwsStandInServer.IAM_GET_USER));
+	}
+
+	@Test
+	public void testGetS3BucketList() throws Exception {
+		List<Bucket> buckets = interrogator.getS3BucketList();
+		assertEquals(30, buckets.size());
+		assertEquals("standin-bucket-0", buckets.get(0).name());
+		assertNotNull(buckets.get(0).creationDate());
+
+		standInServer.setBucketCount(0);
+		assertTrue(interrogator.getS3BucketList().isEmpty());
+	}
+
+	@Test
+	public void testGetECSClusterListIsPaged() throws Exception {
+		List<Cluster> clusters = interrogator.getECSClusterList();
+		assertEquals(250, clusters.size());
+		assertEquals("standin-cluster-0", clusters.get(0).clusterName());
+		assertEquals("standin-cluster-249", clusters.get(249).clusterName());
+		assertEquals(Integer.valueOf(9), clusters.get(249).registeredContainerInstancesCount());
+		// 100 ARNs per page, and up to 100 clusters per describe batch
+		assertEquals(3, standInServer.getRequestCount(AwsStandInServer.ECS_LIST_CLUSTERS));
+		assertEquals(3, standInServer.getRequestCount(AwsStandInServer.ECS_DESCRIBE_CLUSTERS));
+	}
+
+	@Test
+	public void testLatencyIsAdded() throws Exception {
+		standInServer.setLatencyMillis(200);
+		long startNanos = System.nanoTime();
+		interrogator.getIAMUser();
+		assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(200));
+	}
+
+	@Test
+	public void testInjectedErrors() throws Exception {
+		standInServer.setErrorRate(1.0);
+		try {
+			interrogator.getIAMUser();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			// expected
+		}
+		try {
+			interrogator.getS3BucketList();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			// expected
+		}
+		assertTrue(standInServer.getErrorCount() >= 2);
+
+		standInServer.setErrorRate(0);
+		assertNotNull(interrogator.getIAMUser());
+	}
+
+	@Test
+	public void testConcurrentLookupsShareOneCall() throws Exception {
+		final int callersPerResource = 100;
+		standInServer.setClusterCount(50);
+		// Slow enough that every caller arrives while the first call is in progress
+		standInServer.setLatencyMillis(1500);
+		ExecutorService executor = Executors.newFixedThreadPool(callersPerResource * 3);
+		try {
+			CountDownLatch startGate = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < callersPerResource; i++) {
+				futures.add(executor.submit(() -> { startGate.await(); return interrogator.getIAMUser(); }));
+				futures.add(executor.submit(() -> { startGate.await(); return interrogator.getECSClusterList(); }));
+				futures.add(executor.submit(() -> { startGate.await(); return interrogator.getS3BucketList(); }));
+			}
+			startGate.countDown();
+			for (Future<?> future : futures) {
+				assertNotNull(future.get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, standInServer.getRequestCount(AwsStandInServer.IAM_GET_USER));
+		assertEquals(1, standInServer.getRequestCount(AwsStandInServer.ECS_LIST_CLUSTERS));
+		assertEquals(1, standInServer.getRequestCount(AwsStandInServer.ECS_DESCRIBE_CLUSTERS));
+		assertEquals(1, standInServer.getRequestCount(AwsStandInServer.S3_LIST_BUCKETS));
+	}
+
+	@Test
+	public void testMultiRegionInventoryIsParallelAndToleratesFailures() throws Exception {
+		final long latencyMillis = 1000;
+		Region euWest1 = Region.of("eu-west-1");
+		Region apSoutheast2 = Region.of("ap-southeast-2");
+		standInServer.setClusterCount(3);
+		standInServer.setLatencyMillis(latencyMillis);
+		try (AwsStandInServer euWest1Server = new AwsStandInServer(2, 0);
+				AwsStandInServer apSoutheast2Server = new AwsStandInServer(0, 0)) {
+			euWest1Server.setLatencyMillis(latencyMillis);
+			apSoutheast2Server.setErrorRate(1.0);
+			// Each region has its own stand-in server
+			AwsClientRegistry euWest1Registry = new AwsClientRegistry(ecsConfiguration(euWest1Server.getEndpoint()));
+			AwsClientRegistry apSoutheast2Registry = new AwsClientRegistry(ecsConfiguration(apSoutheast2Server.getEndpoint()));
+			AwsClientRegistry multiRegionRegistry = new AwsClientRegistry(ecsConfiguration(standInServer.getEndpoint())) {
+				@Override public ECSClient getEcsClient(Region region) {
+					if (region.value().equals(euWest1.value())) {
+						return euWest1Registry.getEcsClient(region);
+					}
+					if (region.value().equals(apSoutheast2.value())) {
+						return apSoutheast2Registry.getEcsClient(region);
+					}
+					return clientRegistry.getEcsClient(region);
+				}
+			};
+			ConfigurationBean configurationBean = new ConfigurationBean() {
+				@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+				@Override public List<Region> getAwsTargetRegions() {
+					return Arrays.asList(Region.US_EAST_1, euWest1, apSoutheast2);
+				}
+				@Override public int getAwsEcsDescribeClustersParallelism() { return 4; }
+			};
+			interrogator.shutdown();
+			interrogator = new AwsEnvironmentInterrogator(configurationBean, multiRegionRegistry, new MetricsRegistry());
+			try {
+				long startNanos = System.nanoTime();
+				EcsClusterInventory inventory = interrogator.getECSClusterInventory();
+				long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+				// Each of the two slow regions makes two calls (list, then describe)
+				assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 3 * latencyMillis);
+				assertEquals(3, inventory.getRegions().size());
+				assertEquals(5, inventory.getClusters().size());
+				assertEquals("us-east-1", inventory.getClusters().get(0).getRegion().value());
+				assertEquals("standin-cluster-0", inventory.getClusters().get(0).getCluster().clusterName());
+				assertEquals("eu-west-1", inventory.getClusters().get(4).getRegion().value());
+				assertFalse(inventory.isComplete());
+				assertEquals(Collections.singleton("ap-southeast-2"), inventory.getFailedRegions().keySet());
+			} finally {
+				euWest1Registry.shutdown();
+				apSoutheast2Registry.shutdown();
+			}
+		}
+	}
+
+	@Test
+	public void testMultiRegionInventoryFailsWhenEveryRegionFails() throws Exception {
+		standInServer.setErrorRate(1.0);
+		try {
+			interrogator.getECSClusterInventory();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertFalse(e.isShortCircuited());
+		}
+	}
+
+	private static ConfigurationBean ecsConfiguration(URI endpoint) {
+		return new ConfigurationBean() {
+			@Override public int getAwsSdkHttpMaxConnections() { return 10; }
+			@Override public long getAwsSdkHttpConnectionMaxIdleSeconds() { return 60L; }
+			@Override public URI getAwsSdkEcsEndpointOverride() { return endpoint; }
+		};
+	}
+
+	@Test
+	public void testS3BucketStatistics() throws Exception {
+		standInServer.setBucketCount(3);
+		standInServer.setObjectsPerBucket(2500);
+
+		S3BucketStatisticsReport report = interrogator.getS3BucketStatistics();
+		assertTrue(report.isComplete());
+		assertEquals(3, report.getBuckets().size());
+		for (S3BucketStatistics bucket : report.getBuckets()) {
+			assertEquals(2500, bucket.getObjectCount());
+			assertEquals(expectedTotalBytes(2500), bucket.getTotalBytes());
+			// 1000 objects per page
+			assertEquals(3, bucket.getListPageCount());
+			assertEquals("us-east-1", bucket.getRegion());
+		}
+		assertEquals("standin-bucket-0", report.getBuckets().get(0).getBucketName());
+		assertEquals(9, standInServer.getRequestCount(AwsStandInServer.S3_LIST_OBJECTS_V2));
+		assertEquals(3, standInServer.getRequestCount(AwsStandInServer.S3_GET_BUCKET_LOCATION));
+
+		// The bucket locations are only looked up once
+		interrogator.getS3BucketStatistics();
+		assertEquals(18, standInServer.getRequestCount(AwsStandInServer.S3_LIST_OBJECTS_V2));
+		assertEquals(3, standInServer.getRequestCount(AwsStandInServer.S3_GET_BUCKET_LOCATION));
+	}
+
+	@Test
+	public void testS3BucketStatisticsWithShardsAndBoundedParallelism() throws Exception {
+		standInServer.setBucketCount(4);
+		standInServer.setObjectsPerBucket(2000);
+		standInServer.setLatencyMillis(50);
+		URI endpoint = standInServer.getEndpoint();
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+			@Override public URI getAwsSdkS3EndpointOverride() { return endpoint; }
+			@Override public int getAwsS3StatisticsParallelism() { return 3; }
+			@Override public int getAwsS3StatisticsMaxKeysPerPage() { return 250; }
+			@Override public List<String> getAwsS3StatisticsShardSplitKeys() {
+				// Deliberately out of order, and not on a page boundary
+				return Arrays.asList(AwsStandInServer.objectKey(1200), AwsStandInServer.objectKey(333));
+			}
+		};
+		interrogator.shutdown();
+		interrogator = new AwsEnvironmentInterrogator(configurationBean, clientRegistry, new MetricsRegistry());
+
+		S3BucketStatisticsReport report = interrogator.getS3BucketStatistics();
+		assertTrue(report.isComplete());
+		assertEquals(4, report.getBuckets().size());
+		for (S3BucketStatistics bucket : report.getBuckets()) {
+			// Every object is counted exactly once, whatever the shard boundaries
+			assertEquals(2000, bucket.getObjectCount());
+			assertEquals(expectedTotalBytes(2000), bucket.getTotalBytes());
+			// Shards of 334, 867 and 799 objects, at 250 per page
+			assertEquals(2 + 4 + 4, bucket.getListPageCount());
+		}
+		// One more than the parallelism for the ListBuckets call, which is not part of the pool
+		assertTrue("max in progress: " + standInServer.getMaxRequestsInProgress(),
+				standInServer.getMaxRequestsInProgress() <= 3);
+	}
+
+	@Test
+	public void testS3BucketStatisticsFailsWhenEveryBucketFails() throws Exception {
+		standInServer.setBucketCount(2);
+		standInServer.setObjectsPerBucket(10);
+		// Caches the bucket list, and the bucket locations
+		interrogator.getS3BucketStatistics();
+		standInServer.setErrorRate(1.0);
+		try {
+			interrogator.getS3BucketStatistics();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertFalse(e.isShortCircuited());
+		}
+	}
+
+	private static long expectedTotalBytes(int objectCount) {
+		long total = 0;
+		for (int i = 0; i < objectCount; i++) {
+			total += AwsStandInServer.objectSize(i);
+		}
+		return total;
+	}
+
+	@Test
+	public void testOpenCircuitBreakerServesLastKnownGoodValue() throws Exception {
+		interrogator.shutdown();
+		MetricsRegistry metricsRegistry = new MetricsRegistry();
+		URI endpoint = standInServer.getEndpoint();
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+			@Override public URI getAwsSdkS3EndpointOverride() { return endpoint; }
+			@Override public int getAwsCircuitBreakerFailureRateThresholdPercent() { return 50; }
+			@Override public int getAwsCircuitBreakerWindowSize() { return 4; }
+			@Override public int getAwsCircuitBreakerMinimumCalls() { return 2; }
+			@Override public long getAwsCircuitBreakerOpenSeconds() { return 600L; }
+			@Override public int getAwsCircuitBreakerHalfOpenProbes() { return 1; }
+		};
+		interrogator = new AwsEnvironmentInterrogator(configurationBean, clientRegistry, metricsRegistry);
+
+		List<Bucket> goodBuckets = interrogator.getS3BucketList();
+		assertEquals(30, goodBuckets.size());
+		standInServer.setErrorRate(1.0);
+		try {
+			interrogator.getS3BucketList();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertFalse(e.isShortCircuited());
+		}
+
+		// The breaker is now open, so the SDK is not called at all
+		long requestCount = standInServer.getRequestCount(AwsStandInServer.S3_LIST_BUCKETS);
+		for (int i = 0; i < 10; i++) {
+			assertSame(goodBuckets, interrogator.getS3BucketList());
+		}
+		assertEquals(requestCount, standInServer.getRequestCount(AwsStandInServer.S3_LIST_BUCKETS));
+		assertEquals(CircuitBreaker.State.OPEN, interrogator.getServiceStatuses().get(AwsService.S3.ordinal()).getCircuitState());
+		assertEquals(Long.valueOf(CircuitBreaker.State.OPEN.ordinal()), metricsRegistry.getCallbackValue(
+				"aws_circuit_breaker_state", Collections.singletonMap("service", "S3")));
+		assertEquals(CircuitBreaker.State.CLOSED, interrogator.getServiceStatuses().get(AwsService.IAM.ordinal()).getCircuitState());
+	}
+
+
+	/**
+	 * Rebuilds the clients with the retry policy and request limit. The other tests run without them,
+	 * because properties that are not overridden are zero here.
+	 */
+	private MetricsRegistry useRequestPolicy(int budgetMaxRetries) {
+		interrogator.shutdown();
+		clientRegistry.shutdown();
+		MetricsRegistry metricsRegistry = new MetricsRegistry();
+		URI endpoint = standInServer.getEndpoint();
+		ConfigurationBean configurationBean = new ConfigurationBean() {
+			@Override public Region getAwsTargetRegion() { return Region.US_EAST_1; }
+			@Override public URI getAwsSdkIamEndpointOverride() { return endpoint; }
+			@Override public URI getAwsSdkEcsEndpointOverride() { return endpoint; }
+			@Override public URI getAwsSdkS3EndpointOverride() { return endpoint; }
+			@Override public int getAwsEcsDescribeClustersParallelism() { return 4; }
+			@Override public int getAwsRetryMaxRetries() { return 3; }
+			@Override public long getAwsRetryBaseDelayMillis() { return 10L; }
+			@Override public long getAwsRetryMaxDelayMillis() { return 50L; }
+			@Override public int getAwsRetryBudgetPercent() { return 10; }
+			@Override public int getAwsRetryBudgetMaxRetries() { return budgetMaxRetries; }
+			@Override public int getAwsConcurrencyInitialLimit() { return 8; }
+			@Override public int getAwsConcurrencyMinLimit() { return 1; }
+			@Override public int getAwsConcurrencyMaxLimit() { return 50; }
+			@Override public long getAwsConcurrencyMaxWaitMillis() { return 10_000L; }
+		};
+		clientRegistry = new AwsClientRegistry(configurationBean, metricsRegistry);
+		interrogator = new AwsEnvironmentInterrogator(configurationBean, clientRegistry, metricsRegistry);
+		return metricsRegistry;
+	}
+
+	private static Map<String, String> clientLabels(AwsService service, Region region) {
+		Map<String, String> labels = new LinkedHashMap<>();
+		labels.put("service", service.name());
+		labels.put("region", region.value());
+		return labels;
+	}
+
+	@Test
+	public void testThrottlingIsRetriedAndCutsRequestLimit() throws Exception {
+		MetricsRegistry metricsRegistry = useRequestPolicy(20);
+		Map<String, String> iamLabels = clientLabels(AwsService.IAM, Region.AWS_GLOBAL);
+		standInServer.setThrottleRate(1.0);
+		try {
+			interrogator.getIAMUser();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			assertFalse(e.isShortCircuited());
+		}
+		// The request and 3 retries. Each throttling error halves the limit (there is no cooldown here).
+		assertEquals(4, standInServer.getRequestCount(AwsStandInServer.IAM_GET_USER));
+		assertEquals(4, standInServer.getThrottleCount());
+		assertEquals(Long.valueOf(4), metricsRegistry.getCallbackValue("aws_throttled_requests_total", iamLabels));
+		assertEquals(Long.valueOf(1), metricsRegistry.getCallbackValue("aws_request_limit", iamLabels));
+		assertEquals(Long.valueOf(0), metricsRegistry.getCallbackValue("aws_requests_in_progress", iamLabels));
+
+		// S3 has its own throttling error
+		try {
+			interrogator.getS3BucketList();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			// expected
+		}
+		assertEquals(Long.valueOf(4), metricsRegistry.getCallbackValue("aws_throttled_requests_total",
+				clientLabels(AwsService.S3, Region.US_EAST_1)));
+
+		standInServer.setThrottleRate(0);
+		assertNotNull(interrogator.getIAMUser());
+		assertEquals(30, interrogator.getS3BucketList().size());
+		assertEquals(Long.valueOf(2), metricsRegistry.getCallbackValue("aws_request_limit", iamLabels));
+	}
+
+	@Test
+	public void testRequestLimitHoldsBackConcurrentRequests() throws Exception {
+		MetricsRegistry metricsRegistry = useRequestPolicy(20);
+		Map<String, String> iamLabels = clientLabels(AwsService.IAM, Region.AWS_GLOBAL);
+		standInServer.setThrottleRate(1.0);
+		try {
+			interrogator.getIAMUser();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			// expected
+		}
+		assertEquals(Long.valueOf(1), metricsRegistry.getCallbackValue("aws_request_limit", iamLabels));
+
+		standInServer.setThrottleRate(0);
+		standInServer.setLatencyMillis(200);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				futures.add(executor.submit(() -> clientRegistry.getIamClient().getUser(GetUserRequest.builder().build())));
+			}
+			for (Future<?> future : futures) {
+				assertNotNull(future.get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		// The limit starts at 1, and each success adds 1 / limit: 2, 2.5, 2.9, then 3.2
+		assertTrue(standInServer.getMaxRequestsInProgress() <= 2);
+		assertEquals(Long.valueOf(3), metricsRegistry.getCallbackValue("aws_request_limit", iamLabels));
+		assertEquals(Long.valueOf(0), metricsRegistry.getCallbackValue("aws_requests_in_progress", iamLabels));
+	}
+
+	@Test
+	public void testRetryBudgetLimitsRetries() throws Exception {
+		MetricsRegistry metricsRegistry = useRequestPolicy(2);
+		standInServer.setErrorRate(1.0);
+		for (int i = 0; i < 10; i++) {
+			try {
+				interrogator.getIAMUser();
+				fail("expected an AwsSdkException");
+			} catch (AwsSdkException e) {
+				// expected
+			}
+		}
+		// 3 retries each would be 40 requests. The budget only has the 2 that it starts with, because
+		// the 10 requests only earn 0.9 of a retry after it is empty.
+		assertEquals(12, standInServer.getRequestCount(AwsStandInServer.IAM_GET_USER));
+		Map<String, String> iamLabels = clientLabels(AwsService.IAM, Region.AWS_GLOBAL);
+		assertEquals(Long.valueOf(10), metricsRegistry.getCallbackValue("aws_retries_denied_total", iamLabels));
+		assertEquals(Long.valueOf(0), metricsRegistry.getCallbackValue("aws_requests_in_progress", iamLabels));
+	}
+
+	@Test
+	public void testTracedCallsAreRecorded() throws Exception {
+		useRequestPolicy(20);
+		RequestTrace trace = new RequestTrace();
+		assertNotNull(trace.wrap(interrogator::getIAMUser).call());
+		standInServer.setThrottleRate(1.0);
+		try {
+			trace.wrap(interrogator::getS3BucketList).call();
+			fail("expected an AwsSdkException");
+		} catch (AwsSdkException e) {
+			// expected
+		}
+		standInServer.setThrottleRate(0);
+		// Not traced, and the trace is no longer current on this thread
+		assertNull(RequestTrace.current());
+		interrogator.getIAMUser();
+
+		List<RequestTrace.SdkCall> calls = trace.getSdkCalls();
+		assertEquals(2, calls.size());
+		assertEquals("GetUser", calls.get(0).getOperation());
+		assertTrue(calls.get(0).getClient().contains("IAM"));
+		assertEquals("OK", calls.get(0).getOutcome());
+		assertEquals(0, calls.get(0).getRetries());
+		assertTrue(calls.get(0).getDurationMillis() >= 0);
+		assertEquals("ListBuckets", calls.get(1).getOperation());
+		assertEquals(3, calls.get(1).getRetries());
+		assertNotEquals("OK", calls.get(1).getOutcome());
+	}
+
+}
@@ -0,0 +1,258 @@
+package com.jimtough.sbdaws.standin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import com.jimtough.sbdaws.Application;
+import com.jimtough.sbdaws.metrics.LatencyHistogram;
+
+/**
+ * Sends home page requests from a number of concurrent clients for a fixed time, and reports
+ * the throughput and latency percentiles. Each client sends its next request as soon as it has
+ * read the whole previous response.
+ *
+ * Run {@link #main(String[])} to measure the whole application against an {@code AwsStandInServer},
+ * or against a URL of an application that is already running.
+ *
+ * @author JTOUGH
+ */
+public class HomePageLoadDriver {
+
+	private final URI url;
+	private final int clientCount;
+
+	/**
+	 * @param url Page to request
+	 * @param clientCount Number of concurrent clients
+	 */
+	public HomePageLoadDriver(URI url, int clientCount) {
+		if (url == null) {
+			throw new IllegalArgumentException("url cannot be null");
+		}
+		if (clientCount < 1) {
+			throw new IllegalArgumentException("clientCount must be at least 1");
+		}
+		this.url = url;
+		this.clientCount = clientCount;
+	}
+
+	/**
+	 * @param durationMillis How long to send requests for
+	 * @return Non-null report
+	 * @throws InterruptedException Thrown if interrupted while waiting for the clients
+	 */
+	public LoadReport run(long durationMillis) throws InterruptedException {
+		LatencyHistogram latency = new LatencyHistogram();
+		LongAdder errorCount = new LongAdder();
+		CountDownLatch startSignal = new CountDownLatch(1);
+		List<Thread> clients = new ArrayList<>(clientCount);
+		long[] deadlineNanos = new long[1];
+		for (int i = 0; i < clientCount; i++) {
+			Thread client = new Thread(() -> {
+				try {
+					startSignal.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				while (System.nanoTime() < deadlineNanos[0]) {
+					long startNanos = System.nanoTime();
+					boolean ok = sendRequest();
+					latency.record(System.nanoTime() - startNanos);
+					if (!ok) {
+						errorCount.increment();
+					}
+				}
+			}, "load-driver-" + i);
+			client.start();
+			clients.add(client);
+		}
+		long startNanos = System.nanoTime();
+		deadlineNanos[0] = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		startSignal.countDown();
+		for (Thread client : clients) {
+			client.join();
+		}
+		return new LoadReport(clientCount, System.nanoTime() - startNanos, latency.snapshot(), errorCount.sum());
+	}
+
+	/**
+	 * @return True if the response was a 200 or 304, and the whole body was read
+	 */
+	private boolean sendRequest() {
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) url.toURL().openConnection();
+			connection.setRequestProperty("Accept-Encoding", "gzip");
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_NOT_MODIFIED) {
+				drain(connection.getErrorStream());
+				return false;
+			}
+			drain(connection.getInputStream());
+			return true;
+		} catch (IOException e) {
+			if (connection != null) {
+				connection.disconnect();
+			}
+			return false;
+		}
+	}
+
+	private static void drain(InputStream is) throws IOException {
+		if (is == null) {
+			return;
+		}
+		// Reading to the end (and closing) lets the connection be reused for the next request
+		try (InputStream in = is) {
+			byte[] buffer = new byte[8192];
+			while (in.read(buffer) != -1) {
+				// discard
+			}
+		}
+	}
+
+	/**
+	 * Start the whole application on a free port, with the SDK clients pointed at a stand-in server
+	 *
+	 * @param standInServer Server that answers the AWS SDK calls
+	 * @param efsVolumeRoot Directory to use as the EFS volume
+	 * @param extraArgs More application arguments, such as {@code --app.request.mode=async}
+	 * @return Running application. Close it when done.
+	 */
+	public static ConfigurableApplicationContext startApplication(AwsStandInServer standInServer, Path efsVolumeRoot,
+			String... extraArgs) {
+		List<String> args = new ArrayList<>();
+		args.add("--server.port=0");
+		args.add("--aws.sdk.endpointOverride=" + standInServer.getEndpoint());
+		args.add("--aws.target.region=us-east-1");
+		// The stand-in server does not check request signatures, but the SDK needs credentials to sign with
+		args.add("--sdk.user.aws.accessKeyId=AKIASTANDIN000000000");
+		args.add("--sdk.user.aws.secretAccessKey=standin-secret-key");
+		args.add("--my.name=load-driver");
+		args.add("--efs.volume.mountPath=" + efsVolumeRoot.toAbsolutePath());
+		for (String arg : extraArgs) {
+			args.add(arg);
+		}
+		SpringApplication application = new SpringApplication(Application.class);
+		application.addInitializers(context -> context.getBeanFactory().registerSingleton(
+				TestConfigurationExcludeFilter.class.getName(), new TestConfigurationExcludeFilter()));
+		return application.run(args.toArray(new String[args.size()]));
+	}
+
+	/**
+	 * @param context Application started by {@link #startApplication(AwsStandInServer, Path, String...)}
+	 * @return URL of the home page
+	 */
+	public static URI homePageUrl(ConfigurableApplicationContext context) {
+		int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+		return URI.create("http://localhost:" + port + "/");
+	}
+
+	/**
+	 * Arguments (all optional): number of clients, duration in seconds, and the URL of a running
+	 * application. Without a URL, the application is started here against a stand-in server with
+	 * 100 ECS clusters, 100 S3 buckets and 50 ms of latency on every SDK call.
+	 */
+	public static void main(String[] args) throws Exception {
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		long durationMillis = TimeUnit.SECONDS.toMillis(args.length > 1 ? Long.parseLong(args[1]) : 30);
+		if (args.length > 2) {
+			System.out.println(new HomePageLoadDriver(URI.create(args[2]), clients).run(durationMillis));
+			return;
+		}
+		Path efsVolumeRoot = Files.createTempDirectory("load-driver-efs-");
+		try (AwsStandInServer standInServer = new AwsStandInServer(100, 100)) {
+			standInServer.setLatencyMillis(50);
+			ConfigurableApplicationContext context = startApplication(standInServer, efsVolumeRoot);
+			try {
+				HomePageLoadDriver driver = new HomePageLoadDriver(homePageUrl(context), clients);
+				// Warm up the JIT, the connection pools and the caches before measuring
+				driver.run(TimeUnit.SECONDS.toMillis(5));
+				System.out.println(driver.run(durationMillis));
+				System.out.println("SDK requests: " + standInServer.getRequestCounts());
+			} finally {
+				context.close();
+			}
+		}
+	}
+
+	/**
+	 * The test classes are on the classpath too, so the component scan of the application would
+	 * also pick up the nested {@code @Configuration} classes of other tests. This keeps them out.
+	 */
+	private static final class TestConfigurationExcludeFilter extends TypeExcludeFilter {
+
+		@Override
+		public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+			return metadataReader.getClassMetadata().getClassName().contains("Test$");
+		}
+	}
+
+	/**
+	 * Immutable results of one run
+	 */
+	public static final class LoadReport {
+
+		private final int clientCount;
+		private final long elapsedNanos;
+		private final LatencyHistogram.Snapshot latency;
+		private final long errorCount;
+
+		LoadReport(int clientCount, long elapsedNanos, LatencyHistogram.Snapshot latency, long errorCount) {
+			this.clientCount = clientCount;
+			this.elapsedNanos = elapsedNanos;
+			this.latency = latency;
+			this.errorCount = errorCount;
+		}
+
+		/**
+		 * @return Number of requests sent, including those that failed
+		 */
+		public long getRequestCount() {
+			return latency.getCount();
+		}
+
+		public long getErrorCount() {
+			return errorCount;
+		}
+
+		public double getRequestsPerSecond() {
+			return latency.getCount() / (elapsedNanos / 1_000_000_000.0);
+		}
+
+		/**
+		 * @return Response times, in microseconds
+		 */
+		public LatencyHistogram.Snapshot getLatency() {
+			return latency;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("clients: %d | requests: %d | errors: %d | throughput: %.1f req/s"
+					+ " | latency ms p50: %.1f | p90: %.1f | p99: %.1f | max: %.1f",
+					clientCount, getRequestCount(), errorCount, getRequestsPerSecond(),
+					latency.getValueAtQuantile(0.5) / 1000.0,
+					latency.getValueAtQuantile(0.9) / 1000.0,
+					latency.getValueAtQuantile(0.99) / 1000.0,
+					latency.getMaxMicros() / 1000.0);
+		}
+	}
+
+}
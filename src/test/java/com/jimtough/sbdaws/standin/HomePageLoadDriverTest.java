@@ -0,0 +1,93 @@
+package com.jimtough.sbdaws.standin;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.StreamUtils;
+
+import com.jimtough.sbdaws.ConfigurationBean;
+import com.jimtough.sbdaws.page.HomePageController;
+
+/**
+ * End-to-end test of the whole application against an {@code AwsStandInServer}, using the
+ * {@code HomePageLoadDriver} to send concurrent home page requests
+ *
+ * @author JTOUGH
+ */
+public class HomePageLoadDriverTest {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HomePageLoadDriverTest.class);
+
+	private static final int CLIENT_COUNT = 8;
+	private static final long DURATION_MILLIS = 2000;
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private AwsStandInServer standInServer;
+	private ConfigurableApplicationContext context;
+
+	@Before public void setUp() throws Exception {
+		standInServer = new AwsStandInServer(150, 20);
+		standInServer.setLatencyMillis(20);
+		Files.write(temporaryFolder.getRoot().toPath().resolve("standin-file.txt"), new byte[5]);
+	}
+
+	@After public void tearDown() throws Exception {
+		if (context != null) {
+			context.close();
+		}
+		standInServer.close();
+		// ConfigurationBean copies the credentials into System properties for the SDK
+		System.clearProperty(ConfigurationBean.SYSPROPKEY_AWS_ACCESS_KEY_ID);
+		System.clearProperty(ConfigurationBean.SYSPROPKEY_AWS_SECRET_ACCESS_KEY);
+	}
+
+	private void checkUnderLoad(String requestMode) throws Exception {
+		context = HomePageLoadDriver.startApplication(standInServer, temporaryFolder.getRoot().toPath(),
+				"--" + HomePageController.REQUEST_MODE_PROPERTY + "=" + requestMode);
+		URI url = HomePageLoadDriver.homePageUrl(context);
+
+		HttpURLConnection connection = (HttpURLConnection) url.toURL().openConnection();
+		assertEquals(200, connection.getResponseCode());
+		try (InputStream is = connection.getInputStream()) {
+			String html = StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+			assertTrue(html.contains(AwsStandInServer.IAM_USER_NAME));
+			assertTrue(html.contains("standin-cluster-149"));
+			assertTrue(html.contains("standin-bucket-19"));
+			assertTrue(html.contains("standin-file.txt"));
+		}
+
+		HomePageLoadDriver.LoadReport report = new HomePageLoadDriver(url, CLIENT_COUNT).run(DURATION_MILLIS);
+		LOGGER.info("Load test ({}): {}", requestMode, report);
+		assertTrue(report.getRequestCount() > CLIENT_COUNT);
+		assertEquals(0, report.getErrorCount());
+		assertTrue(report.getLatency().getValueAtQuantile(0.99) > 0);
+		// The inventory cache keeps most page requests from reaching the SDK
+		assertTrue(standInServer.getRequestCount(AwsStandInServer.IAM_GET_USER) < report.getRequestCount());
+		assertTrue(standInServer.getRequestCount(AwsStandInServer.ECS_LIST_CLUSTERS) >= 2);
+	}
+
+	@Test
+	public void testSyncHomePageUnderLoad() throws Exception {
+		checkUnderLoad("sync");
+	}
+
+	@Test
+	public void testAsyncHomePageUnderLoad() throws Exception {
+		checkUnderLoad("async");
+	}
+
+}